@@ -2,18 +2,34 @@ package project.DAO;
 import project.controller.LoginController;
 import project.model.TypeAndMonthReport;
 import project.utilities.AlertMessage;
+import project.utilities.AppConfig;
+import project.utilities.IntervalIndex;
 import project.utilities.JDBC;
 import project.model.Appointment;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 
+import java.io.IOException;
+import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.sql.Timestamp;
 import java.time.*;
 import java.time.format.DateTimeFormatter;
 import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.ObjIntConsumer;
+import java.util.stream.Collectors;
 
 /**
  * Handles the database interactions for Appointment objects.
@@ -22,6 +38,41 @@ import java.time.temporal.TemporalAdjusters;
  */
 public class AppointmentDAO {
 
+    /**
+     * Whose appointments a query selects: a contact's or a user's.
+     */
+    public enum Owner {
+        /** Appointments with a contact */
+        CONTACT("Contact_ID"),
+        /** Appointments of a user */
+        USER("User_ID");
+
+        /** The appointments column holding the owner's ID */
+        private final String column;
+
+        /**
+         * Creates an owner.
+         * @param column the appointments column holding the owner's ID
+         */
+        Owner(String column) {
+            this.column = column;
+        }
+    }
+
+    /**
+     * Receives appointments one at a time as they are read from the database.
+     */
+    public interface AppointmentStreamHandler {
+        /**
+         * Called for each appointment.
+         *
+         * @param appointment the appointment
+         * @param lastUpdate when the appointment was last changed, in local time
+         * @throws IOException if the appointment cannot be written
+         */
+        void accept(Appointment appointment, LocalDateTime lastUpdate) throws IOException;
+    }
+
     /** Date-time formatter */
     private static final DateTimeFormatter datetimeDTF = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
 
@@ -31,6 +82,18 @@ public class AppointmentDAO {
     /** UTC time zone ID */
     private static final ZoneId utcZoneID = ZoneId.of("UTC");
 
+    /** Statements answering appointment queries, by query shape, so each shape is put together once */
+    private static final Map<Integer, String> findAppointmentsSql = new ConcurrentHashMap<>();
+
+    /** In-process booking locks; a customer's bookings take the lock at customer ID modulo the stripe count */
+    private static final Lock[] BOOKING_LOCKS = new Lock[Math.max(1, AppConfig.getInt("booking.lockStripes", 64))];
+
+    static {
+        for (int i = 0; i < BOOKING_LOCKS.length; i++) {
+            BOOKING_LOCKS[i] = new ReentrantLock();
+        }
+    }
+
     /**
      * Retrieves an unused appointment ID from the database. This is the highest current ID plus one.
      *
@@ -38,7 +101,7 @@ public class AppointmentDAO {
      * @throws SQLException if a database access error occurs
      */
     public static int getUnusedAppointmentId() throws SQLException {
-        String SQL = "SELECT MAX(Appointment_ID) AS MaxAppointmentID FROM appointments";
+        String SQL = JDBC.FROM_PRIMARY + "SELECT MAX(Appointment_ID) AS MaxAppointmentID FROM appointments";
         int maxAppointmentId = 0;
 
         try (PreparedStatement ps = JDBC.getConnection().prepareStatement(SQL);
@@ -67,9 +130,108 @@ public class AppointmentDAO {
      */
     public static boolean addAppointmentToDB(Appointment appointment) throws SQLException {
         System.out.println(appointment);
-        String SQL = "INSERT INTO appointments (Title, Description, Location, Type, Start, End, Contact_ID, Customer_ID, User_ID, Create_Date, Created_By, Last_Update, Last_Updated_By) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
         int rowsAffected = 0;
-        try (PreparedStatement ps = JDBC.getConnection().prepareStatement(SQL)) {
+        try {
+            rowsAffected = insertAppointment(JDBC.getConnection(), appointment);
+        } catch(SQLException e) {
+            e.printStackTrace();
+            throw e;
+        }
+        if (rowsAffected > 0) {
+            DataChangeBus.appointmentChanged(DataChangeEvent.Kind.INSERTED, appointment.getAppointmentId(), appointment);
+        }
+        return rowsAffected > 0;
+    }
+
+    /**
+     * Books an appointment on the shared connection. Must be called from the FX thread;
+     * see {@link #bookAppointment(Connection, Appointment)}.
+     *
+     * @param appointment the appointment to book
+     * @return the booked appointment, or the customer's appointments it overlaps
+     * @throws SQLException if a database access error occurs; the transaction is rolled back
+     */
+    public static BookingResult bookAppointment(Appointment appointment) throws SQLException {
+        return bookAppointment(JDBC.getConnection(), appointment);
+    }
+
+    /**
+     * Books an appointment: checks it for overlaps with the customer's other appointments and inserts it
+     * in one transaction, so two users can never book overlapping appointments for the same customer.
+     *
+     * Bookings are serialized per customer by locking the customer row (SELECT ... FOR UPDATE) for the length
+     * of the transaction, which also covers other clients of the database. Threads of this application first
+     * take an in-process lock for the customer's stripe, so they queue in memory rather than holding
+     * connections while they wait on the row lock.
+     *
+     * @param connection a connection not used by any other thread during the call
+     * @param appointment the appointment to book; receives its generated ID
+     * @return the booked appointment, or the customer's appointments it overlaps
+     * @throws SQLException if the customer does not exist or a database access error occurs;
+     *                      the transaction is rolled back
+     */
+    public static BookingResult bookAppointment(Connection connection, Appointment appointment) throws SQLException {
+        String lockSQL = "SELECT Customer_ID FROM customers WHERE Customer_ID = ? FOR UPDATE";
+        String overlapSQL = "SELECT * FROM appointments WHERE Customer_ID = ? AND Appointment_ID != ? AND Start < ? AND End > ?";
+        Lock stripe = BOOKING_LOCKS[Math.floorMod(appointment.getCustomerId(), BOOKING_LOCKS.length)];
+        stripe.lock();
+        try {
+            boolean autoCommit = connection.getAutoCommit();
+            try {
+                connection.setAutoCommit(false);
+                try (PreparedStatement ps = connection.prepareStatement(lockSQL)) {
+                    ps.setInt(1, appointment.getCustomerId());
+                    try (ResultSet rs = ps.executeQuery()) {
+                        if (!rs.next()) {
+                            throw new SQLException("Customer " + appointment.getCustomerId() + " does not exist");
+                        }
+                    }
+                }
+                // The read view is taken by this first plain read, after the row lock was granted,
+                // so it sees every booking committed by whoever held the lock before
+                List<Appointment> conflicts = new ArrayList<>();
+                try (PreparedStatement ps = connection.prepareStatement(overlapSQL)) {
+                    ps.setInt(1, appointment.getCustomerId());
+                    ps.setInt(2, appointment.getAppointmentId());
+                    ps.setTimestamp(3, Timestamp.valueOf(appointment.getEndDateTime()));
+                    ps.setTimestamp(4, Timestamp.valueOf(appointment.getStartDateTime()));
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            conflicts.add(createAppointmentFromResultSet(rs));
+                        }
+                    }
+                }
+                if (!conflicts.isEmpty()) {
+                    connection.rollback();
+                    return BookingResult.conflicted(conflicts);
+                }
+                insertAppointment(connection, appointment);
+                connection.commit();
+            } catch (SQLException e) {
+                e.printStackTrace();
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        } finally {
+            stripe.unlock();
+        }
+        DataChangeBus.appointmentChanged(DataChangeEvent.Kind.INSERTED, appointment.getAppointmentId(), appointment);
+        return BookingResult.booked(appointment);
+    }
+
+    /**
+     * Inserts an appointment and sets its generated ID.
+     *
+     * @param connection the connection to insert through
+     * @param appointment the appointment to insert
+     * @return the number of rows inserted
+     * @throws SQLException if a database access error occurs
+     */
+    private static int insertAppointment(Connection connection, Appointment appointment) throws SQLException {
+        String SQL = "INSERT INTO appointments (Title, Description, Location, Type, Start, End, Contact_ID, Customer_ID, User_ID, Create_Date, Created_By, Last_Update, Last_Updated_By) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+        try (PreparedStatement ps = connection.prepareStatement(SQL, Statement.RETURN_GENERATED_KEYS)) {
             ps.setString(1, appointment.getTitle());
             ps.setString(2, appointment.getDescription());
             ps.setString(3, appointment.getLocation());
@@ -83,28 +245,180 @@ public class AppointmentDAO {
             ps.setString(11, LoginController.getCurrentUser().getUsername());
             ps.setTimestamp(12, Timestamp.valueOf(LocalDateTime.now()));
             ps.setString(13, LoginController.getCurrentUser().getUsername());
-            rowsAffected = ps.executeUpdate();
-        } catch(SQLException e) {
-            e.printStackTrace();
-            throw e;
+            int rowsAffected = ps.executeUpdate();
+            try (ResultSet keys = ps.getGeneratedKeys()) {
+                if (keys.next()) {
+                    appointment.setAppointmentId(keys.getInt(1));
+                }
+            }
+            return rowsAffected;
         }
-        return rowsAffected > 0;
+    }
+
+    /**
+     * Books several new appointments on a connection opened for them and closed afterwards, so their transaction
+     * never turns auto-commit off on the shared connection other callers use meanwhile, and with
+     * rewriteBatchedStatements set so the driver sends the batch as one multi-row INSERT rather than a statement
+     * per appointment; see {@link #bookAppointments(Connection, List)}.
+     *
+     * @param appointments the appointments to book; receive their generated IDs
+     * @return the appointments that overlap an existing one, in their original order; empty if all were booked
+     * @throws SQLException if a customer does not exist or a database access error occurs;
+     *                      the transaction is rolled back
+     */
+    public static List<Appointment> bookAppointments(List<Appointment> appointments) throws SQLException {
+        Properties properties = new Properties();
+        properties.setProperty("rewriteBatchedStatements", "true");
+        try (Connection connection = JDBC.newConnection(properties)) {
+            return bookAppointments(connection, appointments);
+        }
+    }
+
+    /**
+     * Books several new appointments, such as a recurring series, all or none: checks them for overlaps with the
+     * existing appointments of their customers and adds them with one batched INSERT in one transaction.
+     *
+     * As in {@link #bookAppointment(Connection, Appointment)}, the customers' booking stripes and customer rows
+     * are locked for the length of the transaction, so no other booking for those customers can come in between
+     * the check and the insert. Both are locked in ascending order, so two such bookings never wait on each other.
+     *
+     * @param connection a connection not used by any other thread during the call
+     * @param appointments the appointments to book; receive their generated IDs
+     * @return the appointments that overlap an existing one, in their original order; empty if all were booked
+     * @throws SQLException if a customer does not exist or a database access error occurs;
+     *                      the transaction is rolled back
+     */
+    public static List<Appointment> bookAppointments(Connection connection, List<Appointment> appointments) throws SQLException {
+        String lockSQL = "SELECT Customer_ID FROM customers WHERE Customer_ID = ? FOR UPDATE";
+        TreeSet<Integer> customerIds = new TreeSet<>();
+        TreeSet<Integer> stripeIndexes = new TreeSet<>();
+        for (Appointment appointment : appointments) {
+            customerIds.add(appointment.getCustomerId());
+            stripeIndexes.add(Math.floorMod(appointment.getCustomerId(), BOOKING_LOCKS.length));
+        }
+        List<Lock> stripes = new ArrayList<>();
+        for (int stripeIndex : stripeIndexes) {
+            BOOKING_LOCKS[stripeIndex].lock();
+            stripes.add(BOOKING_LOCKS[stripeIndex]);
+        }
+        List<Appointment> overlapping;
+        try {
+            boolean autoCommit = connection.getAutoCommit();
+            try {
+                connection.setAutoCommit(false);
+                try (PreparedStatement ps = connection.prepareStatement(lockSQL)) {
+                    for (int customerId : customerIds) {
+                        ps.setInt(1, customerId);
+                        try (ResultSet rs = ps.executeQuery()) {
+                            if (!rs.next()) {
+                                throw new SQLException("Customer " + customerId + " does not exist");
+                            }
+                        }
+                    }
+                }
+                // As the row locks were taken by locking reads, this plain read takes the read view and sees
+                // every booking committed by whoever held the locks before
+                overlapping = findOverlaps(connection, appointments);
+                if (!overlapping.isEmpty()) {
+                    connection.rollback();
+                    return overlapping;
+                }
+                int rowsAffected = insertAppointments(connection, appointments);
+                if (rowsAffected != appointments.size()) {
+                    throw new SQLException("Only " + rowsAffected + " of " + appointments.size() + " appointments were added");
+                }
+                connection.commit();
+            } catch (SQLException e) {
+                e.printStackTrace();
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        } finally {
+            for (int i = stripes.size() - 1; i >= 0; i--) {
+                stripes.get(i).unlock();
+            }
+        }
+        for (Appointment appointment : appointments) {
+            DataChangeBus.appointmentChanged(DataChangeEvent.Kind.INSERTED, appointment.getAppointmentId(), appointment);
+        }
+        return overlapping;
+    }
+
+    /**
+     * Inserts several appointments with one batched INSERT and sets their generated IDs.
+     *
+     * @param connection the connection to insert through
+     * @param appointments the appointments to insert
+     * @return the number of rows inserted
+     * @throws SQLException if a database access error occurs
+     */
+    private static int insertAppointments(Connection connection, List<Appointment> appointments) throws SQLException {
+        String SQL = "INSERT INTO appointments (Title, Description, Location, Type, Start, End, Contact_ID, Customer_ID, User_ID, Create_Date, Created_By, Last_Update, Last_Updated_By) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+        int rowsAffected = 0;
+        try (PreparedStatement ps = connection.prepareStatement(SQL, Statement.RETURN_GENERATED_KEYS)) {
+            Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+            String username = LoginController.getCurrentUser().getUsername();
+            for (Appointment appointment : appointments) {
+                ps.setString(1, appointment.getTitle());
+                ps.setString(2, appointment.getDescription());
+                ps.setString(3, appointment.getLocation());
+                ps.setString(4, appointment.getType());
+                ps.setTimestamp(5, Timestamp.valueOf(appointment.getStartDateTime()));
+                ps.setTimestamp(6, Timestamp.valueOf(appointment.getEndDateTime()));
+                ps.setInt(7, appointment.getContactId());
+                ps.setInt(8, appointment.getCustomerId());
+                ps.setInt(9, appointment.getUserId());
+                ps.setTimestamp(10, now);
+                ps.setString(11, username);
+                ps.setTimestamp(12, now);
+                ps.setString(13, username);
+                ps.addBatch();
+            }
+            for (int count : ps.executeBatch()) {
+                // The driver may report SUCCESS_NO_INFO (-2) for rewritten batches
+                rowsAffected += count == Statement.SUCCESS_NO_INFO ? 1 : count;
+            }
+            try (ResultSet keys = ps.getGeneratedKeys()) {
+                for (int i = 0; i < appointments.size() && keys.next(); i++) {
+                    appointments.get(i).setAppointmentId(keys.getInt(1));
+                }
+            }
+        }
+        return rowsAffected;
+    }
+
+    /**
+     * Updates an appointment on the shared connection; see {@link #updateAppointmentInDB(Connection, Appointment)}.
+     *
+     * @param appointment the appointment with updated information
+     * @return true if the operation was successful
+     * @throws UpdateConflictException if the appointment was changed or deleted by someone else since it was read
+     * @throws SQLException if a database access error occurs or this method is called on a closed connection
+     */
+    public static boolean updateAppointmentInDB(Appointment appointment) throws SQLException {
+        return updateAppointmentInDB(JDBC.getConnection(), appointment);
     }
 
     /**
      * Updates an existing appointment in the database.
      * The method sets up a SQL PreparedStatement to execute the UPDATE operation,
      * and sets the parameters of the PreparedStatement using the provided Appointment object's data.
-     * The method then executes the SQL statement and checks the returned row count to determine whether the operation was successful.
+     * The update uses optimistic locking: it only matches the row if Last_Update still holds the appointment's
+     * version, i.e. nobody else has changed it since it was read. On success the appointment gets its new version.
      *
+     * @param connection the connection to use
      * @param appointment the appointment with updated information
-     * @return true if the operation was successful (i.e., at least one row was affected); false otherwise
+     * @return true if the operation was successful
+     * @throws UpdateConflictException if the appointment was changed or deleted by someone else since it was read
      * @throws SQLException if a database access error occurs or this method is called on a closed connection
      */
-    public static boolean updateAppointmentInDB(Appointment appointment) throws SQLException {
-        String SQL = "UPDATE appointments SET Title = ?, Description = ?, Location = ?, Type = ?, Start = ?, End = ?, Contact_ID = ?, Customer_ID = ?, User_ID = ?, Last_Update = ?, Last_Updated_By = ? WHERE Appointment_ID = ?";
+    public static boolean updateAppointmentInDB(Connection connection, Appointment appointment) throws SQLException {
+        String SQL = "UPDATE appointments SET Title = ?, Description = ?, Location = ?, Type = ?, Start = ?, End = ?, Contact_ID = ?, Customer_ID = ?, User_ID = ?, Last_Update = ?, Last_Updated_By = ? WHERE Appointment_ID = ? AND Last_Update <=> ?";
+        LocalDateTime newVersion = nextVersion(appointment.getLastUpdate());
 
-        try (PreparedStatement ps = JDBC.getConnection().prepareStatement(SQL)) {
+        try (PreparedStatement ps = connection.prepareStatement(SQL)) {
             ps.setString(1, appointment.getTitle());
             ps.setString(2, appointment.getDescription());
             ps.setString(3, appointment.getLocation());
@@ -114,32 +428,94 @@ public class AppointmentDAO {
             ps.setInt(7, appointment.getContactId());
             ps.setInt(8, appointment.getCustomerId());
             ps.setInt(9, appointment.getUserId());
-            ps.setTimestamp(10, Timestamp.valueOf(LocalDateTime.now()));  // setting Last_Update to now
+            ps.setString(10, newVersion.format(datetimeDTF));  // setting Last_Update to the new version
             ps.setString(11, LoginController.getCurrentUser().getUsername());  // setting Last_Updated_By to current user
             ps.setInt(12, appointment.getAppointmentId());
+            ps.setString(13, appointment.getLastUpdate() == null ? null : appointment.getLastUpdate().format(datetimeDTF));
+
+            if (ps.executeUpdate() == 0) {
+                throw new UpdateConflictException(DataChangeEvent.Entity.APPOINTMENT, appointment.getAppointmentId());
+            }
+        } catch (UpdateConflictException e) {
+            throw e;
+        } catch (SQLException e) {
+            e.printStackTrace();
+            throw e;
+        }
+        appointment.setLastUpdate(newVersion);
+        DataChangeBus.appointmentChanged(DataChangeEvent.Kind.UPDATED, appointment.getAppointmentId(), appointment);
+        return true;
+    }
 
-            int rowsUpdated = ps.executeUpdate();
+    /**
+     * Returns the version an update writes to Last_Update: now in UTC, but always later than the version it replaces,
+     * so two updates within the same second, or from clients whose clocks differ, still get distinct versions.
+     *
+     * @param current the version being replaced, in UTC, or null
+     * @return the new version, in UTC
+     */
+    static LocalDateTime nextVersion(LocalDateTime current) {
+        LocalDateTime now = LocalDateTime.now(utcZoneID).withNano(0);
+        return current == null || now.isAfter(current) ? now : current.plusSeconds(1);
+    }
 
-            return rowsUpdated > 0;
+    /**
+     * Retrieves one appointment by its ID on the shared connection; see {@link #getAppointmentById(Connection, int)}.
+     *
+     * @param appointmentId the ID of the appointment
+     * @return the appointment, or null if it does not exist
+     * @throws SQLException if a database access error occurs
+     */
+    public static Appointment getAppointmentById(int appointmentId) throws SQLException {
+        return getAppointmentById(JDBC.getConnection(), appointmentId);
+    }
+
+    /**
+     * Retrieves one appointment by its ID.
+     *
+     * @param connection the connection to use
+     * @param appointmentId the ID of the appointment
+     * @return the appointment, or null if it does not exist
+     * @throws SQLException if a database access error occurs
+     */
+    public static Appointment getAppointmentById(Connection connection, int appointmentId) throws SQLException {
+        String SQL = "SELECT * FROM appointments WHERE Appointment_ID = ?";
+        try (PreparedStatement ps = connection.prepareStatement(SQL)) {
+            ps.setInt(1, appointmentId);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? createAppointmentFromResultSet(rs) : null;
+            }
         } catch (SQLException e) {
             e.printStackTrace();
             throw e;
         }
     }
 
+    /**
+     * Checks an appointment for overlaps on the shared connection; see {@link #checkForOverlap(Connection, Appointment)}.
+     *
+     * @param newAppointment the new or updated appointment to check for overlap
+     * @return true if there is an overlapping appointment; false otherwise
+     * @throws SQLException if a database access error occurs or this method is called on a closed connection
+     */
+    public static boolean checkForOverlap(Appointment newAppointment) throws SQLException {
+        return checkForOverlap(JDBC.getConnection(), newAppointment);
+    }
+
     /**
      * Checks whether a new or updated appointment overlaps with existing appointments for the same customer.
      * The method sets up a SQL PreparedStatement to execute a SELECT operation that retrieves appointments for
      * the same customer that overlap with the provided newAppointment's start and end times.
      * If the ResultSet returned by the query is not empty, there is an overlapping appointment.
      *
+     * @param connection the connection to use
      * @param newAppointment the new or updated appointment to check for overlap
      * @return true if there is an overlapping appointment; false otherwise
      * @throws SQLException if a database access error occurs or this method is called on a closed connection
      */
-    public static boolean checkForOverlap(Appointment newAppointment) throws SQLException {
+    public static boolean checkForOverlap(Connection connection, Appointment newAppointment) throws SQLException {
         String SQL = "SELECT * FROM appointments WHERE Appointment_ID != ? AND Customer_ID = ? AND ((Start < ? AND End > ?) OR (Start < ? AND End > ?) OR (Start >= ? AND End <= ?))";
-        try (PreparedStatement ps = JDBC.getConnection().prepareStatement(SQL)) {
+        try (PreparedStatement ps = connection.prepareStatement(SQL)) {
             ps.setInt(1, newAppointment.getAppointmentId());
             ps.setInt(2, newAppointment.getCustomerId());
             ps.setTimestamp(3, Timestamp.valueOf(newAppointment.getStartDateTime()));
@@ -161,6 +537,86 @@ public class AppointmentDAO {
         return false;
     }
 
+    /**
+     * Checks many new or updated appointments for overlaps with existing appointments of the same customers at once.
+     * One query loads the customers' appointments in the time span the candidates cover; the candidates are then
+     * checked against them in memory, using the same rule as {@link #checkForOverlap(Appointment)}.
+     *
+     * @param candidates the appointments to check
+     * @return the candidates that overlap an existing appointment, in their original order
+     * @throws SQLException if a database access error occurs or this method is called on a closed connection
+     */
+    public static List<Appointment> findOverlaps(List<Appointment> candidates) throws SQLException {
+        return findOverlaps(JDBC.getConnection(), candidates);
+    }
+
+    /**
+     * Checks many appointments for overlaps on a given connection, such as inside a booking's transaction;
+     * see {@link #findOverlaps(List)}.
+     *
+     * @param connection the connection to use
+     * @param candidates the appointments to check
+     * @return the candidates that overlap an existing appointment, in their original order
+     * @throws SQLException if a database access error occurs
+     */
+    public static List<Appointment> findOverlaps(Connection connection, List<Appointment> candidates) throws SQLException {
+        List<Appointment> overlapping = new ArrayList<>();
+        if (candidates.isEmpty()) {
+            return overlapping;
+        }
+        LocalDateTime from = candidates.get(0).getStartDateTime();
+        LocalDateTime to = candidates.get(0).getEndDateTime();
+        List<Integer> customerIds = new ArrayList<>();
+        for (Appointment candidate : candidates) {
+            from = candidate.getStartDateTime().isBefore(from) ? candidate.getStartDateTime() : from;
+            to = candidate.getEndDateTime().isAfter(to) ? candidate.getEndDateTime() : to;
+            if (!customerIds.contains(candidate.getCustomerId())) {
+                customerIds.add(candidate.getCustomerId());
+            }
+        }
+        String SQL = "SELECT * FROM appointments WHERE Customer_ID IN ("
+                + customerIds.stream().map(id -> "?").collect(Collectors.joining(", "))
+                + ") AND Start < ? AND End > ?";
+        IntervalIndex existing = new IntervalIndex();
+        try (PreparedStatement ps = connection.prepareStatement(SQL)) {
+            int index = 1;
+            for (int customerId : customerIds) {
+                ps.setInt(index++, customerId);
+            }
+            ps.setTimestamp(index++, Timestamp.valueOf(to));
+            ps.setTimestamp(index, Timestamp.valueOf(from));
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    Appointment appointment = createAppointmentFromResultSet(rs);
+                    existing.add(appointment.getCustomerId(), toEpochSecond(appointment.getStartDateTime()),
+                            toEpochSecond(appointment.getEndDateTime()), appointment.getAppointmentId());
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            throw e;
+        }
+        for (Appointment candidate : candidates) {
+            boolean[] found = {false};
+            existing.forEachOverlap(candidate.getCustomerId(), toEpochSecond(candidate.getStartDateTime()),
+                    toEpochSecond(candidate.getEndDateTime()), candidate.getAppointmentId(), (start, end) -> found[0] = true);
+            if (found[0]) {
+                overlapping.add(candidate);
+            }
+        }
+        return overlapping;
+    }
+
+    /**
+     * Converts a local date and time to epoch seconds.
+     *
+     * @param dateTime the local date and time
+     * @return epoch seconds
+     */
+    private static long toEpochSecond(LocalDateTime dateTime) {
+        return dateTime.atZone(localZoneID).toEpochSecond();
+    }
+
     /**
      * Retrieves all appointments from the database.
      *
@@ -207,6 +663,291 @@ public class AppointmentDAO {
         return getAppointmentsWithQuery(selectAppointmentsByContactQuery, Integer.toString(selectedContactId));
     }
 
+    /**
+     * Retrieves a user's appointments that start within a time range, earliest first.
+     * Used by the reminder scheduler to load everything it needs in one query.
+     *
+     * @param userId the ID of the user whose appointments are to be retrieved
+     * @param from the start of the range in local time, inclusive
+     * @param to the end of the range in local time, exclusive
+     * @return an ObservableList containing the user's appointments in the range
+     */
+    public static ObservableList<Appointment> getAppointmentsForUserInRange(int userId, LocalDateTime from, LocalDateTime to) {
+        String selectAppointmentsInRangeQuery = "SELECT * FROM APPOINTMENTS WHERE User_ID = ? AND Start >= ? AND Start < ? ORDER BY Start";
+        return getAppointmentsWithQuery(selectAppointmentsInRangeQuery, userId, Timestamp.valueOf(from), Timestamp.valueOf(to));
+    }
+
+    /**
+     * Retrieves all appointments that start within a time range, earliest first.
+     * Unlike the other queries, an error is thrown rather than returning an empty list,
+     * so the appointment range cache never keeps a failed read as a range without appointments.
+     *
+     * @param connection the connection to use
+     * @param from the start of the range in local time, inclusive
+     * @param to the end of the range in local time, exclusive
+     * @return an ObservableList containing the appointments starting in the range
+     * @throws SQLException if a database access error occurs
+     */
+    public static ObservableList<Appointment> getAppointmentsStartingIn(Connection connection, LocalDateTime from,
+                                                                        LocalDateTime to) throws SQLException {
+        String SQL = "SELECT * FROM APPOINTMENTS WHERE Start >= ? AND Start < ? ORDER BY Start";
+        ObservableList<Appointment> appointments = FXCollections.observableArrayList();
+        try (PreparedStatement ps = connection.prepareStatement(SQL)) {
+            ps.setTimestamp(1, Timestamp.valueOf(from));
+            ps.setTimestamp(2, Timestamp.valueOf(to));
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    appointments.add(createAppointmentFromResultSet(rs));
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            throw e;
+        }
+        return appointments;
+    }
+
+    /**
+     * Passes the ID and start of each appointment that starts within a time range. Only the two columns are read,
+     * so the appointments of a month can be counted by day cheaply; with an index on Start, which is stored in UTC,
+     * the database reads only the range.
+     *
+     * @param connection the connection to use
+     * @param from the start of the range in local time, inclusive
+     * @param to the end of the range in local time, exclusive
+     * @param action receives each start in local time and appointment ID
+     * @throws SQLException if a database access error occurs
+     */
+    public static void forEachAppointmentStart(Connection connection, LocalDateTime from, LocalDateTime to,
+                                               ObjIntConsumer<LocalDateTime> action) throws SQLException {
+        String SQL = "SELECT Appointment_ID, Start FROM appointments WHERE Start >= ? AND Start < ?";
+        try (PreparedStatement ps = connection.prepareStatement(SQL)) {
+            ps.setTimestamp(1, Timestamp.valueOf(from));
+            ps.setTimestamp(2, Timestamp.valueOf(to));
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    action.accept(rs.getTimestamp("Start").toLocalDateTime(), rs.getInt("Appointment_ID"));
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            throw e;
+        }
+    }
+
+    /**
+     * Retrieves the appointments meeting a query's criteria with one statement. The start range and the contact,
+     * customer and user IDs are plain comparisons on their columns, so the database can use the index on Start or
+     * the foreign key indexes, whichever finds fewer rows. Queries that set the same criteria, order and limit share
+     * one statement text, so the driver and server see a handful of statements rather than one per search.
+     *
+     * @param connection the connection to use
+     * @param query the criteria
+     * @return an ObservableList containing the appointments, in the query's order and up to its limit
+     * @throws SQLException if a database access error occurs
+     */
+    public static ObservableList<Appointment> findAppointments(Connection connection, AppointmentQuery query) throws SQLException {
+        String SQL = findAppointmentsSql.computeIfAbsent(query.shape(), shape -> toSql(query));
+        ObservableList<Appointment> appointments = FXCollections.observableArrayList();
+        try (PreparedStatement ps = connection.prepareStatement(SQL)) {
+            int index = 1;
+            if (query.getFrom() != null) {
+                ps.setTimestamp(index++, Timestamp.valueOf(query.getFrom()));
+            }
+            if (query.getTo() != null) {
+                ps.setTimestamp(index++, Timestamp.valueOf(query.getTo()));
+            }
+            for (Integer id : new Integer[] {query.getContactId(), query.getCustomerId(), query.getUserId()}) {
+                if (id != null) {
+                    ps.setInt(index++, id);
+                }
+            }
+            if (query.getType() != null) {
+                ps.setString(index++, query.getType());
+            }
+            if (query.getLocation() != null) {
+                ps.setString(index++, query.getLocation());
+            }
+            if (query.getText() != null) {
+                // Backslash escapes the wildcards of a LIKE pattern
+                String escaped = query.getText().replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+                String pattern = "%" + escaped + "%";
+                for (int i = 0; i < 4; i++) {
+                    ps.setString(index++, pattern);
+                }
+            }
+            if (query.getLimit() > 0) {
+                ps.setInt(index, query.getLimit());
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    appointments.add(createAppointmentFromResultSet(rs));
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            throw e;
+        }
+        return appointments;
+    }
+
+    /**
+     * Puts together the statement answering queries of the same shape as the given one, with a parameter for each
+     * criterion in the order {@link #findAppointments(AppointmentQuery)} sets them.
+     *
+     * @param query a query of the shape
+     * @return the SQL
+     */
+    private static String toSql(AppointmentQuery query) {
+        List<String> conditions = new ArrayList<>();
+        if (query.getFrom() != null) {
+            conditions.add("Start >= ?");
+        }
+        if (query.getTo() != null) {
+            conditions.add("Start < ?");
+        }
+        if (query.getContactId() != null) {
+            conditions.add("Contact_ID = ?");
+        }
+        if (query.getCustomerId() != null) {
+            conditions.add("Customer_ID = ?");
+        }
+        if (query.getUserId() != null) {
+            conditions.add("User_ID = ?");
+        }
+        if (query.getType() != null) {
+            conditions.add("Type = ?");
+        }
+        if (query.getLocation() != null) {
+            conditions.add("Location = ?");
+        }
+        if (query.getText() != null) {
+            conditions.add("(Title LIKE ? OR Description LIKE ? OR Location LIKE ? OR Type LIKE ?)");
+        }
+        StringBuilder SQL = new StringBuilder("SELECT * FROM appointments");
+        if (!conditions.isEmpty()) {
+            SQL.append(" WHERE ").append(String.join(" AND ", conditions));
+        }
+        switch (query.getOrder()) {
+            case START:
+                SQL.append(" ORDER BY Start, Appointment_ID");
+                break;
+            case START_DESCENDING:
+                SQL.append(" ORDER BY Start DESC, Appointment_ID");
+                break;
+            default:
+                SQL.append(" ORDER BY Appointment_ID");
+                break;
+        }
+        if (query.getLimit() > 0) {
+            SQL.append(" LIMIT ?");
+        }
+        return SQL.toString();
+    }
+
+    /**
+     * Retrieves all appointments that overlap a time range, earliest first.
+     *
+     * @param from the start of the range in local time, inclusive
+     * @param to the end of the range in local time, exclusive
+     * @return an ObservableList containing the appointments overlapping the range
+     */
+    public static ObservableList<Appointment> getAppointmentsInRange(LocalDateTime from, LocalDateTime to) {
+        String selectAppointmentsInRangeQuery = "SELECT * FROM APPOINTMENTS WHERE Start < ? AND End > ? ORDER BY Start";
+        return getAppointmentsWithQuery(selectAppointmentsInRangeQuery, Timestamp.valueOf(to), Timestamp.valueOf(from));
+    }
+
+    /**
+     * Returns a fingerprint of a contact's or user's appointments overlapping a time range: their count,
+     * latest Last_Update and ID sum. Adding, changing or deleting any of them changes the fingerprint,
+     * so it tells whether something generated from them, such as a calendar feed, is out of date.
+     *
+     * @param connection the connection to use
+     * @param owner whose appointments to check
+     * @param ownerId the contact or user ID
+     * @param from the start of the range in local time, inclusive
+     * @param to the end of the range in local time, exclusive
+     * @return the fingerprint
+     * @throws SQLException if a database access error occurs
+     */
+    public static String getChangeFingerprint(Connection connection, Owner owner, int ownerId,
+                                              LocalDateTime from, LocalDateTime to) throws SQLException {
+        String SQL = "SELECT COUNT(*), MAX(Last_Update), SUM(Appointment_ID) FROM appointments WHERE "
+                + owner.column + " = ? AND Start < ? AND End > ?";
+        try (PreparedStatement ps = connection.prepareStatement(SQL)) {
+            ps.setInt(1, ownerId);
+            ps.setTimestamp(2, Timestamp.valueOf(to));
+            ps.setTimestamp(3, Timestamp.valueOf(from));
+            try (ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                return rs.getLong(1) + "-" + rs.getString(2) + "-" + rs.getLong(3);
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            throw e;
+        }
+    }
+
+    /**
+     * Passes a contact's or user's appointments overlapping a time range to a handler, earliest first,
+     * reading them from a forward-only ResultSet that the driver streams row by row. Memory use does not grow
+     * with the number of appointments. The connection is busy until this returns, so use a dedicated one.
+     *
+     * @param connection the connection to use
+     * @param owner whose appointments to read
+     * @param ownerId the contact or user ID
+     * @param from the start of the range in local time, inclusive
+     * @param to the end of the range in local time, exclusive
+     * @param handler receives the appointments
+     * @throws SQLException if a database access error occurs
+     * @throws IOException if the handler fails
+     */
+    public static void streamAppointments(Connection connection, Owner owner, int ownerId, LocalDateTime from,
+                                          LocalDateTime to, AppointmentStreamHandler handler) throws SQLException, IOException {
+        String SQL = "SELECT * FROM appointments WHERE " + owner.column + " = ? AND Start < ? AND End > ? ORDER BY Start";
+        try (PreparedStatement ps = connection.prepareStatement(SQL, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            // Makes MySQL Connector/J stream the rows instead of reading the whole result into memory
+            ps.setFetchSize(Integer.MIN_VALUE);
+            ps.setInt(1, ownerId);
+            ps.setTimestamp(2, Timestamp.valueOf(to));
+            ps.setTimestamp(3, Timestamp.valueOf(from));
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    LocalDateTime lastUpdate = LocalDateTime.parse(rs.getString(10), datetimeDTF)
+                            .atZone(utcZoneID).withZoneSameInstant(localZoneID).toLocalDateTime();
+                    handler.accept(createAppointmentFromResultSet(rs), lastUpdate);
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            throw e;
+        }
+    }
+
+    /**
+     * Passes every appointment to an action, by ID, reading them from a forward-only ResultSet that the driver
+     * streams row by row, so millions of appointments can be loaded without holding them all as objects.
+     * The connection {@link JDBC#getConnection()} returns is busy until this returns.
+     *
+     * @param action receives each appointment
+     * @throws SQLException if a database access error occurs
+     */
+    public static void streamAllAppointments(Consumer<Appointment> action) throws SQLException {
+        String SQL = "SELECT * FROM appointments ORDER BY Appointment_ID";
+        try (PreparedStatement ps = JDBC.getConnection().prepareStatement(SQL, ResultSet.TYPE_FORWARD_ONLY,
+                ResultSet.CONCUR_READ_ONLY)) {
+            ps.setFetchSize(Integer.MIN_VALUE);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    action.accept(createAppointmentFromResultSet(rs));
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            throw e;
+        }
+    }
+
     /**
      * Retrieves appointments from the database using a specified query.
      * The method sets up a SQL PreparedStatement using the provided query and parameters,
@@ -216,11 +957,11 @@ public class AppointmentDAO {
      * @param parameters the parameters to use in the query
      * @return an ObservableList containing the appointments resulting from the query
      */
-    private static ObservableList<Appointment> getAppointmentsWithQuery(String query, String... parameters) {
+    private static ObservableList<Appointment> getAppointmentsWithQuery(String query, Object... parameters) {
         ObservableList<Appointment> allAppointments = FXCollections.observableArrayList();
         try (PreparedStatement ps = JDBC.getConnection().prepareStatement(query)) {
             for (int i = 0; i < parameters.length; i++) {
-                ps.setString(i + 1, parameters[i]);
+                ps.setObject(i + 1, parameters[i]);
             }
             try (ResultSet rs = ps.executeQuery()) {
                 while (rs.next()) {
@@ -260,7 +1001,10 @@ public class AppointmentDAO {
         LocalDate localEndDate = localEndDT.toLocalDate();
         LocalTime localStartTime = localStartDT.toLocalTime();
         LocalTime localEndTime = localEndDT.toLocalTime();
-        return new Appointment(appointmentID, customerID, userID, contactID, appointmentTitle, appointmentDescription, appointmentLocation, appointmentType, localStartDT, localEndDT, localStartDate, localEndDate, localStartTime, localEndTime);
+        Appointment appointment = new Appointment(appointmentID, customerID, userID, contactID, appointmentTitle, appointmentDescription, appointmentLocation, appointmentType, localStartDT, localEndDT, localStartDate, localEndDate, localStartTime, localEndTime);
+        String lastUpdate = rs.getString(10);
+        appointment.setLastUpdate(lastUpdate == null ? null : LocalDateTime.parse(lastUpdate, datetimeDTF));
+        return appointment;
     }
 
     /**
@@ -340,21 +1084,36 @@ public class AppointmentDAO {
     }
 
 
+    /**
+     * Deletes an appointment on the shared connection; see {@link #deleteAppointmentFromDB(Connection, int)}.
+     *
+     * @param selectedAppointmentId the ID of the appointment to delete
+     * @return true if the operation was successful (i.e., at least one row was affected); false otherwise
+     * @throws SQLException if a database access error occurs or this method is called on a closed connection
+     */
+    public static boolean deleteAppointmentFromDB(int selectedAppointmentId) throws SQLException {
+        return deleteAppointmentFromDB(JDBC.getConnection(), selectedAppointmentId);
+    }
+
     /**
      * Deletes an appointment from the database.
      * The method sets up a SQL PreparedStatement to execute a DELETE operation,
      * and sets the ID of the appointment to delete as the parameter of the PreparedStatement.
      * The method then executes the SQL statement and checks the returned row count to determine whether the operation was successful.
      *
+     * @param connection the connection to use
      * @param selectedAppointmentId the ID of the appointment to delete
      * @return true if the operation was successful (i.e., at least one row was affected); false otherwise
      * @throws SQLException if a database access error occurs or this method is called on a closed connection
      */
-    public static boolean deleteAppointmentFromDB(int selectedAppointmentId) throws SQLException {
+    public static boolean deleteAppointmentFromDB(Connection connection, int selectedAppointmentId) throws SQLException {
         String SQL = "DELETE FROM APPOINTMENTS WHERE Appointment_ID = ?";
-        PreparedStatement ps = JDBC.getConnection().prepareStatement(SQL);
+        PreparedStatement ps = connection.prepareStatement(SQL);
         ps.setInt(1, selectedAppointmentId);
         int rowsAffected = ps.executeUpdate();
+        if (rowsAffected > 0) {
+            DataChangeBus.appointmentChanged(DataChangeEvent.Kind.DELETED, selectedAppointmentId, null);
+        }
         return rowsAffected > 0;
     }
 
@@ -0,0 +1,467 @@
+package project.DAO;
+
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import project.model.Appointment;
+
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * Criteria for finding appointments, combined with AND: a start time range, a contact, customer and user, a type
+ * and location, and text in the title, description, location or type; then an order and a limit. Built with
+ * {@link #builder()} and run by {@link AppointmentRepository#findAppointments(AppointmentQuery)}, which answers it
+ * with one statement, where the date range and IDs are conditions the database can look up in its indexes.
+ *
+ * @author Teksong Eap
+ */
+public final class AppointmentQuery {
+
+    /**
+     * The order of the results.
+     */
+    public enum Order {
+        /** Earliest start first, then by ID */
+        START,
+        /** Latest start first, then by ID */
+        START_DESCENDING,
+        /** By ID */
+        ID
+    }
+
+    /** Start of the start time range, inclusive, or null */
+    private final LocalDateTime from;
+
+    /** End of the start time range, exclusive, or null */
+    private final LocalDateTime to;
+
+    /** Contact ID, or null */
+    private final Integer contactId;
+
+    /** Customer ID, or null */
+    private final Integer customerId;
+
+    /** User ID, or null */
+    private final Integer userId;
+
+    /** Type, or null */
+    private final String type;
+
+    /** Location, or null */
+    private final String location;
+
+    /** Text to find in the title, description, location or type, or null */
+    private final String text;
+
+    /** Order of the results */
+    private final Order order;
+
+    /** Most results, or 0 for all */
+    private final int limit;
+
+    /**
+     * Creates a query from a builder.
+     *
+     * @param builder the builder
+     */
+    private AppointmentQuery(Builder builder) {
+        this.from = builder.from;
+        this.to = builder.to;
+        this.contactId = builder.contactId;
+        this.customerId = builder.customerId;
+        this.userId = builder.userId;
+        this.type = builder.type;
+        this.location = builder.location;
+        this.text = builder.text;
+        this.order = builder.order;
+        this.limit = builder.limit;
+    }
+
+    /**
+     * Returns a builder for a query that finds all appointments by start time, until criteria are added.
+     *
+     * @return a new builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Returns the start of the start time range.
+     *
+     * @return the start, inclusive, or null
+     */
+    public LocalDateTime getFrom() {
+        return from;
+    }
+
+    /**
+     * Returns the end of the start time range.
+     *
+     * @return the end, exclusive, or null
+     */
+    public LocalDateTime getTo() {
+        return to;
+    }
+
+    /**
+     * Returns the contact ID.
+     *
+     * @return the contact ID, or null
+     */
+    public Integer getContactId() {
+        return contactId;
+    }
+
+    /**
+     * Returns the customer ID.
+     *
+     * @return the customer ID, or null
+     */
+    public Integer getCustomerId() {
+        return customerId;
+    }
+
+    /**
+     * Returns the user ID.
+     *
+     * @return the user ID, or null
+     */
+    public Integer getUserId() {
+        return userId;
+    }
+
+    /**
+     * Returns the type.
+     *
+     * @return the type, or null
+     */
+    public String getType() {
+        return type;
+    }
+
+    /**
+     * Returns the location.
+     *
+     * @return the location, or null
+     */
+    public String getLocation() {
+        return location;
+    }
+
+    /**
+     * Returns the text to find.
+     *
+     * @return the text, or null
+     */
+    public String getText() {
+        return text;
+    }
+
+    /**
+     * Returns the order of the results.
+     *
+     * @return the order
+     */
+    public Order getOrder() {
+        return order;
+    }
+
+    /**
+     * Returns the most results.
+     *
+     * @return the limit, or 0 for all
+     */
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * Returns which criteria are set, the order and whether there is a limit, as a number that is the same for all
+     * queries answered by the same statement.
+     *
+     * @return the shape of the query
+     */
+    int shape() {
+        int shape = 0;
+        Object[] criteria = {from, to, contactId, customerId, userId, type, location, text};
+        for (int i = 0; i < criteria.length; i++) {
+            if (criteria[i] != null) {
+                shape |= 1 << i;
+            }
+        }
+        shape |= order.ordinal() << criteria.length;
+        return limit > 0 ? shape | 1 << 30 : shape;
+    }
+
+    /**
+     * Returns whether an appointment meets the criteria. Text and type and location are compared
+     * ignoring case, as the database does.
+     *
+     * @param appointment the appointment
+     * @return true if it meets every criterion
+     */
+    public boolean matches(Appointment appointment) {
+        LocalDateTime start = appointment.getStartDateTime();
+        return (from == null || !start.isBefore(from))
+                && (to == null || start.isBefore(to))
+                && (contactId == null || appointment.getContactId() == contactId)
+                && (customerId == null || appointment.getCustomerId() == customerId)
+                && (userId == null || appointment.getUserId() == userId)
+                && (type == null || type.equalsIgnoreCase(appointment.getType()))
+                && (location == null || location.equalsIgnoreCase(appointment.getLocation()))
+                && (text == null || contains(appointment.getTitle()) || contains(appointment.getDescription())
+                        || contains(appointment.getLocation()) || contains(appointment.getType()));
+    }
+
+    /**
+     * Returns the appointments among the candidates that meet the criteria, in order and limited.
+     *
+     * @param candidates appointments that may meet the criteria
+     * @return the results
+     */
+    public ObservableList<Appointment> select(Iterable<Appointment> candidates) {
+        ObservableList<Appointment> results = FXCollections.observableArrayList();
+        for (Appointment appointment : candidates) {
+            if (matches(appointment)) {
+                results.add(appointment);
+            }
+        }
+        results.sort(comparator());
+        if (limit > 0 && results.size() > limit) {
+            results.remove(limit, results.size());
+        }
+        return results;
+    }
+
+    /**
+     * Returns the same query without a limit.
+     *
+     * @return the query without a limit
+     */
+    public AppointmentQuery withoutLimit() {
+        return limit == 0 ? this : toBuilder().limit(0).build();
+    }
+
+    /**
+     * Returns a builder holding this query's criteria, for building a query that differs in some of them.
+     *
+     * @return a new builder
+     */
+    public Builder toBuilder() {
+        Builder builder = new Builder();
+        builder.from = from;
+        builder.to = to;
+        builder.contactId = contactId;
+        builder.customerId = customerId;
+        builder.userId = userId;
+        builder.type = type;
+        builder.location = location;
+        builder.text = text;
+        builder.order = order;
+        builder.limit = limit;
+        return builder;
+    }
+
+    /**
+     * Returns the order of the results as a comparator.
+     *
+     * @return the comparator
+     */
+    private Comparator<Appointment> comparator() {
+        Comparator<Appointment> byId = Comparator.comparingInt(Appointment::getAppointmentId);
+        switch (order) {
+            case START:
+                return Comparator.comparing(Appointment::getStartDateTime).thenComparing(byId);
+            case START_DESCENDING:
+                return Comparator.comparing(Appointment::getStartDateTime).reversed().thenComparing(byId);
+            default:
+                return byId;
+        }
+    }
+
+    /**
+     * Returns whether a field contains the text, ignoring case.
+     *
+     * @param field the field, or null
+     * @return true if it contains the text
+     */
+    private boolean contains(String field) {
+        return field != null && field.toLowerCase(Locale.ROOT).contains(text.toLowerCase(Locale.ROOT));
+    }
+
+    @Override
+    public String toString() {
+        return "AppointmentQuery[from=" + from + ", to=" + to + ", contact=" + contactId + ", customer=" + customerId
+                + ", user=" + userId + ", type=" + type + ", location=" + location + ", text=" + text
+                + ", order=" + order + ", limit=" + limit + "]";
+    }
+
+    /**
+     * Builds an {@link AppointmentQuery}. Each criterion replaces one set before; null or blank values unset it.
+     */
+    public static final class Builder {
+
+        /** Start of the start time range */
+        private LocalDateTime from;
+
+        /** End of the start time range */
+        private LocalDateTime to;
+
+        /** Contact ID */
+        private Integer contactId;
+
+        /** Customer ID */
+        private Integer customerId;
+
+        /** User ID */
+        private Integer userId;
+
+        /** Type */
+        private String type;
+
+        /** Location */
+        private String location;
+
+        /** Text to find */
+        private String text;
+
+        /** Order of the results */
+        private Order order = Order.START;
+
+        /** Most results */
+        private int limit;
+
+        /**
+         * Creates a builder without criteria.
+         */
+        private Builder() {
+        }
+
+        /**
+         * Finds appointments starting in a range.
+         *
+         * @param from the start of the range, inclusive, or null for no lower bound
+         * @param to the end of the range, exclusive, or null for no upper bound
+         * @return this builder
+         */
+        public Builder startingIn(LocalDateTime from, LocalDateTime to) {
+            this.from = from;
+            this.to = to;
+            return this;
+        }
+
+        /**
+         * Finds a contact's appointments.
+         *
+         * @param contactId the contact ID, or null for any
+         * @return this builder
+         */
+        public Builder contact(Integer contactId) {
+            this.contactId = contactId;
+            return this;
+        }
+
+        /**
+         * Finds a customer's appointments.
+         *
+         * @param customerId the customer ID, or null for any
+         * @return this builder
+         */
+        public Builder customer(Integer customerId) {
+            this.customerId = customerId;
+            return this;
+        }
+
+        /**
+         * Finds a user's appointments.
+         *
+         * @param userId the user ID, or null for any
+         * @return this builder
+         */
+        public Builder user(Integer userId) {
+            this.userId = userId;
+            return this;
+        }
+
+        /**
+         * Finds appointments of a type.
+         *
+         * @param type the type, or null for any
+         * @return this builder
+         */
+        public Builder type(String type) {
+            this.type = blankToNull(type);
+            return this;
+        }
+
+        /**
+         * Finds appointments at a location.
+         *
+         * @param location the location, or null for any
+         * @return this builder
+         */
+        public Builder location(String location) {
+            this.location = blankToNull(location);
+            return this;
+        }
+
+        /**
+         * Finds appointments with text in their title, description, location or type.
+         *
+         * @param text the text, or null for any
+         * @return this builder
+         */
+        public Builder containing(String text) {
+            this.text = blankToNull(text);
+            return this;
+        }
+
+        /**
+         * Sets the order of the results.
+         *
+         * @param order the order
+         * @return this builder
+         */
+        public Builder orderBy(Order order) {
+            this.order = Objects.requireNonNull(order);
+            return this;
+        }
+
+        /**
+         * Sets the most results.
+         *
+         * @param limit the limit, or 0 for all
+         * @return this builder
+         * @throws IllegalArgumentException if the limit is negative
+         */
+        public Builder limit(int limit) {
+            if (limit < 0) {
+                throw new IllegalArgumentException("Negative limit: " + limit);
+            }
+            this.limit = limit;
+            return this;
+        }
+
+        /**
+         * Builds the query.
+         *
+         * @return the query
+         */
+        public AppointmentQuery build() {
+            return new AppointmentQuery(this);
+        }
+
+        /**
+         * Returns a value trimmed, or null if it is null or blank.
+         *
+         * @param value the value
+         * @return the trimmed value, or null
+         */
+        private static String blankToNull(String value) {
+            return value == null || value.isBlank() ? null : value.trim();
+        }
+    }
+}
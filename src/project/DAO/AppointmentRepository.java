@@ -0,0 +1,212 @@
+package project.DAO;
+
+import javafx.collections.ObservableList;
+import project.model.Appointment;
+import project.model.TypeAndMonthReport;
+
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Stores and queries appointments. Implemented over JDBC by {@link JdbcRepositories} and in memory by
+ * {@link InMemoryRepositories}; {@link Repositories} holds the one selected at startup.
+ *
+ * Two appointments overlap when each starts before the other ends. Appointments are returned as fresh
+ * objects, so changing one does not change what is stored until it is passed back.
+ *
+ * @author Teksong Eap
+ */
+public interface AppointmentRepository {
+
+    /**
+     * Returns an unused appointment ID: the highest current ID plus one.
+     *
+     * @return an unused appointment ID
+     * @throws SQLException if a database access error occurs
+     */
+    int getUnusedAppointmentId() throws SQLException;
+
+    /**
+     * Adds a new appointment and sets its generated ID.
+     *
+     * @param appointment the appointment to add
+     * @return true if it was added
+     * @throws SQLException if a database access error occurs
+     */
+    boolean addAppointmentToDB(Appointment appointment) throws SQLException;
+
+    /**
+     * Books several new appointments, all or none: checks them for overlaps with the existing appointments of their
+     * customers and adds them in one step, so no other booking for those customers can come in between.
+     * Sets their generated IDs.
+     *
+     * @param appointments the appointments to book
+     * @return the appointments that overlap an existing one, in their original order; empty if all were booked
+     * @throws SQLException if a customer does not exist or a database access error occurs; nothing is added
+     */
+    List<Appointment> bookAppointments(List<Appointment> appointments) throws SQLException;
+
+    /**
+     * Adds a new appointment unless it overlaps another appointment of the same customer,
+     * checking and adding atomically.
+     *
+     * @param appointment the appointment to book; receives its generated ID
+     * @return the booked appointment, or the customer's appointments it overlaps
+     * @throws SQLException if the customer does not exist or a database access error occurs
+     */
+    BookingResult bookAppointment(Appointment appointment) throws SQLException;
+
+    /**
+     * Updates an appointment, if it has not changed since it was read, and sets its new version.
+     *
+     * @param appointment the appointment with updated information
+     * @return true if it was updated
+     * @throws UpdateConflictException if it was changed or deleted by someone else since it was read
+     * @throws SQLException if a database access error occurs
+     */
+    boolean updateAppointmentInDB(Appointment appointment) throws SQLException;
+
+    /**
+     * Deletes an appointment.
+     *
+     * @param selectedAppointmentId the ID of the appointment to delete
+     * @return true if it was deleted
+     * @throws SQLException if a database access error occurs
+     */
+    boolean deleteAppointmentFromDB(int selectedAppointmentId) throws SQLException;
+
+    /**
+     * Checks whether an appointment overlaps another appointment of the same customer.
+     *
+     * @param newAppointment the new or updated appointment
+     * @return true if it overlaps
+     * @throws SQLException if a database access error occurs
+     */
+    boolean checkForOverlap(Appointment newAppointment) throws SQLException;
+
+    /**
+     * Checks many appointments for overlaps with existing appointments of the same customers.
+     *
+     * @param candidates the appointments to check
+     * @return the candidates that overlap an existing appointment, in their original order
+     * @throws SQLException if a database access error occurs
+     */
+    List<Appointment> findOverlaps(List<Appointment> candidates) throws SQLException;
+
+    /**
+     * Returns one appointment.
+     *
+     * @param appointmentId the ID of the appointment
+     * @return the appointment, or null if it does not exist
+     * @throws SQLException if a database access error occurs
+     */
+    Appointment getAppointmentById(int appointmentId) throws SQLException;
+
+    /**
+     * Returns all appointments.
+     *
+     * @return all appointments
+     */
+    ObservableList<Appointment> getAllAppointments();
+
+    /**
+     * Passes every appointment to an action, by ID, without collecting them in a list first.
+     * The appointment passed may be shared or reused, so the action must neither keep nor change it.
+     *
+     * @param action receives each appointment
+     * @throws SQLException if a database access error occurs
+     */
+    void forEachAppointment(Consumer<Appointment> action) throws SQLException;
+
+    /**
+     * Returns the appointments starting this month.
+     *
+     * @return this month's appointments, by ID
+     */
+    ObservableList<Appointment> getAllAppointmentsThisMonth();
+
+    /**
+     * Returns the appointments starting this week, Sunday to Saturday.
+     *
+     * @return this week's appointments, by ID
+     */
+    ObservableList<Appointment> getAllAppointmentsThisWeek();
+
+    /**
+     * Returns a contact's appointments.
+     *
+     * @param selectedContactId the ID of the contact
+     * @return the contact's appointments
+     */
+    ObservableList<Appointment> getAppointmentsByContact(int selectedContactId);
+
+    /**
+     * Returns a user's appointments starting in a range.
+     *
+     * @param userId the ID of the user
+     * @param from the start of the range, inclusive
+     * @param to the end of the range, exclusive
+     * @return the appointments, by start
+     */
+    ObservableList<Appointment> getAppointmentsForUserInRange(int userId, LocalDateTime from, LocalDateTime to);
+
+    /**
+     * Returns the appointments starting in a range. Unlike the other range queries it reports a failure
+     * instead of returning no appointments, for callers that keep the result.
+     *
+     * @param from the start of the range, inclusive
+     * @param to the end of the range, exclusive
+     * @return the appointments, by start
+     * @throws SQLException if a database access error occurs
+     */
+    ObservableList<Appointment> getAppointmentsStartingIn(LocalDateTime from, LocalDateTime to) throws SQLException;
+
+    /**
+     * Passes the ID and start of each appointment starting in a range, without reading the rest of the appointment,
+     * for counting appointments by day. Called from a background thread.
+     *
+     * @param from the start of the range, inclusive
+     * @param to the end of the range, exclusive
+     * @param action receives each start and ID
+     * @throws SQLException if a database access error occurs
+     */
+    void forEachAppointmentStart(LocalDateTime from, LocalDateTime to, ObjIntConsumer<LocalDateTime> action)
+            throws SQLException;
+
+    /**
+     * Returns the appointments meeting a query's criteria, in its order and up to its limit.
+     *
+     * @param query the criteria
+     * @return the appointments
+     * @throws SQLException if a database access error occurs
+     */
+    ObservableList<Appointment> findAppointments(AppointmentQuery query) throws SQLException;
+
+    /**
+     * Returns the appointments overlapping a range.
+     *
+     * @param from the start of the range
+     * @param to the end of the range
+     * @return the appointments, by start
+     */
+    ObservableList<Appointment> getAppointmentsInRange(LocalDateTime from, LocalDateTime to);
+
+    /**
+     * Returns the number of appointments by type and month.
+     *
+     * @return the report rows
+     */
+    ObservableList<TypeAndMonthReport> getAppointmentCountByTypeAndMonth();
+
+    /**
+     * Returns an appointment of a user starting within the next 15 minutes.
+     *
+     * @param userId the ID of the user
+     * @return the appointment, or null if there is none
+     * @throws SQLException if a database access error occurs
+     */
+    Appointment getUpcomingAppointment(int userId) throws SQLException;
+}
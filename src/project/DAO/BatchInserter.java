@@ -0,0 +1,324 @@
+package project.DAO;
+
+import project.model.Appointment;
+import project.model.Customer;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Inserts large numbers of customers or appointments on a dedicated connection.
+ * Rows are sent in JDBC batches and committed in chunks of several batches, so a failure loses at most one chunk.
+ * When a batch fails, the chunk is rolled back and its rows are retried one at a time, so only the rows that
+ * are actually rejected are reported as failed and the rest are still inserted.
+ * One {@link DataChangeEvent#MANY} event is published per committed chunk rather than one per row, as every
+ * listener runs on the importing thread and would otherwise repeat its work for each of many thousand rows.
+ *
+ * @param <T> Customer or Appointment
+ * @author Teksong Eap
+ */
+public final class BatchInserter<T> implements AutoCloseable {
+
+    /**
+     * Receives rows the database rejected.
+     *
+     * @param <T> Customer or Appointment
+     */
+    public interface FailureHandler<T> {
+        /**
+         * Called for each rejected row.
+         *
+         * @param line the line number of the row in the source file
+         * @param item the row
+         * @param e the database error
+         */
+        void failed(long line, T item, SQLException e);
+    }
+
+    /**
+     * Binds one row's values to the insert statement.
+     *
+     * @param <T> Customer or Appointment
+     */
+    private interface Binder<T> {
+        /**
+         * Sets the statement parameters for a row.
+         *
+         * @param ps the insert statement
+         * @param item the row
+         * @param now the creation time
+         * @param createdBy the user name recorded as creator
+         * @throws SQLException if a parameter cannot be set
+         */
+        void bind(PreparedStatement ps, T item, Timestamp now, String createdBy) throws SQLException;
+    }
+
+    /**
+     * Sets the generated ID on an inserted row.
+     *
+     * @param <T> Customer or Appointment
+     */
+    private interface IdSetter<T> {
+        /**
+         * Sets the ID.
+         *
+         * @param item the row
+         * @param id the generated ID
+         */
+        void set(T item, int id);
+    }
+
+    /** The dedicated connection */
+    private final Connection connection;
+
+    /** The insert statement */
+    private final PreparedStatement ps;
+
+    /** Binds a row to the statement */
+    private final Binder<T> binder;
+
+    /** Sets the generated ID on an inserted row */
+    private final IdSetter<T> idSetter;
+
+    /** The kind of record inserted, for the change events */
+    private final DataChangeEvent.Entity entity;
+
+    /** The user name recorded as creator */
+    private final String createdBy;
+
+    /** Rows per JDBC batch */
+    private final int batchSize;
+
+    /** Rows per transaction */
+    private final int commitRows;
+
+    /** Receives rejected rows */
+    private final FailureHandler<T> failureHandler;
+
+    /** Rows added since the last commit */
+    private final List<T> uncommitted = new ArrayList<>();
+
+    /** Line numbers of the rows added since the last commit */
+    private final List<Long> uncommittedLines = new ArrayList<>();
+
+    /** Rows added to the statement's current batch */
+    private int batched;
+
+    /** Rows committed so far */
+    private long inserted;
+
+    /** Rows committed when the last change event was published */
+    private long published;
+
+    /**
+     * Creates an inserter.
+     *
+     * @param connection the dedicated connection; auto-commit is turned off
+     * @param SQL the insert statement
+     * @param binder binds a row to the statement
+     * @param idSetter sets the generated ID on an inserted row
+     * @param entity the kind of record inserted, for the change events
+     * @param createdBy the user name recorded as creator
+     * @param batchSize rows per JDBC batch
+     * @param commitRows rows per transaction
+     * @param failureHandler receives rejected rows
+     * @throws SQLException if the statement cannot be prepared
+     */
+    private BatchInserter(Connection connection, String SQL, Binder<T> binder, IdSetter<T> idSetter,
+                          DataChangeEvent.Entity entity, String createdBy, int batchSize, int commitRows,
+                          FailureHandler<T> failureHandler) throws SQLException {
+        this.connection = connection;
+        this.binder = binder;
+        this.idSetter = idSetter;
+        this.entity = entity;
+        this.createdBy = createdBy;
+        this.batchSize = Math.max(1, batchSize);
+        this.commitRows = Math.max(this.batchSize, commitRows);
+        this.failureHandler = failureHandler;
+        connection.setAutoCommit(false);
+        this.ps = connection.prepareStatement(SQL, Statement.RETURN_GENERATED_KEYS);
+    }
+
+    /**
+     * Creates an inserter for customers. Customer IDs are assigned by the database.
+     *
+     * @param connection the dedicated connection; auto-commit is turned off
+     * @param createdBy the user name recorded as creator
+     * @param batchSize rows per JDBC batch
+     * @param commitRows rows per transaction
+     * @param failureHandler receives rejected rows
+     * @return the inserter
+     * @throws SQLException if the statement cannot be prepared
+     */
+    public static BatchInserter<Customer> forCustomers(Connection connection, String createdBy, int batchSize,
+                                                       int commitRows, FailureHandler<Customer> failureHandler) throws SQLException {
+        String SQL = "INSERT INTO customers (Customer_Name, Address, Postal_Code, Phone, Create_Date, Created_By, Last_Update, Last_Updated_By, Division_ID) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+        return new BatchInserter<>(connection, SQL, (ps, customer, now, user) -> {
+            ps.setString(1, customer.getCustomerName());
+            ps.setString(2, customer.getAddress());
+            ps.setString(3, customer.getPostalCode());
+            ps.setString(4, customer.getPhone());
+            ps.setTimestamp(5, now);
+            ps.setString(6, user);
+            ps.setTimestamp(7, now);
+            ps.setString(8, user);
+            ps.setInt(9, customer.getDivisionId());
+        }, Customer::setCustomerId, DataChangeEvent.Entity.CUSTOMER, createdBy, batchSize, commitRows, failureHandler);
+    }
+
+    /**
+     * Creates an inserter for appointments. Appointment IDs are assigned by the database.
+     *
+     * @param connection the dedicated connection; auto-commit is turned off
+     * @param createdBy the user name recorded as creator
+     * @param batchSize rows per JDBC batch
+     * @param commitRows rows per transaction
+     * @param failureHandler receives rejected rows
+     * @return the inserter
+     * @throws SQLException if the statement cannot be prepared
+     */
+    public static BatchInserter<Appointment> forAppointments(Connection connection, String createdBy, int batchSize,
+                                                             int commitRows, FailureHandler<Appointment> failureHandler) throws SQLException {
+        String SQL = "INSERT INTO appointments (Title, Description, Location, Type, Start, End, Contact_ID, Customer_ID, User_ID, Create_Date, Created_By, Last_Update, Last_Updated_By) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+        return new BatchInserter<>(connection, SQL, (ps, appointment, now, user) -> {
+            ps.setString(1, appointment.getTitle());
+            ps.setString(2, appointment.getDescription());
+            ps.setString(3, appointment.getLocation());
+            ps.setString(4, appointment.getType());
+            ps.setTimestamp(5, Timestamp.valueOf(appointment.getStartDateTime()));
+            ps.setTimestamp(6, Timestamp.valueOf(appointment.getEndDateTime()));
+            ps.setInt(7, appointment.getContactId());
+            ps.setInt(8, appointment.getCustomerId());
+            ps.setInt(9, appointment.getUserId());
+            ps.setTimestamp(10, now);
+            ps.setString(11, user);
+            ps.setTimestamp(12, now);
+            ps.setString(13, user);
+        }, Appointment::setAppointmentId, DataChangeEvent.Entity.APPOINTMENT, createdBy, batchSize, commitRows, failureHandler);
+    }
+
+    /**
+     * Adds a row. The batch is sent when it is full, and the transaction committed when the chunk is full.
+     *
+     * @param line the line number of the row in the source file
+     * @param item the row
+     * @throws SQLException if the connection fails; rows rejected by the database are reported instead
+     */
+    public void add(long line, T item) throws SQLException {
+        binder.bind(ps, item, Timestamp.valueOf(LocalDateTime.now()), createdBy);
+        ps.addBatch();
+        uncommitted.add(item);
+        uncommittedLines.add(line);
+        if (++batched >= batchSize) {
+            executeBatch();
+        }
+        if (uncommitted.size() >= commitRows) {
+            commit();
+        }
+    }
+
+    /**
+     * Returns the number of rows committed so far.
+     *
+     * @return inserted row count
+     */
+    public long getInserted() {
+        return inserted;
+    }
+
+    /**
+     * Sends and commits the remaining rows and closes the statement. The connection stays open.
+     *
+     * @throws SQLException if the connection fails
+     */
+    @Override
+    public void close() throws SQLException {
+        try {
+            commit();
+        } finally {
+            ps.close();
+        }
+    }
+
+    /**
+     * Sends the current batch. On failure the chunk is rolled back and retried row by row.
+     *
+     * @throws SQLException if the connection fails
+     */
+    private void executeBatch() throws SQLException {
+        if (batched == 0) {
+            return;
+        }
+        int first = uncommitted.size() - batched;
+        batched = 0;
+        try {
+            ps.executeBatch();
+            try (ResultSet keys = ps.getGeneratedKeys()) {
+                for (int i = first; i < uncommitted.size() && keys.next(); i++) {
+                    idSetter.set(uncommitted.get(i), keys.getInt(1));
+                }
+            }
+        } catch (SQLException e) {
+            ps.clearBatch();
+            connection.rollback();
+            retryRowByRow();
+        }
+    }
+
+    /**
+     * Sends the current batch, commits the chunk and publishes one change event for the rows committed since
+     * the last one, including rows a row-by-row retry committed.
+     *
+     * @throws SQLException if the connection fails
+     */
+    private void commit() throws SQLException {
+        executeBatch();
+        connection.commit();
+        inserted += uncommitted.size();
+        uncommitted.clear();
+        uncommittedLines.clear();
+        if (inserted > published) {
+            published = inserted;
+            DataChangeBus.manyChanged(entity, DataChangeEvent.Kind.INSERTED);
+        }
+    }
+
+    /**
+     * Inserts the rolled-back chunk one row at a time, each in its own transaction, reporting the rows that fail.
+     * Rows that fail are removed from the chunk.
+     *
+     * @throws SQLException if the connection fails
+     */
+    private void retryRowByRow() throws SQLException {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        for (int i = 0; i < uncommitted.size(); i++) {
+            T item = uncommitted.get(i);
+            try {
+                binder.bind(ps, item, now, createdBy);
+                ps.executeUpdate();
+                try (ResultSet keys = ps.getGeneratedKeys()) {
+                    if (keys.next()) {
+                        idSetter.set(item, keys.getInt(1));
+                    }
+                }
+                connection.commit();
+                inserted++;
+            } catch (SQLException e) {
+                connection.rollback();
+                if (connection.isClosed()) {
+                    throw e;
+                }
+                failureHandler.failed(uncommittedLines.get(i), item, e);
+            }
+        }
+        uncommitted.clear();
+        uncommittedLines.clear();
+    }
+}
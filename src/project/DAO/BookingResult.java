@@ -0,0 +1,79 @@
+package project.DAO;
+
+import project.model.Appointment;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Outcome of {@link AppointmentDAO#bookAppointment(Appointment)}: either the booked appointment,
+ * or the existing appointments of the customer it would have overlapped.
+ *
+ * @author Teksong Eap
+ */
+public final class BookingResult {
+
+    /** The booked appointment, or null if it was not booked */
+    private final Appointment appointment;
+
+    /** The overlapping appointments; empty if the appointment was booked */
+    private final List<Appointment> conflicts;
+
+    /**
+     * Creates a booking result.
+     *
+     * @param appointment the booked appointment, or null
+     * @param conflicts the overlapping appointments
+     */
+    private BookingResult(Appointment appointment, List<Appointment> conflicts) {
+        this.appointment = appointment;
+        this.conflicts = conflicts;
+    }
+
+    /**
+     * Creates the result of a successful booking.
+     *
+     * @param appointment the booked appointment, with its generated ID
+     * @return the result
+     */
+    static BookingResult booked(Appointment appointment) {
+        return new BookingResult(appointment, Collections.emptyList());
+    }
+
+    /**
+     * Creates the result of a booking that was refused because of overlaps.
+     *
+     * @param conflicts the overlapping appointments
+     * @return the result
+     */
+    static BookingResult conflicted(List<Appointment> conflicts) {
+        return new BookingResult(null, Collections.unmodifiableList(conflicts));
+    }
+
+    /**
+     * Returns whether the appointment was booked.
+     *
+     * @return true if it was booked
+     */
+    public boolean isBooked() {
+        return appointment != null;
+    }
+
+    /**
+     * Returns the booked appointment.
+     *
+     * @return the appointment, or null if it was not booked
+     */
+    public Appointment getAppointment() {
+        return appointment;
+    }
+
+    /**
+     * Returns the customer's existing appointments the new one would have overlapped.
+     *
+     * @return the overlapping appointments; empty if the appointment was booked
+     */
+    public List<Appointment> getConflicts() {
+        return conflicts;
+    }
+}
@@ -7,11 +7,13 @@ import project.model.Customer;
 import project.utilities.AlertMessage;
 import project.utilities.JDBC;
 
+import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
 
 /**
  * Handles the database interactions for Customer objects.
@@ -20,16 +22,30 @@ import java.time.LocalDateTime;
  */
 public class CustomerDAO {
 
+    /** Format of Last_Update as read and written */
+    private static final DateTimeFormatter datetimeDTF = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
     /**
-     * Retrieves an unused customer ID from the database. This is the highest current ID plus one.
+     * Retrieves an unused customer ID on the shared connection; see {@link #getUnusedCustomerId(Connection)}.
      *
      * @return an unused customer ID
      * @throws SQLException if a database access error occurs
      */
     public static int getUnusedCustomerId() throws SQLException {
-        String SQL = "SELECT MAX(Customer_ID) as MaxId FROM CUSTOMERS";
+        return getUnusedCustomerId(JDBC.getConnection());
+    }
 
-        try (PreparedStatement ps = JDBC.getConnection().prepareStatement(SQL);
+    /**
+     * Retrieves an unused customer ID from the database. This is the highest current ID plus one.
+     *
+     * @param connection the connection to use
+     * @return an unused customer ID
+     * @throws SQLException if a database access error occurs
+     */
+    public static int getUnusedCustomerId(Connection connection) throws SQLException {
+        String SQL = JDBC.FROM_PRIMARY + "SELECT MAX(Customer_ID) as MaxId FROM CUSTOMERS";
+
+        try (PreparedStatement ps = connection.prepareStatement(SQL);
              ResultSet rs = ps.executeQuery()) {
 
             if (rs.next()) {
@@ -44,6 +60,17 @@ public class CustomerDAO {
         return 1;
     }
 
+    /**
+     * Adds a new customer on the shared connection; see {@link #addCustomerToDB(Connection, Customer)}.
+     *
+     * @param customer the customer to add to the database
+     * @return true if the operation was successful; false otherwise
+     * @throws SQLException if a database access error occurs
+     */
+    public static boolean addCustomerToDB(Customer customer) throws SQLException {
+        return addCustomerToDB(JDBC.getConnection(), customer);
+    }
+
     /**
      * Adds a new customer to the database.
      *
@@ -51,14 +78,15 @@ public class CustomerDAO {
      * and sets the parameters of the PreparedStatement using the provided Customer object's data.
      * The method then executes the SQL statement and checks the returned row count to determine whether the operation was successful.
      *
+     * @param connection the connection to use
      * @param customer the customer to add to the database
      * @return true if the operation was successful; false otherwise
      * @throws SQLException if a database access error occurs
      */
-    public static boolean addCustomerToDB(Customer customer) throws SQLException {
+    public static boolean addCustomerToDB(Connection connection, Customer customer) throws SQLException {
         String SQL = "INSERT INTO customers (Customer_ID, Customer_Name, Address, Postal_Code, Phone, Create_Date, Created_By, Last_Update, Last_Updated_By, Division_ID) VALUES (?,?,?,?,?,?,?,?,?,?)";
         int rowsAffected = 0;
-        try (PreparedStatement ps = JDBC.getConnection().prepareStatement(SQL)) {
+        try (PreparedStatement ps = connection.prepareStatement(SQL)) {
             ps.setInt(1, customer.getCustomerId());
             ps.setString(2, customer.getCustomerName());
             ps.setString(3, customer.getAddress());
@@ -76,38 +104,127 @@ public class CustomerDAO {
             e.printStackTrace();
             throw e;
         }
+        if (rowsAffected > 0) {
+            DataChangeBus.customerChanged(DataChangeEvent.Kind.INSERTED, customer.getCustomerId());
+        }
         return rowsAffected > 0;
     }
 
+    /**
+     * Updates a customer on the shared connection; see {@link #updateCustomerInDB(Connection, Customer)}.
+     *
+     * @param customer the customer with updated information
+     * @return true if the operation was successful
+     * @throws UpdateConflictException if the customer was changed or deleted by someone else since it was read
+     * @throws SQLException if a database access error occurs
+     */
+    public static boolean updateCustomerInDB(Customer customer) throws SQLException {
+        return updateCustomerInDB(JDBC.getConnection(), customer);
+    }
+
     /**
      * Updates an existing customer in the database.
      *
      * The method sets up a SQL PreparedStatement to execute the UPDATE operation,
      * and sets the parameters of the PreparedStatement using the provided Customer object's data.
-     * The method then executes the SQL statement and checks the returned row count to determine whether the operation was successful.
+     * The update uses optimistic locking: it only matches the row if Last_Update still holds the customer's
+     * version, i.e. nobody else has changed it since it was read. On success the customer gets its new version.
      *
+     * @param connection the connection to use
      * @param customer the customer with updated information
-     * @return true if the operation was successful; false otherwise
+     * @return true if the operation was successful
+     * @throws UpdateConflictException if the customer was changed or deleted by someone else since it was read
      * @throws SQLException if a database access error occurs
      */
-    public static boolean updateCustomerInDB(Customer customer) throws SQLException {
-        String SQL = "UPDATE customers SET Customer_Name = ?, Address = ?, Postal_Code = ?, Phone = ?, Last_Update = ?, Last_Updated_By = ?, Division_ID = ? WHERE Customer_ID = ?";
+    public static boolean updateCustomerInDB(Connection connection, Customer customer) throws SQLException {
+        String SQL = "UPDATE customers SET Customer_Name = ?, Address = ?, Postal_Code = ?, Phone = ?, Last_Update = ?, Last_Updated_By = ?, Division_ID = ? WHERE Customer_ID = ? AND Last_Update <=> ?";
+        LocalDateTime newVersion = AppointmentDAO.nextVersion(customer.getLastUpdate());
         int rowsAffected = 0;
-        try (PreparedStatement ps = JDBC.getConnection().prepareStatement(SQL)) {
+        try (PreparedStatement ps = connection.prepareStatement(SQL)) {
             ps.setString(1, customer.getCustomerName());
             ps.setString(2, customer.getAddress());
             ps.setString(3, customer.getPostalCode());
             ps.setString(4, customer.getPhone());
-            ps.setTimestamp(5, Timestamp.valueOf(LocalDateTime.now()));
+            ps.setString(5, newVersion.format(datetimeDTF));
             ps.setString(6, LoginController.getCurrentUser().getUsername());
             ps.setInt(7, customer.getDivisionId());
             ps.setInt(8, customer.getCustomerId());
+            ps.setString(9, customer.getLastUpdate() == null ? null : customer.getLastUpdate().format(datetimeDTF));
             rowsAffected = ps.executeUpdate();
         } catch(SQLException e) {
             e.printStackTrace();
             throw e;
         }
-        return rowsAffected > 0;
+        if (rowsAffected == 0) {
+            throw new UpdateConflictException(DataChangeEvent.Entity.CUSTOMER, customer.getCustomerId());
+        }
+        customer.setLastUpdate(newVersion);
+        DataChangeBus.customerChanged(DataChangeEvent.Kind.UPDATED, customer.getCustomerId());
+        return true;
+    }
+
+    /**
+     * Retrieves one customer by its ID on the shared connection; see {@link #getCustomerById(Connection, int)}.
+     *
+     * @param customerId the ID of the customer
+     * @return the customer, or null if it does not exist
+     * @throws SQLException if a database access error occurs
+     */
+    public static Customer getCustomerById(int customerId) throws SQLException {
+        return getCustomerById(JDBC.getConnection(), customerId);
+    }
+
+    /**
+     * Retrieves one customer by its ID.
+     *
+     * @param connection the connection to use
+     * @param customerId the ID of the customer
+     * @return the customer, or null if it does not exist
+     * @throws SQLException if a database access error occurs
+     */
+    public static Customer getCustomerById(Connection connection, int customerId) throws SQLException {
+        String SQL = "SELECT customers.CUSTOMER_ID, customers.CUSTOMER_NAME, customers.ADDRESS, customers.POSTAL_CODE, customers.PHONE, customers.LAST_UPDATE, " +
+                "first_level_divisions.DIVISION_ID, first_level_divisions.DIVISION, " +
+                "countries.COUNTRY_ID, countries.COUNTRY " +
+                "FROM customers " +
+                "JOIN first_level_divisions ON customers.DIVISION_ID = first_level_divisions.DIVISION_ID " +
+                "JOIN countries ON first_level_divisions.COUNTRY_ID = countries.COUNTRY_ID " +
+                "WHERE customers.CUSTOMER_ID = ?";
+        try (PreparedStatement ps = connection.prepareStatement(SQL)) {
+            ps.setInt(1, customerId);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? createCustomerFromResultSet(rs) : null;
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            throw e;
+        }
+    }
+
+    /**
+     * Finds the newest customer with the same name, address, postal code, phone and division as a given one,
+     * for telling whether an insert that may not have been acknowledged went through.
+     *
+     * @param connection the connection to use
+     * @param customer the customer to look for; its ID is ignored
+     * @return the ID of the matching customer, or 0 if there is none
+     * @throws SQLException if a database access error occurs
+     */
+    public static int findMatchingCustomerId(Connection connection, Customer customer) throws SQLException {
+        String SQL = "SELECT MAX(Customer_ID) AS MatchId FROM customers WHERE Customer_Name = ? AND Address = ? AND Postal_Code = ? AND Phone = ? AND Division_ID = ?";
+        try (PreparedStatement ps = connection.prepareStatement(SQL)) {
+            ps.setString(1, customer.getCustomerName());
+            ps.setString(2, customer.getAddress());
+            ps.setString(3, customer.getPostalCode());
+            ps.setString(4, customer.getPhone());
+            ps.setInt(5, customer.getDivisionId());
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getInt("MatchId") : 0;
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            throw e;
+        }
     }
 
     /**
@@ -116,7 +233,7 @@ public class CustomerDAO {
      * @return an ObservableList containing all customers in the database
      */
     public static ObservableList<Customer> getAllCustomers() {
-        String SQL = "SELECT customers.CUSTOMER_ID, customers.CUSTOMER_NAME, customers.ADDRESS, customers.POSTAL_CODE, customers.PHONE, " +
+        String SQL = "SELECT customers.CUSTOMER_ID, customers.CUSTOMER_NAME, customers.ADDRESS, customers.POSTAL_CODE, customers.PHONE, customers.LAST_UPDATE, " +
                 "first_level_divisions.DIVISION_ID, first_level_divisions.DIVISION, " +
                 "countries.COUNTRY_ID, countries.COUNTRY " +
                 "FROM customers " +
@@ -132,7 +249,7 @@ public class CustomerDAO {
      * @return an ObservableList containing all customers for the selected country in the database
      */
     public static ObservableList<Customer> getCustomersByCountry(int selectedCountryId) {
-        String SQL = "SELECT customers.CUSTOMER_ID, customers.CUSTOMER_NAME, customers.ADDRESS, customers.POSTAL_CODE, customers.PHONE, " +
+        String SQL = "SELECT customers.CUSTOMER_ID, customers.CUSTOMER_NAME, customers.ADDRESS, customers.POSTAL_CODE, customers.PHONE, customers.LAST_UPDATE, " +
                 "first_level_divisions.DIVISION_ID, first_level_divisions.DIVISION, " +
                 "countries.COUNTRY_ID, countries.COUNTRY " +
                 "FROM customers " +
@@ -188,22 +305,40 @@ public class CustomerDAO {
         String divisionName = rs.getString("DIVISION");
         int countryId = rs.getInt("COUNTRY_ID");
         String countryName = rs.getString("COUNTRY");
-        return new Customer(customerId, divisionId, countryId, customerName, address, postalCode, phone, countryName, divisionName);
+        Customer customer = new Customer(customerId, divisionId, countryId, customerName, address, postalCode, phone, countryName, divisionName);
+        String lastUpdate = rs.getString("LAST_UPDATE");
+        customer.setLastUpdate(lastUpdate == null ? null : LocalDateTime.parse(lastUpdate, datetimeDTF));
+        return customer;
+    }
+
+    /**
+     * Deletes a customer on the shared connection; see {@link #deleteCustomerFromDB(Connection, int)}.
+     *
+     * @param selectedCustomerId the ID of the customer to delete
+     * @return true if the operation was successful; false otherwise
+     * @throws SQLException if a database access error occurs
+     */
+    public static boolean deleteCustomerFromDB(int selectedCustomerId) throws SQLException {
+        return deleteCustomerFromDB(JDBC.getConnection(), selectedCustomerId);
     }
 
     /**
      * Deletes a customer from the database.
      * Returns boolean of rowsAffected > 0, 0 being false and anything above true.
      *
+     * @param connection the connection to use
      * @param selectedCustomerId the ID of the customer to delete
      * @return true if the operation was successful; false otherwise
      * @throws SQLException if a database access error occurs
      */
-    public static boolean deleteCustomerFromDB(int selectedCustomerId) throws SQLException {
+    public static boolean deleteCustomerFromDB(Connection connection, int selectedCustomerId) throws SQLException {
         String SQL = "DELETE FROM CUSTOMERS WHERE Customer_ID = ?";
-        PreparedStatement ps = JDBC.getConnection().prepareStatement(SQL);
+        PreparedStatement ps = connection.prepareStatement(SQL);
         ps.setInt(1, selectedCustomerId);
         int rowsAffected = ps.executeUpdate();
+        if (rowsAffected > 0) {
+            DataChangeBus.customerChanged(DataChangeEvent.Kind.DELETED, selectedCustomerId);
+        }
         return rowsAffected > 0;
     }
 }
@@ -0,0 +1,74 @@
+package project.DAO;
+
+import javafx.collections.ObservableList;
+import project.model.Customer;
+
+import java.sql.SQLException;
+
+/**
+ * Stores and queries customers. Deleting a customer also deletes their appointments.
+ *
+ * @author Teksong Eap
+ */
+public interface CustomerRepository {
+
+    /**
+     * Returns an unused customer ID: the highest current ID plus one.
+     *
+     * @return an unused customer ID
+     * @throws SQLException if a database access error occurs
+     */
+    int getUnusedCustomerId() throws SQLException;
+
+    /**
+     * Adds a new customer with the ID it carries.
+     *
+     * @param customer the customer to add
+     * @return true if it was added
+     * @throws SQLException if a database access error occurs
+     */
+    boolean addCustomerToDB(Customer customer) throws SQLException;
+
+    /**
+     * Updates a customer, if it has not changed since it was read, and sets its new version.
+     *
+     * @param customer the customer with updated information
+     * @return true if it was updated
+     * @throws UpdateConflictException if it was changed or deleted by someone else since it was read
+     * @throws SQLException if a database access error occurs
+     */
+    boolean updateCustomerInDB(Customer customer) throws SQLException;
+
+    /**
+     * Returns one customer.
+     *
+     * @param customerId the ID of the customer
+     * @return the customer, or null if it does not exist
+     * @throws SQLException if a database access error occurs
+     */
+    Customer getCustomerById(int customerId) throws SQLException;
+
+    /**
+     * Returns all customers.
+     *
+     * @return all customers
+     */
+    ObservableList<Customer> getAllCustomers();
+
+    /**
+     * Returns the customers in a country.
+     *
+     * @param selectedCountryId the ID of the country
+     * @return the country's customers
+     */
+    ObservableList<Customer> getCustomersByCountry(int selectedCountryId);
+
+    /**
+     * Deletes a customer and their appointments.
+     *
+     * @param selectedCustomerId the ID of the customer to delete
+     * @return true if it was deleted
+     * @throws SQLException if a database access error occurs
+     */
+    boolean deleteCustomerFromDB(int selectedCustomerId) throws SQLException;
+}
@@ -0,0 +1,101 @@
+package project.DAO;
+
+import project.model.Appointment;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Notifies interested parts of the application after a DAO has changed appointments or customers,
+ * so caches and schedulers can update themselves instead of polling the database.
+ * Listeners are called on the thread that made the change and must return quickly.
+ *
+ * @author Teksong Eap
+ */
+public final class DataChangeBus {
+
+    /**
+     * Receives change events.
+     */
+    public interface Listener {
+        /**
+         * Called after a change has been written to the database.
+         *
+         * @param event the change
+         */
+        void onChange(DataChangeEvent event);
+    }
+
+    /** Registered listeners */
+    private static final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private DataChangeBus() {
+    }
+
+    /**
+     * Registers a listener.
+     *
+     * @param listener the listener to add
+     */
+    public static void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Unregisters a listener.
+     *
+     * @param listener the listener to remove
+     */
+    public static void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Publishes a change to all listeners. A failing listener does not stop the others.
+     *
+     * @param event the change
+     */
+    public static void publish(DataChangeEvent event) {
+        for (Listener listener : listeners) {
+            try {
+                listener.onChange(event);
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Publishes an appointment change.
+     *
+     * @param kind what happened to the appointment
+     * @param id the appointment ID
+     * @param appointment the appointment as written, or null for deletes
+     */
+    static void appointmentChanged(DataChangeEvent.Kind kind, int id, Appointment appointment) {
+        publish(new DataChangeEvent(DataChangeEvent.Entity.APPOINTMENT, kind, id, appointment));
+    }
+
+    /**
+     * Publishes a customer change.
+     *
+     * @param kind what happened to the customer
+     * @param id the customer ID
+     */
+    static void customerChanged(DataChangeEvent.Kind kind, int id) {
+        publish(new DataChangeEvent(DataChangeEvent.Entity.CUSTOMER, kind, id, null));
+    }
+
+    /**
+     * Publishes one change covering many records of an entity, such as a committed chunk of a bulk import.
+     *
+     * @param entity the kind of records that changed
+     * @param kind what happened to the records
+     */
+    static void manyChanged(DataChangeEvent.Entity entity, DataChangeEvent.Kind kind) {
+        publish(new DataChangeEvent(entity, kind, DataChangeEvent.MANY, null));
+    }
+}
@@ -0,0 +1,91 @@
+package project.DAO;
+
+import project.model.Appointment;
+
+/**
+ * Describes a change a DAO made to the database, published through the {@link DataChangeBus}.
+ *
+ * @author Teksong Eap
+ */
+public final class DataChangeEvent {
+
+    /** The kind of record that changed */
+    public enum Entity { APPOINTMENT, CUSTOMER }
+
+    /** What happened to the record */
+    public enum Kind { INSERTED, UPDATED, DELETED }
+
+    /**
+     * The ID of an event covering many records at once, such as a chunk of a bulk import; database IDs start at 1.
+     * Such an event carries no appointment, and listeners reload or drop what they keep of that entity.
+     */
+    public static final int MANY = 0;
+
+    /** The kind of record that changed */
+    private final Entity entity;
+
+    /** What happened to the record */
+    private final Kind kind;
+
+    /** The ID of the record, or {@link #MANY} */
+    private final int id;
+
+    /** The appointment as written, or null for deletes and customer changes */
+    private final Appointment appointment;
+
+    /**
+     * Creates a change event.
+     *
+     * @param entity the kind of record that changed
+     * @param kind what happened to the record
+     * @param id the ID of the record, or {@link #MANY}
+     * @param appointment the appointment as written, or null for deletes and customer changes
+     */
+    public DataChangeEvent(Entity entity, Kind kind, int id, Appointment appointment) {
+        this.entity = entity;
+        this.kind = kind;
+        this.id = id;
+        this.appointment = appointment;
+    }
+
+    /**
+     * Returns the kind of record that changed.
+     * @return entity
+     */
+    public Entity getEntity() {
+        return entity;
+    }
+
+    /**
+     * Returns what happened to the record.
+     * @return kind
+     */
+    public Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * Returns the ID of the record.
+     * @return id, or {@link #MANY} when many records changed
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Returns the appointment as written.
+     * @return the appointment, or null for deletes and customer changes
+     */
+    public Appointment getAppointment() {
+        return appointment;
+    }
+
+    /**
+     * Returns a string representation of the change.
+     * @return string rep
+     */
+    @Override
+    public String toString() {
+        return entity + " " + id + " " + kind;
+    }
+}
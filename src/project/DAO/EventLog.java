@@ -0,0 +1,696 @@
+package project.DAO;
+
+import project.model.Appointment;
+import project.model.Customer;
+import project.utilities.AppConfig;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Keeps an {@link InMemoryRepositories} store on disk as an append-only log of its changes, for running
+ * without MySQL. Each change is one binary event appended to a memory-mapped segment file, so a write costs
+ * a memory copy rather than a round trip to a database. On startup the latest snapshot is loaded and the
+ * events after it are replayed.
+ *
+ * Files in the directory:
+ * <ul>
+ * <li>segment-N.log: events from sequence number N on, in segments of eventlog.segmentBytes (default 64 MB);</li>
+ * <li>snapshot-N.bin: every customer and appointment as of event N, written every eventlog.snapshotEvents
+ * (default 100000) events; the segments it covers are then deleted.</li>
+ * </ul>
+ * Each event is framed as its length, a CRC-32C and the payload, which starts with its sequence number, and
+ * is followed by a zero length marking the end. Replay stops at that marker, or at the first frame that is
+ * incomplete, fails its checksum or is out of sequence, which is where a crash interrupted the last write.
+ *
+ * Events reach the disk when the operating system writes the mapped pages back, so they survive the
+ * application crashing but not the machine losing power, unless eventlog.syncEachWrite is set, which forces
+ * each event to disk at the cost of most of the speed. Segments are forced when they fill up and when the log
+ * is closed.
+ *
+ * @author Teksong Eap
+ */
+final class EventLog implements InMemoryRepositories.Journal, Closeable {
+
+    /** Size of a new segment file in bytes */
+    private static final int SEGMENT_BYTES = AppConfig.getInt("eventlog.segmentBytes", 64 << 20);
+
+    /** Events between snapshots */
+    private static final int SNAPSHOT_EVENTS = AppConfig.getInt("eventlog.snapshotEvents", 100_000);
+
+    /** Whether each event is forced to disk before the change is applied */
+    private static final boolean SYNC_EACH_WRITE = AppConfig.getBoolean("eventlog.syncEachWrite", false);
+
+    /** Event type of an added or updated appointment */
+    private static final byte APPOINTMENT_SAVED = 1;
+
+    /** Event type of a deleted appointment */
+    private static final byte APPOINTMENT_DELETED = 2;
+
+    /** Event type of an added or updated customer */
+    private static final byte CUSTOMER_SAVED = 3;
+
+    /** Event type of a deleted customer */
+    private static final byte CUSTOMER_DELETED = 4;
+
+    /** First bytes of a snapshot file */
+    private static final int SNAPSHOT_MAGIC = 0x414D5331;
+
+    /** Bytes before each event's payload: its length and checksum */
+    private static final int FRAME_HEADER_BYTES = 8;
+
+    /** Stored in place of a missing version */
+    private static final long NO_VERSION = Long.MIN_VALUE;
+
+    /** The directory holding the files */
+    private final Path directory;
+
+    /** The store the log keeps */
+    private InMemoryRepositories store;
+
+    /** The segment being appended to */
+    private FileChannel channel;
+
+    /** The mapped segment being appended to, positioned after its last event */
+    private MappedByteBuffer segment;
+
+    /** Sequence number of the last event */
+    private long lastSeq;
+
+    /** Sequence number of the last event in the latest snapshot */
+    private long snapshotSeq;
+
+    /** Whether the log was closed */
+    private boolean closed;
+
+    /**
+     * Creates a log over a directory.
+     *
+     * @param directory the directory
+     */
+    private EventLog(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Opens the log in a directory and returns the store it keeps, restored from the snapshot and events.
+     * The log is closed when the JVM shuts down.
+     *
+     * @param directory the directory, created if missing
+     * @return the store
+     * @throws IOException if the files cannot be read or are damaged before the last event
+     */
+    static InMemoryRepositories open(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        EventLog log = new EventLog(directory);
+        InMemoryRepositories store = new InMemoryRepositories(log);
+        log.store = store;
+        long started = System.nanoTime();
+        try {
+            log.replay();
+        } catch (SQLException e) {
+            throw new IOException("Event log does not match the reference data", e);
+        }
+        System.out.println("Event log replayed up to event " + log.lastSeq + " in "
+                + (System.nanoTime() - started) / 1_000_000 + " ms");
+        Runtime.getRuntime().addShutdownHook(new Thread(log::closeQuietly, "event-log-close"));
+        return store;
+    }
+
+    @Override
+    public synchronized void appointmentSaved(Appointment appointment) throws SQLException {
+        append(frame(lastSeq + 1, APPOINTMENT_SAVED, out -> writeAppointment(out, appointment)));
+    }
+
+    @Override
+    public synchronized void appointmentDeleted(int appointmentId) throws SQLException {
+        append(frame(lastSeq + 1, APPOINTMENT_DELETED, out -> out.writeInt(appointmentId)));
+    }
+
+    @Override
+    public synchronized void customerSaved(Customer customer) throws SQLException {
+        append(frame(lastSeq + 1, CUSTOMER_SAVED, out -> writeCustomer(out, customer)));
+    }
+
+    @Override
+    public synchronized void customerDeleted(int customerId) throws SQLException {
+        append(frame(lastSeq + 1, CUSTOMER_DELETED, out -> out.writeInt(customerId)));
+    }
+
+    @Override
+    public synchronized void applied() {
+        if (closed || lastSeq - snapshotSeq < SNAPSHOT_EVENTS) {
+            return;
+        }
+        try {
+            snapshot();
+        } catch (IOException | UncheckedIOException e) {
+            // The events are still in the segments; the next snapshot will cover them
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Forces the current segment to disk and closes it. Later changes fail.
+     *
+     * @throws IOException if the segment cannot be closed
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (channel != null) {
+            segment.force();
+            channel.close();
+        }
+    }
+
+    /**
+     * Closes the log, reporting rather than throwing errors.
+     */
+    private void closeQuietly() {
+        try {
+            close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // ---------------------------------------------------------------- writing
+
+    /**
+     * Appends a framed event to the current segment, starting a new segment if it does not fit.
+     *
+     * @param frame the framed event
+     * @throws SQLException if the log is closed or a new segment cannot be created
+     */
+    private void append(byte[] frame) throws SQLException {
+        if (closed) {
+            throw new SQLException("The event log is closed");
+        }
+        try {
+            // Leave room for the zero length that marks the end of the segment
+            if (segment == null || segment.remaining() < frame.length + Integer.BYTES) {
+                startSegment(lastSeq + 1, frame.length + Integer.BYTES);
+            }
+        } catch (IOException e) {
+            throw new SQLException("Could not write the event log", "58030", e);
+        }
+        segment.put(frame);
+        segment.putInt(segment.position(), 0);
+        if (SYNC_EACH_WRITE) {
+            segment.force();
+        }
+        lastSeq++;
+    }
+
+    /**
+     * Forces and closes the current segment and starts a new one.
+     *
+     * @param firstSeq sequence number of the new segment's first event
+     * @param minimumBytes bytes the new segment must hold
+     * @throws IOException if the segment cannot be created
+     */
+    private void startSegment(long firstSeq, int minimumBytes) throws IOException {
+        if (channel != null) {
+            segment.force();
+            channel.close();
+        }
+        Path file = directory.resolve(fileName("segment-", firstSeq, ".log"));
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(SEGMENT_BYTES, minimumBytes));
+    }
+
+    /**
+     * Writes a snapshot of the store as of the last event, then deletes the segments and snapshots it replaces.
+     * Called with the store's write lock held, so the store does not change meanwhile.
+     *
+     * @throws IOException if the snapshot cannot be written
+     */
+    private void snapshot() throws IOException {
+        long seq = lastSeq;
+        Path temp = directory.resolve("snapshot.tmp");
+        try (FileChannel file = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    Channels.newOutputStream(file), 1 << 16));
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeLong(seq);
+            out.writeInt(store.getNextAppointmentId());
+            store.copyTo(
+                    customer -> write(out, frame(seq, CUSTOMER_SAVED, record -> writeCustomer(record, customer))),
+                    appointment -> write(out, frame(seq, APPOINTMENT_SAVED,
+                            record -> writeAppointment(record, appointment))));
+            out.writeInt(0);
+            out.flush();
+            file.force(true);
+        }
+        Path target = directory.resolve(fileName("snapshot-", seq, ".bin"));
+        try {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        snapshotSeq = seq;
+
+        startSegment(seq + 1, 0);
+        for (Path old : list("segment-")) {
+            if (firstSeq(old) <= seq) {
+                deleteQuietly(old);
+            }
+        }
+        for (Path old : list("snapshot-")) {
+            if (firstSeq(old) < seq) {
+                deleteQuietly(old);
+            }
+        }
+    }
+
+    /**
+     * Writes a snapshot record.
+     *
+     * @param out the snapshot file
+     * @param frame the record
+     * @throws UncheckedIOException if it cannot be written
+     */
+    private static void write(DataOutputStream out, byte[] frame) {
+        try {
+            out.write(frame);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Writes an event payload.
+     */
+    interface PayloadWriter {
+        /**
+         * Writes the payload.
+         *
+         * @param out the stream to write to
+         * @throws IOException never, as the stream writes to memory
+         */
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    /**
+     * Builds a framed event: length, CRC-32C, then the payload of sequence number, type and fields.
+     *
+     * @param seq the sequence number
+     * @param type the event type
+     * @param payload writes the fields
+     * @return the frame
+     */
+    static byte[] frame(long seq, byte type, PayloadWriter payload) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeLong(0);
+            out.writeLong(seq);
+            out.writeByte(type);
+            payload.write(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        byte[] frame = bytes.toByteArray();
+        int length = frame.length - FRAME_HEADER_BYTES;
+        CRC32C crc = new CRC32C();
+        crc.update(frame, FRAME_HEADER_BYTES, length);
+        ByteBuffer.wrap(frame).putInt(length).putInt((int) crc.getValue());
+        return frame;
+    }
+
+    /**
+     * Writes an appointment's fields.
+     *
+     * @param out the stream
+     * @param appointment the appointment
+     * @throws IOException never, as the stream writes to memory
+     */
+    static void writeAppointment(DataOutputStream out, Appointment appointment) throws IOException {
+        out.writeInt(appointment.getAppointmentId());
+        out.writeInt(appointment.getCustomerId());
+        out.writeInt(appointment.getUserId());
+        out.writeInt(appointment.getContactId());
+        writeString(out, appointment.getTitle());
+        writeString(out, appointment.getDescription());
+        writeString(out, appointment.getLocation());
+        writeString(out, appointment.getType());
+        out.writeLong(appointment.getStartDateTime().atZone(ZoneId.systemDefault()).toEpochSecond());
+        out.writeLong(appointment.getEndDateTime().atZone(ZoneId.systemDefault()).toEpochSecond());
+        writeVersion(out, appointment.getLastUpdate());
+    }
+
+    /**
+     * Writes a customer's fields. The country and division names are looked up again on replay.
+     *
+     * @param out the stream
+     * @param customer the customer
+     * @throws IOException never, as the stream writes to memory
+     */
+    static void writeCustomer(DataOutputStream out, Customer customer) throws IOException {
+        out.writeInt(customer.getCustomerId());
+        out.writeInt(customer.getDivisionId());
+        writeString(out, customer.getCustomerName());
+        writeString(out, customer.getAddress());
+        writeString(out, customer.getPostalCode());
+        writeString(out, customer.getPhone());
+        writeVersion(out, customer.getLastUpdate());
+    }
+
+    /**
+     * Writes a string as its UTF-8 length and bytes, or -1 for null.
+     *
+     * @param out the stream
+     * @param value the string
+     * @throws IOException never, as the stream writes to memory
+     */
+    static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Writes a version, a UTC time, as epoch seconds.
+     *
+     * @param out the stream
+     * @param version the version, or null
+     * @throws IOException never, as the stream writes to memory
+     */
+    static void writeVersion(DataOutputStream out, LocalDateTime version) throws IOException {
+        out.writeLong(version == null ? NO_VERSION : version.toEpochSecond(ZoneOffset.UTC));
+    }
+
+    // ---------------------------------------------------------------- replay
+
+    /**
+     * Restores the store from the latest snapshot and the events after it, and opens the last segment
+     * for appending after its last complete event.
+     *
+     * @throws IOException if a file cannot be read, or events are missing or damaged before the last one
+     * @throws SQLException if an event refers to a division that does not exist
+     */
+    private void replay() throws IOException, SQLException {
+        List<Path> snapshots = list("snapshot-");
+        if (!snapshots.isEmpty()) {
+            snapshotSeq = loadSnapshot(snapshots.get(snapshots.size() - 1));
+        }
+        lastSeq = snapshotSeq;
+
+        List<Path> segments = list("segment-");
+        Path tailSegment = null;
+        int tailPosition = 0;
+        for (int i = 0; i < segments.size(); i++) {
+            Path file = segments.get(i);
+            boolean last = i == segments.size() - 1;
+            if (!last && firstSeq(segments.get(i + 1)) <= snapshotSeq + 1) {
+                continue;  // every event in it is in the snapshot
+            }
+            if (firstSeq(file) > lastSeq + 1) {
+                throw new IOException("Event log is missing events before " + file);
+            }
+            tailPosition = replaySegment(file, last);
+            tailSegment = file;
+        }
+
+        if (tailSegment == null) {
+            startSegment(lastSeq + 1, 0);
+        } else {
+            channel = FileChannel.open(tailSegment, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+            segment.position(tailPosition);
+            // Cut off whatever a crash left after the last complete event
+            segment.putInt(tailPosition, 0);
+        }
+    }
+
+    /**
+     * Loads a snapshot into the store.
+     *
+     * @param file the snapshot file
+     * @return the sequence number of the last event it covers
+     * @throws IOException if it cannot be read or is damaged
+     * @throws SQLException if a customer refers to a division that does not exist
+     */
+    private long loadSnapshot(Path file) throws IOException, SQLException {
+        try (FileChannel snapshotChannel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = snapshotChannel.map(FileChannel.MapMode.READ_ONLY, 0, snapshotChannel.size());
+            if (buffer.remaining() < 16 || buffer.getInt() != SNAPSHOT_MAGIC) {
+                throw new IOException("Not an event log snapshot: " + file);
+            }
+            long seq = buffer.getLong();
+            store.restoreNextAppointmentId(buffer.getInt());
+            while (true) {
+                ByteBuffer payload = nextPayload(buffer);
+                if (payload == null) {
+                    break;
+                }
+                if (payload.getLong() != seq) {
+                    throw new IOException("Event log snapshot is damaged: " + file);
+                }
+                apply(payload);
+            }
+            if (buffer.remaining() < Integer.BYTES || buffer.getInt() != 0) {
+                throw new IOException("Event log snapshot is damaged: " + file);
+            }
+            return seq;
+        }
+    }
+
+    /**
+     * Replays the events of a segment that come after the snapshot.
+     *
+     * @param file the segment file
+     * @param last whether it is the last segment, where a damaged event marks the end of the log
+     * @return the position after its last complete event
+     * @throws IOException if it cannot be read, or is damaged and is not the last segment
+     * @throws SQLException if a customer refers to a division that does not exist
+     */
+    private int replaySegment(Path file, boolean last) throws IOException, SQLException {
+        try (FileChannel segmentChannel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = segmentChannel.map(FileChannel.MapMode.READ_ONLY, 0, segmentChannel.size());
+            long expected = firstSeq(file);
+            while (true) {
+                int position = buffer.position();
+                ByteBuffer payload = nextPayload(buffer);
+                boolean endMarker = payload == null && buffer.remaining() >= Integer.BYTES
+                        && buffer.getInt(position) == 0;
+                if (payload == null || payload.getLong() != expected) {
+                    if (!last && !endMarker) {
+                        throw new IOException("Event log is damaged at event " + expected + " in " + file);
+                    }
+                    return position;
+                }
+                if (expected > snapshotSeq) {
+                    apply(payload);
+                    lastSeq = expected;
+                }
+                expected++;
+            }
+        }
+    }
+
+    /**
+     * Reads the next frame and checks its checksum.
+     *
+     * @param buffer the file, positioned at a frame; moved past it if it is complete and intact
+     * @return the payload, positioned at its sequence number, or null at the end or at a damaged frame
+     */
+    static ByteBuffer nextPayload(ByteBuffer buffer) {
+        int position = buffer.position();
+        if (buffer.remaining() < FRAME_HEADER_BYTES) {
+            return null;
+        }
+        int length = buffer.getInt(position);
+        int checksum = buffer.getInt(position + Integer.BYTES);
+        if (length <= 0 || length > buffer.remaining() - FRAME_HEADER_BYTES) {
+            return null;
+        }
+        ByteBuffer payload = buffer.slice(position + FRAME_HEADER_BYTES, length);
+        CRC32C crc = new CRC32C();
+        crc.update(payload.duplicate());
+        if ((int) crc.getValue() != checksum) {
+            return null;
+        }
+        buffer.position(position + FRAME_HEADER_BYTES + length);
+        return payload;
+    }
+
+    /**
+     * Applies an event to the store.
+     *
+     * @param payload the payload, positioned after its sequence number
+     * @throws IOException if the event type is unknown
+     * @throws SQLException if a customer refers to a division that does not exist
+     */
+    private void apply(ByteBuffer payload) throws IOException, SQLException {
+        byte type = payload.get();
+        switch (type) {
+            case APPOINTMENT_SAVED:
+                store.restoreAppointment(readAppointment(payload));
+                break;
+            case APPOINTMENT_DELETED:
+                store.restoreAppointmentDeleted(payload.getInt());
+                break;
+            case CUSTOMER_SAVED:
+                store.restoreCustomer(readCustomer(payload));
+                break;
+            case CUSTOMER_DELETED:
+                store.restoreCustomerDeleted(payload.getInt());
+                break;
+            default:
+                throw new IOException("Unknown event type " + type);
+        }
+    }
+
+    /**
+     * Reads an appointment's fields.
+     *
+     * @param in the payload
+     * @return the appointment, in local time
+     */
+    static Appointment readAppointment(ByteBuffer in) {
+        int appointmentId = in.getInt();
+        int customerId = in.getInt();
+        int userId = in.getInt();
+        int contactId = in.getInt();
+        String title = readString(in);
+        String description = readString(in);
+        String location = readString(in);
+        String type = readString(in);
+        LocalDateTime start = LocalDateTime.ofInstant(Instant.ofEpochSecond(in.getLong()), ZoneId.systemDefault());
+        LocalDateTime end = LocalDateTime.ofInstant(Instant.ofEpochSecond(in.getLong()), ZoneId.systemDefault());
+        Appointment appointment = new Appointment(appointmentId, customerId, userId, contactId, title, description,
+                location, type, start, end, start.toLocalDate(), end.toLocalDate(), start.toLocalTime(),
+                end.toLocalTime());
+        appointment.setLastUpdate(readVersion(in));
+        return appointment;
+    }
+
+    /**
+     * Reads a customer's fields.
+     *
+     * @param in the payload
+     * @return the customer, without country and division names
+     */
+    static Customer readCustomer(ByteBuffer in) {
+        int customerId = in.getInt();
+        int divisionId = in.getInt();
+        Customer customer = new Customer(customerId, divisionId, 0, readString(in), readString(in), readString(in),
+                readString(in), null, null);
+        customer.setLastUpdate(readVersion(in));
+        return customer;
+    }
+
+    /**
+     * Reads a string written by {@link #writeString}.
+     *
+     * @param in the payload
+     * @return the string, or null
+     */
+    static String readString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads a version written by {@link #writeVersion}.
+     *
+     * @param in the payload
+     * @return the version, or null
+     */
+    static LocalDateTime readVersion(ByteBuffer in) {
+        long seconds = in.getLong();
+        return seconds == NO_VERSION ? null : LocalDateTime.ofEpochSecond(seconds, 0, ZoneOffset.UTC);
+    }
+
+    // ---------------------------------------------------------------- files
+
+    /**
+     * Lists the files with a prefix, ordered by the sequence number in their names.
+     *
+     * @param prefix "segment-" or "snapshot-"
+     * @return the files
+     * @throws IOException if the directory cannot be read
+     */
+    private List<Path> list(String prefix) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().startsWith(prefix))
+                    .sorted((a, b) -> Long.compare(firstSeq(a), firstSeq(b)))
+                    .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Returns the sequence number in a file's name.
+     *
+     * @param file a segment or snapshot file
+     * @return the sequence number
+     */
+    private static long firstSeq(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(name.indexOf('-') + 1, name.lastIndexOf('.')));
+    }
+
+    /**
+     * Returns a file name with a zero-padded sequence number, so names sort in order.
+     *
+     * @param prefix the prefix
+     * @param seq the sequence number
+     * @param suffix the extension
+     * @return the file name
+     */
+    private static String fileName(String prefix, long seq, String suffix) {
+        return String.format("%s%020d%s", prefix, seq, suffix);
+    }
+
+    /**
+     * Deletes a file, reporting rather than throwing errors. A file that cannot be deleted, such as a segment
+     * still mapped on Windows, is skipped on replay and deleted after a later snapshot.
+     *
+     * @param file the file
+     */
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            System.out.println("Could not delete " + file + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,1165 @@
+package project.DAO;
+
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import project.model.Appointment;
+import project.model.Contact;
+import project.model.Country;
+import project.model.Customer;
+import project.model.Division;
+import project.model.TypeAndMonthReport;
+import project.model.User;
+import project.utilities.AppConfig;
+import project.utilities.TimeUtil;
+
+import java.sql.SQLException;
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.TextStyle;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * The repositories held entirely in memory, for demos, tests and benchmarks. Nothing is saved.
+ *
+ * Appointments are kept by ID with hash indexes by contact and user, and interval indexes by start time,
+ * one over all appointments and one per customer, so overlap checks and range queries only look at
+ * appointments near the range. Overlap checks, optimistic locking, booking and the customer delete cascade
+ * behave as they do on the database, and the same change events are published.
+ *
+ * All data is guarded by one read-write lock. Objects are copied in and out, so callers never share them.
+ *
+ * The store starts with the sample countries, divisions, contacts and users of the database schema. Unless it
+ * is backed by a journal, it also starts with the sample customers and a few appointments in the coming days,
+ * and setting memory.generatedAppointments (default 0) adds that many more, spread over the customers in
+ * business hours, for benchmarks.
+ *
+ * A {@link Journal} is told of every change before it is applied, under the write lock, so it sees changes in
+ * the order they happen; {@link EventLog} uses this to keep the store on disk.
+ *
+ * @author Teksong Eap
+ */
+final class InMemoryRepositories implements AppointmentRepository, CustomerRepository, TerritoryRepository,
+        UserAndContactRepository {
+
+    /** Guards all data */
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /** Countries by ID */
+    private final Map<Integer, Country> countries = new LinkedHashMap<>();
+
+    /** Divisions by ID */
+    private final Map<Integer, Division> divisions = new LinkedHashMap<>();
+
+    /** Country ID of each division, by division ID */
+    private final Map<Integer, Integer> countryOfDivision = new HashMap<>();
+
+    /** Contacts by ID */
+    private final Map<Integer, Contact> contacts = new LinkedHashMap<>();
+
+    /** Users by ID */
+    private final Map<Integer, User> users = new LinkedHashMap<>();
+
+    /** Customers by ID */
+    private final TreeMap<Integer, Customer> customers = new TreeMap<>();
+
+    /** Customer IDs by country ID */
+    private final Map<Integer, Set<Integer>> customersByCountry = new HashMap<>();
+
+    /** Appointments by ID */
+    private final TreeMap<Integer, Appointment> appointments = new TreeMap<>();
+
+    /** Appointment IDs by contact ID */
+    private final Map<Integer, Set<Integer>> appointmentsByContact = new HashMap<>();
+
+    /** Appointment IDs by user ID */
+    private final Map<Integer, Set<Integer>> appointmentsByUser = new HashMap<>();
+
+    /** All appointments by start time */
+    private final StartIndex appointmentsByStart = new StartIndex();
+
+    /** Appointments by start time, per customer ID */
+    private final Map<Integer, StartIndex> appointmentsByCustomer = new HashMap<>();
+
+    /** ID given to the next appointment added */
+    private int nextAppointmentId = 1;
+
+    /** Told of every change */
+    private final Journal journal;
+
+    /**
+     * Receives every change to the customers and appointments, before it is applied and while the write lock
+     * is held. If it throws, the change is not applied.
+     */
+    interface Journal {
+        /**
+         * An appointment was added or updated.
+         *
+         * @param appointment the appointment as it will be stored, with its ID and version
+         * @throws SQLException if the change cannot be recorded
+         */
+        void appointmentSaved(Appointment appointment) throws SQLException;
+
+        /**
+         * An appointment was deleted.
+         *
+         * @param appointmentId the appointment ID
+         * @throws SQLException if the change cannot be recorded
+         */
+        void appointmentDeleted(int appointmentId) throws SQLException;
+
+        /**
+         * A customer was added or updated.
+         *
+         * @param customer the customer as it will be stored, with its version
+         * @throws SQLException if the change cannot be recorded
+         */
+        void customerSaved(Customer customer) throws SQLException;
+
+        /**
+         * A customer was deleted, together with its appointments.
+         *
+         * @param customerId the customer ID
+         * @throws SQLException if the change cannot be recorded
+         */
+        void customerDeleted(int customerId) throws SQLException;
+
+        /**
+         * Called after a change was applied, still under the write lock, so the store matches the changes
+         * recorded so far.
+         */
+        default void applied() {
+        }
+    }
+
+    /**
+     * Creates the store with the sample data.
+     */
+    InMemoryRepositories() {
+        this(null);
+    }
+
+    /**
+     * Creates the store.
+     *
+     * @param journal told of every change, or null for none; with a journal the store starts without
+     *                customers or appointments, to be restored from the journal
+     */
+    InMemoryRepositories(Journal journal) {
+        this.journal = journal;
+        seed(journal == null);
+    }
+
+    // ---------------------------------------------------------------- appointments
+
+    @Override
+    public int getUnusedAppointmentId() {
+        return read(() -> appointments.isEmpty() ? 1 : appointments.lastKey() + 1);
+    }
+
+    @Override
+    public boolean addAppointmentToDB(Appointment appointment) throws SQLException {
+        write(() -> insert(appointment));
+        DataChangeBus.appointmentChanged(DataChangeEvent.Kind.INSERTED, appointment.getAppointmentId(), appointment);
+        return true;
+    }
+
+    @Override
+    public List<Appointment> bookAppointments(List<Appointment> appointmentsToBook) throws SQLException {
+        List<Appointment> overlapping = write(() -> {
+            List<Appointment> found = new ArrayList<>();
+            for (Appointment appointment : appointmentsToBook) {
+                checkReferences(appointment);
+                boolean[] overlaps = {false};
+                forEachOverlap(appointment, existing -> overlaps[0] = true);
+                if (overlaps[0]) {
+                    found.add(appointment);
+                }
+            }
+            if (found.isEmpty()) {
+                for (Appointment appointment : appointmentsToBook) {
+                    insert(appointment);
+                }
+            }
+            return found;
+        });
+        if (overlapping.isEmpty()) {
+            for (Appointment appointment : appointmentsToBook) {
+                DataChangeBus.appointmentChanged(DataChangeEvent.Kind.INSERTED, appointment.getAppointmentId(), appointment);
+            }
+        }
+        return overlapping;
+    }
+
+    @Override
+    public BookingResult bookAppointment(Appointment appointment) throws SQLException {
+        BookingResult result = write(() -> {
+            if (!customers.containsKey(appointment.getCustomerId())) {
+                throw new SQLException("Customer " + appointment.getCustomerId() + " does not exist");
+            }
+            List<Appointment> conflicts = new ArrayList<>();
+            forEachOverlap(appointment, conflict -> conflicts.add(new Appointment(conflict)));
+            if (!conflicts.isEmpty()) {
+                return BookingResult.conflicted(conflicts);
+            }
+            insert(appointment);
+            return BookingResult.booked(appointment);
+        });
+        if (result.isBooked()) {
+            DataChangeBus.appointmentChanged(DataChangeEvent.Kind.INSERTED, appointment.getAppointmentId(), appointment);
+        }
+        return result;
+    }
+
+    @Override
+    public boolean updateAppointmentInDB(Appointment appointment) throws SQLException {
+        write(() -> {
+            Appointment stored = appointments.get(appointment.getAppointmentId());
+            if (stored == null || !Objects.equals(stored.getLastUpdate(), appointment.getLastUpdate())) {
+                throw new UpdateConflictException(DataChangeEvent.Entity.APPOINTMENT, appointment.getAppointmentId());
+            }
+            checkReferences(appointment);
+            Appointment updated = new Appointment(appointment);
+            updated.setLastUpdate(AppointmentDAO.nextVersion(stored.getLastUpdate()));
+            if (journal != null) {
+                journal.appointmentSaved(updated);
+            }
+            unindex(stored);
+            index(updated);
+            appointment.setLastUpdate(updated.getLastUpdate());
+            return null;
+        });
+        DataChangeBus.appointmentChanged(DataChangeEvent.Kind.UPDATED, appointment.getAppointmentId(), appointment);
+        return true;
+    }
+
+    @Override
+    public boolean deleteAppointmentFromDB(int selectedAppointmentId) throws SQLException {
+        boolean deleted = write(() -> {
+            Appointment stored = appointments.get(selectedAppointmentId);
+            if (stored == null) {
+                return false;
+            }
+            if (journal != null) {
+                journal.appointmentDeleted(selectedAppointmentId);
+            }
+            unindex(stored);
+            return true;
+        });
+        if (deleted) {
+            DataChangeBus.appointmentChanged(DataChangeEvent.Kind.DELETED, selectedAppointmentId, null);
+        }
+        return deleted;
+    }
+
+    @Override
+    public boolean checkForOverlap(Appointment newAppointment) {
+        return read(() -> {
+            boolean[] found = {false};
+            forEachOverlap(newAppointment, overlapping -> found[0] = true);
+            return found[0];
+        });
+    }
+
+    @Override
+    public List<Appointment> findOverlaps(List<Appointment> candidates) {
+        return read(() -> {
+            List<Appointment> overlapping = new ArrayList<>();
+            for (Appointment candidate : candidates) {
+                boolean[] found = {false};
+                forEachOverlap(candidate, existing -> found[0] = true);
+                if (found[0]) {
+                    overlapping.add(candidate);
+                }
+            }
+            return overlapping;
+        });
+    }
+
+    @Override
+    public Appointment getAppointmentById(int appointmentId) {
+        return read(() -> {
+            Appointment stored = appointments.get(appointmentId);
+            return stored == null ? null : new Appointment(stored);
+        });
+    }
+
+    @Override
+    public ObservableList<Appointment> getAllAppointments() {
+        return read(() -> copies(appointments.values()));
+    }
+
+    @Override
+    public void forEachAppointment(Consumer<Appointment> action) {
+        read(() -> {
+            // The action may change what it is given, which must not reach the stored object or its indexes
+            appointments.values().forEach(appointment -> action.accept(new Appointment(appointment)));
+            return null;
+        });
+    }
+
+    @Override
+    public ObservableList<Appointment> getAllAppointmentsThisMonth() {
+        YearMonth currentYearMonth = YearMonth.now();
+        return startingOn(currentYearMonth.atDay(1), currentYearMonth.atEndOfMonth());
+    }
+
+    @Override
+    public ObservableList<Appointment> getAllAppointmentsThisWeek() {
+        LocalDate today = LocalDate.now();
+        return startingOn(today.with(TemporalAdjusters.previousOrSame(DayOfWeek.SUNDAY)),
+                today.with(TemporalAdjusters.nextOrSame(DayOfWeek.SATURDAY)));
+    }
+
+    @Override
+    public ObservableList<Appointment> getAppointmentsByContact(int selectedContactId) {
+        return read(() -> copiesOf(appointmentsByContact.get(selectedContactId)));
+    }
+
+    @Override
+    public ObservableList<Appointment> getAppointmentsForUserInRange(int userId, LocalDateTime from, LocalDateTime to) {
+        return read(() -> {
+            ObservableList<Appointment> result = FXCollections.observableArrayList();
+            appointmentsByStart.forEachStartingIn(from, to, appointment -> {
+                if (appointment.getUserId() == userId) {
+                    result.add(new Appointment(appointment));
+                }
+            });
+            return result;
+        });
+    }
+
+    @Override
+    public ObservableList<Appointment> getAppointmentsStartingIn(LocalDateTime from, LocalDateTime to) {
+        return read(() -> {
+            ObservableList<Appointment> result = FXCollections.observableArrayList();
+            appointmentsByStart.forEachStartingIn(from, to, appointment -> result.add(new Appointment(appointment)));
+            return result;
+        });
+    }
+
+    @Override
+    public void forEachAppointmentStart(LocalDateTime from, LocalDateTime to, ObjIntConsumer<LocalDateTime> action) {
+        read(() -> {
+            appointmentsByStart.forEachStartingIn(from, to,
+                    appointment -> action.accept(appointment.getStartDateTime(), appointment.getAppointmentId()));
+            return null;
+        });
+    }
+
+    @Override
+    public ObservableList<Appointment> findAppointments(AppointmentQuery query) {
+        return read(() -> {
+            // Start from the index that leaves the fewest candidates, as the database would
+            List<Appointment> candidates = new ArrayList<>();
+            LocalDateTime from = query.getFrom() == null ? LocalDateTime.MIN : query.getFrom();
+            LocalDateTime to = query.getTo() == null ? LocalDateTime.MAX : query.getTo();
+            if (query.getCustomerId() != null) {
+                StartIndex customerAppointments = appointmentsByCustomer.get(query.getCustomerId());
+                if (customerAppointments != null) {
+                    customerAppointments.forEachStartingIn(from, to, candidates::add);
+                }
+            } else if (query.getContactId() != null || query.getUserId() != null) {
+                Set<Integer> ids = smallerOf(
+                        query.getContactId() == null ? null : appointmentsByContact.getOrDefault(query.getContactId(), Set.of()),
+                        query.getUserId() == null ? null : appointmentsByUser.getOrDefault(query.getUserId(), Set.of()));
+                ids.forEach(id -> candidates.add(appointments.get(id)));
+            } else if (query.getFrom() != null || query.getTo() != null) {
+                appointmentsByStart.forEachStartingIn(from, to, candidates::add);
+            } else {
+                candidates.addAll(appointments.values());
+            }
+            ObservableList<Appointment> results = query.select(candidates);
+            results.replaceAll(Appointment::new);
+            return results;
+        });
+    }
+
+    @Override
+    public ObservableList<Appointment> getAppointmentsInRange(LocalDateTime from, LocalDateTime to) {
+        return read(() -> {
+            ObservableList<Appointment> result = FXCollections.observableArrayList();
+            appointmentsByStart.forEachOverlap(from, to, appointment -> result.add(new Appointment(appointment)));
+            result.sort(Comparator.comparing(Appointment::getStartDateTime));
+            return result;
+        });
+    }
+
+    @Override
+    public ObservableList<TypeAndMonthReport> getAppointmentCountByTypeAndMonth() {
+        return read(() -> {
+            Map<String, Map<String, Integer>> counts = new LinkedHashMap<>();
+            for (Appointment appointment : appointments.values()) {
+                String month = appointment.getStartDateTime().getMonth().getDisplayName(TextStyle.FULL, Locale.ENGLISH);
+                counts.computeIfAbsent(month, key -> new LinkedHashMap<>()).merge(appointment.getType(), 1, Integer::sum);
+            }
+            ObservableList<TypeAndMonthReport> reports = FXCollections.observableArrayList();
+            counts.forEach((month, byType) -> byType.forEach((type, count) ->
+                    reports.add(new TypeAndMonthReport(type, month, count))));
+            return reports;
+        });
+    }
+
+    @Override
+    public Appointment getUpcomingAppointment(int userId) {
+        LocalDateTime now = LocalDateTime.now();
+        return read(() -> {
+            Appointment[] upcoming = {null};
+            appointmentsByStart.forEachStartingIn(now, now.plusMinutes(15).plusNanos(1), appointment -> {
+                if (upcoming[0] == null && appointment.getUserId() == userId) {
+                    upcoming[0] = new Appointment(appointment);
+                }
+            });
+            return upcoming[0];
+        });
+    }
+
+    // ---------------------------------------------------------------- customers
+
+    @Override
+    public int getUnusedCustomerId() {
+        return read(() -> customers.isEmpty() ? 1 : customers.lastKey() + 1);
+    }
+
+    @Override
+    public boolean addCustomerToDB(Customer customer) throws SQLException {
+        write(() -> {
+            if (customers.containsKey(customer.getCustomerId())) {
+                throw new SQLException("Duplicate entry '" + customer.getCustomerId() + "' for key 'customers.PRIMARY'", "23000");
+            }
+            checkDivision(customer);
+            Customer stored = new Customer(customer);
+            stored.setLastUpdate(AppointmentDAO.nextVersion(null));
+            if (journal != null) {
+                journal.customerSaved(stored);
+            }
+            indexCustomer(stored);
+            customer.setLastUpdate(stored.getLastUpdate());
+            return null;
+        });
+        DataChangeBus.customerChanged(DataChangeEvent.Kind.INSERTED, customer.getCustomerId());
+        return true;
+    }
+
+    @Override
+    public boolean updateCustomerInDB(Customer customer) throws SQLException {
+        write(() -> {
+            Customer stored = customers.get(customer.getCustomerId());
+            if (stored == null || !Objects.equals(stored.getLastUpdate(), customer.getLastUpdate())) {
+                throw new UpdateConflictException(DataChangeEvent.Entity.CUSTOMER, customer.getCustomerId());
+            }
+            checkDivision(customer);
+            Customer updated = new Customer(customer);
+            updated.setLastUpdate(AppointmentDAO.nextVersion(stored.getLastUpdate()));
+            if (journal != null) {
+                journal.customerSaved(updated);
+            }
+            unindexCustomer(stored);
+            indexCustomer(updated);
+            customer.setLastUpdate(updated.getLastUpdate());
+            return null;
+        });
+        DataChangeBus.customerChanged(DataChangeEvent.Kind.UPDATED, customer.getCustomerId());
+        return true;
+    }
+
+    @Override
+    public Customer getCustomerById(int customerId) {
+        return read(() -> {
+            Customer stored = customers.get(customerId);
+            return stored == null ? null : new Customer(stored);
+        });
+    }
+
+    @Override
+    public ObservableList<Customer> getAllCustomers() {
+        return read(() -> {
+            ObservableList<Customer> result = FXCollections.observableArrayList();
+            customers.values().forEach(customer -> result.add(new Customer(customer)));
+            return result;
+        });
+    }
+
+    @Override
+    public ObservableList<Customer> getCustomersByCountry(int selectedCountryId) {
+        return read(() -> {
+            ObservableList<Customer> result = FXCollections.observableArrayList();
+            for (int customerId : customersByCountry.getOrDefault(selectedCountryId, Set.of())) {
+                result.add(new Customer(customers.get(customerId)));
+            }
+            return result;
+        });
+    }
+
+    @Override
+    public boolean deleteCustomerFromDB(int selectedCustomerId) throws SQLException {
+        List<Integer> cascaded = new ArrayList<>();
+        boolean deleted = write(() -> {
+            Customer stored = customers.get(selectedCustomerId);
+            if (stored == null) {
+                return false;
+            }
+            if (journal != null) {
+                journal.customerDeleted(selectedCustomerId);
+            }
+            cascaded.addAll(removeCustomer(stored));
+            return true;
+        });
+        for (int appointmentId : cascaded) {
+            DataChangeBus.appointmentChanged(DataChangeEvent.Kind.DELETED, appointmentId, null);
+        }
+        if (deleted) {
+            DataChangeBus.customerChanged(DataChangeEvent.Kind.DELETED, selectedCustomerId);
+        }
+        return deleted;
+    }
+
+    // ---------------------------------------------------------------- territories, users and contacts
+
+    @Override
+    public ObservableList<Country> getAllCountries() {
+        return read(() -> FXCollections.observableArrayList(countries.values()));
+    }
+
+    @Override
+    public ObservableList<Division> getAllDivisionsByCountryId(int selectedCountryId) {
+        return read(() -> {
+            ObservableList<Division> result = FXCollections.observableArrayList();
+            divisions.forEach((divisionId, division) -> {
+                if (countryOfDivision.get(divisionId) == selectedCountryId) {
+                    result.add(division);
+                }
+            });
+            return result;
+        });
+    }
+
+    @Override
+    public ObservableList<Division> getAllDivisions() {
+        return read(() -> FXCollections.observableArrayList(divisions.values()));
+    }
+
+    @Override
+    public ObservableList<Contact> getAllContacts() {
+        return read(() -> FXCollections.observableArrayList(contacts.values()));
+    }
+
+    @Override
+    public ObservableList<User> getAllUsers() {
+        return read(() -> FXCollections.observableArrayList(users.values()));
+    }
+
+    @Override
+    public Optional<User> loginQuery(String userName, String password) {
+        return read(() -> users.values().stream()
+                .filter(user -> user.getUsername().equals(userName) && user.getPassword().equals(password))
+                .findFirst());
+    }
+
+    // ---------------------------------------------------------------- indexes
+
+    /**
+     * Checks that an appointment's customer, user and contact exist, as the database's foreign keys do.
+     *
+     * @param appointment the appointment
+     * @throws SQLException if one of them does not exist
+     */
+    private void checkReferences(Appointment appointment) throws SQLException {
+        if (!customers.containsKey(appointment.getCustomerId())
+                || !users.containsKey(appointment.getUserId())
+                || !contacts.containsKey(appointment.getContactId())) {
+            throw new SQLException("Cannot add or update a child row: a foreign key constraint fails", "23000");
+        }
+    }
+
+    /**
+     * Adds a new appointment with the next ID, and sets the ID and version on the caller's object.
+     *
+     * @param appointment the appointment
+     * @return null
+     * @throws SQLException if its customer, user or contact does not exist
+     */
+    private Void insert(Appointment appointment) throws SQLException {
+        checkReferences(appointment);
+        Appointment stored = new Appointment(appointment);
+        stored.setAppointmentId(nextAppointmentId++);
+        stored.setLastUpdate(AppointmentDAO.nextVersion(null));
+        if (journal != null) {
+            journal.appointmentSaved(stored);
+        }
+        index(stored);
+        appointment.setAppointmentId(stored.getAppointmentId());
+        appointment.setLastUpdate(stored.getLastUpdate());
+        return null;
+    }
+
+    /**
+     * Adds a stored appointment to all indexes.
+     *
+     * @param appointment the stored appointment
+     */
+    private void index(Appointment appointment) {
+        int id = appointment.getAppointmentId();
+        appointments.put(id, appointment);
+        appointmentsByContact.computeIfAbsent(appointment.getContactId(), key -> new TreeSet<>()).add(id);
+        appointmentsByUser.computeIfAbsent(appointment.getUserId(), key -> new TreeSet<>()).add(id);
+        appointmentsByStart.add(appointment);
+        appointmentsByCustomer.computeIfAbsent(appointment.getCustomerId(), key -> new StartIndex()).add(appointment);
+        nextAppointmentId = Math.max(nextAppointmentId, id + 1);
+    }
+
+    /**
+     * Removes a stored appointment from all indexes.
+     *
+     * @param appointment the stored appointment
+     */
+    private void unindex(Appointment appointment) {
+        int id = appointment.getAppointmentId();
+        appointments.remove(id);
+        appointmentsByContact.get(appointment.getContactId()).remove(id);
+        appointmentsByUser.get(appointment.getUserId()).remove(id);
+        appointmentsByStart.remove(appointment);
+        appointmentsByCustomer.get(appointment.getCustomerId()).remove(appointment);
+    }
+
+    /**
+     * Adds a stored customer to the indexes, filling in its division and country names.
+     *
+     * @param customer the stored customer
+     * @throws SQLException if its division does not exist
+     */
+    private void indexCustomer(Customer customer) throws SQLException {
+        checkDivision(customer);
+        Division division = divisions.get(customer.getDivisionId());
+        int countryId = countryOfDivision.get(customer.getDivisionId());
+        customer.setDivisionName(division.getDivisionName());
+        customer.setCountryId(countryId);
+        customer.setCountryName(countries.get(countryId).getCountryName());
+        customers.put(customer.getCustomerId(), customer);
+        customersByCountry.computeIfAbsent(countryId, key -> new TreeSet<>()).add(customer.getCustomerId());
+    }
+
+    /**
+     * Checks that a customer's division exists, as the database's foreign key does.
+     *
+     * @param customer the customer
+     * @throws SQLException if the division does not exist
+     */
+    private void checkDivision(Customer customer) throws SQLException {
+        if (!divisions.containsKey(customer.getDivisionId())) {
+            throw new SQLException("Cannot add or update a child row: a foreign key constraint fails", "23000");
+        }
+    }
+
+    /**
+     * Removes a stored customer and its appointments.
+     *
+     * @param customer the stored customer
+     * @return the IDs of the removed appointments
+     */
+    private List<Integer> removeCustomer(Customer customer) {
+        List<Integer> removed = new ArrayList<>();
+        StartIndex own = appointmentsByCustomer.get(customer.getCustomerId());
+        if (own != null) {
+            List<Appointment> toDelete = new ArrayList<>();
+            own.forEach(toDelete::add);
+            for (Appointment appointment : toDelete) {
+                unindex(appointment);
+                removed.add(appointment.getAppointmentId());
+            }
+        }
+        unindexCustomer(customer);
+        return removed;
+    }
+
+    /**
+     * Removes a stored customer from the indexes.
+     *
+     * @param customer the stored customer
+     */
+    private void unindexCustomer(Customer customer) {
+        customers.remove(customer.getCustomerId());
+        customersByCountry.get(customer.getCountryId()).remove(customer.getCustomerId());
+    }
+
+    /**
+     * Passes each other appointment of the same customer that overlaps an appointment.
+     *
+     * @param appointment the appointment
+     * @param action receives the overlapping appointments
+     */
+    private void forEachOverlap(Appointment appointment, Consumer<Appointment> action) {
+        StartIndex own = appointmentsByCustomer.get(appointment.getCustomerId());
+        if (own == null) {
+            return;
+        }
+        own.forEachOverlap(appointment.getStartDateTime(), appointment.getEndDateTime(), existing -> {
+            if (existing.getAppointmentId() != appointment.getAppointmentId()) {
+                action.accept(existing);
+            }
+        });
+    }
+
+    /**
+     * Returns copies of the appointments starting on the given local days, by ID.
+     *
+     * @param firstDay the first day
+     * @param lastDay the last day, inclusive
+     * @return the appointments
+     */
+    private ObservableList<Appointment> startingOn(LocalDate firstDay, LocalDate lastDay) {
+        return read(() -> {
+            ObservableList<Appointment> result = FXCollections.observableArrayList();
+            appointmentsByStart.forEachStartingIn(firstDay.atStartOfDay(), lastDay.plusDays(1).atStartOfDay(),
+                    appointment -> result.add(new Appointment(appointment)));
+            result.sort(Comparator.comparingInt(Appointment::getAppointmentId));
+            return result;
+        });
+    }
+
+    /**
+     * Returns copies of appointments.
+     *
+     * @param stored the stored appointments
+     * @return the copies
+     */
+    private static ObservableList<Appointment> copies(Iterable<Appointment> stored) {
+        ObservableList<Appointment> result = FXCollections.observableArrayList();
+        stored.forEach(appointment -> result.add(new Appointment(appointment)));
+        return result;
+    }
+
+    /**
+     * Returns copies of the appointments with the given IDs.
+     *
+     * @param ids the IDs, or null for none
+     * @return the copies, by ID
+     */
+    private ObservableList<Appointment> copiesOf(Set<Integer> ids) {
+        ObservableList<Appointment> result = FXCollections.observableArrayList();
+        if (ids != null) {
+            ids.forEach(id -> result.add(new Appointment(appointments.get(id))));
+        }
+        return result;
+    }
+
+    /**
+     * Returns the smaller of two sets of IDs, either of which may be missing.
+     *
+     * @param first a set, or null
+     * @param second a set, or null
+     * @return the smaller set
+     */
+    private static Set<Integer> smallerOf(Set<Integer> first, Set<Integer> second) {
+        if (first == null) {
+            return second;
+        }
+        return second == null || first.size() <= second.size() ? first : second;
+    }
+
+    // ---------------------------------------------------------------- locking
+
+    /**
+     * Work done under the lock.
+     *
+     * @param <T> the result type
+     */
+    private interface Work<T> {
+        /**
+         * Does the work.
+         *
+         * @return the result
+         * @throws SQLException to report a failure to the caller
+         */
+        T run() throws SQLException;
+    }
+
+    /**
+     * Work done under the lock that cannot fail.
+     *
+     * @param <T> the result type
+     */
+    private interface Query<T> {
+        /**
+         * Does the work.
+         *
+         * @return the result
+         */
+        T run();
+    }
+
+    /**
+     * Runs a query under the read lock.
+     *
+     * @param query the query
+     * @param <T> the result type
+     * @return the result
+     */
+    private <T> T read(Query<T> query) {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            return query.run();
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Runs work under the write lock. Work that throws must not have changed anything yet.
+     *
+     * @param work the work
+     * @param <T> the result type
+     * @return the result
+     * @throws SQLException if the work throws it
+     */
+    private <T> T write(Work<T> work) throws SQLException {
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            T result = work.run();
+            if (journal != null) {
+                journal.applied();
+            }
+            return result;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // ---------------------------------------------------------------- restoring
+
+    /**
+     * Stores an appointment as it was recorded, replacing any with the same ID, without telling the journal.
+     *
+     * @param appointment the appointment, with its ID and version
+     * @throws SQLException never in practice
+     */
+    void restoreAppointment(Appointment appointment) throws SQLException {
+        restore(() -> {
+            Appointment stored = appointments.get(appointment.getAppointmentId());
+            if (stored != null) {
+                unindex(stored);
+            }
+            index(new Appointment(appointment));
+        });
+    }
+
+    /**
+     * Removes an appointment as recorded, without telling the journal.
+     *
+     * @param appointmentId the appointment ID
+     * @throws SQLException never in practice
+     */
+    void restoreAppointmentDeleted(int appointmentId) throws SQLException {
+        restore(() -> {
+            Appointment stored = appointments.get(appointmentId);
+            if (stored != null) {
+                unindex(stored);
+            }
+            nextAppointmentId = Math.max(nextAppointmentId, appointmentId + 1);
+        });
+    }
+
+    /**
+     * Stores a customer as it was recorded, replacing any with the same ID, without telling the journal.
+     *
+     * @param customer the customer, with its version
+     * @throws SQLException if its division does not exist
+     */
+    void restoreCustomer(Customer customer) throws SQLException {
+        restore(() -> {
+            Customer stored = customers.get(customer.getCustomerId());
+            if (stored != null) {
+                unindexCustomer(stored);
+            }
+            indexCustomer(new Customer(customer));
+        });
+    }
+
+    /**
+     * Removes a customer and its appointments as recorded, without telling the journal.
+     *
+     * @param customerId the customer ID
+     * @throws SQLException never in practice
+     */
+    void restoreCustomerDeleted(int customerId) throws SQLException {
+        restore(() -> {
+            Customer stored = customers.get(customerId);
+            if (stored != null) {
+                removeCustomer(stored);
+            }
+        });
+    }
+
+    /**
+     * Returns the ID the next appointment added will get.
+     *
+     * @return the next appointment ID
+     */
+    int getNextAppointmentId() {
+        return read(() -> nextAppointmentId);
+    }
+
+    /**
+     * Makes sure later appointments get IDs from the given one on, so IDs of deleted appointments are not reused.
+     *
+     * @param appointmentId the lowest ID to give out
+     * @throws SQLException never in practice
+     */
+    void restoreNextAppointmentId(int appointmentId) throws SQLException {
+        restore(() -> nextAppointmentId = Math.max(nextAppointmentId, appointmentId));
+    }
+
+    /**
+     * Passes every customer, then every appointment, to the given consumers, under the read lock.
+     * The write lock may be held by the calling thread.
+     *
+     * @param customerSink receives the customers
+     * @param appointmentSink receives the appointments
+     */
+    void copyTo(Consumer<Customer> customerSink, Consumer<Appointment> appointmentSink) {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            customers.values().forEach(customerSink);
+            appointments.values().forEach(appointmentSink);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * A change made while restoring.
+     */
+    private interface Restore {
+        /**
+         * Makes the change.
+         *
+         * @throws SQLException if the change is invalid
+         */
+        void run() throws SQLException;
+    }
+
+    /**
+     * Makes a change under the write lock without telling the journal.
+     *
+     * @param restore the change
+     * @throws SQLException if the change throws it
+     */
+    private void restore(Restore restore) throws SQLException {
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            restore.run();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // ---------------------------------------------------------------- sample data
+
+    /**
+     * Loads the sample data.
+     *
+     * @param withRecords whether to add the sample customers and appointments too
+     */
+    private void seed(boolean withRecords) {
+        countries.put(1, new Country(1, "U.S"));
+        countries.put(2, new Country(2, "UK"));
+        countries.put(3, new Country(3, "Canada"));
+        String[] states = {"Alabama", "Arizona", "Arkansas", "California", "Colorado", "Connecticut", "Delaware",
+                "District of Columbia", "Florida", "Georgia", "Idaho", "Illinois", "Indiana", "Iowa", "Kansas",
+                "Kentucky", "Louisiana", "Maine", "Maryland", "Massachusetts", "Michigan", "Minnesota", "Mississippi",
+                "Missouri", "Montana", "Nebraska", "Nevada", "New Hampshire", "New Jersey", "New Mexico", "New York",
+                "North Carolina", "North Dakota", "Ohio", "Oklahoma", "Oregon", "Pennsylvania", "Rhode Island",
+                "South Carolina", "South Dakota", "Tennessee", "Texas", "Utah", "Vermont", "Virginia", "Washington",
+                "West Virginia", "Wisconsin", "Wyoming"};
+        for (int i = 0; i < states.length; i++) {
+            addDivision(i + 1, states[i], 1);
+        }
+        addDivision(52, "Hawaii", 1);
+        addDivision(54, "Alaska", 1);
+        String[] provinces = {"Northwest Territories", "Alberta", "British Columbia", "Manitoba", "New Brunswick",
+                "Nova Scotia", "Prince Edward Island", "Ontario", "Qu\u00e9bec", "Saskatchewan", "Nunavut", "Yukon",
+                "Newfoundland and Labrador"};
+        for (int i = 0; i < provinces.length; i++) {
+            addDivision(60 + i, provinces[i], 3);
+        }
+        addDivision(101, "England", 2);
+        addDivision(102, "Wales", 2);
+        addDivision(103, "Scotland", 2);
+        addDivision(104, "Northern Ireland", 2);
+
+        contacts.put(1, new Contact(1, "Anika Costa"));
+        contacts.put(2, new Contact(2, "Daniel Garcia"));
+        contacts.put(3, new Contact(3, "Li Lee"));
+        users.put(1, new User(1, "test", "test"));
+        users.put(2, new User(2, "admin", "admin"));
+
+        if (!withRecords) {
+            return;
+        }
+        try {
+            addCustomerToDB(new Customer(1, 29, 0, "Daddy Warbucks", "1919 Florida Lane", "01291", "869-908-1875", null, null));
+            addCustomerToDB(new Customer(2, 103, 0, "Lady McAnderson", "2 Wonder Way", "AF19B", "11-445-910-2135", null, null));
+            addCustomerToDB(new Customer(3, 60, 0, "Dudley Do-Right", "48 Horse Manor", "28198", "874-916-2671", null, null));
+
+            LocalDate tomorrow = LocalDate.now().plusDays(1);
+            addAppointmentToDB(sampleAppointment(1, 1, 3, "title", "description", "location", "Planning Session",
+                    TimeUtil.getBusinessDayStart(tomorrow).plusHours(2), 60));
+            addAppointmentToDB(sampleAppointment(2, 2, 2, "title", "description", "location", "De-Briefing",
+                    TimeUtil.getBusinessDayStart(tomorrow.plusDays(1)).plusHours(4), 60));
+
+            int generated = AppConfig.getInt("memory.generatedAppointments", 0);
+            int slotsPerDay = 28;  // half-hour slots in the 14-hour business day
+            int customerCount = customers.size();
+            for (int i = 0; i < generated; i++) {
+                int slot = i / customerCount;
+                ZonedDateTime start = TimeUtil.getBusinessDayStart(tomorrow.plusDays(7 + slot / slotsPerDay))
+                        .plusMinutes(30L * (slot % slotsPerDay));
+                addAppointmentToDB(sampleAppointment(1 + i % customerCount, 1 + i % users.size(),
+                        1 + i % contacts.size(), "Generated " + (i + 1), "Generated appointment", "Online",
+                        "Benchmark", start, 30));
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Sample data is inconsistent", e);
+        }
+    }
+
+    /**
+     * Adds a sample division.
+     *
+     * @param divisionId the division ID
+     * @param name the division name
+     * @param countryId the country ID
+     */
+    private void addDivision(int divisionId, String name, int countryId) {
+        divisions.put(divisionId, new Division(divisionId, name));
+        countryOfDivision.put(divisionId, countryId);
+    }
+
+    /**
+     * Creates a sample appointment.
+     *
+     * @param customerId the customer ID
+     * @param userId the user ID
+     * @param contactId the contact ID
+     * @param title the title
+     * @param description the description
+     * @param location the location
+     * @param type the type
+     * @param start the start
+     * @param minutes the length in minutes
+     * @return the appointment, in local time
+     */
+    private static Appointment sampleAppointment(int customerId, int userId, int contactId, String title,
+                                                 String description, String location, String type,
+                                                 ZonedDateTime start, int minutes) {
+        LocalDateTime localStart = start.withZoneSameInstant(ZoneId.systemDefault()).toLocalDateTime();
+        LocalDateTime localEnd = localStart.plusMinutes(minutes);
+        return new Appointment(0, customerId, userId, contactId, title, description, location, type,
+                localStart, localEnd, localStart.toLocalDate(), localEnd.toLocalDate(),
+                localStart.toLocalTime(), localEnd.toLocalTime());
+    }
+
+    /**
+     * Interval index of appointments by start time. To find the appointments overlapping a range it looks
+     * back from the range start by the longest appointment held, so it only visits appointments near the range.
+     */
+    private static final class StartIndex {
+
+        /** Appointments by start time, then by ID */
+        private final TreeMap<LocalDateTime, Map<Integer, Appointment>> byStart = new TreeMap<>();
+
+        /** Longest appointment ever added; never shrinks, which only widens the search */
+        private Duration longest = Duration.ZERO;
+
+        /**
+         * Adds an appointment.
+         *
+         * @param appointment the appointment
+         */
+        void add(Appointment appointment) {
+            byStart.computeIfAbsent(appointment.getStartDateTime(), key -> new TreeMap<>())
+                    .put(appointment.getAppointmentId(), appointment);
+            Duration length = Duration.between(appointment.getStartDateTime(), appointment.getEndDateTime());
+            if (length.compareTo(longest) > 0) {
+                longest = length;
+            }
+        }
+
+        /**
+         * Removes an appointment.
+         *
+         * @param appointment the appointment, as added
+         */
+        void remove(Appointment appointment) {
+            Map<Integer, Appointment> atStart = byStart.get(appointment.getStartDateTime());
+            if (atStart != null) {
+                atStart.remove(appointment.getAppointmentId());
+                if (atStart.isEmpty()) {
+                    byStart.remove(appointment.getStartDateTime());
+                }
+            }
+        }
+
+        /**
+         * Passes each appointment.
+         *
+         * @param action receives the appointments, by start time
+         */
+        void forEach(Consumer<Appointment> action) {
+            byStart.values().forEach(atStart -> atStart.values().forEach(action));
+        }
+
+        /**
+         * Passes each appointment starting in a range.
+         *
+         * @param from the start of the range, inclusive
+         * @param to the end of the range, exclusive
+         * @param action receives the appointments, by start time
+         */
+        void forEachStartingIn(LocalDateTime from, LocalDateTime to, Consumer<Appointment> action) {
+            if (from.isBefore(to)) {
+                byStart.subMap(from, true, to, false).values().forEach(atStart -> atStart.values().forEach(action));
+            }
+        }
+
+        /**
+         * Passes each appointment overlapping a range: starting before its end and ending after its start.
+         *
+         * @param from the start of the range
+         * @param to the end of the range
+         * @param action receives the appointments, by start time
+         */
+        void forEachOverlap(LocalDateTime from, LocalDateTime to, Consumer<Appointment> action) {
+            forEachStartingIn(from.minus(longest), to, appointment -> {
+                if (appointment.getEndDateTime().isAfter(from)) {
+                    action.accept(appointment);
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package project.DAO;
+
+import javafx.collections.ObservableList;
+import project.model.Appointment;
+import project.model.Contact;
+import project.model.Country;
+import project.model.Customer;
+import project.model.Division;
+import project.model.TypeAndMonthReport;
+import project.model.User;
+import project.utilities.DBLogin;
+import project.utilities.JDBC;
+
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * The repositories backed by the MySQL database, through the static DAO classes.
+ *
+ * @author Teksong Eap
+ */
+final class JdbcRepositories implements AppointmentRepository, CustomerRepository, TerritoryRepository,
+        UserAndContactRepository {
+
+    @Override
+    public int getUnusedAppointmentId() throws SQLException {
+        return AppointmentDAO.getUnusedAppointmentId();
+    }
+
+    @Override
+    public boolean addAppointmentToDB(Appointment appointment) throws SQLException {
+        return AppointmentDAO.addAppointmentToDB(appointment);
+    }
+
+    @Override
+    public List<Appointment> bookAppointments(List<Appointment> appointments) throws SQLException {
+        return AppointmentDAO.bookAppointments(appointments);
+    }
+
+    @Override
+    public BookingResult bookAppointment(Appointment appointment) throws SQLException {
+        return AppointmentDAO.bookAppointment(appointment);
+    }
+
+    @Override
+    public boolean updateAppointmentInDB(Appointment appointment) throws SQLException {
+        return AppointmentDAO.updateAppointmentInDB(appointment);
+    }
+
+    @Override
+    public boolean deleteAppointmentFromDB(int selectedAppointmentId) throws SQLException {
+        return AppointmentDAO.deleteAppointmentFromDB(selectedAppointmentId);
+    }
+
+    @Override
+    public boolean checkForOverlap(Appointment newAppointment) throws SQLException {
+        return AppointmentDAO.checkForOverlap(newAppointment);
+    }
+
+    @Override
+    public List<Appointment> findOverlaps(List<Appointment> candidates) throws SQLException {
+        return AppointmentDAO.findOverlaps(candidates);
+    }
+
+    @Override
+    public Appointment getAppointmentById(int appointmentId) throws SQLException {
+        return AppointmentDAO.getAppointmentById(appointmentId);
+    }
+
+    @Override
+    public ObservableList<Appointment> getAllAppointments() {
+        return AppointmentDAO.getAllAppointments();
+    }
+
+    @Override
+    public void forEachAppointment(Consumer<Appointment> action) throws SQLException {
+        AppointmentDAO.streamAllAppointments(action);
+    }
+
+    @Override
+    public ObservableList<Appointment> getAllAppointmentsThisMonth() {
+        return AppointmentDAO.getAllAppointmentsThisMonth();
+    }
+
+    @Override
+    public ObservableList<Appointment> getAllAppointmentsThisWeek() {
+        return AppointmentDAO.getAllAppointmentsThisWeek();
+    }
+
+    @Override
+    public ObservableList<Appointment> getAppointmentsByContact(int selectedContactId) {
+        return AppointmentDAO.getAppointmentsByContact(selectedContactId);
+    }
+
+    @Override
+    public ObservableList<Appointment> getAppointmentsForUserInRange(int userId, LocalDateTime from, LocalDateTime to) {
+        return AppointmentDAO.getAppointmentsForUserInRange(userId, from, to);
+    }
+
+    @Override
+    public ObservableList<Appointment> getAppointmentsStartingIn(LocalDateTime from, LocalDateTime to) throws SQLException {
+        // The range cache also reads ahead in the background, so it reads on a connection the FX thread does not use
+        return AppointmentDAO.getAppointmentsStartingIn(JDBC.getBackgroundConnection(), from, to);
+    }
+
+    @Override
+    public void forEachAppointmentStart(LocalDateTime from, LocalDateTime to, ObjIntConsumer<LocalDateTime> action)
+            throws SQLException {
+        // Counting runs in the background, so it reads on a connection of its own
+        AppointmentDAO.forEachAppointmentStart(JDBC.getBackgroundConnection(), from, to, action);
+    }
+
+    @Override
+    public ObservableList<Appointment> findAppointments(AppointmentQuery query) throws SQLException {
+        // The appointment search runs in the background, so it reads on a connection the FX thread does not use
+        return AppointmentDAO.findAppointments(JDBC.getBackgroundConnection(), query);
+    }
+
+    @Override
+    public ObservableList<Appointment> getAppointmentsInRange(LocalDateTime from, LocalDateTime to) {
+        return AppointmentDAO.getAppointmentsInRange(from, to);
+    }
+
+    @Override
+    public ObservableList<TypeAndMonthReport> getAppointmentCountByTypeAndMonth() {
+        return AppointmentDAO.getAppointmentCountByTypeAndMonth();
+    }
+
+    @Override
+    public Appointment getUpcomingAppointment(int userId) throws SQLException {
+        return AppointmentDAO.getUpcomingAppointment(userId);
+    }
+
+    @Override
+    public int getUnusedCustomerId() throws SQLException {
+        return CustomerDAO.getUnusedCustomerId();
+    }
+
+    @Override
+    public boolean addCustomerToDB(Customer customer) throws SQLException {
+        return CustomerDAO.addCustomerToDB(customer);
+    }
+
+    @Override
+    public boolean updateCustomerInDB(Customer customer) throws SQLException {
+        return CustomerDAO.updateCustomerInDB(customer);
+    }
+
+    @Override
+    public Customer getCustomerById(int customerId) throws SQLException {
+        return CustomerDAO.getCustomerById(customerId);
+    }
+
+    @Override
+    public ObservableList<Customer> getAllCustomers() {
+        return CustomerDAO.getAllCustomers();
+    }
+
+    @Override
+    public ObservableList<Customer> getCustomersByCountry(int selectedCountryId) {
+        return CustomerDAO.getCustomersByCountry(selectedCountryId);
+    }
+
+    @Override
+    public boolean deleteCustomerFromDB(int selectedCustomerId) throws SQLException {
+        return CustomerDAO.deleteCustomerFromDB(selectedCustomerId);
+    }
+
+    @Override
+    public ObservableList<Country> getAllCountries() throws SQLException {
+        return TerritoryDAO.getAllCountries();
+    }
+
+    @Override
+    public ObservableList<Division> getAllDivisionsByCountryId(int selectedCountryId) throws SQLException {
+        return TerritoryDAO.getAllDivisionsByCountryId(selectedCountryId);
+    }
+
+    @Override
+    public ObservableList<Division> getAllDivisions() throws SQLException {
+        return TerritoryDAO.getAllDivisions();
+    }
+
+    @Override
+    public ObservableList<Contact> getAllContacts() throws SQLException {
+        return UserAndContactDAO.getAllContacts();
+    }
+
+    @Override
+    public ObservableList<User> getAllUsers() throws SQLException {
+        return UserAndContactDAO.getAllUsers();
+    }
+
+    @Override
+    public Optional<User> loginQuery(String userName, String password) {
+        return DBLogin.loginQuery(userName, password);
+    }
+}
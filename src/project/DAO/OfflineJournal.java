@@ -0,0 +1,224 @@
+package project.DAO;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Durable append-only file of the writes made while the database is unreachable, framed like the
+ * {@link EventLog}. A write is only acknowledged once it has been forced to disk.
+ *
+ * Forcing a file to disk takes milliseconds, so writes are group-committed: the first writer to find no flush
+ * in progress writes every record queued so far and forces them in one go, while writers arriving meanwhile
+ * queue their records and wait for the next flush. Many concurrent writers cost one force per batch rather
+ * than one each.
+ *
+ * @author Teksong Eap
+ */
+final class OfflineJournal implements Closeable {
+
+    /** The journal file */
+    private final FileChannel channel;
+
+    /** Guards the fields below */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /** Signalled when a flush ends */
+    private final Condition flushEnded = lock.newCondition();
+
+    /** Framed records waiting to be flushed */
+    private List<byte[]> queued = new ArrayList<>();
+
+    /** Sequence number of the last record queued */
+    private long lastSeq;
+
+    /** Sequence number of the last record forced to disk */
+    private long durableSeq;
+
+    /** Whether a writer is flushing */
+    private boolean flushing;
+
+    /** Whether a flush failed, after which the file may end in a partial record and no more are accepted */
+    private boolean failed;
+
+    /**
+     * Opens a journal over a channel positioned at its end.
+     *
+     * @param channel the channel
+     * @param lastSeq sequence number of the last record in the file
+     */
+    private OfflineJournal(FileChannel channel, long lastSeq) {
+        this.channel = channel;
+        this.lastSeq = lastSeq;
+        this.durableSeq = lastSeq;
+    }
+
+    /**
+     * Opens the journal file, creating it if missing, and passes each record in it to a consumer.
+     * A partial record left by a crash at the end of the file is cut off.
+     *
+     * @param file the journal file
+     * @param records receives each record's payload, positioned at its sequence number
+     * @return the journal, ready for appending
+     * @throws IOException if the file cannot be opened
+     */
+    static OfflineJournal open(Path file, Consumer<ByteBuffer> records) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        // Read rather than mapped, as a mapped file cannot be truncated on Windows
+        ByteBuffer buffer = ByteBuffer.allocate(Math.toIntExact(channel.size()));
+        while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+            // keep reading
+        }
+        buffer.flip();
+        long lastSeq = 0;
+        while (true) {
+            ByteBuffer payload = EventLog.nextPayload(buffer);
+            if (payload == null) {
+                break;
+            }
+            lastSeq = payload.getLong(payload.position());
+            records.accept(payload);
+        }
+        channel.truncate(buffer.position());
+        channel.position(buffer.position());
+        return new OfflineJournal(channel, lastSeq);
+    }
+
+    /**
+     * Appends a record and waits until it is on disk.
+     *
+     * @param type the record type
+     * @param payload writes the record's fields
+     * @return the record's sequence number
+     * @throws IOException if the record could not be forced to disk
+     */
+    long append(byte type, EventLog.PayloadWriter payload) throws IOException {
+        long seq = enqueue(type, payload);
+        awaitDurable(seq);
+        return seq;
+    }
+
+    /**
+     * Queues a record without waiting for it to reach the disk. Records reach the disk in the order
+     * they were queued.
+     *
+     * @param type the record type
+     * @param payload writes the record's fields
+     * @return the record's sequence number, to pass to {@link #awaitDurable(long)}
+     * @throws IOException if an earlier flush failed
+     */
+    long enqueue(byte type, EventLog.PayloadWriter payload) throws IOException {
+        lock.lock();
+        try {
+            if (failed) {
+                throw new IOException("The offline journal could not be written earlier");
+            }
+            long seq = ++lastSeq;
+            queued.add(EventLog.frame(seq, type, payload));
+            return seq;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits until a record is on disk, flushing the queued records if no other writer is.
+     *
+     * @param seq the record's sequence number
+     * @throws IOException if the flush failed
+     */
+    void awaitDurable(long seq) throws IOException {
+        lock.lock();
+        try {
+            while (durableSeq < seq) {
+                if (failed) {
+                    throw new IOException("The offline journal could not be written");
+                }
+                if (flushing) {
+                    flushEnded.awaitUninterruptibly();
+                    continue;
+                }
+                flushing = true;
+                List<byte[]> batch = queued;
+                queued = new ArrayList<>();
+                long batchSeq = lastSeq;
+                lock.unlock();
+                IOException failure = null;
+                try {
+                    write(batch);
+                } catch (IOException e) {
+                    failure = e;
+                } finally {
+                    lock.lock();
+                    flushing = false;
+                    if (failure == null) {
+                        durableSeq = batchSeq;
+                    } else {
+                        failed = true;
+                    }
+                    flushEnded.signalAll();
+                }
+                if (failure != null) {
+                    throw failure;
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Writes records to the end of the file and forces them to disk.
+     *
+     * @param batch the framed records
+     * @throws IOException if they cannot be written
+     */
+    private void write(List<byte[]> batch) throws IOException {
+        ByteBuffer[] buffers = new ByteBuffer[batch.size()];
+        long remaining = 0;
+        for (int i = 0; i < buffers.length; i++) {
+            buffers[i] = ByteBuffer.wrap(batch.get(i));
+            remaining += buffers[i].remaining();
+        }
+        while (remaining > 0) {
+            remaining -= channel.write(buffers);
+        }
+        channel.force(false);
+    }
+
+    /**
+     * Empties the file once every record in it has been replayed. Records still queued are dropped,
+     * so this must only be called when nothing is waiting on them.
+     *
+     * @throws IOException if the file cannot be truncated
+     */
+    void clear() throws IOException {
+        lock.lock();
+        try {
+            while (flushing) {
+                flushEnded.awaitUninterruptibly();
+            }
+            queued.clear();
+            durableSeq = lastSeq;
+            channel.truncate(0);
+            channel.position(0);
+            channel.force(true);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,1159 @@
+package project.DAO;
+
+import javafx.application.Platform;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import project.model.Appointment;
+import project.model.Customer;
+import project.model.TypeAndMonthReport;
+import project.utilities.AlertMessage;
+import project.utilities.AppConfig;
+import project.utilities.JDBC;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.ObjIntConsumer;
+import java.util.function.Predicate;
+
+/**
+ * Appointment and customer repositories over the database that keep working while it is unreachable.
+ *
+ * A write that fails because the database cannot be reached is saved to the {@link OfflineJournal} instead,
+ * and reported as successful. Until it reaches the database, reads show it on top of what the database
+ * returns: new appointments and customers appear with a negative, provisional ID. Once a write is
+ * journaled, later writes are journaled too, so they reach the database in the order they were made.
+ *
+ * Every offline.retryMillis (default 5000) ms the journaled writes are replayed in order, on a connection of
+ * their own so they never share a transaction with the application's other work. Provisional IDs are
+ * replaced by the IDs the database gives, in later writes too, and the {@link DataChangeBus} is told that the
+ * record with the provisional ID was deleted once the saved one has been inserted. Each write is checked as it would have been
+ * online: bookings and moved appointments must not overlap, and updates must not overwrite changes other
+ * users made meanwhile. Writes that fail these checks, or that the database refuses, e.g. for a constraint, are
+ * dropped, listed in offline.rejectedLog (default offline_rejected.txt) and reported to the user. Writes to
+ * records whose creation was dropped are dropped too. A write that fails on a deadlock, a lock wait timeout or a
+ * query timeout stays queued and is tried again with the next replay.
+ *
+ * Each write is marked in the journal as started before it is sent and as replayed once the database has it.
+ * If the application stops between the two, or the connection is lost while the write is sent, the write is
+ * replayed again, but first the database is checked for it: a customer or appointment with the same fields, or a record whose update
+ * conflict is with the very values being written, is taken to be the earlier attempt and not written twice.
+ *
+ * @author Teksong Eap
+ */
+final class OfflineRepositories implements AppointmentRepository, CustomerRepository {
+
+    /** Milliseconds between attempts to replay the journal */
+    private static final long RETRY_MILLIS = AppConfig.getLong("offline.retryMillis", 5000);
+
+    /** File listing the writes dropped on replay */
+    private static final Path REJECTED_LOG = Path.of(AppConfig.getString("offline.rejectedLog", "offline_rejected.txt"));
+
+    /** Record type of a new appointment, replayed as a booking */
+    private static final byte BOOK_APPOINTMENT = 1;
+
+    /** Record type of an appointment update */
+    private static final byte UPDATE_APPOINTMENT = 2;
+
+    /** Record type of an appointment deletion */
+    private static final byte DELETE_APPOINTMENT = 3;
+
+    /** Record type of a new customer */
+    private static final byte ADD_CUSTOMER = 4;
+
+    /** Record type of a customer update */
+    private static final byte UPDATE_CUSTOMER = 5;
+
+    /** Record type of a customer deletion */
+    private static final byte DELETE_CUSTOMER = 6;
+
+    /** Record type marking a write as replayed, with the ID and version the database gave it */
+    private static final byte REPLAYED = 7;
+
+    /** Record type marking a write as dropped on replay */
+    private static final byte REJECTED = 8;
+
+    /** Record type marking a write as about to be sent to the database */
+    private static final byte REPLAYING = 9;
+
+    /** The database repositories */
+    private final JdbcRepositories database;
+
+    /** The journal; set once it is open */
+    private OfflineJournal journal;
+
+    /** Journaled writes not yet replayed, oldest first; guarded by this */
+    private final Deque<PendingWrite> pending = new ArrayDeque<>();
+
+    /** Next provisional ID, counting down from -1; guarded by this */
+    private int nextProvisionalId = -1;
+
+    /** Database IDs of appointments created offline, by provisional ID; used by the replaying thread */
+    private final Map<Integer, Integer> appointmentIds = new HashMap<>();
+
+    /** Database IDs of customers created offline, by provisional ID; used by the replaying thread */
+    private final Map<Integer, Integer> customerIds = new HashMap<>();
+
+    /** Per appointment ID, the last provisional version replayed and the version the database gave instead */
+    private final Map<Integer, LocalDateTime[]> appointmentVersions = new HashMap<>();
+
+    /** Per customer ID, the last provisional version replayed and the version the database gave instead */
+    private final Map<Integer, LocalDateTime[]> customerVersions = new HashMap<>();
+
+    /** The connection writes are replayed on, opened when there is something to replay; used by the replaying thread */
+    private Connection replayConnection;
+
+    /** Held while replaying, so only one thread replays */
+    private final Object replayLock = new Object();
+
+    /**
+     * Creates the repositories.
+     *
+     * @param database the database repositories
+     */
+    private OfflineRepositories(JdbcRepositories database) {
+        this.database = database;
+    }
+
+    /**
+     * Opens the journal and starts replaying it in the background.
+     *
+     * @param database the database repositories
+     * @param file the journal file
+     * @return the repositories
+     * @throws IOException if the journal cannot be opened
+     */
+    static OfflineRepositories open(JdbcRepositories database, Path file) throws IOException {
+        OfflineRepositories repositories = new OfflineRepositories(database);
+        Map<Long, PendingWrite> writes = new LinkedHashMap<>();
+        repositories.journal = OfflineJournal.open(file, payload -> repositories.load(payload, writes));
+        repositories.pending.addAll(writes.values());
+        if (!writes.isEmpty()) {
+            System.out.println(writes.size() + " offline changes are waiting to be saved");
+        }
+        ScheduledExecutorService replayer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "offline-replay");
+            thread.setDaemon(true);
+            return thread;
+        });
+        replayer.scheduleWithFixedDelay(repositories::replayPending, RETRY_MILLIS, RETRY_MILLIS, TimeUnit.MILLISECONDS);
+        return repositories;
+    }
+
+    // ---------------------------------------------------------------- appointments
+
+    @Override
+    public int getUnusedAppointmentId() throws SQLException {
+        if (!isOffline()) {
+            try {
+                return database.getUnusedAppointmentId();
+            } catch (SQLException e) {
+                rethrowUnlessOffline(e);
+            }
+        }
+        return provisionalId();
+    }
+
+    @Override
+    public boolean addAppointmentToDB(Appointment appointment) throws SQLException {
+        if (!isOffline()) {
+            try {
+                return database.addAppointmentToDB(appointment);
+            } catch (SQLException e) {
+                rethrowUnlessOffline(e);
+            }
+        }
+        queueBooking(appointment);
+        return true;
+    }
+
+    @Override
+    public List<Appointment> bookAppointments(List<Appointment> appointments) throws SQLException {
+        if (!isOffline()) {
+            try {
+                return database.bookAppointments(appointments);
+            } catch (SQLException e) {
+                rethrowUnlessOffline(e);
+            }
+        }
+        List<Appointment> overlapping = new ArrayList<>();
+        for (Appointment appointment : appointments) {
+            if (!pendingOverlaps(appointment).isEmpty()) {
+                overlapping.add(appointment);
+            }
+        }
+        if (overlapping.isEmpty()) {
+            for (Appointment appointment : appointments) {
+                queueBooking(appointment);
+            }
+        }
+        return overlapping;
+    }
+
+    @Override
+    public BookingResult bookAppointment(Appointment appointment) throws SQLException {
+        if (!isOffline()) {
+            try {
+                return database.bookAppointment(appointment);
+            } catch (SQLException e) {
+                rethrowUnlessOffline(e);
+            }
+        }
+        List<Appointment> conflicts = pendingOverlaps(appointment);
+        if (!conflicts.isEmpty()) {
+            return BookingResult.conflicted(conflicts);
+        }
+        queueBooking(appointment);
+        return BookingResult.booked(appointment);
+    }
+
+    @Override
+    public boolean updateAppointmentInDB(Appointment appointment) throws SQLException {
+        if (!isOffline()) {
+            try {
+                return database.updateAppointmentInDB(appointment);
+            } catch (SQLException e) {
+                rethrowUnlessOffline(e);
+            }
+        }
+        LocalDateTime pendingVersion = pendingAppointmentVersion(appointment.getAppointmentId());
+        if (pendingVersion != null && !pendingVersion.equals(appointment.getLastUpdate())) {
+            throw new UpdateConflictException(DataChangeEvent.Entity.APPOINTMENT, appointment.getAppointmentId());
+        }
+        LocalDateTime newVersion = AppointmentDAO.nextVersion(appointment.getLastUpdate());
+        queue(new PendingWrite(UPDATE_APPOINTMENT, new Appointment(appointment), null, 0, newVersion));
+        appointment.setLastUpdate(newVersion);
+        DataChangeBus.appointmentChanged(DataChangeEvent.Kind.UPDATED, appointment.getAppointmentId(), appointment);
+        return true;
+    }
+
+    @Override
+    public boolean deleteAppointmentFromDB(int selectedAppointmentId) throws SQLException {
+        if (!isOffline()) {
+            try {
+                return database.deleteAppointmentFromDB(selectedAppointmentId);
+            } catch (SQLException e) {
+                rethrowUnlessOffline(e);
+            }
+        }
+        queue(new PendingWrite(DELETE_APPOINTMENT, null, null, selectedAppointmentId, null));
+        DataChangeBus.appointmentChanged(DataChangeEvent.Kind.DELETED, selectedAppointmentId, null);
+        return true;
+    }
+
+    @Override
+    public boolean checkForOverlap(Appointment newAppointment) throws SQLException {
+        boolean overlapsStored = false;
+        if (!isOffline()) {
+            try {
+                overlapsStored = database.checkForOverlap(newAppointment);
+            } catch (SQLException e) {
+                rethrowUnlessOffline(e);
+            }
+        }
+        return overlapsStored || !pendingOverlaps(newAppointment).isEmpty();
+    }
+
+    @Override
+    public List<Appointment> findOverlaps(List<Appointment> candidates) throws SQLException {
+        List<Appointment> overlapping = new ArrayList<>();
+        if (!isOffline()) {
+            try {
+                overlapping.addAll(database.findOverlaps(candidates));
+            } catch (SQLException e) {
+                rethrowUnlessOffline(e);
+            }
+        }
+        for (Appointment candidate : candidates) {
+            if (!overlapping.contains(candidate) && !pendingOverlaps(candidate).isEmpty()) {
+                overlapping.add(candidate);
+            }
+        }
+        return overlapping;
+    }
+
+    @Override
+    public Appointment getAppointmentById(int appointmentId) throws SQLException {
+        Appointment stored = null;
+        if (appointmentId > 0) {
+            try {
+                stored = database.getAppointmentById(appointmentId);
+            } catch (SQLException e) {
+                rethrowUnlessOffline(e);
+            }
+        }
+        ObservableList<Appointment> shown = overlayAppointments(
+                stored == null ? FXCollections.observableArrayList() : FXCollections.observableArrayList(stored),
+                appointment -> appointment.getAppointmentId() == appointmentId);
+        return shown.isEmpty() ? null : shown.get(0);
+    }
+
+    @Override
+    public ObservableList<Appointment> getAllAppointments() {
+        return overlayAppointments(database.getAllAppointments(), appointment -> true);
+    }
+
+    @Override
+    public void forEachAppointment(Consumer<Appointment> action) throws SQLException {
+        if (!isOffline()) {
+            database.forEachAppointment(action);
+            return;
+        }
+        // The pending writes can only be laid over a complete list
+        getAllAppointments().stream()
+                .sorted(Comparator.comparingInt(Appointment::getAppointmentId))
+                .forEach(action);
+    }
+
+    @Override
+    public ObservableList<Appointment> getAllAppointmentsThisMonth() {
+        YearMonth currentYearMonth = YearMonth.now();
+        return overlayAppointments(database.getAllAppointmentsThisMonth(),
+                startsOn(currentYearMonth.atDay(1), currentYearMonth.atEndOfMonth()));
+    }
+
+    @Override
+    public ObservableList<Appointment> getAllAppointmentsThisWeek() {
+        LocalDate today = LocalDate.now();
+        return overlayAppointments(database.getAllAppointmentsThisWeek(),
+                startsOn(today.with(TemporalAdjusters.previousOrSame(DayOfWeek.SUNDAY)),
+                        today.with(TemporalAdjusters.nextOrSame(DayOfWeek.SATURDAY))));
+    }
+
+    @Override
+    public ObservableList<Appointment> getAppointmentsByContact(int selectedContactId) {
+        return overlayAppointments(database.getAppointmentsByContact(selectedContactId),
+                appointment -> appointment.getContactId() == selectedContactId);
+    }
+
+    @Override
+    public ObservableList<Appointment> getAppointmentsForUserInRange(int userId, LocalDateTime from, LocalDateTime to) {
+        return overlayAppointments(database.getAppointmentsForUserInRange(userId, from, to),
+                appointment -> appointment.getUserId() == userId
+                        && !appointment.getStartDateTime().isBefore(from)
+                        && appointment.getStartDateTime().isBefore(to));
+    }
+
+    @Override
+    public ObservableList<Appointment> getAppointmentsStartingIn(LocalDateTime from, LocalDateTime to) throws SQLException {
+        return overlayAppointments(database.getAppointmentsStartingIn(from, to),
+                appointment -> !appointment.getStartDateTime().isBefore(from)
+                        && appointment.getStartDateTime().isBefore(to));
+    }
+
+    @Override
+    public void forEachAppointmentStart(LocalDateTime from, LocalDateTime to, ObjIntConsumer<LocalDateTime> action)
+            throws SQLException {
+        if (!isOffline()) {
+            database.forEachAppointmentStart(from, to, action);
+            return;
+        }
+        // The pending writes can only be laid over whole appointments
+        getAppointmentsStartingIn(from, to)
+                .forEach(appointment -> action.accept(appointment.getStartDateTime(), appointment.getAppointmentId()));
+    }
+
+    @Override
+    public ObservableList<Appointment> findAppointments(AppointmentQuery query) throws SQLException {
+        if (!isOffline()) {
+            return database.findAppointments(query);
+        }
+        // Pending writes can add or remove results, so the order and limit are applied after laying them over
+        return query.select(overlayAppointments(database.findAppointments(query.withoutLimit()), query::matches));
+    }
+
+    @Override
+    public ObservableList<Appointment> getAppointmentsInRange(LocalDateTime from, LocalDateTime to) {
+        return overlayAppointments(database.getAppointmentsInRange(from, to),
+                appointment -> appointment.getStartDateTime().isBefore(to) && appointment.getEndDateTime().isAfter(from));
+    }
+
+    @Override
+    public ObservableList<TypeAndMonthReport> getAppointmentCountByTypeAndMonth() {
+        return database.getAppointmentCountByTypeAndMonth();
+    }
+
+    @Override
+    public Appointment getUpcomingAppointment(int userId) throws SQLException {
+        return database.getUpcomingAppointment(userId);
+    }
+
+    // ---------------------------------------------------------------- customers
+
+    @Override
+    public int getUnusedCustomerId() throws SQLException {
+        if (!isOffline()) {
+            try {
+                return database.getUnusedCustomerId();
+            } catch (SQLException e) {
+                rethrowUnlessOffline(e);
+            }
+        }
+        return provisionalId();
+    }
+
+    @Override
+    public boolean addCustomerToDB(Customer customer) throws SQLException {
+        if (!isOffline() && customer.getCustomerId() > 0) {
+            try {
+                return database.addCustomerToDB(customer);
+            } catch (SQLException e) {
+                rethrowUnlessOffline(e);
+            }
+        }
+        customer.setLastUpdate(AppointmentDAO.nextVersion(null));
+        queue(new PendingWrite(ADD_CUSTOMER, null, new Customer(customer), 0, null));
+        DataChangeBus.customerChanged(DataChangeEvent.Kind.INSERTED, customer.getCustomerId());
+        return true;
+    }
+
+    @Override
+    public boolean updateCustomerInDB(Customer customer) throws SQLException {
+        if (!isOffline()) {
+            try {
+                return database.updateCustomerInDB(customer);
+            } catch (SQLException e) {
+                rethrowUnlessOffline(e);
+            }
+        }
+        LocalDateTime newVersion = AppointmentDAO.nextVersion(customer.getLastUpdate());
+        queue(new PendingWrite(UPDATE_CUSTOMER, null, new Customer(customer), 0, newVersion));
+        customer.setLastUpdate(newVersion);
+        DataChangeBus.customerChanged(DataChangeEvent.Kind.UPDATED, customer.getCustomerId());
+        return true;
+    }
+
+    @Override
+    public Customer getCustomerById(int customerId) throws SQLException {
+        Customer stored = null;
+        if (customerId > 0) {
+            try {
+                stored = database.getCustomerById(customerId);
+            } catch (SQLException e) {
+                rethrowUnlessOffline(e);
+            }
+        }
+        ObservableList<Customer> shown = overlayCustomers(
+                stored == null ? FXCollections.observableArrayList() : FXCollections.observableArrayList(stored),
+                customer -> customer.getCustomerId() == customerId);
+        return shown.isEmpty() ? null : shown.get(0);
+    }
+
+    @Override
+    public ObservableList<Customer> getAllCustomers() {
+        return overlayCustomers(database.getAllCustomers(), customer -> true);
+    }
+
+    @Override
+    public ObservableList<Customer> getCustomersByCountry(int selectedCountryId) {
+        return overlayCustomers(database.getCustomersByCountry(selectedCountryId),
+                customer -> customer.getCountryId() == selectedCountryId);
+    }
+
+    @Override
+    public boolean deleteCustomerFromDB(int selectedCustomerId) throws SQLException {
+        if (!isOffline()) {
+            try {
+                return database.deleteCustomerFromDB(selectedCustomerId);
+            } catch (SQLException e) {
+                rethrowUnlessOffline(e);
+            }
+        }
+        queue(new PendingWrite(DELETE_CUSTOMER, null, null, selectedCustomerId, null));
+        DataChangeBus.customerChanged(DataChangeEvent.Kind.DELETED, selectedCustomerId);
+        return true;
+    }
+
+    // ---------------------------------------------------------------- journaling
+
+    /**
+     * Returns whether writes are waiting in the journal, so new writes must queue behind them.
+     *
+     * @return true while there are journaled writes
+     */
+    private synchronized boolean isOffline() {
+        return !pending.isEmpty();
+    }
+
+    /**
+     * Rethrows an error unless it means the database could not be reached.
+     *
+     * @param e the error
+     * @throws SQLException the error, if the database was reached
+     */
+    private static void rethrowUnlessOffline(SQLException e) throws SQLException {
+        if (!JDBC.isConnectionFailure(e)) {
+            throw e;
+        }
+    }
+
+    /**
+     * Returns a new provisional ID, used until the database gives the record its own.
+     *
+     * @return a negative ID
+     */
+    private synchronized int provisionalId() {
+        return nextProvisionalId--;
+    }
+
+    /**
+     * Journals a new appointment, giving it a provisional ID and version.
+     *
+     * @param appointment the appointment
+     * @throws SQLException if the journal cannot be written
+     */
+    private void queueBooking(Appointment appointment) throws SQLException {
+        appointment.setAppointmentId(provisionalId());
+        appointment.setLastUpdate(AppointmentDAO.nextVersion(null));
+        queue(new PendingWrite(BOOK_APPOINTMENT, new Appointment(appointment), null, 0, null));
+        DataChangeBus.appointmentChanged(DataChangeEvent.Kind.INSERTED, appointment.getAppointmentId(), appointment);
+    }
+
+    /**
+     * Journals a write and waits until it is on disk. Writes are queued in the order of the pending list,
+     * and group-committed with other threads' writes.
+     *
+     * @param write the write
+     * @throws SQLException if the journal cannot be written; the write is then forgotten
+     */
+    private void queue(PendingWrite write) throws SQLException {
+        long seq;
+        try {
+            synchronized (this) {
+                seq = journal.enqueue(write.type, write::writeTo);
+                write.seq = seq;
+                pending.addLast(write);
+            }
+            journal.awaitDurable(seq);
+        } catch (IOException e) {
+            synchronized (this) {
+                pending.remove(write);
+            }
+            throw new SQLException("Could not save the change while offline", "58030", e);
+        }
+    }
+
+    /**
+     * Returns a copy of the pending writes.
+     *
+     * @return the pending writes, oldest first
+     */
+    private synchronized List<PendingWrite> pendingWrites() {
+        return new ArrayList<>(pending);
+    }
+
+    /**
+     * Returns the version an appointment has after the pending writes, if any of them saves it.
+     *
+     * @param appointmentId the appointment ID
+     * @return its pending version, or null if no pending write saves it
+     */
+    private LocalDateTime pendingAppointmentVersion(int appointmentId) {
+        LocalDateTime version = null;
+        for (PendingWrite write : pendingWrites()) {
+            if (write.appointment != null && write.appointment.getAppointmentId() == appointmentId) {
+                version = write.shownAppointment().getLastUpdate();
+            }
+        }
+        return version;
+    }
+
+    /**
+     * Finds the appointments saved by pending writes that overlap an appointment of the same customer.
+     *
+     * @param appointment the appointment
+     * @return the overlapping appointments
+     */
+    private List<Appointment> pendingOverlaps(Appointment appointment) {
+        List<Appointment> overlapping = new ArrayList<>();
+        for (Appointment other : overlayAppointments(FXCollections.observableArrayList(), other -> true)) {
+            if (other.getCustomerId() == appointment.getCustomerId()
+                    && other.getAppointmentId() != appointment.getAppointmentId()
+                    && other.getStartDateTime().isBefore(appointment.getEndDateTime())
+                    && other.getEndDateTime().isAfter(appointment.getStartDateTime())) {
+                overlapping.add(other);
+            }
+        }
+        return overlapping;
+    }
+
+    /**
+     * Applies the pending writes to appointments read from the database.
+     *
+     * @param stored the appointments read
+     * @param filter the condition of the query, which pending appointments must meet to be shown
+     * @return the appointments as they will be once the pending writes are saved
+     */
+    private ObservableList<Appointment> overlayAppointments(ObservableList<Appointment> stored,
+                                                            Predicate<Appointment> filter) {
+        List<PendingWrite> writes = pendingWrites();
+        if (writes.isEmpty()) {
+            return stored;
+        }
+        Map<Integer, Appointment> byId = new LinkedHashMap<>();
+        stored.forEach(appointment -> byId.put(appointment.getAppointmentId(), appointment));
+        for (PendingWrite write : writes) {
+            switch (write.type) {
+                case BOOK_APPOINTMENT:
+                case UPDATE_APPOINTMENT:
+                    Appointment shown = write.shownAppointment();
+                    if (filter.test(shown)) {
+                        byId.put(shown.getAppointmentId(), shown);
+                    } else {
+                        byId.remove(shown.getAppointmentId());
+                    }
+                    break;
+                case DELETE_APPOINTMENT:
+                    byId.remove(write.id);
+                    break;
+                case DELETE_CUSTOMER:
+                    byId.values().removeIf(appointment -> appointment.getCustomerId() == write.id);
+                    break;
+                default:
+                    break;
+            }
+        }
+        return FXCollections.observableArrayList(byId.values());
+    }
+
+    /**
+     * Applies the pending writes to customers read from the database.
+     *
+     * @param stored the customers read
+     * @param filter the condition of the query, which pending customers must meet to be shown
+     * @return the customers as they will be once the pending writes are saved
+     */
+    private ObservableList<Customer> overlayCustomers(ObservableList<Customer> stored, Predicate<Customer> filter) {
+        List<PendingWrite> writes = pendingWrites();
+        if (writes.isEmpty()) {
+            return stored;
+        }
+        Map<Integer, Customer> byId = new LinkedHashMap<>();
+        stored.forEach(customer -> byId.put(customer.getCustomerId(), customer));
+        for (PendingWrite write : writes) {
+            switch (write.type) {
+                case ADD_CUSTOMER:
+                case UPDATE_CUSTOMER:
+                    Customer shown = write.shownCustomer();
+                    if (filter.test(shown)) {
+                        byId.put(shown.getCustomerId(), shown);
+                    } else {
+                        byId.remove(shown.getCustomerId());
+                    }
+                    break;
+                case DELETE_CUSTOMER:
+                    byId.remove(write.id);
+                    break;
+                default:
+                    break;
+            }
+        }
+        return FXCollections.observableArrayList(byId.values());
+    }
+
+    /**
+     * Returns a filter for appointments starting on the given local days.
+     *
+     * @param firstDay the first day
+     * @param lastDay the last day, inclusive
+     * @return the filter
+     */
+    private static Predicate<Appointment> startsOn(LocalDate firstDay, LocalDate lastDay) {
+        return appointment -> !appointment.getStartDate().isBefore(firstDay) && !appointment.getStartDate().isAfter(lastDay);
+    }
+
+    // ---------------------------------------------------------------- replay
+
+    /**
+     * Replays the pending writes in order until they are all saved or the database cannot be reached,
+     * then reports the writes that were dropped.
+     */
+    private void replayPending() {
+        synchronized (replayLock) {
+            List<String> rejections = new ArrayList<>();
+            try {
+                while (true) {
+                    PendingWrite next;
+                    synchronized (this) {
+                        if (pending.isEmpty()) {
+                            journal.clear();
+                            break;
+                        }
+                        next = pending.peekFirst();
+                    }
+                    if (!next.marked) {
+                        journal.append(REPLAYING, out -> out.writeLong(next.seq));
+                        next.marked = true;
+                    }
+                    String rejection;
+                    try {
+                        rejection = replay(next);
+                    } catch (SQLException e) {
+                        if (JDBC.isTransientFailure(e)) {
+                            // The connection may have been lost, or the statement timed out, after the commit
+                            next.attempted = true;
+                            break;  // still offline, or a lock or timeout that may clear up; try again later
+                        }
+                        rejection = e.getMessage();
+                    }
+                    if (rejection == null) {
+                        journal.append(REPLAYED, out -> {
+                            out.writeLong(next.seq);
+                            out.writeInt(next.savedId);
+                            EventLog.writeVersion(out, next.savedVersion);
+                        });
+                    } else {
+                        journal.append(REJECTED, out -> out.writeLong(next.seq));
+                        rejections.add(next.describe() + ": " + rejection);
+                    }
+                    synchronized (this) {
+                        pending.removeFirst();
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                e.printStackTrace();
+            }
+            if (!rejections.isEmpty()) {
+                reportRejections(rejections);
+            }
+        }
+    }
+
+    /**
+     * Saves one journaled write to the database, mapping provisional IDs and versions to the database's.
+     *
+     * @param write the write; receives the ID and version the database gave the record
+     * @return null if it was saved, otherwise why it was dropped
+     * @throws SQLException if the database cannot be reached or fails
+     */
+    private String replay(PendingWrite write) throws SQLException {
+        switch (write.type) {
+            case BOOK_APPOINTMENT: {
+                Appointment appointment = new Appointment(write.appointment);
+                appointment.setCustomerId(customerIds.getOrDefault(appointment.getCustomerId(), appointment.getCustomerId()));
+                if (appointment.getCustomerId() < 0) {
+                    return "its customer was not saved";
+                }
+                BookingResult result = AppointmentDAO.bookAppointment(replayConnection(), appointment);
+                if (result.isBooked()) {
+                    write.savedId = appointment.getAppointmentId();
+                } else {
+                    // An earlier attempt that was saved shows up as an identical appointment it overlaps
+                    Appointment saved = write.attempted ? result.getConflicts().stream()
+                            .filter(conflict -> sameFields(conflict, appointment)).findFirst().orElse(null) : null;
+                    if (saved == null) {
+                        return "it overlaps appointment " + result.getConflicts().get(0).getAppointmentId();
+                    }
+                    write.savedId = saved.getAppointmentId();
+                    DataChangeBus.appointmentChanged(DataChangeEvent.Kind.INSERTED, saved.getAppointmentId(), saved);
+                }
+                write.savedVersion = AppointmentDAO.getAppointmentById(replayConnection(), write.savedId).getLastUpdate();
+                // The provisional copy is gone from the reads now that the saved one is there
+                DataChangeBus.appointmentChanged(DataChangeEvent.Kind.DELETED, write.appointment.getAppointmentId(), null);
+                break;
+            }
+            case UPDATE_APPOINTMENT: {
+                Appointment appointment = new Appointment(write.appointment);
+                int appointmentId = appointmentIds.getOrDefault(appointment.getAppointmentId(), appointment.getAppointmentId());
+                if (appointmentId < 0) {
+                    return "the appointment was not saved";
+                }
+                appointment.setAppointmentId(appointmentId);
+                appointment.setCustomerId(customerIds.getOrDefault(appointment.getCustomerId(), appointment.getCustomerId()));
+                appointment.setLastUpdate(savedVersion(appointmentVersions, appointmentId, appointment.getLastUpdate()));
+                if (AppointmentDAO.checkForOverlap(replayConnection(), appointment)) {
+                    return "it would overlap another appointment";
+                }
+                try {
+                    AppointmentDAO.updateAppointmentInDB(replayConnection(), appointment);
+                    write.savedVersion = appointment.getLastUpdate();
+                } catch (UpdateConflictException e) {
+                    Appointment current = AppointmentDAO.getAppointmentById(replayConnection(), appointmentId);
+                    if (!write.attempted || current == null || !sameFields(current, appointment)) {
+                        return "another user changed or deleted the appointment";
+                    }
+                    write.savedVersion = current.getLastUpdate();  // saved by an earlier attempt
+                }
+                write.savedId = appointmentId;
+                break;
+            }
+            case DELETE_APPOINTMENT:
+                write.savedId = appointmentIds.getOrDefault(write.id, write.id);
+                if (write.savedId > 0) {
+                    AppointmentDAO.deleteAppointmentFromDB(replayConnection(), write.savedId);
+                }
+                break;
+            case ADD_CUSTOMER: {
+                Customer customer = new Customer(write.customer);
+                int savedId = write.attempted ? CustomerDAO.findMatchingCustomerId(replayConnection(), customer) : 0;
+                if (savedId == 0) {
+                    customer.setCustomerId(CustomerDAO.getUnusedCustomerId(replayConnection()));
+                    CustomerDAO.addCustomerToDB(replayConnection(), customer);
+                    savedId = customer.getCustomerId();
+                } else {
+                    DataChangeBus.customerChanged(DataChangeEvent.Kind.INSERTED, savedId);
+                }
+                write.savedId = savedId;
+                write.savedVersion = CustomerDAO.getCustomerById(replayConnection(), write.savedId).getLastUpdate();
+                DataChangeBus.customerChanged(DataChangeEvent.Kind.DELETED, write.customer.getCustomerId());
+                break;
+            }
+            case UPDATE_CUSTOMER: {
+                Customer customer = new Customer(write.customer);
+                int customerId = customerIds.getOrDefault(customer.getCustomerId(), customer.getCustomerId());
+                if (customerId < 0) {
+                    return "the customer was not saved";
+                }
+                customer.setCustomerId(customerId);
+                customer.setLastUpdate(savedVersion(customerVersions, customerId, customer.getLastUpdate()));
+                try {
+                    CustomerDAO.updateCustomerInDB(replayConnection(), customer);
+                    write.savedVersion = customer.getLastUpdate();
+                } catch (UpdateConflictException e) {
+                    Customer current = CustomerDAO.getCustomerById(replayConnection(), customerId);
+                    if (!write.attempted || current == null || !sameFields(current, customer)) {
+                        return "another user changed or deleted the customer";
+                    }
+                    write.savedVersion = current.getLastUpdate();  // saved by an earlier attempt
+                }
+                write.savedId = customerId;
+                break;
+            }
+            case DELETE_CUSTOMER:
+                write.savedId = customerIds.getOrDefault(write.id, write.id);
+                if (write.savedId > 0) {
+                    CustomerDAO.deleteCustomerFromDB(replayConnection(), write.savedId);
+                }
+                break;
+            default:
+                return "unknown change";
+        }
+        recordSaved(write);
+        return null;
+    }
+
+    /**
+     * Returns the connection writes are replayed on, opening it the first time. It reconnects by itself
+     * after the database comes back.
+     *
+     * @return the replay connection
+     * @throws SQLException if the database cannot be reached
+     */
+    private Connection replayConnection() throws SQLException {
+        if (replayConnection == null) {
+            replayConnection = JDBC.newConnection(new Properties());
+        }
+        return replayConnection;
+    }
+
+    /**
+     * Remembers the ID and version the database gave a replayed write, for the writes after it.
+     *
+     * @param write the replayed write, with its saved ID and version
+     */
+    private void recordSaved(PendingWrite write) {
+        switch (write.type) {
+            case BOOK_APPOINTMENT:
+                appointmentIds.put(write.appointment.getAppointmentId(), write.savedId);
+                appointmentVersions.put(write.savedId, new LocalDateTime[]{write.appointment.getLastUpdate(), write.savedVersion});
+                break;
+            case UPDATE_APPOINTMENT:
+                appointmentVersions.put(write.savedId, new LocalDateTime[]{write.newVersion, write.savedVersion});
+                break;
+            case ADD_CUSTOMER:
+                customerIds.put(write.customer.getCustomerId(), write.savedId);
+                customerVersions.put(write.savedId, new LocalDateTime[]{write.customer.getLastUpdate(), write.savedVersion});
+                break;
+            case UPDATE_CUSTOMER:
+                customerVersions.put(write.savedId, new LocalDateTime[]{write.newVersion, write.savedVersion});
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Returns whether two appointments hold the same values in every field the user edits.
+     *
+     * @param a an appointment
+     * @param b another appointment
+     * @return true if the fields are equal
+     */
+    private static boolean sameFields(Appointment a, Appointment b) {
+        return Objects.equals(a.getTitle(), b.getTitle()) && Objects.equals(a.getDescription(), b.getDescription())
+                && Objects.equals(a.getLocation(), b.getLocation()) && Objects.equals(a.getType(), b.getType())
+                && a.getStartDateTime().equals(b.getStartDateTime()) && a.getEndDateTime().equals(b.getEndDateTime())
+                && a.getContactId() == b.getContactId() && a.getCustomerId() == b.getCustomerId()
+                && a.getUserId() == b.getUserId();
+    }
+
+    /**
+     * Returns whether two customers hold the same values in every field the user edits.
+     *
+     * @param a a customer
+     * @param b another customer
+     * @return true if the fields are equal
+     */
+    private static boolean sameFields(Customer a, Customer b) {
+        return Objects.equals(a.getCustomerName(), b.getCustomerName()) && Objects.equals(a.getAddress(), b.getAddress())
+                && Objects.equals(a.getPostalCode(), b.getPostalCode()) && Objects.equals(a.getPhone(), b.getPhone())
+                && a.getDivisionId() == b.getDivisionId();
+    }
+
+    /**
+     * Maps the version an offline update was based on to the database's, if it was given by an earlier
+     * offline write that has since been saved.
+     *
+     * @param versions the last provisional and saved version per record ID
+     * @param id the record ID
+     * @param version the version the update was based on
+     * @return the version to check against in the database
+     */
+    private static LocalDateTime savedVersion(Map<Integer, LocalDateTime[]> versions, int id, LocalDateTime version) {
+        LocalDateTime[] saved = versions.get(id);
+        return saved != null && Objects.equals(saved[0], version) ? saved[1] : version;
+    }
+
+    /**
+     * Lists dropped writes in the rejected log and tells the user.
+     *
+     * @param rejections a description of each dropped write and why
+     */
+    private static void reportRejections(List<String> rejections) {
+        System.out.println(rejections.size() + " offline changes could not be saved; see " + REJECTED_LOG);
+        List<String> lines = new ArrayList<>();
+        rejections.forEach(rejection -> lines.add(LocalDateTime.now() + " " + rejection));
+        try {
+            Files.write(REJECTED_LOG, lines, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        try {
+            Platform.runLater(() -> AlertMessage.showAlert(23));
+        } catch (IllegalStateException e) {
+            // No user interface is running
+        }
+    }
+
+    // ---------------------------------------------------------------- journal records
+
+    /**
+     * Loads a journal record: a write becomes pending, and a marker settles the write it refers to.
+     *
+     * @param payload the record, positioned at its sequence number
+     * @param writes the writes loaded so far, by sequence number
+     */
+    private void load(ByteBuffer payload, Map<Long, PendingWrite> writes) {
+        long seq = payload.getLong();
+        byte type = payload.get();
+        PendingWrite write;
+        switch (type) {
+            case BOOK_APPOINTMENT:
+                write = new PendingWrite(type, EventLog.readAppointment(payload), null, 0, null);
+                nextProvisionalId = Math.min(nextProvisionalId, write.appointment.getAppointmentId() - 1);
+                break;
+            case UPDATE_APPOINTMENT:
+                Appointment appointment = EventLog.readAppointment(payload);
+                write = new PendingWrite(type, appointment, null, 0, EventLog.readVersion(payload));
+                break;
+            case ADD_CUSTOMER:
+                write = new PendingWrite(type, null, readCustomer(payload), 0, null);
+                nextProvisionalId = Math.min(nextProvisionalId, write.customer.getCustomerId() - 1);
+                break;
+            case UPDATE_CUSTOMER:
+                Customer customer = readCustomer(payload);
+                write = new PendingWrite(type, null, customer, 0, EventLog.readVersion(payload));
+                break;
+            case DELETE_APPOINTMENT:
+            case DELETE_CUSTOMER:
+                write = new PendingWrite(type, null, null, payload.getInt(), null);
+                break;
+            case REPLAYED:
+                PendingWrite saved = writes.remove(payload.getLong());
+                if (saved != null) {
+                    saved.savedId = payload.getInt();
+                    saved.savedVersion = EventLog.readVersion(payload);
+                    recordSaved(saved);
+                }
+                return;
+            case REJECTED:
+                writes.remove(payload.getLong());
+                return;
+            case REPLAYING:
+                PendingWrite attempted = writes.get(payload.getLong());
+                if (attempted != null) {
+                    attempted.marked = true;
+                    attempted.attempted = true;
+                }
+                return;
+            default:
+                System.out.println("Skipping unknown offline journal record type " + type);
+                return;
+        }
+        write.seq = seq;
+        writes.put(seq, write);
+    }
+
+    /**
+     * Reads a customer with its country and division names.
+     *
+     * @param in the payload
+     * @return the customer
+     */
+    private static Customer readCustomer(ByteBuffer in) {
+        Customer customer = EventLog.readCustomer(in);
+        customer.setCountryId(in.getInt());
+        customer.setCountryName(EventLog.readString(in));
+        customer.setDivisionName(EventLog.readString(in));
+        return customer;
+    }
+
+    /**
+     * A journaled write waiting to be saved.
+     */
+    private static final class PendingWrite {
+
+        /** The record type */
+        final byte type;
+
+        /** The appointment as written, with the version the change was based on; null for other types */
+        final Appointment appointment;
+
+        /** The customer as written, with the version the change was based on; null for other types */
+        final Customer customer;
+
+        /** The ID of the deleted record; 0 for other types */
+        final int id;
+
+        /** The provisional version an update gave the record; null for other types */
+        final LocalDateTime newVersion;
+
+        /** Sequence number of the journal record */
+        long seq;
+
+        /** Whether the journal marks the write as started */
+        boolean marked;
+
+        /** Whether the write may have been sent to the database before, by a replay that did not finish */
+        boolean attempted;
+
+        /** The ID the database gave the record, once replayed */
+        int savedId;
+
+        /** The version the database gave the record, once replayed */
+        LocalDateTime savedVersion;
+
+        /**
+         * Creates a pending write.
+         *
+         * @param type the record type
+         * @param appointment the appointment, or null
+         * @param customer the customer, or null
+         * @param id the ID of the deleted record, or 0
+         * @param newVersion the provisional version an update gives the record, or null
+         */
+        PendingWrite(byte type, Appointment appointment, Customer customer, int id, LocalDateTime newVersion) {
+            this.type = type;
+            this.appointment = appointment;
+            this.customer = customer;
+            this.id = id;
+            this.newVersion = newVersion;
+        }
+
+        /**
+         * Writes the journal record's fields.
+         *
+         * @param out the stream
+         * @throws IOException never, as the stream writes to memory
+         */
+        void writeTo(DataOutputStream out) throws IOException {
+            if (appointment != null) {
+                EventLog.writeAppointment(out, appointment);
+            } else if (customer != null) {
+                EventLog.writeCustomer(out, customer);
+                out.writeInt(customer.getCountryId());
+                EventLog.writeString(out, customer.getCountryName());
+                EventLog.writeString(out, customer.getDivisionName());
+            } else {
+                out.writeInt(id);
+            }
+            if (type == UPDATE_APPOINTMENT || type == UPDATE_CUSTOMER) {
+                EventLog.writeVersion(out, newVersion);
+            }
+        }
+
+        /**
+         * Returns the appointment as it is shown until saved.
+         *
+         * @return a copy with its provisional version
+         */
+        Appointment shownAppointment() {
+            Appointment shown = new Appointment(appointment);
+            if (newVersion != null) {
+                shown.setLastUpdate(newVersion);
+            }
+            return shown;
+        }
+
+        /**
+         * Returns the customer as it is shown until saved.
+         *
+         * @return a copy with its provisional version
+         */
+        Customer shownCustomer() {
+            Customer shown = new Customer(customer);
+            if (newVersion != null) {
+                shown.setLastUpdate(newVersion);
+            }
+            return shown;
+        }
+
+        /**
+         * Describes the write for the rejected log.
+         *
+         * @return a description
+         */
+        String describe() {
+            switch (type) {
+                case BOOK_APPOINTMENT:
+                    return "New appointment \"" + appointment.getTitle() + "\" for customer " + appointment.getCustomerId()
+                            + " at " + appointment.getStartDateTime();
+                case UPDATE_APPOINTMENT:
+                    return "Update of appointment " + appointment.getAppointmentId() + " \"" + appointment.getTitle() + "\"";
+                case DELETE_APPOINTMENT:
+                    return "Deletion of appointment " + id;
+                case ADD_CUSTOMER:
+                    return "New customer " + customer.getCustomerName();
+                case UPDATE_CUSTOMER:
+                    return "Update of customer " + customer.getCustomerId() + " " + customer.getCustomerName();
+                default:
+                    return "Deletion of customer " + id;
+            }
+        }
+    }
+}
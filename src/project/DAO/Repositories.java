@@ -0,0 +1,126 @@
+package project.DAO;
+
+import project.utilities.AppConfig;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.Locale;
+
+/**
+ * Holds the repositories the application uses, chosen at startup by the data.backend setting:
+ * <ul>
+ * <li>"jdbc" (the default) for the MySQL database, with appointment and customer writes kept in an
+ * {@link OfflineRepositories} journal while it is unreachable, unless offline.enabled is false;</li>
+ * <li>"memory" for the in-memory store with sample data, which keeps nothing after the application closes;</li>
+ * <li>"eventlog" for the in-memory store kept on disk by an {@link EventLog} in eventlog.dir
+ * (default "eventlog"), for running without MySQL.</li>
+ * </ul>
+ *
+ * @author Teksong Eap
+ */
+public final class Repositories {
+
+    /** The selected backend */
+    private static final String BACKEND = AppConfig.getString("data.backend", "jdbc").toLowerCase(Locale.ROOT);
+
+    /** Appointment repository */
+    private static final AppointmentRepository appointments;
+
+    /** Customer repository */
+    private static final CustomerRepository customers;
+
+    /** Country and division repository */
+    private static final TerritoryRepository territories;
+
+    /** User and contact repository */
+    private static final UserAndContactRepository usersAndContacts;
+
+    static {
+        if (isInMemory()) {
+            InMemoryRepositories store;
+            if (BACKEND.equals("eventlog")) {
+                try {
+                    store = EventLog.open(Path.of(AppConfig.getString("eventlog.dir", "eventlog")));
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Could not open the event log", e);
+                }
+            } else {
+                store = new InMemoryRepositories();
+            }
+            appointments = store;
+            customers = store;
+            territories = store;
+            usersAndContacts = store;
+        } else {
+            JdbcRepositories database = new JdbcRepositories();
+            if (AppConfig.getBoolean("offline.enabled", true)) {
+                OfflineRepositories offline;
+                try {
+                    offline = OfflineRepositories.open(database,
+                            Path.of(AppConfig.getString("offline.journal", "offline_journal.bin")));
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Could not open the offline journal", e);
+                }
+                appointments = offline;
+                customers = offline;
+            } else {
+                appointments = database;
+                customers = database;
+            }
+            territories = database;
+            usersAndContacts = database;
+        }
+    }
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private Repositories() {
+    }
+
+    /**
+     * Returns whether the in-memory store, kept on disk or not, is used instead of the database.
+     *
+     * @return true for the in-memory store
+     */
+    public static boolean isInMemory() {
+        return BACKEND.equals("memory") || BACKEND.equals("eventlog");
+    }
+
+    /**
+     * Returns the appointment repository.
+     *
+     * @return the appointment repository
+     */
+    public static AppointmentRepository appointments() {
+        return appointments;
+    }
+
+    /**
+     * Returns the customer repository.
+     *
+     * @return the customer repository
+     */
+    public static CustomerRepository customers() {
+        return customers;
+    }
+
+    /**
+     * Returns the country and division repository.
+     *
+     * @return the country and division repository
+     */
+    public static TerritoryRepository territories() {
+        return territories;
+    }
+
+    /**
+     * Returns the user and contact repository.
+     *
+     * @return the user and contact repository
+     */
+    public static UserAndContactRepository usersAndContacts() {
+        return usersAndContacts;
+    }
+}
@@ -78,4 +78,28 @@ public class TerritoryDAO {
 
         return allDivisionsByCountryId;
     }
+
+    /**
+     * Retrieves all divisions of all countries from the database.
+     *
+     * @return an ObservableList containing all divisions in the database
+     * @throws SQLException if a database access error occurs or this method is
+     *                      called on a closed connection
+     */
+    public static ObservableList<Division> getAllDivisions() throws SQLException {
+        ObservableList<Division> allDivisions = FXCollections.observableArrayList();
+        String SQL = "SELECT Division_ID, Division FROM FIRST_LEVEL_DIVISIONS";
+
+        try (PreparedStatement ps = JDBC.getConnection().prepareStatement(SQL);
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                allDivisions.add(new Division(rs.getInt("Division_ID"), rs.getString("Division")));
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            throw e;
+        }
+
+        return allDivisions;
+    }
 }
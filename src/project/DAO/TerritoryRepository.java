@@ -0,0 +1,40 @@
+package project.DAO;
+
+import javafx.collections.ObservableList;
+import project.model.Country;
+import project.model.Division;
+
+import java.sql.SQLException;
+
+/**
+ * Queries countries and their first-level divisions.
+ *
+ * @author Teksong Eap
+ */
+public interface TerritoryRepository {
+
+    /**
+     * Returns all countries.
+     *
+     * @return all countries
+     * @throws SQLException if a database access error occurs
+     */
+    ObservableList<Country> getAllCountries() throws SQLException;
+
+    /**
+     * Returns the divisions of a country.
+     *
+     * @param selectedCountryId the ID of the country
+     * @return the country's divisions
+     * @throws SQLException if a database access error occurs
+     */
+    ObservableList<Division> getAllDivisionsByCountryId(int selectedCountryId) throws SQLException;
+
+    /**
+     * Returns the divisions of all countries.
+     *
+     * @return all divisions
+     * @throws SQLException if a database access error occurs
+     */
+    ObservableList<Division> getAllDivisions() throws SQLException;
+}
@@ -0,0 +1,51 @@
+package project.DAO;
+
+import java.sql.SQLException;
+
+/**
+ * Thrown when an update finds that the row was changed or deleted by someone else since it was read.
+ * The caller should read the row again and merge the changes before retrying.
+ *
+ * @author Teksong Eap
+ */
+public class UpdateConflictException extends SQLException {
+
+    private static final long serialVersionUID = 1L;
+
+    /** The kind of row that was updated */
+    private final DataChangeEvent.Entity entity;
+
+    /** The ID of the row that was updated */
+    private final int id;
+
+    /**
+     * Creates an update conflict.
+     *
+     * @param entity the kind of row that was updated
+     * @param id the ID of the row that was updated
+     */
+    public UpdateConflictException(DataChangeEvent.Entity entity, int id) {
+        super(entity.name().charAt(0) + entity.name().substring(1).toLowerCase() + " " + id
+                + " was changed or deleted by another user");
+        this.entity = entity;
+        this.id = id;
+    }
+
+    /**
+     * Returns the kind of row that was updated.
+     *
+     * @return the entity
+     */
+    public DataChangeEvent.Entity getEntity() {
+        return entity;
+    }
+
+    /**
+     * Returns the ID of the row that was updated.
+     *
+     * @return the ID
+     */
+    public int getId() {
+        return id;
+    }
+}
@@ -0,0 +1,41 @@
+package project.DAO;
+
+import javafx.collections.ObservableList;
+import project.model.Contact;
+import project.model.User;
+
+import java.sql.SQLException;
+import java.util.Optional;
+
+/**
+ * Queries users and contacts, and checks user logins.
+ *
+ * @author Teksong Eap
+ */
+public interface UserAndContactRepository {
+
+    /**
+     * Returns all contacts.
+     *
+     * @return all contacts
+     * @throws SQLException if a database access error occurs
+     */
+    ObservableList<Contact> getAllContacts() throws SQLException;
+
+    /**
+     * Returns all users.
+     *
+     * @return all users
+     * @throws SQLException if a database access error occurs
+     */
+    ObservableList<User> getAllUsers() throws SQLException;
+
+    /**
+     * Checks a username and password.
+     *
+     * @param userName the username entered
+     * @param password the password entered
+     * @return the user if the username and password match, empty otherwise
+     */
+    Optional<User> loginQuery(String userName, String password);
+}
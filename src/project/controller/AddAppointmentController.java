@@ -1,21 +1,22 @@
 package project.controller;
 
+import javafx.concurrent.Task;
 import javafx.event.ActionEvent;
-import javafx.fxml.FXMLLoader;
 import javafx.fxml.Initializable;
 import javafx.fxml.FXML;
-import javafx.scene.Parent;
-import javafx.scene.Scene;
 import javafx.scene.control.*;
 import javafx.stage.Stage;
-import project.DAO.AppointmentDAO;
-import project.DAO.CustomerDAO;
-import project.DAO.UserAndContactDAO;
+import project.DAO.BookingResult;
+import project.DAO.Repositories;
 import project.model.Appointment;
 import project.model.Contact;
 import project.model.Customer;
+import project.model.RecurrenceRule;
+import project.model.TimeSlot;
 import project.model.User;
 import project.utilities.AlertMessage;
+import project.utilities.FreeSlotFinder;
+import project.utilities.SceneSwitcher;
 import project.utilities.TimeUtil;
 
 import java.io.IOException;
@@ -23,7 +24,8 @@ import java.net.URL;
 import java.sql.SQLException;
 import java.time.*;
 import java.time.format.DateTimeParseException;
-import java.util.Objects;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
 import java.util.ResourceBundle;
 import java.util.stream.Stream;
@@ -34,14 +36,11 @@ import java.util.stream.Stream;
  *
  * @author Teksong Eap
  */
-public class AddAppointmentController implements Initializable {
+public class AddAppointmentController implements Initializable, SceneSwitcher.Reusable {
 
     /** Stage object */
     private Stage stage;
 
-    /** Scene object */
-    private Parent scene;
-
     /** Appointment ID field */
     @FXML
     private TextField appointmentId;
@@ -90,6 +89,18 @@ public class AddAppointmentController implements Initializable {
     @FXML
     private TextField endTime;
 
+    /** Repeat combo box */
+    @FXML
+    private ComboBox<RecurrenceRule.Frequency> repeat;
+
+    /** Number of occurrences field */
+    @FXML
+    private TextField repeatCount;
+
+    /** Last date picker for a recurring appointment */
+    @FXML
+    private DatePicker repeatUntil;
+
     /** Add button */
     @FXML
     private Button addButton;
@@ -98,6 +109,26 @@ public class AddAppointmentController implements Initializable {
     @FXML
     private Button cancelButton;
 
+    /** List of the next free slots */
+    @FXML
+    private ListView<TimeSlot> slotListView;
+
+    /** Status of the free-slot search */
+    @FXML
+    private Label slotStatusLabel;
+
+    /** Finds free slots; null until the appointments have been loaded */
+    private FreeSlotFinder slotFinder;
+
+    /** The latest load of the appointments for the free-slot search */
+    private Task<FreeSlotFinder> slotLoadTask;
+
+    /** Whether the form is being filled from a chosen slot, which should not start a new search */
+    private boolean applyingSlot;
+
+    /** Most occurrences a recurring appointment may have */
+    private static final int MAX_OCCURRENCES = 500;
+
     /**
      * Handles the action of the 'add appointment' button being clicked.
      * It retrieves the inputs from the text fields and combo boxes, validates them, and adds a new appointment
@@ -118,16 +149,13 @@ public class AddAppointmentController implements Initializable {
             if (newAppointment == null) {
                 return;
             }
+            if (repeat.getValue() != null && repeat.getValue() != RecurrenceRule.Frequency.NONE) {
+                addRecurringAppointments(newAppointment, actionEvent);
+                return;
+            }
 
             if (isAppointmentWithinBusinessHours(newAppointment)) {
-                if (!AppointmentDAO.checkForOverlap(newAppointment)) {
-                    if (addAppointmentToDBAndNavigateBack(newAppointment, actionEvent)) {
-                        return;
-                    }
-                    AlertMessage.showAlert(11);
-                } else {
-                    AlertMessage.showAlert(14);
-                }
+                bookAppointmentAndNavigateBack(newAppointment, actionEvent);
             } else {
                 AlertMessage.showAlert(12);
             }
@@ -137,6 +165,111 @@ public class AddAppointmentController implements Initializable {
         }
     }
 
+    /**
+     * Adds a recurring appointment. The form's appointment is the first occurrence; the others are expanded
+     * from the repeat settings. The occurrences are checked against each other, then booked together: checked
+     * against the customer's appointments with one query and added with one batched insert in one transaction
+     * that holds the customer's booking locks, so either the whole series is added or none of it.
+     *
+     * @param first the first occurrence, created from the form
+     * @param actionEvent the event that triggered this method
+     * @throws SQLException if there is a problem accessing the database
+     * @throws IOException if there is a problem navigating back
+     */
+    private void addRecurringAppointments(Appointment first, ActionEvent actionEvent) throws SQLException, IOException {
+        RecurrenceRule rule = createRecurrenceRuleFromFormInputs();
+        if (rule == null) {
+            AlertMessage.showAlert(20);
+            return;
+        }
+        List<Appointment> series = new ArrayList<>();
+        Duration length = Duration.between(first.getStartDateTime(), first.getEndDateTime());
+        for (LocalDateTime start : rule.occurrences(first.getStartDateTime())) {
+            if (series.size() == MAX_OCCURRENCES) {
+                showErrorAlert("Too many occurrences!",
+                        "A recurring appointment can have at most " + MAX_OCCURRENCES + " occurrences.");
+                return;
+            }
+            LocalDateTime end = start.plus(length);
+            Appointment occurrence = new Appointment(first.getAppointmentId(), first.getCustomerId(), first.getUserId(),
+                    first.getContactId(), first.getTitle(), first.getDescription(), first.getLocation(), first.getType(),
+                    start, end, start.toLocalDate(), end.toLocalDate(), start.toLocalTime(), end.toLocalTime());
+            if (!isAppointmentWithinBusinessHours(occurrence)) {
+                AlertMessage.showAlert(12);
+                return;
+            }
+            series.add(occurrence);
+        }
+
+        // Occurrences come in order of start and are equally long, so one overlaps another only if it overlaps
+        // the one before it. The query below only compares them with the appointments already booked.
+        List<Appointment> overlappingEachOther = new ArrayList<>();
+        for (int i = 1; i < series.size(); i++) {
+            if (series.get(i).getStartDateTime().isBefore(series.get(i - 1).getEndDateTime())) {
+                overlappingEachOther.add(series.get(i));
+            }
+        }
+        if (!overlappingEachOther.isEmpty()) {
+            StringBuilder dates = new StringBuilder("These occurrences overlap the occurrence before them:");
+            overlappingEachOther.stream().limit(10).forEach(a -> dates.append("\n").append(a.getStartDate()).append(' ').append(a.getStartTime()));
+            if (overlappingEachOther.size() > 10) {
+                dates.append("\n... and ").append(overlappingEachOther.size() - 10).append(" more");
+            }
+            showErrorAlert("Occurrences overlap each other!", dates.toString() + "\nPlease repeat less often or shorten the appointment.");
+            return;
+        }
+
+        // The overlap check and the insert run in one transaction, as for a single booking
+        List<Appointment> overlapping = Repositories.appointments().bookAppointments(series);
+        if (!overlapping.isEmpty()) {
+            StringBuilder dates = new StringBuilder("These occurrences overlap existing appointments for the customer:");
+            overlapping.stream().limit(10).forEach(a -> dates.append("\n").append(a.getStartDate()).append(' ').append(a.getStartTime()));
+            if (overlapping.size() > 10) {
+                dates.append("\n... and ").append(overlapping.size() - 10).append(" more");
+            }
+            showErrorAlert("Overlapping appointments for selected customer!", dates.toString());
+            return;
+        }
+        AlertMessage.showAlert(21);
+        stage = (Stage) ((Button) actionEvent.getSource()).getScene().getWindow();
+        SceneSwitcher.switchTo(stage, "/project/view/AppointmentsAndCustomers.fxml");
+    }
+
+    /**
+     * Creates the recurrence rule from the repeat fields.
+     *
+     * @return the rule, or null if neither a valid number of occurrences nor an end date was entered
+     */
+    private RecurrenceRule createRecurrenceRuleFromFormInputs() {
+        int count = 0;
+        String countText = repeatCount.getText();
+        if (countText != null && !countText.isBlank()) {
+            try {
+                count = Integer.parseInt(countText.trim());
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        if (count <= 0 && repeatUntil.getValue() == null) {
+            return null;
+        }
+        return new RecurrenceRule(repeat.getValue(), 1, count, repeatUntil.getValue());
+    }
+
+    /**
+     * Shows an error whose text depends on the appointment, such as the appointments it overlaps.
+     *
+     * @param header the header text
+     * @param content the content text
+     */
+    private void showErrorAlert(String header, String content) {
+        Alert alert = new Alert(Alert.AlertType.ERROR);
+        alert.setTitle("ERROR");
+        alert.setHeaderText(header);
+        alert.setContentText(content);
+        alert.showAndWait();
+    }
+
     /**
      * Checks if any of the required text fields is empty.
      * The method uses Java Streams to create a Stream of Strings that represent the text content
@@ -185,7 +318,7 @@ public class AddAppointmentController implements Initializable {
         LocalDateTime startDateTimeLocal = LocalDateTime.of(startDateValue, startTimeValue);
         LocalDateTime endDateTimeLocal = LocalDateTime.of(endDateValue, endTimeValue);
 
-        int unusedAppointmentId = AppointmentDAO.getUnusedAppointmentId();
+        int unusedAppointmentId = Repositories.appointments().getUnusedAppointmentId();
 
         return new Appointment(unusedAppointmentId, customerSelected, userSelected,
                 contactSelected, title.getText(), description.getText(), location.getText(), type.getText(),
@@ -206,25 +339,35 @@ public class AddAppointmentController implements Initializable {
     }
 
     /**
-     * Adds an appointment to the database and navigates back to the 'AppointmentsAndCustomers' view.
+     * Books an appointment and navigates back to the 'AppointmentsAndCustomers' view.
+     * The overlap check and the insert run in one transaction, so another user cannot book
+     * an overlapping appointment for the same customer in between. If it overlaps appointments
+     * of the customer, they are listed to the user and the form stays open.
      *
-     * @param appointment the appointment to add
+     * @param appointment the appointment to book
      * @param actionEvent the event that triggered this method
-     * @return true if the appointment was added successfully and the view was navigated back successfully,
-     *         false otherwise
      * @throws SQLException if there is a problem accessing the database
      * @throws IOException if there is a problem navigating back
      */
-    private boolean addAppointmentToDBAndNavigateBack(Appointment appointment, ActionEvent actionEvent) throws SQLException, IOException {
-        if (AppointmentDAO.addAppointmentToDB(appointment)) {
-            AlertMessage.showAlert(17);
-            stage = (Stage) ((Button) actionEvent.getSource()).getScene().getWindow();
-            scene = FXMLLoader.load(Objects.requireNonNull(getClass().getResource("/project/view/AppointmentsAndCustomers.fxml")));
-            stage.setScene(new Scene(scene));
-            stage.show();
-            return true;
+    private void bookAppointmentAndNavigateBack(Appointment appointment, ActionEvent actionEvent) throws SQLException, IOException {
+        BookingResult result = Repositories.appointments().bookAppointment(appointment);
+        if (!result.isBooked()) {
+            List<Appointment> conflicts = result.getConflicts();
+            StringBuilder text = new StringBuilder("This appointment overlaps these appointments for the customer:");
+            conflicts.stream().limit(10).forEach(conflict -> text.append("\n").append(conflict.getTitle())
+                    .append(" (ID ").append(conflict.getAppointmentId()).append("): ")
+                    .append(conflict.getStartDate()).append(' ').append(conflict.getStartTime())
+                    .append(" - ").append(conflict.getEndDate()).append(' ').append(conflict.getEndTime()));
+            if (conflicts.size() > 10) {
+                text.append("\n... and ").append(conflicts.size() - 10).append(" more");
+            }
+            text.append("\nPlease change the time.");
+            showErrorAlert("Overlapping appointments for selected customer!", text.toString());
+            return;
         }
-        return false;
+        AlertMessage.showAlert(17);
+        stage = (Stage) ((Button) actionEvent.getSource()).getScene().getWindow();
+        SceneSwitcher.switchTo(stage, "/project/view/AppointmentsAndCustomers.fxml");
     }
 
 
@@ -240,14 +383,145 @@ public class AddAppointmentController implements Initializable {
         Optional<ButtonType> result = AlertMessage.showAlert(6);
         if (result.isPresent() && result.get() == ButtonType.OK) {
             stage = (Stage)((Button)actionEvent.getSource()).getScene().getWindow();
-            scene = FXMLLoader.load(Objects.requireNonNull(getClass().getResource("/project/view/AppointmentsAndCustomers.fxml")));
-            stage.setScene(new Scene(scene));
-            stage.show();
+            SceneSwitcher.switchTo(stage, "/project/view/AppointmentsAndCustomers.fxml");
         } else {
             System.out.println("Back in the pan.");
         }
     }
 
+    /**
+     * Loads the appointments for the free-slot search on a background thread. A load started earlier
+     * that finishes later is ignored.
+     */
+    private void loadSlotFinder() {
+        slotFinder = null;
+        slotListView.getItems().clear();
+        Task<FreeSlotFinder> loadTask = new Task<>() {
+            @Override
+            protected FreeSlotFinder call() {
+                return FreeSlotFinder.load();
+            }
+        };
+        slotLoadTask = loadTask;
+        loadTask.setOnSucceeded(event -> {
+            if (slotLoadTask == loadTask) {
+                slotFinder = loadTask.getValue();
+                refreshSlots();
+            }
+        });
+        loadTask.setOnFailed(event -> {
+            slotStatusLabel.setText("Could not load appointments");
+            loadTask.getException().printStackTrace();
+        });
+        slotStatusLabel.setText("Loading appointments...");
+        Thread loadThread = new Thread(loadTask, "free-slot-loader");
+        loadThread.setDaemon(true);
+        loadThread.start();
+    }
+
+    /**
+     * Loads the appointments for the free-slot search on a background thread, and re-runs the search
+     * whenever the contact, customer, user, dates or times change. Choosing a slot fills in the dates and times.
+     */
+    private void setUpSlotFinder() {
+        loadSlotFinder();
+
+        contact.valueProperty().addListener((observable, oldValue, newValue) -> refreshSlots());
+        customer.valueProperty().addListener((observable, oldValue, newValue) -> refreshSlots());
+        user.valueProperty().addListener((observable, oldValue, newValue) -> refreshSlots());
+        startDate.valueProperty().addListener((observable, oldValue, newValue) -> refreshSlots());
+        endDate.valueProperty().addListener((observable, oldValue, newValue) -> refreshSlots());
+        startTime.textProperty().addListener((observable, oldValue, newValue) -> refreshSlots());
+        endTime.textProperty().addListener((observable, oldValue, newValue) -> refreshSlots());
+        slotListView.getSelectionModel().selectedItemProperty().addListener((observable, oldValue, slot) -> {
+            if (slot != null) {
+                applySlot(slot);
+            }
+        });
+    }
+
+    /**
+     * Searches for the next free slots shared by the selected contact, customer and user, as long as the
+     * times entered, starting from the selected start date. Runs in memory, so it is cheap enough for every keystroke.
+     */
+    private void refreshSlots() {
+        if (slotFinder == null || applyingSlot) {
+            return;
+        }
+        Contact selectedContact = contact.getValue();
+        Customer selectedCustomer = customer.getValue();
+        User selectedUser = user.getValue();
+        if (selectedContact == null || selectedCustomer == null || selectedUser == null
+                || startDate.getValue() == null || endDate.getValue() == null) {
+            slotListView.getItems().clear();
+            slotStatusLabel.setText("Select a contact, customer, user and dates");
+            return;
+        }
+        Duration length;
+        try {
+            length = Duration.between(LocalDateTime.of(startDate.getValue(), LocalTime.parse(startTime.getText())),
+                    LocalDateTime.of(endDate.getValue(), LocalTime.parse(endTime.getText())));
+        } catch (DateTimeParseException e) {
+            slotStatusLabel.setText("Enter start and end times as HH:mm");
+            return;
+        }
+        if (length.isNegative() || length.isZero()) {
+            slotListView.getItems().clear();
+            slotStatusLabel.setText("End must be after start");
+            return;
+        }
+        LocalDateTime startOfDay = startDate.getValue().atStartOfDay();
+        LocalDateTime now = LocalDateTime.now();
+        List<TimeSlot> slots = slotFinder.findSlots(selectedCustomer.getCustomerId(), selectedContact.getContactId(),
+                selectedUser.getUserID(), -1,
+                startOfDay.isAfter(now) ? startOfDay : now, length, FreeSlotFinder.SLOT_COUNT);
+        slotListView.getItems().setAll(slots);
+        slotStatusLabel.setText(slots.isEmpty() ? "No free slots found"
+                : "Free " + length.toMinutes() + "-minute slots");
+    }
+
+    /**
+     * Fills the dates and times from a chosen slot.
+     *
+     * @param slot the chosen slot
+     */
+    private void applySlot(TimeSlot slot) {
+        applyingSlot = true;
+        try {
+            startDate.setValue(slot.getStart().toLocalDate());
+            endDate.setValue(slot.getEnd().toLocalDate());
+            startTime.setText(slot.getStart().toLocalTime().toString());
+            endTime.setText(slot.getEnd().toLocalTime().toString());
+        } finally {
+            applyingSlot = false;
+        }
+    }
+
+    /**
+     * Clears the form when the kept screen is shown again, and reloads the customers and the appointments
+     * for the free-slot search, which may have changed since.
+     */
+    @Override
+    public void onShow() {
+        title.clear();
+        description.clear();
+        location.clear();
+        type.clear();
+        startTime.clear();
+        endTime.clear();
+        repeatCount.clear();
+        repeatUntil.setValue(null);
+        customer.setItems(Repositories.customers().getAllCustomers());
+        contact.getSelectionModel().selectFirst();
+        user.getSelectionModel().selectFirst();
+        customer.getSelectionModel().selectFirst();
+        startDate.setValue(LocalDate.now());
+        endDate.setValue(LocalDate.now());
+        repeat.getSelectionModel().selectFirst();
+        title.requestFocus();
+        loadSlotFinder();
+    }
+
     /**
      * Initializes the controller after the FXML file has been loaded.
      * It sets up the items in the 'contact', 'user', and 'customer' combo boxes, and sets the initial focus on the 'title' text field.
@@ -260,16 +534,19 @@ public class AddAppointmentController implements Initializable {
     public void initialize(URL url, ResourceBundle resourceBundle) {
         title.requestFocus();
         try {
-            contact.setItems(UserAndContactDAO.getAllContacts());
+            contact.setItems(Repositories.usersAndContacts().getAllContacts());
             contact.getSelectionModel().selectFirst();
-            user.setItems(UserAndContactDAO.getAllUsers());
+            user.setItems(Repositories.usersAndContacts().getAllUsers());
             user.getSelectionModel().selectFirst();
-            customer.setItems(CustomerDAO.getAllCustomers());
+            customer.setItems(Repositories.customers().getAllCustomers());
             customer.getSelectionModel().selectFirst();
             startDate.setValue(LocalDate.now());
             endDate.setValue(LocalDate.now());
+            repeat.getItems().setAll(RecurrenceRule.Frequency.values());
+            repeat.getSelectionModel().selectFirst();
         } catch (Exception e){
             e.printStackTrace();
         }
+        setUpSlotFinder();
     }
 }
@@ -2,27 +2,23 @@ package project.controller;
 
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
-import javafx.fxml.FXMLLoader;
 import javafx.fxml.Initializable;
-import javafx.scene.Parent;
-import javafx.scene.Scene;
 import javafx.scene.control.ButtonType;
 import javafx.scene.control.ComboBox;
 import javafx.scene.control.TextField;
 import javafx.scene.control.Button;
 import javafx.event.ActionEvent;
 import javafx.stage.Stage;
-import project.DAO.CustomerDAO;
-import project.DAO.TerritoryDAO;
+import project.DAO.Repositories;
 import project.model.Country;
 import project.model.Customer;
 import project.model.Division;
 import project.utilities.AlertMessage;
+import project.utilities.SceneSwitcher;
 
 import java.io.IOException;
 import java.net.URL;
 import java.sql.SQLException;
-import java.util.Objects;
 import java.util.Optional;
 import java.util.ResourceBundle;
 
@@ -32,14 +28,11 @@ import java.util.ResourceBundle;
  *
  * @author Teksong Eap
  */
-public class AddCustomerController implements Initializable {
+public class AddCustomerController implements Initializable, SceneSwitcher.Reusable {
 
     /** The stage object */
     private Stage stage;
 
-    /** The scene object */
-    private Parent scene;
-
     /** The customer's ID */
     @FXML
     private TextField customerId;
@@ -109,7 +102,7 @@ public class AddCustomerController implements Initializable {
             int divisionId = division.getSelectionModel().getSelectedItem().getDivisionId();
             try {
                 // Retrieve an unused Customer ID
-                int customerId = CustomerDAO.getUnusedCustomerId();
+                int customerId = Repositories.customers().getUnusedCustomerId();
 
                 // Create a new Customer object
                 Customer newCustomer = new Customer(customerId, divisionId, countryId, customerNameText,
@@ -117,7 +110,7 @@ public class AddCustomerController implements Initializable {
 
                 // Add the new customer to the database
 
-                customerAdded = CustomerDAO.addCustomerToDB(newCustomer);
+                customerAdded = Repositories.customers().addCustomerToDB(newCustomer);
 
             } catch (SQLException e) {
                 e.printStackTrace();
@@ -127,9 +120,7 @@ public class AddCustomerController implements Initializable {
         if (customerAdded) {
             AlertMessage.showAlert(10);
             stage = (Stage)((Button)actionEvent.getSource()).getScene().getWindow();
-            scene = FXMLLoader.load(Objects.requireNonNull(getClass().getResource("/project/view/AppointmentsAndCustomers.fxml")));
-            stage.setScene(new Scene(scene));
-            stage.show();
+            SceneSwitcher.switchTo(stage, "/project/view/AppointmentsAndCustomers.fxml");
         }
 
     }
@@ -143,7 +134,7 @@ public class AddCustomerController implements Initializable {
      */
     @FXML
     public void updateDivisionComboBox (ActionEvent actionEvent) throws SQLException {
-        division.setItems(TerritoryDAO.getAllDivisionsByCountryId(country.getSelectionModel().getSelectedItem().getCountryId()));
+        division.setItems(Repositories.territories().getAllDivisionsByCountryId(country.getSelectionModel().getSelectedItem().getCountryId()));
         division.getSelectionModel().selectFirst();
     }
 
@@ -160,14 +151,31 @@ public class AddCustomerController implements Initializable {
         Optional<ButtonType> result = AlertMessage.showAlert(6);
         if (result.isPresent() && result.get() == ButtonType.OK) {
             stage = (Stage)((Button)actionEvent.getSource()).getScene().getWindow();
-            scene = FXMLLoader.load(Objects.requireNonNull(getClass().getResource("/project/view/AppointmentsAndCustomers.fxml")));
-            stage.setScene(new Scene(scene));
-            stage.show();
+            SceneSwitcher.switchTo(stage, "/project/view/AppointmentsAndCustomers.fxml");
         } else {
             System.out.println("Back in the pan.");
         }
     }
 
+    /**
+     * Clears the form when the kept screen is shown again.
+     */
+    @Override
+    public void onShow() {
+        customerName.clear();
+        address.clear();
+        postalCode.clear();
+        phoneNumber.clear();
+        country.getSelectionModel().selectFirst();
+        try {
+            division.setItems(Repositories.territories().getAllDivisionsByCountryId(country.getSelectionModel().getSelectedItem().getCountryId()));
+            division.getSelectionModel().selectFirst();
+        } catch (SQLException throwable) {
+            throwable.printStackTrace();
+        }
+        customerName.requestFocus();
+    }
+
     /**
      * Initializes the controller after the FXML file has been loaded.
      * It sets up the items in the 'country' and 'division' combo boxes, and sets the initial focus on the 'customerName' text field.
@@ -179,9 +187,9 @@ public class AddCustomerController implements Initializable {
     public void initialize(URL url, ResourceBundle resourceBundle) {
         customerName.requestFocus();
         try {
-            country.setItems(TerritoryDAO.getAllCountries());
+            country.setItems(Repositories.territories().getAllCountries());
             country.getSelectionModel().selectFirst();
-            division.setItems(TerritoryDAO.getAllDivisionsByCountryId(country.getSelectionModel().getSelectedItem().getCountryId()));
+            division.setItems(Repositories.territories().getAllDivisionsByCountryId(country.getSelectionModel().getSelectedItem().getCountryId()));
             division.getSelectionModel().selectFirst();
         } catch (SQLException throwable) {
             throwable.printStackTrace();
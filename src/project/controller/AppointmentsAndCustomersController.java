@@ -1,32 +1,50 @@
 package project.controller;
 
+import javafx.animation.PauseTransition;
+import javafx.application.Platform;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
+import javafx.concurrent.Task;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
-import javafx.fxml.FXMLLoader;
 import javafx.fxml.Initializable;
-import javafx.scene.Parent;
-import javafx.scene.Scene;
 import javafx.scene.control.*;
-import javafx.scene.control.cell.PropertyValueFactory;
+import javafx.stage.FileChooser;
 import javafx.stage.Stage;
-import project.DAO.AppointmentDAO;
-import project.DAO.CustomerDAO;
+import project.DAO.AppointmentQuery;
+import project.DAO.DataChangeBus;
+import project.DAO.Repositories;
+import project.importer.BulkImporter;
+import project.importer.ImportSummary;
 import project.model.Appointment;
 import project.model.Customer;
 import project.model.User;
 import project.utilities.AlertMessage;
+import project.utilities.AppConfig;
+import project.utilities.AppointmentDayCounts;
+import project.utilities.AppointmentRangeCache;
+import project.utilities.OffHeapAppointmentTable;
+import project.utilities.SceneSwitcher;
+import project.utilities.StartupOrchestrator;
 import project.utilities.TimeUtil;
 
+import java.io.File;
 import java.io.IOException;
 import java.net.URL;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.time.*;
-import java.util.Objects;
+import java.time.format.DateTimeFormatter;
+import java.time.format.FormatStyle;
+import java.time.temporal.TemporalAdjusters;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Locale;
 import java.util.Optional;
 import java.util.ResourceBundle;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
 /**
@@ -35,17 +53,104 @@ import java.util.stream.Collectors;
  *
  * @author Teksong Eap
  */
-public class AppointmentsAndCustomersController implements Initializable {
+public class AppointmentsAndCustomersController implements Initializable, SceneSwitcher.Reusable {
     
     /** Stage object */
     private Stage stage;
 
-    /** Scene object */
-    private Parent scene;
-
     /** Appointment alert flag */
     private static boolean showAppointmentAlert = false;
 
+    /** Whether the appointment table shows an off-heap copy of the appointments, set by appointments.offHeap */
+    private static final boolean OFF_HEAP = AppConfig.getBoolean("appointments.offHeap", false);
+
+    /** Off-heap copy of all appointments, kept across scenes so its buffers are reused; null unless OFF_HEAP */
+    private static final OffHeapAppointmentTable offHeapAppointments = OFF_HEAP ? new OffHeapAppointmentTable() : null;
+
+    /** Selection reused by scans of the off-heap copy */
+    private static final OffHeapAppointmentTable.Rows offHeapRows = new OffHeapAppointmentTable.Rows();
+
+    /** Set when appointments or customers change, so the kept screen reloads its tables when shown again */
+    private static volatile boolean dataChanged;
+
+    static {
+        DataChangeBus.addListener(event -> dataChanged = true);
+    }
+
+    /** Milliseconds typing must pause before the appointment search runs, set by appointments.searchDelayMillis */
+    private static final long SEARCH_DELAY_MILLIS = AppConfig.getLong("appointments.searchDelayMillis", 300);
+
+    /** Data fetched by {@link #prefetch(int)} for the next initialize to take; null when there is none */
+    private static Prefetch prefetched;
+
+    /**
+     * The main screen's data, fetched by startup phases.
+     */
+    private static final class Prefetch {
+
+        /** All appointments */
+        private CompletableFuture<ObservableList<Appointment>> appointments;
+
+        /** All customers */
+        private CompletableFuture<ObservableList<Customer>> customers;
+
+        /** The user's appointment starting within 15 minutes, or null */
+        private CompletableFuture<Appointment> upcomingAppointment;
+    }
+
+    /**
+     * A day of the date picker that shows how many appointments start on it, shaded by how busy it is
+     * compared with the busiest day of its month. A day of a month not counted yet is drawn plain and its month
+     * is counted in the background; the cells are drawn again once it is.
+     */
+    private static final class AppointmentCountCell extends DateCell {
+
+        @Override
+        public void updateItem(LocalDate date, boolean empty) {
+            super.updateItem(date, empty);
+            showCount();
+        }
+
+        /**
+         * Shows the day's count, if its month has been counted.
+         */
+        void showCount() {
+            setGraphic(null);
+            setStyle(null);
+            setTooltip(null);
+            LocalDate date = getItem();
+            if (isEmpty() || date == null) {
+                return;
+            }
+            AppointmentDayCounts dayCounts = AppointmentDayCounts.shared();
+            int[] counts = dayCounts.counted(YearMonth.from(date));
+            if (counts == null) {
+                dayCounts.prefetch(YearMonth.from(date));
+                return;
+            }
+            int count = counts[date.getDayOfMonth() - 1];
+            if (count == 0) {
+                return;
+            }
+            int maxCount = Arrays.stream(counts).max().orElse(count);
+            Label badge = new Label(Integer.toString(count));
+            badge.setStyle("-fx-font-size: 8px;");
+            setGraphic(badge);
+            setContentDisplay(ContentDisplay.BOTTOM);
+            // The root locale keeps the decimal point CSS needs
+            setStyle(String.format(Locale.ROOT, "-fx-background-color: rgba(255, 140, 0, %.2f);",
+                    0.15 + 0.55 * count / maxCount));
+            setTooltip(new Tooltip(count == 1 ? "1 appointment" : count + " appointments"));
+        }
+    }
+
+    /** The date picker's day cells, for drawing them again when a month has been counted */
+    private final Set<AppointmentCountCell> dayCells = Collections.newSetFromMap(new WeakHashMap<>());
+
+    /** Import button */
+    @FXML
+    private Button importButton;
+
     /** Table of customers */
     @FXML
     private TableView<Customer> customerTableView;
@@ -150,6 +255,31 @@ public class AppointmentsAndCustomersController implements Initializable {
     @FXML
     private TextField customerSearchField;
 
+    /** Appointment search field */
+    @FXML
+    private TextField appointmentSearchField;
+
+    /** Button showing the previous week or month */
+    @FXML
+    private Button previousPeriodButton;
+
+    /** Shows the week or month being viewed */
+    @FXML
+    private Label periodLabel;
+
+    /** Button showing the next week or month */
+    @FXML
+    private Button nextPeriodButton;
+
+    /** First day of the week or month being viewed */
+    private LocalDate periodStart;
+
+    /** Runs the appointment search once typing pauses */
+    private PauseTransition searchDelay;
+
+    /** The latest appointment search, or null once another list is shown; an older search's result is ignored */
+    private Task<ObservableList<Appointment>> searchTask;
+
     //CUSTOMER SCREEN----------------------------------------------------------
 
     /**
@@ -162,9 +292,7 @@ public class AppointmentsAndCustomersController implements Initializable {
     @FXML
     public void addCustomer(ActionEvent actionEvent) throws IOException {
         stage = (Stage)((Button)actionEvent.getSource()).getScene().getWindow();
-        scene = FXMLLoader.load(Objects.requireNonNull(getClass().getResource("/project/view/AddCustomer.fxml")));
-        stage.setScene(new Scene(scene));
-        stage.show();
+        SceneSwitcher.switchTo(stage, "/project/view/AddCustomer.fxml");
     }
 
     /**
@@ -184,17 +312,9 @@ public class AppointmentsAndCustomersController implements Initializable {
                 System.out.println("Selected customer is null.");
                 return;
             }
-            FXMLLoader loader = new FXMLLoader();
-            loader.setLocation(getClass().getResource("/project/view/UpdateCustomer.fxml"));
-            loader.load();
-
-            UpdateCustomerController UCC = loader.getController();
-            UCC.setCustomerToUpdate(selectedCustomer);
-
             stage = (Stage) ((Button) actionEvent.getSource()).getScene().getWindow();
-            Parent scene = loader.getRoot();
-            stage.setScene(new Scene(scene));
-            stage.show();
+            UpdateCustomerController UCC = SceneSwitcher.switchTo(stage, "/project/view/UpdateCustomer.fxml");
+            UCC.setCustomerToUpdate(selectedCustomer);
         }
     }
 
@@ -228,7 +348,7 @@ public class AppointmentsAndCustomersController implements Initializable {
         } else {
             Customer selectedCustomer = customerTableView.getSelectionModel().getSelectedItem();
             // Check if the selected customer has any associated appointments
-            ObservableList<Appointment> allAppointments = AppointmentDAO.getAllAppointments();
+            ObservableList<Appointment> allAppointments = Repositories.appointments().getAllAppointments();
             ObservableList<Appointment> associatedAppointments = FXCollections.observableArrayList(
                     allAppointments.stream()
                             .filter(appointment -> appointment.getCustomerId() == selectedCustomer.getCustomerId())
@@ -245,20 +365,20 @@ public class AppointmentsAndCustomersController implements Initializable {
                 try {
                     // Delete all appointments for the customer
                     for (Appointment appointment : associatedAppointments) {
-                        AppointmentDAO.deleteAppointmentFromDB(appointment.getAppointmentId());
+                        Repositories.appointments().deleteAppointmentFromDB(appointment.getAppointmentId());
                     }
                     // Now delete the customer
-                    if (CustomerDAO.deleteCustomerFromDB(customerId)) {
+                    if (Repositories.customers().deleteCustomerFromDB(customerId)) {
                         System.out.println("Deletion successful!");
                         alert = new Alert(Alert.AlertType.INFORMATION);
                         alert.setTitle("Customer and associated appointments deleted!");
                         alert.setContentText("The customer with ID: " + customerId + " and NAME: " + customerName + " and all associated appointments have been deleted.");
                         alert.showAndWait();
-                        appointmentTableView.setItems(AppointmentDAO.getAllAppointments());
+                        appointmentTableView.setItems(loadAllAppointments());
                     } else {
                         System.out.println("Something mysterious has happened and the customer wasn't deleted!");
                     }
-                    customerTableView.setItems(CustomerDAO.getAllCustomers());
+                    customerTableView.setItems(Repositories.customers().getAllCustomers());
                 } catch (SQLException e) {
                     System.out.println("There was an error deleting the customer and/or the associated appointments.");
                     e.printStackTrace();
@@ -289,12 +409,12 @@ public class AppointmentsAndCustomersController implements Initializable {
 
         // If search text is empty, show all customers
         if (searchText == null || searchText.isEmpty()) {
-            customerTableView.setItems(CustomerDAO.getAllCustomers());
+            customerTableView.setItems(Repositories.customers().getAllCustomers());
             return;
         }
 
         // Get all customers
-        ObservableList<Customer> allCustomers = CustomerDAO.getAllCustomers();
+        ObservableList<Customer> allCustomers = Repositories.customers().getAllCustomers();
 
         // Filter customers based on search text
         ObservableList<Customer> filteredCustomers = allCustomers.stream()
@@ -317,9 +437,7 @@ public class AppointmentsAndCustomersController implements Initializable {
     @FXML
     public void addAppointment(ActionEvent actionEvent) throws IOException {
         stage = (Stage)((Button)actionEvent.getSource()).getScene().getWindow();
-        scene = FXMLLoader.load(Objects.requireNonNull(getClass().getResource("/project/view/AddAppointment.fxml")));
-        stage.setScene(new Scene(scene));
-        stage.show();
+        SceneSwitcher.switchTo(stage, "/project/view/AddAppointment.fxml");
     }
 
     /**
@@ -340,15 +458,9 @@ public class AppointmentsAndCustomersController implements Initializable {
             System.out.println("Selected appointment null.");
             return;
         }
-        FXMLLoader loader = new FXMLLoader();
-        loader.setLocation(getClass().getResource("/project/view/UpdateAppointment.fxml"));
-        loader.load();
-        UpdateAppointmentController UAC = loader.getController();
-        UAC.setAppointmentToUpdate(selectedAppointment);
         stage = (Stage) ((Button) actionEvent.getSource()).getScene().getWindow();
-        Parent scene = loader.getRoot();
-        stage.setScene(new Scene(scene));
-        stage.show();
+        UpdateAppointmentController UAC = SceneSwitcher.switchTo(stage, "/project/view/UpdateAppointment.fxml");
+        UAC.setAppointmentToUpdate(selectedAppointment);
     }
 
     /**
@@ -377,7 +489,7 @@ public class AppointmentsAndCustomersController implements Initializable {
 
                 int selectedAppointmentId = appointmentTableView.getSelectionModel().getSelectedItem().getAppointmentId();
                 try {
-                if (AppointmentDAO.deleteAppointmentFromDB(selectedAppointmentId)) {
+                if (Repositories.appointments().deleteAppointmentFromDB(selectedAppointmentId)) {
                     System.out.println("Deletion successful!");
                     alert = new Alert(Alert.AlertType.INFORMATION);
                     alert.setTitle("Appointment deleted!");
@@ -386,7 +498,7 @@ public class AppointmentsAndCustomersController implements Initializable {
                 } else {
                     System.out.println("Something mysterious has happened and the appointment wasn't deleted!");
                 }
-                appointmentTableView.setItems(AppointmentDAO.getAllAppointments());
+                appointmentTableView.setItems(loadAllAppointments());
                 } catch (SQLException e) {
                     System.out.println("There was an error deleting the appointment.");
                     e.printStackTrace();
@@ -403,8 +515,10 @@ public class AppointmentsAndCustomersController implements Initializable {
      */
     @FXML
     public void viewAll(ActionEvent actionEvent) {
-        ObservableList<Appointment> appointments = AppointmentDAO.getAllAppointments();
-        appointmentTableView.setItems(appointments);
+        if (!startSearch(null, null)) {
+            appointmentTableView.setItems(loadAllAppointments());
+        }
+        showPeriodNavigation(false);
     }
 
     /**
@@ -415,8 +529,8 @@ public class AppointmentsAndCustomersController implements Initializable {
      */
     @FXML
     public void viewThisMonth(ActionEvent actionEvent) {
-        ObservableList<Appointment> appointments = AppointmentDAO.getAllAppointmentsThisMonth();
-        appointmentTableView.setItems(appointments);
+        periodStart = YearMonth.now().atDay(1);
+        showPeriod();
     }
 
     /**
@@ -427,20 +541,154 @@ public class AppointmentsAndCustomersController implements Initializable {
      */
     @FXML
     public void viewThisWeek(ActionEvent actionEvent) {
-        ObservableList<Appointment> appointments = AppointmentDAO.getAllAppointmentsThisWeek();
-        appointmentTableView.setItems(appointments);
+        periodStart = LocalDate.now().with(TemporalAdjusters.previousOrSame(DayOfWeek.SUNDAY));
+        showPeriod();
+    }
+
+    /**
+     * Handles the action of the previous period button being clicked.
+     * It shows the week or month before the one being viewed.
+     *
+     * @param actionEvent the ActionEvent object
+     */
+    @FXML
+    public void showPreviousPeriod(ActionEvent actionEvent) {
+        periodStart = periodStart.minus(periodLength());
+        showPeriod();
+    }
+
+    /**
+     * Handles the action of the next period button being clicked.
+     * It shows the week or month after the one being viewed.
+     *
+     * @param actionEvent the ActionEvent object
+     */
+    @FXML
+    public void showNextPeriod(ActionEvent actionEvent) {
+        periodStart = periodStart.plus(periodLength());
+        showPeriod();
+    }
+
+    /**
+     * Returns the length of the period being viewed.
+     *
+     * @return a month in the month view, otherwise a week
+     */
+    private Period periodLength() {
+        return viewByMonthRadioButton.isSelected() ? Period.ofMonths(1) : Period.ofWeeks(1);
+    }
+
+    /**
+     * Shows the appointments starting in the week or month being viewed, containing the search text if there is
+     * one. Without search text they come from the shared {@link AppointmentRangeCache}, which then reads the
+     * periods on either side in the background.
+     */
+    private void showPeriod() {
+        Period length = periodLength();
+        LocalDate periodEnd = periodStart.plus(length);
+        // A search is answered by one query for the period in the background, the rest by the off-heap copy
+        // or the range cache
+        if (startSearch(periodStart, periodEnd)) {
+            // The search shows its result when it is done
+        } else if (OFF_HEAP) {
+            appointmentTableView.setItems(offHeapAppointmentsStartingOn(periodStart, periodEnd.minusDays(1)));
+        } else {
+            AppointmentRangeCache appointmentRanges = AppointmentRangeCache.shared();
+            ObservableList<Appointment> appointments;
+            try {
+                appointments = appointmentRanges.get(periodStart.atStartOfDay(), periodEnd.atStartOfDay());
+            } catch (SQLException e) {
+                System.out.println("There was an error loading the appointments.");
+                appointments = FXCollections.observableArrayList();
+            }
+            appointmentTableView.setItems(appointments);
+            appointmentRanges.prefetch(periodEnd.atStartOfDay(), periodEnd.plus(length).atStartOfDay());
+            appointmentRanges.prefetch(periodStart.minus(length).atStartOfDay(), periodStart.atStartOfDay());
+        }
+
+        if (viewByMonthRadioButton.isSelected()) {
+            periodLabel.setText(periodStart.format(DateTimeFormatter.ofPattern("MMMM yyyy")));
+        } else {
+            DateTimeFormatter dayFormat = DateTimeFormatter.ofLocalizedDate(FormatStyle.MEDIUM);
+            periodLabel.setText(periodStart.format(dayFormat) + " - " + periodEnd.minusDays(1).format(dayFormat));
+        }
+        showPeriodNavigation(true);
+    }
+
+    /**
+     * Shows the appointments whose title, description, location or type contain the text of the search field,
+     * in the week or month being viewed, or all of them in the 'view all' view. Runs once typing pauses.
+     */
+    private void searchAppointments() {
+        if (viewAllRadioButton.isSelected()) {
+            viewAll(null);
+        } else {
+            showPeriod();
+        }
+    }
+
+    /**
+     * Starts finding the appointments containing the search text with one {@link AppointmentQuery}, which combines
+     * the text with the period being viewed. The query runs on a background thread and its result replaces the
+     * table's items, unless another search started or another list was shown in the meantime.
+     *
+     * @param firstDay the first day of the period, or null for all appointments
+     * @param endDay the day after the period, or null for all appointments
+     * @return true if a search was started, false if there is no search text
+     */
+    private boolean startSearch(LocalDate firstDay, LocalDate endDay) {
+        searchTask = null;
+        String searchText = appointmentSearchField.getText();
+        if (searchText == null || searchText.isBlank()) {
+            return false;
+        }
+        AppointmentQuery query = AppointmentQuery.builder()
+                .startingIn(firstDay == null ? null : firstDay.atStartOfDay(), endDay == null ? null : endDay.atStartOfDay())
+                .containing(searchText)
+                .build();
+        Task<ObservableList<Appointment>> task = new Task<>() {
+            @Override
+            protected ObservableList<Appointment> call() throws SQLException {
+                return Repositories.appointments().findAppointments(query);
+            }
+        };
+        ObservableList<Appointment> shownBefore = appointmentTableView.getItems();
+        task.setOnSucceeded(event -> {
+            if (searchTask == task && appointmentTableView.getItems() == shownBefore) {
+                appointmentTableView.setItems(task.getValue());
+            }
+        });
+        task.setOnFailed(event -> {
+            System.out.println("There was an error searching the appointments.");
+            if (searchTask == task && appointmentTableView.getItems() == shownBefore) {
+                appointmentTableView.setItems(FXCollections.observableArrayList());
+            }
+        });
+        searchTask = task;
+        Thread searchThread = new Thread(task, "appointment-search");
+        searchThread.setDaemon(true);
+        searchThread.start();
+        return true;
+    }
+
+    /**
+     * Shows or hides the previous and next period buttons and the period label.
+     *
+     * @param visible true in the week and month views
+     */
+    private void showPeriodNavigation(boolean visible) {
+        previousPeriodButton.setVisible(visible);
+        periodLabel.setVisible(visible);
+        nextPeriodButton.setVisible(visible);
     }
 
     /**
      * Searches for appointments by a certain date,
-     * First, it gets the date picked from the DatePicker, retrieves a list of all the appointments,
-     * and then goes through this list and picks out only the appointments that are on the date selected.
-     * LAMBDA EXPRESSION: The expression is "appointment -> selectedDate.equals(appointment.getStartDateTime().toLocalDate())"
-     *  and it takes an appointment and checks if its date is the same as
-     * the date picked. The filter method uses this function to go through each appointment
-     * in the list, and it only keeps the ones where the function is true.
+     * First, it gets the date picked from the DatePicker, whose days show how many appointments start on them,
+     * then it reads the appointments starting on that day from the shared {@link AppointmentRangeCache}
+     * instead of going through all the appointments.
      *
-     * Finally, the method updates the TableView to show only the appointments that passed the filter.
+     * Finally, the method updates the TableView to show only the appointments on the date selected.
      *
      * @param actionEvent the event that triggered this method
      */
@@ -453,19 +701,135 @@ public class AppointmentsAndCustomersController implements Initializable {
             return;
         }
 
-        // Get all appointments
-        ObservableList<Appointment> allAppointments = AppointmentDAO.getAllAppointments();
+        if (OFF_HEAP) {
+            appointmentTableView.setItems(offHeapAppointmentsStartingOn(selectedDate, selectedDate));
+            return;
+        }
 
-        // Filter appointments by the selected date
-        ObservableList<Appointment> filteredAppointments = allAppointments.stream()
-                .filter(appointment -> selectedDate.equals(appointment.getStartDateTime().toLocalDate()))
-                .collect(Collectors.toCollection(FXCollections::observableArrayList));
+        // Get the appointments starting on the selected date
+        ObservableList<Appointment> appointmentsOnDate;
+        try {
+            appointmentsOnDate = AppointmentRangeCache.shared().get(selectedDate.atStartOfDay(),
+                    selectedDate.plusDays(1).atStartOfDay());
+        } catch (SQLException e) {
+            System.out.println("There was an error loading the appointments.");
+            appointmentsOnDate = FXCollections.observableArrayList();
+        }
 
-        // Update the TableView to show only the filtered appointments
-        appointmentTableView.setItems(filteredAppointments);
+        // Update the TableView to show only the appointments on the selected date
+        appointmentTableView.setItems(appointmentsOnDate);
+    }
+
+    //FLOATING BUTTONS--------------------------------------------------
+    /**
+     * Handles the action of the 'import' button being clicked.
+     * It lets the user choose a CSV or iCalendar file of customers or appointments and imports it in the background,
+     * then shows a summary and reloads the tables. Rejected rows are listed in an error report next to the file.
+     *
+     * @param actionEvent the ActionEvent object
+     */
+    @FXML
+    public void importFile(ActionEvent actionEvent) {
+        FileChooser chooser = new FileChooser();
+        chooser.setTitle("Import Customers or Appointments");
+        chooser.getExtensionFilters().addAll(
+                new FileChooser.ExtensionFilter("CSV or iCalendar", "*.csv", "*.ics"),
+                new FileChooser.ExtensionFilter("All files", "*.*"));
+        stage = (Stage)((Button)actionEvent.getSource()).getScene().getWindow();
+        File file = chooser.showOpenDialog(stage);
+        if (file == null) {
+            return;
+        }
+        Task<ImportSummary> importTask = new Task<>() {
+            @Override
+            protected ImportSummary call() throws Exception {
+                BulkImporter importer = new BulkImporter(LoginController.getCurrentUser().getUsername());
+                importer.setProgressListener(processed -> updateMessage("Importing... " + processed + " rows"));
+                return importer.importFile(file.toPath());
+            }
+        };
+        importTask.messageProperty().addListener((observable, oldValue, message) -> importButton.setText(message));
+        importTask.setOnSucceeded(event -> {
+            finishImport();
+            Alert alert = new Alert(Alert.AlertType.INFORMATION);
+            alert.setTitle("INFORMATION");
+            alert.setHeaderText("Import finished");
+            alert.setContentText(importTask.getValue().toString());
+            alert.showAndWait();
+        });
+        importTask.setOnFailed(event -> {
+            finishImport();
+            importTask.getException().printStackTrace();
+            Alert alert = new Alert(Alert.AlertType.ERROR);
+            alert.setTitle("ERROR");
+            alert.setHeaderText("Import failed");
+            alert.setContentText(String.valueOf(importTask.getException().getMessage()));
+            alert.showAndWait();
+        });
+        importButton.setDisable(true);
+        Thread importThread = new Thread(importTask, "bulk-import");
+        importThread.setDaemon(true);
+        importThread.start();
+    }
+
+    /**
+     * Starts fetching the main screen's appointments, customers and upcoming appointment at the same time,
+     * as startup phases on connections of their own, for the next initialize to use. Called right after login,
+     * so the fetches overlap loading the main screen's view.
+     *
+     * @param userId the ID of the user who logged in
+     */
+    public static void prefetch(int userId) {
+        Prefetch prefetch = new Prefetch();
+        prefetch.appointments = StartupOrchestrator.phase("appointments",
+                AppointmentsAndCustomersController::loadAllAppointments);
+        prefetch.customers = StartupOrchestrator.phase("customers", () -> Repositories.customers().getAllCustomers());
+        prefetch.upcomingAppointment = StartupOrchestrator.phase("upcoming appointment",
+                () -> Repositories.appointments().getUpcomingAppointment(userId));
+        prefetched = prefetch;
+    }
+
+    /**
+     * Reads all appointments for the appointment table. With appointments.offHeap set, they are streamed
+     * into the off-heap copy, replacing what it held, and shown through views of its rows.
+     *
+     * @return all appointments
+     */
+    private static ObservableList<Appointment> loadAllAppointments() {
+        if (!OFF_HEAP) {
+            return Repositories.appointments().getAllAppointments();
+        }
+        offHeapAppointments.clear();
+        try {
+            Repositories.appointments().forEachAppointment(offHeapAppointments::add);
+        } catch (SQLException e) {
+            System.out.println("There was an error loading the appointments.");
+        }
+        return offHeapAppointments.asList();
+    }
+
+    /**
+     * Scans the off-heap copy for the appointments starting on a range of days.
+     *
+     * @param firstDay the first day, inclusive
+     * @param lastDay the last day, inclusive
+     * @return the appointments, by ID
+     */
+    private ObservableList<Appointment> offHeapAppointmentsStartingOn(LocalDate firstDay, LocalDate lastDay) {
+        offHeapAppointments.selectStartingIn(firstDay.atStartOfDay(), lastDay.plusDays(1).atStartOfDay(), offHeapRows);
+        return offHeapAppointments.asList(offHeapRows);
+    }
+
+    /**
+     * Restores the 'import' button and reloads the tables after an import.
+     */
+    private void finishImport() {
+        importButton.setText("Import");
+        importButton.setDisable(false);
+        appointmentTableView.setItems(loadAllAppointments());
+        customerTableView.setItems(Repositories.customers().getAllCustomers());
     }
 
-    //FLOATING TWO BUTTONS--------------------------------------------------
     /**
      * Handles the action of the 'view reports' button being clicked.
      * It navigates to the 'Reports' view.
@@ -476,9 +840,20 @@ public class AppointmentsAndCustomersController implements Initializable {
     @FXML
     public void viewReports(ActionEvent actionEvent) throws IOException {
         stage = (Stage)((Button)actionEvent.getSource()).getScene().getWindow();
-        scene = FXMLLoader.load(Objects.requireNonNull(getClass().getResource("/project/view/Reports.fxml")));
-        stage.setScene(new Scene(scene));
-        stage.show();
+        SceneSwitcher.switchTo(stage, "/project/view/Reports.fxml");
+    }
+
+    /**
+     * Handles the action of the 'calendar' button being clicked.
+     * It navigates to the 'Calendar' view.
+     *
+     * @param actionEvent the ActionEvent object
+     * @throws IOException if there is an error loading
+     */
+    @FXML
+    public void viewCalendar(ActionEvent actionEvent) throws IOException {
+        stage = (Stage)((Button)actionEvent.getSource()).getScene().getWindow();
+        SceneSwitcher.switchTo(stage, "/project/view/Calendar.fxml");
     }
 
     /**
@@ -508,6 +883,27 @@ public class AppointmentsAndCustomersController implements Initializable {
         showAppointmentAlert = value;
     }
 
+    /**
+     * Reloads the tables when the kept screen is shown again, if appointments or customers were changed
+     * since they were loaded. The selected view, its week or month, and the customer search are kept.
+     */
+    @Override
+    public void onShow() {
+        if (!dataChanged) {
+            return;
+        }
+        dataChanged = false;
+        if (viewAllRadioButton.isSelected()) {
+            viewAll(null);
+        } else {
+            if (OFF_HEAP) {
+                loadAllAppointments();
+            }
+            showPeriod();
+        }
+        searchCustomer();
+    }
+
     /**
      * Initializes the controller after the FXML file has been loaded.
      * It sets up the cell value factories for the appointments and customers tables,
@@ -527,42 +923,73 @@ public class AppointmentsAndCustomersController implements Initializable {
         this.viewByMonthRadioButton.setToggleGroup(viewToggleGroup);
         this.viewAllRadioButton.setToggleGroup(viewToggleGroup);
         this.viewAllRadioButton.setSelected(true); // Default view is 'View All'
+        showPeriodNavigation(false);
+
+        // Search once typing pauses, rather than on every key
+        searchDelay = new PauseTransition(javafx.util.Duration.millis(SEARCH_DELAY_MILLIS));
+        searchDelay.setOnFinished(event -> searchAppointments());
+        appointmentSearchField.textProperty().addListener((observable, oldText, newText) -> searchDelay.playFromStart());
+
+        // Show on each day of the date picker how many appointments start on it, counting the months around
+        // the one it opens on in the background, and draw the days again as their months are counted
+        appointmentSearchDatePicker.setDayCellFactory(picker -> {
+            AppointmentCountCell cell = new AppointmentCountCell();
+            dayCells.add(cell);
+            return cell;
+        });
+        AppointmentDayCounts.shared().addCountedListener(month -> Platform.runLater(
+                () -> dayCells.forEach(AppointmentCountCell::showCount)));
+        appointmentSearchDatePicker.setOnShowing(event -> {
+            YearMonth shownMonth = YearMonth.from(Optional.ofNullable(appointmentSearchDatePicker.getValue())
+                    .orElse(LocalDate.now()));
+            AppointmentDayCounts.shared().prefetch(shownMonth.minusMonths(1));
+            AppointmentDayCounts.shared().prefetch(shownMonth.plusMonths(1));
+        });
 
         // Set up the cell value factories for the appointments table
-        this.appointmentId.setCellValueFactory(new PropertyValueFactory<>("appointmentId"));
-        this.title.setCellValueFactory(new PropertyValueFactory<>("title"));
-        this.description.setCellValueFactory(new PropertyValueFactory<>("description"));
-        this.location.setCellValueFactory(new PropertyValueFactory<>("location"));
-        this.type.setCellValueFactory(new PropertyValueFactory<>("type"));
-        this.contact.setCellValueFactory(new PropertyValueFactory<>("contactId"));
-        this.startTime.setCellValueFactory(new PropertyValueFactory<>("startTime"));
-        this.endTime.setCellValueFactory(new PropertyValueFactory<>("endTime"));
-        this.startDate.setCellValueFactory(new PropertyValueFactory<>("startDate"));
-        this.endDate.setCellValueFactory(new PropertyValueFactory<>("endDate"));
-        this.userId.setCellValueFactory(new PropertyValueFactory<>("userId"));
-        this.apptCustomerId.setCellValueFactory(new PropertyValueFactory<>("customerId"));
+        this.appointmentId.setCellValueFactory(cell -> cell.getValue().appointmentIdProperty());
+        this.title.setCellValueFactory(cell -> cell.getValue().titleProperty());
+        this.description.setCellValueFactory(cell -> cell.getValue().descriptionProperty());
+        this.location.setCellValueFactory(cell -> cell.getValue().locationProperty());
+        this.type.setCellValueFactory(cell -> cell.getValue().typeProperty());
+        this.contact.setCellValueFactory(cell -> cell.getValue().contactIdProperty());
+        this.startTime.setCellValueFactory(cell -> cell.getValue().startTimeProperty());
+        this.endTime.setCellValueFactory(cell -> cell.getValue().endTimeProperty());
+        this.startDate.setCellValueFactory(cell -> cell.getValue().startDateProperty());
+        this.endDate.setCellValueFactory(cell -> cell.getValue().endDateProperty());
+        this.userId.setCellValueFactory(cell -> cell.getValue().userIdProperty());
+        this.apptCustomerId.setCellValueFactory(cell -> cell.getValue().customerIdProperty());
 
         // Set up the columns in the customer table
-        customerId.setCellValueFactory(new PropertyValueFactory<Customer, Integer>("customerId"));
-        name.setCellValueFactory(new PropertyValueFactory<Customer, String>("customerName"));
-        address.setCellValueFactory(new PropertyValueFactory<Customer, String>("address"));
-        postalCode.setCellValueFactory(new PropertyValueFactory<Customer, String>("postalCode"));
-        phone.setCellValueFactory(new PropertyValueFactory<Customer, String>("phone"));
-        country.setCellValueFactory(new PropertyValueFactory<Customer, String>("countryName"));
-        state.setCellValueFactory(new PropertyValueFactory<Customer, String>("divisionName"));
-
-        // Populate the appointment table with data from the database
-        ObservableList<Appointment> appointments = AppointmentDAO.getAllAppointments();
+        customerId.setCellValueFactory(cell -> cell.getValue().customerIdProperty());
+        name.setCellValueFactory(cell -> cell.getValue().customerNameProperty());
+        address.setCellValueFactory(cell -> cell.getValue().addressProperty());
+        postalCode.setCellValueFactory(cell -> cell.getValue().postalCodeProperty());
+        phone.setCellValueFactory(cell -> cell.getValue().phoneProperty());
+        country.setCellValueFactory(cell -> cell.getValue().countryNameProperty());
+        state.setCellValueFactory(cell -> cell.getValue().divisionNameProperty());
+
+        // Populate the tables with data fetched since login, or from the database
+        Prefetch prefetch = prefetched;
+        prefetched = null;
+        ObservableList<Appointment> appointments = prefetch == null ? loadAllAppointments()
+                : StartupOrchestrator.await(prefetch.appointments, FXCollections.observableArrayList());
         appointmentTableView.setItems(appointments);
-        ObservableList<Customer> customers = CustomerDAO.getAllCustomers();
+        ObservableList<Customer> customers = prefetch == null ? Repositories.customers().getAllCustomers()
+                : StartupOrchestrator.await(prefetch.customers, FXCollections.observableArrayList());
         customerTableView.setItems(customers);
+        StartupOrchestrator.mainScreenReady();
 
         // Check for upcoming appointment
         Appointment upcomingAppointment = null;
-        try {
-            upcomingAppointment = AppointmentDAO.getUpcomingAppointment(LoginController.getCurrentUser().getUserID());
-        } catch (SQLException throwable) {
-            throwable.printStackTrace();
+        if (prefetch != null) {
+            upcomingAppointment = StartupOrchestrator.await(prefetch.upcomingAppointment, null);
+        } else {
+            try {
+                upcomingAppointment = Repositories.appointments().getUpcomingAppointment(LoginController.getCurrentUser().getUserID());
+            } catch (SQLException throwable) {
+                throwable.printStackTrace();
+            }
         }
 
         // Check if the appointment falls within the next 15 minutes and business hours
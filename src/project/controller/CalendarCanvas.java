@@ -0,0 +1,617 @@
+package project.controller;
+
+import javafx.application.Platform;
+import javafx.geometry.VPos;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.control.Tooltip;
+import javafx.scene.input.MouseEvent;
+import javafx.scene.layout.Region;
+import javafx.scene.paint.Color;
+import javafx.scene.text.Font;
+import javafx.scene.text.TextAlignment;
+import project.model.Appointment;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.time.format.TextStyle;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Draws a week or a month of appointments on canvases instead of creating nodes for them, so thousands of
+ * appointments cost a few thousand rectangles drawn when something changes rather than thousands of nodes
+ * laid out and rendered on every frame. Three canvases are stacked:
+ * <ul>
+ * <li>the grid, with the days, hours and dates, drawn again only when the size or the period changes;</li>
+ * <li>the appointments, drawn again only in the days whose appointments changed;</li>
+ * <li>the hover outline, drawn again only around the appointment left and the one entered.</li>
+ * </ul>
+ * The week shows each day as a column with appointments placed by time, side by side where they overlap.
+ * The month shows six weeks of day cells listing as many appointments as fit, then how many more there are.
+ *
+ * @author Teksong Eap
+ */
+final class CalendarCanvas extends Region {
+
+    /**
+     * What the calendar shows.
+     */
+    enum Mode { WEEK, MONTH }
+
+    /**
+     * Where an appointment, or the number of appointments that did not fit, is drawn.
+     */
+    private static final class Block {
+
+        /** The appointment, or null for the line counting those that did not fit */
+        private final Appointment appointment;
+
+        /** Left edge */
+        private final double x;
+
+        /** Top edge */
+        private final double y;
+
+        /** Width */
+        private final double width;
+
+        /** Height */
+        private final double height;
+
+        /** Text drawn in the block, or null to draw the appointment's start time and title */
+        private final String text;
+
+        /**
+         * Creates a block.
+         *
+         * @param appointment the appointment, or null
+         * @param x left edge
+         * @param y top edge
+         * @param width width
+         * @param height height
+         * @param text text drawn in the block, or null for the appointment's start time and title
+         */
+        Block(Appointment appointment, double x, double y, double width, double height, String text) {
+            this.appointment = appointment;
+            this.x = x;
+            this.y = y;
+            this.width = width;
+            this.height = height;
+            this.text = text;
+        }
+
+        /**
+         * Returns whether a point is in the block.
+         *
+         * @param px x of the point
+         * @param py y of the point
+         * @return true if the point is in the block
+         */
+        boolean contains(double px, double py) {
+            return px >= x && px < x + width && py >= y && py < y + height;
+        }
+    }
+
+    /** Height of the row of day names or dates */
+    private static final double HEADER = 22;
+
+    /** Width of the hour labels in the week view */
+    private static final double GUTTER = 44;
+
+    /** Height of an appointment line in the month view */
+    private static final double LINE = 15;
+
+    /** Approximate width of a character of the appointment font, for cutting text to fit */
+    private static final double CHAR_WIDTH = 6;
+
+    /** Font of the appointments */
+    private static final Font FONT = Font.font(11);
+
+    /** Font of the day names, dates and hours */
+    private static final Font HEADER_FONT = Font.font(12);
+
+    /** Start times shown on the appointments */
+    private static final DateTimeFormatter TIME = DateTimeFormatter.ofPattern("HH:mm");
+
+    /** Orders a day's appointments */
+    private static final Comparator<Appointment> BY_START = Comparator.comparing(Appointment::getStartDateTime)
+            .thenComparing(Appointment::getEndDateTime).thenComparingInt(Appointment::getAppointmentId);
+
+    /** Day columns or cells, hours and dates */
+    private final Canvas gridLayer = new Canvas();
+
+    /** Appointments */
+    private final Canvas appointmentLayer = new Canvas();
+
+    /** Hover outline */
+    private final Canvas overlayLayer = new Canvas();
+
+    /** Shows the hovered appointment, created on first hover */
+    private Tooltip tooltip;
+
+    /** What is shown */
+    private Mode mode = Mode.WEEK;
+
+    /** The month shown, or null in the week view */
+    private YearMonth month;
+
+    /** The first day shown */
+    private LocalDate firstDay = LocalDate.now();
+
+    /** Appointments by day shown, by start */
+    private List<List<Appointment>> days = emptyDays(7);
+
+    /** Where each day's appointments are drawn */
+    private List<List<Block>> blocks = emptyDays(7);
+
+    /** Days whose appointments must be drawn again */
+    private boolean[] dirtyDays = new boolean[7];
+
+    /** Whether the grid must be drawn again */
+    private boolean gridDirty = true;
+
+    /** Whether drawing has been requested for the next pulse */
+    private boolean repaintScheduled;
+
+    /** The hovered block, or null */
+    private Block hovered;
+
+    /**
+     * Creates an empty week calendar.
+     */
+    CalendarCanvas() {
+        gridLayer.setMouseTransparent(true);
+        appointmentLayer.setMouseTransparent(true);
+        getChildren().addAll(gridLayer, appointmentLayer, overlayLayer);
+        overlayLayer.setOnMouseMoved(this::hover);
+        overlayLayer.setOnMouseExited(event -> setHovered(null));
+        setMinSize(0, 0);
+    }
+
+    /**
+     * Shows a period and its appointments. Only the days whose appointments differ from those shown, compared by
+     * identity, are drawn again, unless the period changes.
+     *
+     * @param mode week or month
+     * @param firstDay the first day of the week, or any day of the month
+     * @param appointments the appointments starting in the period; others are ignored
+     */
+    void show(Mode mode, LocalDate firstDay, List<Appointment> appointments) {
+        LocalDate start = firstDay;
+        YearMonth shownMonth = null;
+        int dayCount = 7;
+        if (mode == Mode.MONTH) {
+            shownMonth = YearMonth.from(firstDay);
+            LocalDate first = shownMonth.atDay(1);
+            start = first.minusDays(first.getDayOfWeek().getValue() % 7);
+            dayCount = 42;
+        }
+        if (mode != this.mode || !start.equals(this.firstDay) || dayCount != days.size()) {
+            this.mode = mode;
+            this.month = shownMonth;
+            this.firstDay = start;
+            days = emptyDays(dayCount);
+            blocks = emptyDays(dayCount);
+            dirtyDays = new boolean[dayCount];
+            gridDirty = true;
+        }
+
+        List<List<Appointment>> newDays = emptyDays(dayCount);
+        for (Appointment appointment : appointments) {
+            long day = ChronoUnit.DAYS.between(start, appointment.getStartDateTime().toLocalDate());
+            if (day >= 0 && day < dayCount) {
+                newDays.get((int) day).add(appointment);
+            }
+        }
+        for (int day = 0; day < dayCount; day++) {
+            List<Appointment> dayAppointments = newDays.get(day);
+            dayAppointments.sort(BY_START);
+            if (!sameAppointments(days.get(day), dayAppointments)) {
+                days.set(day, dayAppointments);
+                dirtyDays[day] = true;
+            }
+        }
+        scheduleRepaint();
+    }
+
+    @Override
+    protected void layoutChildren() {
+        double width = snapSizeX(getWidth());
+        double height = snapSizeY(getHeight());
+        if (width != gridLayer.getWidth() || height != gridLayer.getHeight()) {
+            for (Canvas layer : List.of(gridLayer, appointmentLayer, overlayLayer)) {
+                layer.setWidth(width);
+                layer.setHeight(height);
+            }
+            gridDirty = true;
+            repaint();
+        }
+    }
+
+    /**
+     * Draws the changes on the next pulse, once however many changes come before it.
+     */
+    private void scheduleRepaint() {
+        if (!repaintScheduled) {
+            repaintScheduled = true;
+            Platform.runLater(this::repaint);
+        }
+    }
+
+    /**
+     * Draws the grid if it changed and the days whose appointments changed.
+     */
+    private void repaint() {
+        repaintScheduled = false;
+        if (gridLayer.getWidth() <= 0 || gridLayer.getHeight() <= 0) {
+            return;
+        }
+        if (gridDirty) {
+            gridDirty = false;
+            drawGrid();
+            appointmentLayer.getGraphicsContext2D().clearRect(0, 0, appointmentLayer.getWidth(), appointmentLayer.getHeight());
+            for (int day = 0; day < days.size(); day++) {
+                dirtyDays[day] = false;
+                layoutDay(day);
+                drawDay(day);
+            }
+            setHovered(null);
+            return;
+        }
+        for (int day = 0; day < days.size(); day++) {
+            if (dirtyDays[day]) {
+                dirtyDays[day] = false;
+                if (hovered != null && blocks.get(day).contains(hovered)) {
+                    setHovered(null);
+                }
+                GraphicsContext gc = appointmentLayer.getGraphicsContext2D();
+                double[] cell = dayArea(day);
+                gc.clearRect(cell[0], cell[1], cell[2], cell[3]);
+                layoutDay(day);
+                drawDay(day);
+            }
+        }
+    }
+
+    /**
+     * Draws the day columns with the hours, or the day cells with the dates.
+     */
+    private void drawGrid() {
+        GraphicsContext gc = gridLayer.getGraphicsContext2D();
+        double width = gridLayer.getWidth();
+        double height = gridLayer.getHeight();
+        gc.setFill(Color.WHITE);
+        gc.fillRect(0, 0, width, height);
+        gc.setFont(HEADER_FONT);
+        gc.setTextBaseline(VPos.CENTER);
+        gc.setLineWidth(1);
+        LocalDate today = LocalDate.now();
+
+        if (mode == Mode.WEEK) {
+            double hourHeight = (height - HEADER) / 24;
+            gc.setTextAlign(TextAlignment.RIGHT);
+            for (int hour = 0; hour < 24; hour++) {
+                double y = snap(HEADER + hour * hourHeight);
+                gc.setStroke(hour % 6 == 0 ? Color.gray(0.75) : Color.gray(0.9));
+                gc.strokeLine(GUTTER, y, width, y);
+                if (hourHeight >= 10) {
+                    gc.setFill(Color.gray(0.4));
+                    gc.fillText(String.format("%02d:00", hour), GUTTER - 4, y + Math.min(hourHeight, 16) / 2);
+                }
+            }
+            gc.setTextAlign(TextAlignment.CENTER);
+            for (int day = 0; day < days.size(); day++) {
+                double[] cell = dayArea(day);
+                LocalDate date = firstDay.plusDays(day);
+                if (date.equals(today)) {
+                    gc.setFill(Color.rgb(255, 250, 220, 0.6));
+                    gc.fillRect(cell[0], cell[1], cell[2], cell[3]);
+                }
+                gc.setStroke(Color.gray(0.75));
+                gc.strokeLine(snap(cell[0]), 0, snap(cell[0]), height);
+                gc.setFill(Color.BLACK);
+                gc.fillText(date.getDayOfWeek().getDisplayName(TextStyle.SHORT, Locale.getDefault()) + " "
+                        + date.getDayOfMonth(), cell[0] + cell[2] / 2, HEADER / 2);
+            }
+        } else {
+            double cellWidth = width / 7;
+            gc.setTextAlign(TextAlignment.CENTER);
+            gc.setFill(Color.BLACK);
+            for (int column = 0; column < 7; column++) {
+                gc.fillText(firstDay.plusDays(column).getDayOfWeek().getDisplayName(TextStyle.SHORT, Locale.getDefault()),
+                        column * cellWidth + cellWidth / 2, HEADER / 2);
+            }
+            gc.setTextAlign(TextAlignment.LEFT);
+            for (int day = 0; day < days.size(); day++) {
+                double[] cell = dayArea(day);
+                LocalDate date = firstDay.plusDays(day);
+                if (!YearMonth.from(date).equals(month)) {
+                    gc.setFill(Color.gray(0.96));
+                    gc.fillRect(cell[0], cell[1], cell[2], cell[3]);
+                } else if (date.equals(today)) {
+                    gc.setFill(Color.rgb(255, 250, 220));
+                    gc.fillRect(cell[0], cell[1], cell[2], cell[3]);
+                }
+                gc.setStroke(Color.gray(0.75));
+                gc.strokeRect(snap(cell[0]), snap(cell[1]), cell[2], cell[3]);
+                gc.setFill(YearMonth.from(date).equals(month) ? Color.BLACK : Color.gray(0.6));
+                gc.fillText(Integer.toString(date.getDayOfMonth()), cell[0] + 4, cell[1] + 8);
+            }
+        }
+    }
+
+    /**
+     * Places a day's appointments. In the week view overlapping appointments share the column's width;
+     * in the month view they are listed until the cell is full.
+     *
+     * @param day the day's index
+     */
+    private void layoutDay(int day) {
+        List<Appointment> dayAppointments = days.get(day);
+        List<Block> dayBlocks = new ArrayList<>(dayAppointments.size());
+        double[] cell = dayArea(day);
+
+        if (mode == Mode.WEEK) {
+            LocalDateTime midnight = firstDay.plusDays(day).atStartOfDay();
+            double minuteHeight = cell[3] / (24 * 60);
+            List<LocalDateTime> laneEnds = new ArrayList<>();
+            int clusterStart = 0;
+            LocalDateTime clusterEnd = null;
+            int[] lanes = new int[dayAppointments.size()];
+            for (int i = 0; i <= dayAppointments.size(); i++) {
+                Appointment appointment = i < dayAppointments.size() ? dayAppointments.get(i) : null;
+                // A cluster of overlapping appointments ends where the next one starts after all of them
+                if (appointment == null || (clusterEnd != null && !appointment.getStartDateTime().isBefore(clusterEnd))) {
+                    double laneWidth = cell[2] / Math.max(1, laneEnds.size());
+                    for (int j = clusterStart; j < i; j++) {
+                        Appointment placed = dayAppointments.get(j);
+                        double top = minutesAfter(midnight, placed.getStartDateTime()) * minuteHeight;
+                        double bottom = Math.min(24 * 60, Math.max(minutesAfter(midnight, placed.getEndDateTime()),
+                                minutesAfter(midnight, placed.getStartDateTime()) + 1)) * minuteHeight;
+                        dayBlocks.add(new Block(placed, cell[0] + lanes[j] * laneWidth + 1, cell[1] + top,
+                                Math.max(1, laneWidth - 2), Math.max(2, bottom - top), null));
+                    }
+                    laneEnds.clear();
+                    clusterStart = i;
+                    clusterEnd = null;
+                }
+                if (appointment == null) {
+                    break;
+                }
+                int lane = 0;
+                while (lane < laneEnds.size() && laneEnds.get(lane).isAfter(appointment.getStartDateTime())) {
+                    lane++;
+                }
+                if (lane == laneEnds.size()) {
+                    laneEnds.add(appointment.getEndDateTime());
+                } else {
+                    laneEnds.set(lane, appointment.getEndDateTime());
+                }
+                lanes[i] = lane;
+                if (clusterEnd == null || appointment.getEndDateTime().isAfter(clusterEnd)) {
+                    clusterEnd = appointment.getEndDateTime();
+                }
+            }
+        } else {
+            double top = cell[1] + 16;
+            int lines = (int) Math.max(0, (cell[1] + cell[3] - top) / LINE);
+            int shown = dayAppointments.size() <= lines ? dayAppointments.size() : Math.max(0, lines - 1);
+            for (int i = 0; i < shown; i++) {
+                Appointment appointment = dayAppointments.get(i);
+                dayBlocks.add(new Block(appointment, cell[0] + 2, top + i * LINE, cell[2] - 4, LINE - 1, null));
+            }
+            if (shown < dayAppointments.size() && lines > 0) {
+                dayBlocks.add(new Block(null, cell[0] + 2, top + shown * LINE, cell[2] - 4, LINE - 1,
+                        "+" + (dayAppointments.size() - shown) + " more"));
+            }
+        }
+        blocks.set(day, dayBlocks);
+    }
+
+    /**
+     * Draws a day's placed appointments.
+     *
+     * @param day the day's index
+     */
+    private void drawDay(int day) {
+        GraphicsContext gc = appointmentLayer.getGraphicsContext2D();
+        gc.setFont(FONT);
+        gc.setTextAlign(TextAlignment.LEFT);
+        gc.setTextBaseline(VPos.TOP);
+        for (Block block : blocks.get(day)) {
+            if (block.appointment == null) {
+                gc.setFill(Color.gray(0.35));
+            } else {
+                gc.setFill(colorOf(block.appointment));
+                gc.fillRect(block.x, block.y, block.width, block.height);
+                gc.setFill(Color.BLACK);
+            }
+            // Text is cut to the block instead of clipping each block, which would cost a state change per block,
+            // and only made for blocks big enough to show it
+            if (block.height >= 12 && block.width >= 3 * CHAR_WIDTH) {
+                String text = block.text != null ? block.text
+                        : block.appointment.getStartDateTime().format(TIME) + " " + block.appointment.getTitle();
+                gc.fillText(fit(text, block.width - 4), block.x + 2, block.y + 1);
+            }
+        }
+    }
+
+    /**
+     * Outlines the block under the mouse and shows its appointment in the tooltip.
+     *
+     * @param event the mouse event
+     */
+    private void hover(MouseEvent event) {
+        Block found = null;
+        int day = dayAt(event.getX(), event.getY());
+        if (day >= 0) {
+            List<Block> dayBlocks = blocks.get(day);
+            // Later blocks are drawn over earlier ones
+            for (int i = dayBlocks.size() - 1; i >= 0 && found == null; i--) {
+                if (dayBlocks.get(i).contains(event.getX(), event.getY())) {
+                    found = dayBlocks.get(i);
+                }
+            }
+        }
+        setHovered(found);
+    }
+
+    /**
+     * Moves the hover outline, clearing only the old outline.
+     *
+     * @param block the block to outline, or null
+     */
+    private void setHovered(Block block) {
+        if (block == hovered) {
+            return;
+        }
+        GraphicsContext gc = overlayLayer.getGraphicsContext2D();
+        if (hovered != null) {
+            gc.clearRect(hovered.x - 2, hovered.y - 2, hovered.width + 4, hovered.height + 4);
+        }
+        hovered = block;
+        if (block == null || block.appointment == null) {
+            if (tooltip != null) {
+                Tooltip.uninstall(overlayLayer, tooltip);
+            }
+            return;
+        }
+        if (tooltip == null) {
+            tooltip = new Tooltip();
+        }
+        gc.setStroke(Color.rgb(30, 60, 160));
+        gc.setLineWidth(2);
+        gc.strokeRect(block.x, block.y, block.width, block.height);
+        Appointment appointment = block.appointment;
+        tooltip.setText(appointment.getTitle() + "\n"
+                + appointment.getStartDateTime().format(TIME) + " - " + appointment.getEndDateTime().format(TIME)
+                + "\n" + appointment.getType() + ", " + appointment.getLocation()
+                + "\nAppointment " + appointment.getAppointmentId() + ", customer " + appointment.getCustomerId()
+                + ", contact " + appointment.getContactId() + ", user " + appointment.getUserId());
+        Tooltip.install(overlayLayer, tooltip);
+    }
+
+    /**
+     * Returns the area a day's appointments are drawn in.
+     *
+     * @param day the day's index
+     * @return x, y, width and height
+     */
+    private double[] dayArea(int day) {
+        double width = gridLayer.getWidth();
+        double height = gridLayer.getHeight();
+        if (mode == Mode.WEEK) {
+            double dayWidth = (width - GUTTER) / 7;
+            return new double[] {GUTTER + day * dayWidth, HEADER, dayWidth, height - HEADER};
+        }
+        double cellWidth = width / 7;
+        double cellHeight = (height - HEADER) / 6;
+        return new double[] {(day % 7) * cellWidth, HEADER + (day / 7) * cellHeight, cellWidth, cellHeight};
+    }
+
+    /**
+     * Returns the day at a point.
+     *
+     * @param x x of the point
+     * @param y y of the point
+     * @return the day's index, or -1 outside the days
+     */
+    private int dayAt(double x, double y) {
+        double width = gridLayer.getWidth();
+        double height = gridLayer.getHeight();
+        if (y < HEADER) {
+            return -1;
+        }
+        if (mode == Mode.WEEK) {
+            int day = (int) ((x - GUTTER) / ((width - GUTTER) / 7));
+            return x < GUTTER || day >= 7 ? -1 : day;
+        }
+        int column = (int) (x / (width / 7));
+        int row = (int) ((y - HEADER) / ((height - HEADER) / 6));
+        return column >= 7 || row >= 6 ? -1 : row * 7 + column;
+    }
+
+    /**
+     * Returns the minutes from midnight to a time, clamped to the day.
+     *
+     * @param midnight the start of the day
+     * @param time the time
+     * @return minutes from 0 to 1440
+     */
+    private static double minutesAfter(LocalDateTime midnight, LocalDateTime time) {
+        long days = time.toLocalDate().toEpochDay() - midnight.toLocalDate().toEpochDay();
+        return Math.max(0, Math.min(24 * 60, days * 24 * 60 + time.getHour() * 60 + time.getMinute()));
+    }
+
+    /**
+     * Returns the colour of an appointment, by its contact.
+     *
+     * @param appointment the appointment
+     * @return the colour
+     */
+    private static Color colorOf(Appointment appointment) {
+        return Color.hsb((appointment.getContactId() * 67) % 360, 0.35, 0.95);
+    }
+
+    /**
+     * Cuts text to about the given width.
+     *
+     * @param text the text
+     * @param width the width available
+     * @return the text, cut if needed
+     */
+    private static String fit(String text, double width) {
+        int chars = (int) (width / CHAR_WIDTH);
+        return text.length() <= chars ? text : text.substring(0, Math.max(0, chars - 1)) + "\u2026";
+    }
+
+    /**
+     * Returns a coordinate in the middle of a pixel, so one-pixel lines are sharp.
+     *
+     * @param coordinate the coordinate
+     * @return the snapped coordinate
+     */
+    private static double snap(double coordinate) {
+        return Math.floor(coordinate) + 0.5;
+    }
+
+    /**
+     * Returns whether two lists hold the same appointment objects in the same order.
+     *
+     * @param shown the appointments shown
+     * @param updated the appointments to show
+     * @return true if nothing changed
+     */
+    private static boolean sameAppointments(List<Appointment> shown, List<Appointment> updated) {
+        if (shown.size() != updated.size()) {
+            return false;
+        }
+        for (int i = 0; i < shown.size(); i++) {
+            if (shown.get(i) != updated.get(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns a list of empty lists, one per day.
+     *
+     * @param dayCount the number of days
+     * @param <T> the element type
+     * @return the lists
+     */
+    private static <T> List<List<T>> emptyDays(int dayCount) {
+        List<List<T>> lists = new ArrayList<>(dayCount);
+        for (int day = 0; day < dayCount; day++) {
+            lists.add(new ArrayList<>());
+        }
+        return lists;
+    }
+}
@@ -0,0 +1,313 @@
+package project.controller;
+
+import javafx.application.Platform;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import javafx.event.ActionEvent;
+import javafx.fxml.FXML;
+import javafx.fxml.Initializable;
+import javafx.scene.control.*;
+import javafx.scene.layout.StackPane;
+import javafx.stage.Stage;
+import project.DAO.DataChangeBus;
+import project.DAO.DataChangeEvent;
+import project.DAO.Repositories;
+import project.model.Appointment;
+import project.model.Contact;
+import project.model.User;
+import project.utilities.AlertMessage;
+import project.utilities.AppointmentRangeCache;
+import project.utilities.SceneSwitcher;
+
+import java.io.IOException;
+import java.net.URL;
+import java.sql.SQLException;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.FormatStyle;
+import java.time.temporal.TemporalAdjusters;
+import java.util.List;
+import java.util.Optional;
+import java.util.ResourceBundle;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * Controller for the 'Calendar' view, which shows a week or a month of appointments, for everyone or for one user
+ * or contact, on a {@link CalendarCanvas}. The appointments come from the shared {@link AppointmentRangeCache},
+ * the same as the main screen's week and month views, and changes to them are drawn as they happen.
+ *
+ * @author Teksong Eap
+ */
+public class CalendarController implements Initializable, SceneSwitcher.Reusable {
+
+    /** Whose appointments can be shown */
+    private static final String EVERYONE = "Everyone";
+
+    /** Shows one user's appointments */
+    private static final String USER = "User";
+
+    /** Shows one contact's appointments */
+    private static final String CONTACT = "Contact";
+
+    /** Week view radio button */
+    @FXML
+    private RadioButton weekRadioButton;
+
+    /** Month view radio button */
+    @FXML
+    private RadioButton monthRadioButton;
+
+    /** Shows the week or month being viewed */
+    @FXML
+    private Label periodLabel;
+
+    /** Chooses whether everyone's, a user's or a contact's appointments are shown */
+    @FXML
+    private ComboBox<String> ownerTypeComboBox;
+
+    /** The user or contact whose appointments are shown */
+    @FXML
+    private ComboBox<Object> ownerComboBox;
+
+    /** Holds the calendar */
+    @FXML
+    private StackPane calendarPane;
+
+    /** Shows how many appointments are in the period */
+    @FXML
+    private Label appointmentCountLabel;
+
+    /** The calendar */
+    private final CalendarCanvas calendar = new CalendarCanvas();
+
+    /** First day of the week, or any day of the month, being viewed */
+    private LocalDate periodStart = LocalDate.now();
+
+    /** Whether a refresh has been requested for the application thread */
+    private final AtomicBoolean refreshScheduled = new AtomicBoolean();
+
+    /**
+     * Handles the week or month radio buttons.
+     *
+     * @param actionEvent the ActionEvent object
+     */
+    @FXML
+    public void changeView(ActionEvent actionEvent) {
+        refresh();
+    }
+
+    /**
+     * Handles the action of the previous period button being clicked.
+     *
+     * @param actionEvent the ActionEvent object
+     */
+    @FXML
+    public void showPreviousPeriod(ActionEvent actionEvent) {
+        periodStart = monthRadioButton.isSelected() ? periodStart.minusMonths(1) : periodStart.minusWeeks(1);
+        refresh();
+    }
+
+    /**
+     * Handles the action of the next period button being clicked.
+     *
+     * @param actionEvent the ActionEvent object
+     */
+    @FXML
+    public void showNextPeriod(ActionEvent actionEvent) {
+        periodStart = monthRadioButton.isSelected() ? periodStart.plusMonths(1) : periodStart.plusWeeks(1);
+        refresh();
+    }
+
+    /**
+     * Handles the action of the today button being clicked.
+     *
+     * @param actionEvent the ActionEvent object
+     */
+    @FXML
+    public void showToday(ActionEvent actionEvent) {
+        periodStart = LocalDate.now();
+        refresh();
+    }
+
+    /**
+     * Fills the user or contact combo box for the chosen kind of owner and shows the appointments.
+     *
+     * @param actionEvent the ActionEvent object
+     */
+    @FXML
+    public void changeOwnerType(ActionEvent actionEvent) {
+        String ownerType = ownerTypeComboBox.getValue();
+        ObservableList<Object> owners = FXCollections.observableArrayList();
+        try {
+            if (USER.equals(ownerType)) {
+                owners.addAll(Repositories.usersAndContacts().getAllUsers());
+            } else if (CONTACT.equals(ownerType)) {
+                owners.addAll(Repositories.usersAndContacts().getAllContacts());
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        ownerComboBox.setItems(owners);
+        ownerComboBox.setDisable(owners.isEmpty());
+        if (!owners.isEmpty()) {
+            ownerComboBox.getSelectionModel().selectFirst();
+        }
+        refresh();
+    }
+
+    /**
+     * Handles a user or contact being chosen.
+     *
+     * @param actionEvent the ActionEvent object
+     */
+    @FXML
+    public void changeOwner(ActionEvent actionEvent) {
+        refresh();
+    }
+
+    /**
+     * Handles the action of the 'back' button being clicked.
+     * It navigates back to the 'AppointmentsAndCustomers' view.
+     *
+     * @param actionEvent the ActionEvent object
+     * @throws IOException if there is an error loading
+     */
+    @FXML
+    public void goBack(ActionEvent actionEvent) throws IOException {
+        Stage stage = (Stage) ((Button) actionEvent.getSource()).getScene().getWindow();
+        SceneSwitcher.switchTo(stage, "/project/view/AppointmentsAndCustomers.fxml");
+    }
+
+    /**
+     * Handles the action of the 'logout' button being clicked.
+     * It displays a confirmation dialog, and if the user confirms,
+     * it logs out the user and exits the application.
+     *
+     * @param actionEvent the ActionEvent object
+     */
+    @FXML
+    public void logout(ActionEvent actionEvent) {
+        Optional<ButtonType> result = AlertMessage.showAlert(1);
+        if (result.isPresent() && result.get() == ButtonType.OK) {
+            System.out.println("Logging out.");
+            System.exit(0);
+        } else {
+            System.out.println("Back in the pan.");
+        }
+    }
+
+    /**
+     * Reads the period's appointments from the range cache, keeps those of the chosen user or contact, and hands
+     * them to the calendar, which draws only the days that changed. The periods on either side are prefetched.
+     */
+    private void refresh() {
+        boolean month = monthRadioButton.isSelected();
+        LocalDate first;
+        LocalDate end;
+        if (month) {
+            // The month grid shows six whole weeks around the month
+            LocalDate firstOfMonth = periodStart.withDayOfMonth(1);
+            first = firstOfMonth.with(TemporalAdjusters.previousOrSame(DayOfWeek.SUNDAY));
+            end = first.plusWeeks(6);
+        } else {
+            first = periodStart.with(TemporalAdjusters.previousOrSame(DayOfWeek.SUNDAY));
+            end = first.plusWeeks(1);
+        }
+
+        AppointmentRangeCache appointmentRanges = AppointmentRangeCache.shared();
+        List<Appointment> appointments;
+        try {
+            appointments = appointmentRanges.get(first.atStartOfDay(), end.atStartOfDay());
+        } catch (SQLException e) {
+            System.out.println("There was an error loading the appointments.");
+            appointments = List.of();
+        }
+        Predicate<Appointment> shown = ownerFilter();
+        appointments = appointments.stream().filter(shown).collect(Collectors.toList());
+        calendar.show(month ? CalendarCanvas.Mode.MONTH : CalendarCanvas.Mode.WEEK, month ? periodStart : first,
+                appointments);
+
+        long length = end.toEpochDay() - first.toEpochDay();
+        appointmentRanges.prefetch(end.atStartOfDay(), end.plusDays(length).atStartOfDay());
+        appointmentRanges.prefetch(first.minusDays(length).atStartOfDay(), first.atStartOfDay());
+
+        if (month) {
+            periodLabel.setText(periodStart.format(DateTimeFormatter.ofPattern("MMMM yyyy")));
+        } else {
+            DateTimeFormatter dayFormat = DateTimeFormatter.ofLocalizedDate(FormatStyle.MEDIUM);
+            periodLabel.setText(first.format(dayFormat) + " - " + end.minusDays(1).format(dayFormat));
+        }
+        appointmentCountLabel.setText(appointments.size() + " appointments");
+    }
+
+    /**
+     * Returns which appointments the chosen user or contact has.
+     *
+     * @return a filter for the appointments to show
+     */
+    private Predicate<Appointment> ownerFilter() {
+        Object owner = ownerComboBox.getValue();
+        if (owner instanceof User) {
+            int userId = ((User) owner).getUserID();
+            return appointment -> appointment.getUserId() == userId;
+        }
+        if (owner instanceof Contact) {
+            int contactId = ((Contact) owner).getContactId();
+            return appointment -> appointment.getContactId() == contactId;
+        }
+        return appointment -> true;
+    }
+
+    /**
+     * Refreshes the calendar on the application thread after appointments change, once however many changes
+     * come before it runs. The range cache has applied a change by the time its listeners after it are called.
+     *
+     * @param event the change
+     */
+    private void onDataChange(DataChangeEvent event) {
+        if (event.getEntity() == DataChangeEvent.Entity.APPOINTMENT || event.getKind() == DataChangeEvent.Kind.DELETED) {
+            if (refreshScheduled.compareAndSet(false, true)) {
+                Platform.runLater(() -> {
+                    refreshScheduled.set(false);
+                    refresh();
+                });
+            }
+        }
+    }
+
+    /**
+     * Shows the calendar again as it was left; changes made meanwhile have been drawn already.
+     */
+    @Override
+    public void onShow() {
+        refresh();
+    }
+
+    /**
+     * Initializes the controller after the FXML file has been loaded.
+     * It sets up the view and owner choices and shows this week's appointments for everyone.
+     *
+     * @param url url
+     * @param resourceBundle resource bundle
+     */
+    @Override
+    public void initialize(URL url, ResourceBundle resourceBundle) {
+        ToggleGroup viewToggleGroup = new ToggleGroup();
+        weekRadioButton.setToggleGroup(viewToggleGroup);
+        monthRadioButton.setToggleGroup(viewToggleGroup);
+        weekRadioButton.setSelected(true);
+
+        ownerTypeComboBox.setItems(FXCollections.observableArrayList(EVERYONE, USER, CONTACT));
+        ownerTypeComboBox.setValue(EVERYONE);
+        ownerComboBox.setDisable(true);
+
+        calendarPane.getChildren().add(calendar);
+        // Created before listening, so the cache is updated before this controller hears of a change
+        AppointmentRangeCache.shared();
+        DataChangeBus.addListener(this::onDataChange);
+        refresh();
+    }
+}
@@ -1,25 +1,25 @@
 package project.controller;
 
+import javafx.application.Platform;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
-import javafx.fxml.FXMLLoader;
 import javafx.fxml.Initializable;
-import javafx.scene.Parent;
-import javafx.scene.Scene;
 import javafx.scene.control.*;
 import javafx.stage.Stage;
+import project.DAO.Repositories;
+import project.jfr.LoginAttemptEvent;
 import project.model.User;
-import java.io.FileWriter;
+import project.utilities.AppConfig;
+import project.utilities.AppointmentReminderService;
+import project.utilities.LoginActivityLog;
+import project.utilities.SceneSwitcher;
+import project.utilities.StartupOrchestrator;
 import java.io.IOException;
-import java.io.PrintWriter;
 import java.net.URL;
-import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.util.Locale;
-import java.util.Objects;
 import java.util.Optional;
 import java.util.ResourceBundle;
-import static project.utilities.DBLogin.loginQuery;
 
 /**
  * The LoginController class handles the logic for the login form.
@@ -85,23 +85,30 @@ public class LoginController implements Initializable {
         String username = usernameTextField.getText();
         String password = passwordTextField.getText();
 
-        LocalDateTime now = LocalDateTime.now();
-        String fileName = "login_activity.txt";
-
-        FileWriter fileWriter = new FileWriter(fileName, true);
-        PrintWriter loginLog = new PrintWriter(fileWriter);
-
-        if (authenticate(username, password)) {
-            AppointmentsAndCustomersController.setShowAppointmentAlert(true);
+        LoginAttemptEvent loginEvent = new LoginAttemptEvent();
+        loginEvent.begin();
+        boolean authenticated = authenticate(username, password);
+        loginEvent.end();
+        loginEvent.username = username;
+        loginEvent.successful = authenticated;
+        loginEvent.commit();
+
+        // Log the attempt; the write happens on the login activity log's background thread
+        LoginActivityLog.recordAttempt(username, authenticated);
+
+        if (authenticated) {
+            StartupOrchestrator.mark("logged in");
+            AppointmentsAndCustomersController.prefetch(currentUser.getUserID());
+            // A training run must not stop at a dialog
+            AppointmentsAndCustomersController.setShowAppointmentAlert(!StartupOrchestrator.isTrainingRun());
+            AppointmentReminderService.start(currentUser);
             System.out.println(currentUser + "'s login successful!");
             // Define stage and scene objects
             Stage stage = (Stage) ((Button) actionEvent.getSource()).getScene().getWindow();
-            Parent scene = FXMLLoader.load(Objects.requireNonNull(getClass().getResource("/project/view/AppointmentsAndCustomers.fxml")));
-            stage.setScene(new Scene(scene));
-            stage.show();
-
-            //log the successful login
-            loginLog.println(username + "'s login was successful at " + now + " (" + ZoneId.systemDefault() + ")");
+            SceneSwitcher.switchTo(stage, "/project/view/AppointmentsAndCustomers.fxml");
+            SceneSwitcher.preload("/project/view/AddAppointment.fxml", "/project/view/UpdateAppointment.fxml",
+                    "/project/view/AddCustomer.fxml", "/project/view/UpdateCustomer.fxml", "/project/view/Reports.fxml",
+                    "/project/view/Calendar.fxml");
         }  else {
             System.out.println(currentUser + "'s login unsuccessful!");
             // Load the appropriate resource bundle depending on the default locale
@@ -122,12 +129,7 @@ public class LoginController implements Initializable {
             Alert alert = new Alert(Alert.AlertType.ERROR);
             alert.setContentText(errorMessage);
             alert.showAndWait();
-
-            // Log the unsuccessful login
-            loginLog.println(username + "'s login was unsuccessful at " + now + " (" + ZoneId.systemDefault() + ")");
         }
-        loginLog.close();
-
     }
 
     /**
@@ -150,7 +152,9 @@ public class LoginController implements Initializable {
      * @throws IOException If there is an error during authentication
      */
     private boolean authenticate(String username, String password) throws IOException {
-        Optional<User> userResult = loginQuery(username, password);
+        // The connection may still be opening in the background
+        StartupOrchestrator.awaitDatabase();
+        Optional<User> userResult = Repositories.usersAndContacts().loginQuery(username, password);
         if (userResult.isPresent()) {
             currentUser = userResult.get();
             return true;
@@ -228,6 +232,12 @@ public class LoginController implements Initializable {
             frenchRadioButton.fire();
             frenchify();
         }
+
+        if (StartupOrchestrator.isTrainingRun()) {
+            usernameTextField.setText(AppConfig.getString("startup.training.user", "test"));
+            passwordTextField.setText(AppConfig.getString("startup.training.password", "test"));
+            Platform.runLater(loginButton::fire);
+        }
     }
 
 }
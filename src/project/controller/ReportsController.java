@@ -1,37 +1,41 @@
 package project.controller;
 
+import javafx.beans.property.ReadOnlyObjectWrapper;
+import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
+import javafx.concurrent.Task;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
-import javafx.fxml.FXMLLoader;
 import javafx.fxml.Initializable;
-import javafx.scene.Parent;
-import javafx.scene.Scene;
+import javafx.scene.chart.BarChart;
+import javafx.scene.chart.XYChart;
 import javafx.scene.control.*;
-import javafx.scene.control.cell.PropertyValueFactory;
 import javafx.stage.Stage;
-import project.DAO.AppointmentDAO;
-import project.DAO.UserAndContactDAO;
-import project.DAO.CustomerDAO;
-import project.DAO.TerritoryDAO;
+import project.DAO.AppointmentQuery;
+import project.DAO.Repositories;
 import project.model.*;
 import project.utilities.AlertMessage;
+import project.utilities.LoginActivityScanner;
+import project.utilities.LoginActivityStats;
+import project.utilities.SceneSwitcher;
 import java.io.IOException;
 import java.net.URL;
 import java.sql.SQLException;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.time.LocalTime;
-import java.util.Objects;
+import java.util.List;
 import java.util.Optional;
 import java.util.ResourceBundle;
 
 /**
- * Controller for reports of 3 types: first type shows appointments by contact, second type
- * shows customers by country, third type shows number of month and type of appointments.
+ * Controller for reports of 4 types: first type shows appointments by contact, second type
+ * shows customers by country, third type shows number of month and type of appointments,
+ * fourth type summarizes the login activity log.
  *
  * @author Teksong Eap
  */
-public class ReportsController implements Initializable {
+public class ReportsController implements Initializable, SceneSwitcher.Reusable {
 
     /** Tab pane */
     @FXML
@@ -153,6 +157,62 @@ public class ReportsController implements Initializable {
     @FXML
     private TableColumn<TypeAndMonthReport, Integer> countColumn;
 
+    /** Login activity tab */
+    @FXML
+    private Tab loginActivityTab;
+
+    /** Rescan login activity button */
+    @FXML
+    private Button rescanLoginActivityButton;
+
+    /** Login activity status label */
+    @FXML
+    private Label loginActivityStatusLabel;
+
+    /** Login activity per user table view */
+    @FXML
+    private TableView<LoginUserActivity> loginUserTableView;
+
+    /** Username column */
+    @FXML
+    private TableColumn<LoginUserActivity, String> loginUsernameColumn;
+
+    /** Successful attempts column */
+    @FXML
+    private TableColumn<LoginUserActivity, Long> loginSuccessColumn;
+
+    /** Failed attempts column */
+    @FXML
+    private TableColumn<LoginUserActivity, Long> loginFailureColumn;
+
+    /** Last attempt column */
+    @FXML
+    private TableColumn<LoginUserActivity, LocalDateTime> loginLastAttemptColumn;
+
+    /** Attempts by hour of day chart */
+    @FXML
+    private BarChart<String, Number> loginHourlyChart;
+
+    /** Suspicious bursts table view */
+    @FXML
+    private TableView<LoginBurst> loginBurstTableView;
+
+    /** Burst username column */
+    @FXML
+    private TableColumn<LoginBurst, String> burstUsernameColumn;
+
+    /** Burst start column */
+    @FXML
+    private TableColumn<LoginBurst, LocalDateTime> burstStartColumn;
+
+    /** Burst end column */
+    @FXML
+    private TableColumn<LoginBurst, LocalDateTime> burstEndColumn;
+
+    /** Burst failures column */
+    @FXML
+    private TableColumn<LoginBurst, Long> burstFailuresColumn;
+
     //first report
     /**
      * Handles the action of a contact being selected in the contactComboBox.
@@ -163,8 +223,14 @@ public class ReportsController implements Initializable {
     public void updateTableBasedOnContact(ActionEvent actionEvent) {
         int selectedContactId = contactComboBox.getSelectionModel().getSelectedItem().getContactId();
         if (selectedContactId != 0) {
-            ObservableList<Appointment> appointmentsOfSelectedContact =
-                    AppointmentDAO.getAppointmentsByContact(selectedContactId);
+            ObservableList<Appointment> appointmentsOfSelectedContact;
+            try {
+                appointmentsOfSelectedContact = Repositories.appointments().findAppointments(
+                        AppointmentQuery.builder().contact(selectedContactId).build());
+            } catch (SQLException e) {
+                System.out.println("There was an error loading the appointments.");
+                appointmentsOfSelectedContact = FXCollections.observableArrayList();
+            }
             contactTableView.setItems(appointmentsOfSelectedContact);
             int totalAppointments = contactTableView.getItems().size();
             totalAppointmentsLabel.setText("Total Appointments: " + totalAppointments);
@@ -182,7 +248,7 @@ public class ReportsController implements Initializable {
 
         if (selectedCountryId != 0) {
             ObservableList<Customer> customersInSelectedCountry =
-                    CustomerDAO.getCustomersByCountry(selectedCountryId);
+                    Repositories.customers().getCustomersByCountry(selectedCountryId);
 
             customerTableView.setItems(customersInSelectedCountry);
             int totalCustomers = customerTableView.getItems().size();
@@ -190,6 +256,71 @@ public class ReportsController implements Initializable {
         }
     }
 
+    //fourth report
+    /**
+     * Handles the login activity tab being selected. The log files are scanned when the tab is first shown;
+     * later scans only read what was appended since.
+     */
+    @FXML
+    public void loginActivityTabSelected() {
+        if (loginActivityTab.isSelected() && loginUserTableView.getItems().isEmpty()) {
+            rescanLoginActivity();
+        }
+    }
+
+    /**
+     * Handles the action of the 'rescan' button being clicked.
+     * It scans the login activity files on a background thread and updates the tables and chart when done.
+     */
+    @FXML
+    public void rescanLoginActivity() {
+        Task<LoginActivityStats> scanTask = new Task<>() {
+            @Override
+            protected LoginActivityStats call() throws Exception {
+                return new LoginActivityScanner().scan();
+            }
+        };
+        long start = System.nanoTime();
+        scanTask.setOnSucceeded(event -> {
+            showLoginActivity(scanTask.getValue());
+            rescanLoginActivityButton.setDisable(false);
+            loginActivityStatusLabel.setText("Scanned in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+        });
+        scanTask.setOnFailed(event -> {
+            rescanLoginActivityButton.setDisable(false);
+            loginActivityStatusLabel.setText("Scan failed: " + scanTask.getException().getMessage());
+            scanTask.getException().printStackTrace();
+        });
+        rescanLoginActivityButton.setDisable(true);
+        loginActivityStatusLabel.setText("Scanning...");
+        Thread scanThread = new Thread(scanTask, "login-activity-scan");
+        scanThread.setDaemon(true);
+        scanThread.start();
+    }
+
+    /**
+     * Shows scanned login activity in the tables and chart.
+     *
+     * @param stats the scanned login activity
+     */
+    private void showLoginActivity(LoginActivityStats stats) {
+        loginUserTableView.setItems(FXCollections.observableArrayList(stats.getUserActivity()));
+        loginBurstTableView.setItems(FXCollections.observableArrayList(stats.getBursts()));
+
+        XYChart.Series<String, Number> successes = new XYChart.Series<>();
+        successes.setName("Successful");
+        XYChart.Series<String, Number> failures = new XYChart.Series<>();
+        failures.setName("Failed");
+        long[] hourlySuccesses = stats.getHourlySuccesses();
+        long[] hourlyFailures = stats.getHourlyFailures();
+        for (int hour = 0; hour < 24; hour++) {
+            String label = String.format("%02d", hour);
+            successes.getData().add(new XYChart.Data<>(label, hourlySuccesses[hour]));
+            failures.getData().add(new XYChart.Data<>(label, hourlyFailures[hour]));
+        }
+        loginHourlyChart.getData().setAll(List.of(successes, failures));
+    }
+
     /**
      * Handles the action of the 'logout' button being clicked.
      * It displays a confirmation dialog, and if the user confirms,
@@ -217,9 +348,22 @@ public class ReportsController implements Initializable {
     public void goBack(ActionEvent actionEvent) throws IOException {
         // Define stage and scene objects
         Stage stage = (Stage) ((Button) actionEvent.getSource()).getScene().getWindow();
-        Parent scene = FXMLLoader.load(Objects.requireNonNull(getClass().getResource("/project/view/AppointmentsAndCustomers.fxml")));
-        stage.setScene(new Scene(scene));
-        stage.show();
+        SceneSwitcher.switchTo(stage, "/project/view/AppointmentsAndCustomers.fxml");
+    }
+
+    /**
+     * Reloads the reports when the kept screen is shown again, as appointments and customers may have
+     * changed since. The login activity tables are rescanned with their 'rescan' button.
+     */
+    @Override
+    public void onShow() {
+        monthTableView.setItems(Repositories.appointments().getAppointmentCountByTypeAndMonth());
+        if (contactComboBox.getSelectionModel().getSelectedItem() != null) {
+            updateTableBasedOnContact(null);
+        }
+        if (countryComboBox.getSelectionModel().getSelectedItem() != null) {
+            updateTableBasedOnCountry();
+        }
     }
 
     /**
@@ -232,9 +376,9 @@ public class ReportsController implements Initializable {
     @Override
     public void initialize(URL url, ResourceBundle resourceBundle) {
         try {
-            ObservableList<Country> allCountries = TerritoryDAO.getAllCountries();
+            ObservableList<Country> allCountries = Repositories.territories().getAllCountries();
             countryComboBox.setItems(allCountries);
-            ObservableList<Contact> allContacts = UserAndContactDAO.getAllContacts();
+            ObservableList<Contact> allContacts = Repositories.usersAndContacts().getAllContacts();
             contactComboBox.setItems(allContacts);
 
         } catch (SQLException e) {
@@ -242,32 +386,42 @@ public class ReportsController implements Initializable {
         }
 
         //first report
-        apptIDColumn.setCellValueFactory(new PropertyValueFactory<>("appointmentId"));
-        titleColumn.setCellValueFactory(new PropertyValueFactory<>("title"));
-        descriptionColumn.setCellValueFactory(new PropertyValueFactory<>("description"));
-        locationColumn.setCellValueFactory(new PropertyValueFactory<>("location"));
-        typeColumn.setCellValueFactory(new PropertyValueFactory<>("type"));
-        startDateColumn.setCellValueFactory(new PropertyValueFactory<>("startDate"));
-        endDateColumn.setCellValueFactory(new PropertyValueFactory<>("endDate"));
-        startTimeColumn.setCellValueFactory(new PropertyValueFactory<>("startTime"));
-        endTimeColumn.setCellValueFactory(new PropertyValueFactory<>("endTime"));
-        customerIDColumn.setCellValueFactory(new PropertyValueFactory<>("customerId"));
+        apptIDColumn.setCellValueFactory(cell -> cell.getValue().appointmentIdProperty());
+        titleColumn.setCellValueFactory(cell -> cell.getValue().titleProperty());
+        descriptionColumn.setCellValueFactory(cell -> cell.getValue().descriptionProperty());
+        locationColumn.setCellValueFactory(cell -> cell.getValue().locationProperty());
+        typeColumn.setCellValueFactory(cell -> cell.getValue().typeProperty());
+        startDateColumn.setCellValueFactory(cell -> cell.getValue().startDateProperty());
+        endDateColumn.setCellValueFactory(cell -> cell.getValue().endDateProperty());
+        startTimeColumn.setCellValueFactory(cell -> cell.getValue().startTimeProperty());
+        endTimeColumn.setCellValueFactory(cell -> cell.getValue().endTimeProperty());
+        customerIDColumn.setCellValueFactory(cell -> cell.getValue().customerIdProperty());
 
         //second report
-        customerIDCountryReport.setCellValueFactory(new PropertyValueFactory<Customer, Integer>("customerId"));
-        customerNameCountryReport.setCellValueFactory(new PropertyValueFactory<Customer, String>("customerName"));
-        addressCountryReport.setCellValueFactory(new PropertyValueFactory<Customer, String>("address"));
-        postalCodeCountryReport.setCellValueFactory(new PropertyValueFactory<Customer, String>("postalCode"));
-        phoneCountryReport.setCellValueFactory(new PropertyValueFactory<Customer, String>("phone"));
-        stateCountryReport.setCellValueFactory(new PropertyValueFactory<Customer, String>("divisionName"));
+        customerIDCountryReport.setCellValueFactory(cell -> cell.getValue().customerIdProperty());
+        customerNameCountryReport.setCellValueFactory(cell -> cell.getValue().customerNameProperty());
+        addressCountryReport.setCellValueFactory(cell -> cell.getValue().addressProperty());
+        postalCodeCountryReport.setCellValueFactory(cell -> cell.getValue().postalCodeProperty());
+        phoneCountryReport.setCellValueFactory(cell -> cell.getValue().phoneProperty());
+        stateCountryReport.setCellValueFactory(cell -> cell.getValue().divisionNameProperty());
 
         //third report
-        monthColumn.setCellValueFactory(new PropertyValueFactory<TypeAndMonthReport, String>("month"));
-        typeMonthColumn.setCellValueFactory(new PropertyValueFactory<TypeAndMonthReport, String>("type"));
-        countColumn.setCellValueFactory(new PropertyValueFactory<TypeAndMonthReport, Integer>("count"));
+        monthColumn.setCellValueFactory(cell -> cell.getValue().monthProperty());
+        typeMonthColumn.setCellValueFactory(cell -> cell.getValue().typeProperty());
+        countColumn.setCellValueFactory(cell -> cell.getValue().countProperty());
         //populate table
-        ObservableList<TypeAndMonthReport> typeAndMonthReports = AppointmentDAO.getAppointmentCountByTypeAndMonth();
+        ObservableList<TypeAndMonthReport> typeAndMonthReports = Repositories.appointments().getAppointmentCountByTypeAndMonth();
         monthTableView.setItems(typeAndMonthReports);
+
+        //fourth report: small tables of immutable rows, so each cell just wraps its value
+        loginUsernameColumn.setCellValueFactory(cell -> new ReadOnlyObjectWrapper<>(cell.getValue().getUsername()));
+        loginSuccessColumn.setCellValueFactory(cell -> new ReadOnlyObjectWrapper<>(cell.getValue().getSuccessCount()));
+        loginFailureColumn.setCellValueFactory(cell -> new ReadOnlyObjectWrapper<>(cell.getValue().getFailureCount()));
+        loginLastAttemptColumn.setCellValueFactory(cell -> new ReadOnlyObjectWrapper<>(cell.getValue().getLastAttempt()));
+        burstUsernameColumn.setCellValueFactory(cell -> new ReadOnlyObjectWrapper<>(cell.getValue().getUsername()));
+        burstStartColumn.setCellValueFactory(cell -> new ReadOnlyObjectWrapper<>(cell.getValue().getStart()));
+        burstEndColumn.setCellValueFactory(cell -> new ReadOnlyObjectWrapper<>(cell.getValue().getEnd()));
+        burstFailuresColumn.setCellValueFactory(cell -> new ReadOnlyObjectWrapper<>(cell.getValue().getFailures()));
     }
 
 }
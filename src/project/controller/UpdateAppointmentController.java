@@ -1,31 +1,33 @@
 package project.controller;
 
 import javafx.fxml.FXML;
-import javafx.fxml.FXMLLoader;
 import javafx.fxml.Initializable;
-import javafx.scene.Parent;
-import javafx.scene.Scene;
 import javafx.scene.control.*;
+import javafx.concurrent.Task;
 import javafx.event.ActionEvent;
 import javafx.stage.Stage;
-import project.DAO.AppointmentDAO;
-import project.DAO.CustomerDAO;
-import project.DAO.UserAndContactDAO;
+import project.DAO.Repositories;
+import project.DAO.UpdateConflictException;
 import project.model.Appointment;
 import project.model.Contact;
 import project.model.Customer;
+import project.model.TimeSlot;
 import project.model.User;
 import project.utilities.AlertMessage;
+import project.utilities.FieldMerge;
+import project.utilities.FreeSlotFinder;
+import project.utilities.SceneSwitcher;
 import project.utilities.TimeUtil;
 
 import java.io.IOException;
 import java.net.URL;
 import java.sql.SQLException;
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.time.format.DateTimeParseException;
-import java.util.Objects;
+import java.util.List;
 import java.util.Optional;
 import java.util.ResourceBundle;
 import java.util.stream.Stream;
@@ -37,14 +39,31 @@ import java.util.stream.Stream;
  *
  * @author Teksong Eap
  */
-public class UpdateAppointmentController implements Initializable {
+public class UpdateAppointmentController implements Initializable, SceneSwitcher.Reusable {
+
+    /** Fields merged when the appointment was changed by another user while being edited */
+    private static final FieldMerge<Appointment> APPOINTMENT_MERGE = new FieldMerge<Appointment>()
+            .add("Title", Appointment::getTitle, (to, from) -> to.setTitle(from.getTitle()))
+            .add("Description", Appointment::getDescription, (to, from) -> to.setDescription(from.getDescription()))
+            .add("Location", Appointment::getLocation, (to, from) -> to.setLocation(from.getLocation()))
+            .add("Type", Appointment::getType, (to, from) -> to.setType(from.getType()))
+            .add("Contact ID", Appointment::getContactId, (to, from) -> to.setContactId(from.getContactId()))
+            .add("Customer ID", Appointment::getCustomerId, (to, from) -> to.setCustomerId(from.getCustomerId()))
+            .add("User ID", Appointment::getUserId, (to, from) -> to.setUserId(from.getUserId()))
+            .add("Start", Appointment::getStartDateTime, (to, from) -> {
+                to.setStartDateTime(from.getStartDateTime());
+                to.setStartDate(from.getStartDate());
+                to.setStartTime(from.getStartTime());
+            })
+            .add("End", Appointment::getEndDateTime, (to, from) -> {
+                to.setEndDateTime(from.getEndDateTime());
+                to.setEndDate(from.getEndDate());
+                to.setEndTime(from.getEndTime());
+            });
 
     /** Stage object */
     private Stage stage;
 
-    /** Scene object */
-    private Parent scene;
-
     /** Appointment ID field */
     @FXML
     private TextField appointmentId;
@@ -101,9 +120,29 @@ public class UpdateAppointmentController implements Initializable {
     @FXML
     private Button cancelButton;
 
+    /** List of the next free slots */
+    @FXML
+    private ListView<TimeSlot> slotListView;
+
+    /** Status of the free-slot search */
+    @FXML
+    private Label slotStatusLabel;
+
+    /** Finds free slots; null until the appointments have been loaded */
+    private FreeSlotFinder slotFinder;
+
+    /** The latest load of the appointments for the free-slot search */
+    private Task<FreeSlotFinder> slotLoadTask;
+
+    /** Whether the form is being filled from a chosen slot, which should not start a new search */
+    private boolean applyingSlot;
+
     /** Appointment to update */
     private Appointment appointmentToUpdate;
 
+    /** The appointment as it was read, before any edits; the base of a merge */
+    private Appointment originalAppointment;
+
 
     /**
      * Handles the action of the 'update' button being clicked.
@@ -120,7 +159,7 @@ public class UpdateAppointmentController implements Initializable {
         try {
             updateAppointmentFromFormInputs();
             if (isAppointmentWithinBusinessHours(appointmentToUpdate)) {
-                if (!AppointmentDAO.checkForOverlap(appointmentToUpdate)) {
+                if (!Repositories.appointments().checkForOverlap(appointmentToUpdate)) {
                     if (updateAppointmentInDBAndNavigateBack(appointmentToUpdate, actionEvent)) {
                         return;
                     }
@@ -131,6 +170,8 @@ public class UpdateAppointmentController implements Initializable {
             } else {
                 AlertMessage.showAlert(12);
             }
+        } catch (UpdateConflictException e) {
+            mergeConcurrentChanges();
         } catch (SQLException | DateTimeParseException | IOException e) {
             e.printStackTrace();
             AlertMessage.showAlert(13);
@@ -212,12 +253,10 @@ public class UpdateAppointmentController implements Initializable {
      * @throws IOException if there is an error loading the main view
      */
     private boolean updateAppointmentInDBAndNavigateBack(Appointment appointment, ActionEvent actionEvent) throws SQLException, IOException {
-        if (AppointmentDAO.updateAppointmentInDB(appointment)) {
+        if (Repositories.appointments().updateAppointmentInDB(appointment)) {
             AlertMessage.showAlert(18);
             stage = (Stage) ((Button) actionEvent.getSource()).getScene().getWindow();
-            scene = FXMLLoader.load(Objects.requireNonNull(getClass().getResource("/project/view/AppointmentsAndCustomers.fxml")));
-            stage.setScene(new Scene(scene));
-            stage.show();
+            SceneSwitcher.switchTo(stage, "/project/view/AppointmentsAndCustomers.fxml");
             return true;
         }
         return false;
@@ -233,7 +272,9 @@ public class UpdateAppointmentController implements Initializable {
      * @param appointment The Appointment object to be updated.
      */
     public void setAppointmentToUpdate(Appointment appointment) {
-        this.appointmentToUpdate = appointment;
+        // Edited as a copy, as the table may show read-only views of its rows
+        this.appointmentToUpdate = new Appointment(appointment);
+        this.originalAppointment = new Appointment(appointment);
         appointmentId.setText(Integer.toString(appointment.getAppointmentId()));
         title.setText(appointment.getTitle());
         description.setText(appointment.getDescription());
@@ -264,6 +305,30 @@ public class UpdateAppointmentController implements Initializable {
         endTime.setText(appointment.getEndTime().toString());
     }
 
+    /**
+     * Called when the appointment was changed or deleted by another user while it was being edited.
+     * Reads the current appointment, merges the other user's changes into the form field by field,
+     * and lets the user resolve fields both changed. The user then saves again.
+     */
+    private void mergeConcurrentChanges() {
+        try {
+            Appointment current = Repositories.appointments().getAppointmentById(appointmentToUpdate.getAppointmentId());
+            if (current == null) {
+                AlertMessage.showAlert(22);
+                return;
+            }
+            Appointment merged = new Appointment(appointmentToUpdate);
+            if (APPOINTMENT_MERGE.merge(originalAppointment, merged, current)) {
+                merged.setLastUpdate(current.getLastUpdate());
+                setAppointmentToUpdate(merged);
+                originalAppointment = current;
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            AlertMessage.showAlert(13);
+        }
+    }
+
     /**
      * Handles the action of the 'cancel' button being clicked.
      * It displays a confirmation dialog, and if the user confirms, it navigates back to the main view.
@@ -276,14 +341,131 @@ public class UpdateAppointmentController implements Initializable {
         Optional<ButtonType> result = AlertMessage.showAlert(6);
         if (result.isPresent() && result.get() == ButtonType.OK) {
             stage = (Stage)((Button)actionEvent.getSource()).getScene().getWindow();
-            scene = FXMLLoader.load(Objects.requireNonNull(getClass().getResource("/project/view/AppointmentsAndCustomers.fxml")));
-            stage.setScene(new Scene(scene));
-            stage.show();
+            SceneSwitcher.switchTo(stage, "/project/view/AppointmentsAndCustomers.fxml");
         } else {
             System.out.println("Back in the pan.");
         }
     }
 
+    /**
+     * Loads the appointments for the free-slot search on a background thread. A load started earlier
+     * that finishes later is ignored.
+     */
+    private void loadSlotFinder() {
+        slotFinder = null;
+        slotListView.getItems().clear();
+        Task<FreeSlotFinder> loadTask = new Task<>() {
+            @Override
+            protected FreeSlotFinder call() {
+                return FreeSlotFinder.load();
+            }
+        };
+        slotLoadTask = loadTask;
+        loadTask.setOnSucceeded(event -> {
+            if (slotLoadTask == loadTask) {
+                slotFinder = loadTask.getValue();
+                refreshSlots();
+            }
+        });
+        loadTask.setOnFailed(event -> {
+            slotStatusLabel.setText("Could not load appointments");
+            loadTask.getException().printStackTrace();
+        });
+        slotStatusLabel.setText("Loading appointments...");
+        Thread loadThread = new Thread(loadTask, "free-slot-loader");
+        loadThread.setDaemon(true);
+        loadThread.start();
+    }
+
+    /**
+     * Loads the appointments for the free-slot search on a background thread, and re-runs the search
+     * whenever the contact, customer, user, dates or times change. Choosing a slot fills in the dates and times.
+     */
+    private void setUpSlotFinder() {
+        loadSlotFinder();
+
+        contact.valueProperty().addListener((observable, oldValue, newValue) -> refreshSlots());
+        customer.valueProperty().addListener((observable, oldValue, newValue) -> refreshSlots());
+        user.valueProperty().addListener((observable, oldValue, newValue) -> refreshSlots());
+        startDate.valueProperty().addListener((observable, oldValue, newValue) -> refreshSlots());
+        endDate.valueProperty().addListener((observable, oldValue, newValue) -> refreshSlots());
+        startTime.textProperty().addListener((observable, oldValue, newValue) -> refreshSlots());
+        endTime.textProperty().addListener((observable, oldValue, newValue) -> refreshSlots());
+        slotListView.getSelectionModel().selectedItemProperty().addListener((observable, oldValue, slot) -> {
+            if (slot != null) {
+                applySlot(slot);
+            }
+        });
+    }
+
+    /**
+     * Searches for the next free slots shared by the selected contact, customer and user, as long as the
+     * times entered, starting from the selected start date. Runs in memory, so it is cheap enough for every keystroke.
+     */
+    private void refreshSlots() {
+        if (slotFinder == null || applyingSlot) {
+            return;
+        }
+        Contact selectedContact = contact.getValue();
+        Customer selectedCustomer = customer.getValue();
+        User selectedUser = user.getValue();
+        if (selectedContact == null || selectedCustomer == null || selectedUser == null
+                || startDate.getValue() == null || endDate.getValue() == null) {
+            slotListView.getItems().clear();
+            slotStatusLabel.setText("Select a contact, customer, user and dates");
+            return;
+        }
+        Duration length;
+        try {
+            length = Duration.between(LocalDateTime.of(startDate.getValue(), LocalTime.parse(startTime.getText())),
+                    LocalDateTime.of(endDate.getValue(), LocalTime.parse(endTime.getText())));
+        } catch (DateTimeParseException e) {
+            slotStatusLabel.setText("Enter start and end times as HH:mm");
+            return;
+        }
+        if (length.isNegative() || length.isZero()) {
+            slotListView.getItems().clear();
+            slotStatusLabel.setText("End must be after start");
+            return;
+        }
+        LocalDateTime startOfDay = startDate.getValue().atStartOfDay();
+        LocalDateTime now = LocalDateTime.now();
+        List<TimeSlot> slots = slotFinder.findSlots(selectedCustomer.getCustomerId(), selectedContact.getContactId(),
+                selectedUser.getUserID(), appointmentToUpdate == null ? -1 : appointmentToUpdate.getAppointmentId(),
+                startOfDay.isAfter(now) ? startOfDay : now, length, FreeSlotFinder.SLOT_COUNT);
+        slotListView.getItems().setAll(slots);
+        slotStatusLabel.setText(slots.isEmpty() ? "No free slots found"
+                : "Free " + length.toMinutes() + "-minute slots");
+    }
+
+    /**
+     * Fills the dates and times from a chosen slot.
+     *
+     * @param slot the chosen slot
+     */
+    private void applySlot(TimeSlot slot) {
+        applyingSlot = true;
+        try {
+            startDate.setValue(slot.getStart().toLocalDate());
+            endDate.setValue(slot.getEnd().toLocalDate());
+            startTime.setText(slot.getStart().toLocalTime().toString());
+            endTime.setText(slot.getEnd().toLocalTime().toString());
+        } finally {
+            applyingSlot = false;
+        }
+    }
+
+    /**
+     * Reloads the customers and the appointments for the free-slot search when the kept screen is shown again,
+     * as they may have changed since. The form itself is filled by {@link #setAppointmentToUpdate(Appointment)}.
+     */
+    @Override
+    public void onShow() {
+        customer.setItems(Repositories.customers().getAllCustomers());
+        title.requestFocus();
+        loadSlotFinder();
+    }
+
     /**
      * Initializes the controller after the FXML file has been loaded.
      * It requests focus on the 'title' TextField and populates the ComboBoxes with data.
@@ -295,16 +477,17 @@ public class UpdateAppointmentController implements Initializable {
     public void initialize(URL url, ResourceBundle resourceBundle) {
         title.requestFocus();
         try {
-            contact.setItems(UserAndContactDAO.getAllContacts());
+            contact.setItems(Repositories.usersAndContacts().getAllContacts());
             contact.getSelectionModel().selectFirst();
-            user.setItems(UserAndContactDAO.getAllUsers());
+            user.setItems(Repositories.usersAndContacts().getAllUsers());
             user.getSelectionModel().selectFirst();
-            customer.setItems(CustomerDAO.getAllCustomers());
+            customer.setItems(Repositories.customers().getAllCustomers());
             customer.getSelectionModel().selectFirst();
             startDate.setValue(LocalDate.now());
             endDate.setValue(LocalDate.now());
         } catch (Exception e){
             e.printStackTrace();
         }
+        setUpSlotFinder();
     }
 }
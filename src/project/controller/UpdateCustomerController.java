@@ -1,27 +1,25 @@
 package project.controller;
 
 import javafx.fxml.FXML;
-import javafx.fxml.FXMLLoader;
 import javafx.fxml.Initializable;
-import javafx.scene.Parent;
-import javafx.scene.Scene;
 import javafx.scene.control.ButtonType;
 import javafx.scene.control.ComboBox;
 import javafx.scene.control.TextField;
 import javafx.scene.control.Button;
 import javafx.event.ActionEvent;
 import javafx.stage.Stage;
-import project.DAO.CustomerDAO;
-import project.DAO.TerritoryDAO;
+import project.DAO.Repositories;
+import project.DAO.UpdateConflictException;
 import project.model.Country;
 import project.model.Customer;
 import project.model.Division;
 import project.utilities.AlertMessage;
+import project.utilities.FieldMerge;
+import project.utilities.SceneSwitcher;
 
 import java.io.IOException;
 import java.net.URL;
 import java.sql.SQLException;
-import java.util.Objects;
 import java.util.Optional;
 import java.util.ResourceBundle;
 import java.util.stream.Stream;
@@ -33,16 +31,29 @@ import java.util.stream.Stream;
  *
  * @author Teksong Eap
  */
-public class UpdateCustomerController implements Initializable {
+public class UpdateCustomerController implements Initializable, SceneSwitcher.Reusable {
+    /** Fields merged when the customer was changed by another user while being edited */
+    private static final FieldMerge<Customer> CUSTOMER_MERGE = new FieldMerge<Customer>()
+            .add("Name", Customer::getCustomerName, (to, from) -> to.setCustomerName(from.getCustomerName()))
+            .add("Address", Customer::getAddress, (to, from) -> to.setAddress(from.getAddress()))
+            .add("Postal Code", Customer::getPostalCode, (to, from) -> to.setPostalCode(from.getPostalCode()))
+            .add("Phone", Customer::getPhone, (to, from) -> to.setPhone(from.getPhone()))
+            .add("Division ID", Customer::getDivisionId, (to, from) -> {
+                to.setDivisionId(from.getDivisionId());
+                to.setDivisionName(from.getDivisionName());
+                to.setCountryId(from.getCountryId());
+                to.setCountryName(from.getCountryName());
+            });
+
     /** Stage object */
     private Stage stage;
 
-    /** Scene object */
-    private Parent scene;
-
     /** Customer to update */
     private Customer customerToUpdate;
 
+    /** The customer as it was read, before any edits; the base of a merge */
+    private Customer originalCustomer;
+
     /** Customer ID field */
     @FXML
     private TextField customerId;
@@ -99,6 +110,8 @@ public class UpdateCustomerController implements Initializable {
                 return;
             }
             System.out.println("Failed to update customer!");
+        } catch (UpdateConflictException e) {
+            mergeConcurrentChanges();
         } catch (SQLException | IOException e) {
             e.printStackTrace();
             AlertMessage.showAlert(13);
@@ -113,6 +126,7 @@ public class UpdateCustomerController implements Initializable {
      */
     public void setCustomerToUpdate(Customer customer) {
         this.customerToUpdate = customer;
+        this.originalCustomer = new Customer(customer);
         customerId.setText(Integer.toString(customer.getCustomerId()));
         customerName.setText(customer.getCustomerName());
         address.setText(customer.getAddress());
@@ -127,7 +141,7 @@ public class UpdateCustomerController implements Initializable {
 
         // Populate the division ComboBox based on the selected country
         try {
-            division.setItems(TerritoryDAO.getAllDivisionsByCountryId(country.getSelectionModel().getSelectedItem().getCountryId()));
+            division.setItems(Repositories.territories().getAllDivisionsByCountryId(country.getSelectionModel().getSelectedItem().getCountryId()));
         } catch (SQLException e) {
             e.printStackTrace();
         }
@@ -168,17 +182,39 @@ public class UpdateCustomerController implements Initializable {
      * @throws IOException if there is an error loading the main view
      */
     private boolean updateCustomerInDBAndNavigateBack(Customer customer, ActionEvent event) throws SQLException, IOException {
-        if (CustomerDAO.updateCustomerInDB(customer)) {
+        if (Repositories.customers().updateCustomerInDB(customer)) {
             AlertMessage.showAlert(19);
             stage = (Stage) ((Button) event.getSource()).getScene().getWindow();
-            scene = FXMLLoader.load(Objects.requireNonNull(getClass().getResource("/project/view/AppointmentsAndCustomers.fxml")));
-            stage.setScene(new Scene(scene));
-            stage.show();
+            SceneSwitcher.switchTo(stage, "/project/view/AppointmentsAndCustomers.fxml");
             return true;
         }
         return false;
     }
 
+    /**
+     * Called when the customer was changed or deleted by another user while it was being edited.
+     * Reads the current customer, merges the other user's changes into the form field by field,
+     * and lets the user resolve fields both changed. The user then saves again.
+     */
+    private void mergeConcurrentChanges() {
+        try {
+            Customer current = Repositories.customers().getCustomerById(customerToUpdate.getCustomerId());
+            if (current == null) {
+                AlertMessage.showAlert(22);
+                return;
+            }
+            Customer merged = new Customer(customerToUpdate);
+            if (CUSTOMER_MERGE.merge(originalCustomer, merged, current)) {
+                merged.setLastUpdate(current.getLastUpdate());
+                setCustomerToUpdate(merged);
+                originalCustomer = current;
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            AlertMessage.showAlert(13);
+        }
+    }
+
     /**
      * Checks if any of the form inputs are empty.
      *
@@ -197,7 +233,7 @@ public class UpdateCustomerController implements Initializable {
      */
     @FXML
     public void updateDivisionComboBox (ActionEvent event) throws SQLException {
-        division.setItems(TerritoryDAO.getAllDivisionsByCountryId(country.getSelectionModel().getSelectedItem().getCountryId()));
+        division.setItems(Repositories.territories().getAllDivisionsByCountryId(country.getSelectionModel().getSelectedItem().getCountryId()));
         division.getSelectionModel().selectFirst();
     }
 
@@ -212,14 +248,21 @@ public class UpdateCustomerController implements Initializable {
         Optional<ButtonType> result = AlertMessage.showAlert(6);
         if (result.isPresent() && result.get() == ButtonType.OK) {
             stage = (Stage)((Button)actionEvent.getSource()).getScene().getWindow();
-            scene = FXMLLoader.load(Objects.requireNonNull(getClass().getResource("/project/view/AppointmentsAndCustomers.fxml")));
-            stage.setScene(new Scene(scene));
-            stage.show();
+            SceneSwitcher.switchTo(stage, "/project/view/AppointmentsAndCustomers.fxml");
         } else {
             System.out.println("Back in the pan.");
         }
     }
 
+    /**
+     * Moves the focus back to the first field when the kept screen is shown again.
+     * The form itself is filled by {@link #setCustomerToUpdate(Customer)}.
+     */
+    @Override
+    public void onShow() {
+        customerName.requestFocus();
+    }
+
     /**
      * Initializes the controller and requests focus on the customerName TextField
      * and populates the country ComboBox with all countries.
@@ -231,7 +274,7 @@ public class UpdateCustomerController implements Initializable {
     public void initialize(URL url, ResourceBundle resourceBundle) {
         customerName.requestFocus();
         try {
-            country.setItems(TerritoryDAO.getAllCountries());
+            country.setItems(Repositories.territories().getAllCountries());
             country.getSelectionModel().selectFirst();
         } catch (SQLException throwable) {
             throwable.printStackTrace();
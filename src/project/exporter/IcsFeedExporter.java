@@ -0,0 +1,246 @@
+package project.exporter;
+
+import project.DAO.AppointmentDAO;
+import project.model.Appointment;
+import project.utilities.AppConfig;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Writes a contact's or user's appointments as an iCalendar (.ics) feed that calendar apps can subscribe to.
+ *
+ * Appointments are streamed from the database straight into the file one VEVENT at a time, so memory use stays
+ * constant however many appointments the feed holds. The file is written to a temporary file and moved into place,
+ * so a calendar app never reads a half-written feed.
+ *
+ * Each feed records a fingerprint of its appointments (see {@link AppointmentDAO#getChangeFingerprint}) in an
+ * X-AMS-FINGERPRINT property. When a feed is regenerated and the fingerprint has not changed, the file is left
+ * alone, so regenerating hundreds of feeds costs one small aggregate query each.
+ *
+ * The events carry X-CUSTOMER-ID, X-USER-ID and X-CONTACT-ID properties, so a feed can be imported again.
+ *
+ * Settings (app.properties or -D):
+ * icsFeed.pastDays (default 30), icsFeed.futureDays (default 365) for the default date range.
+ *
+ * @author Teksong Eap
+ */
+public final class IcsFeedExporter {
+
+    /** Days before today the default range starts */
+    private static final int PAST_DAYS = AppConfig.getInt("icsFeed.pastDays", 30);
+
+    /** Days after today the default range ends */
+    private static final int FUTURE_DAYS = AppConfig.getInt("icsFeed.futureDays", 365);
+
+    /** Name of the property holding the fingerprint */
+    private static final String FINGERPRINT_PROPERTY = "X-AMS-FINGERPRINT:";
+
+    /** Format of an iCalendar UTC date-time */
+    private static final DateTimeFormatter icsDTF = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'");
+
+    /** Longest line in octets before it is folded, as RFC 5545 requires */
+    private static final int MAX_LINE_OCTETS = 75;
+
+    /** The connection feeds are read through; it is busy while a feed is streamed */
+    private final Connection connection;
+
+    /**
+     * Creates an exporter.
+     *
+     * @param connection a dedicated connection to read feeds through
+     */
+    public IcsFeedExporter(Connection connection) {
+        this.connection = connection;
+    }
+
+    /**
+     * Returns the first day of the default range.
+     *
+     * @return today minus icsFeed.pastDays
+     */
+    public static LocalDate defaultFrom() {
+        return LocalDate.now().minusDays(PAST_DAYS);
+    }
+
+    /**
+     * Returns the day after the default range.
+     *
+     * @return today plus icsFeed.futureDays
+     */
+    public static LocalDate defaultTo() {
+        return LocalDate.now().plusDays(FUTURE_DAYS);
+    }
+
+    /**
+     * Writes a feed, unless the file already holds the same appointments.
+     *
+     * @param owner whose appointments to export
+     * @param ownerId the contact or user ID
+     * @param from the first day of the range
+     * @param to the day after the range
+     * @param file the feed file
+     * @return true if the file was written, false if it was up to date
+     * @throws SQLException if a database access error occurs
+     * @throws IOException if the file cannot be written
+     */
+    public boolean export(AppointmentDAO.Owner owner, int ownerId, LocalDate from, LocalDate to, Path file)
+            throws SQLException, IOException {
+        LocalDateTime fromDateTime = from.atStartOfDay();
+        LocalDateTime toDateTime = to.atStartOfDay();
+        String fingerprint = owner + "-" + ownerId + "-" + from + "-" + to + "-"
+                + AppointmentDAO.getChangeFingerprint(connection, owner, ownerId, fromDateTime, toDateTime);
+        if (fingerprint.equals(readFingerprint(file))) {
+            return false;
+        }
+
+        Path parent = file.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path temp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+        try {
+            try (BufferedWriter out = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                writeLine(out, "BEGIN:VCALENDAR");
+                writeLine(out, "VERSION:2.0");
+                writeLine(out, "PRODID:-//Appointment Management System//EN");
+                writeLine(out, "CALSCALE:GREGORIAN");
+                writeLine(out, "X-WR-CALNAME:" + escape(owner.name().charAt(0) + owner.name().substring(1).toLowerCase() + " " + ownerId));
+                writeLine(out, FINGERPRINT_PROPERTY + fingerprint);
+                String stamp = toUtc(LocalDateTime.now());
+                AppointmentDAO.streamAppointments(connection, owner, ownerId, fromDateTime, toDateTime,
+                        (appointment, lastUpdate) -> writeEvent(out, appointment, lastUpdate, stamp));
+                writeLine(out, "END:VCALENDAR");
+            }
+            try {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        return true;
+    }
+
+    /**
+     * Writes one appointment as a VEVENT.
+     *
+     * @param out the feed
+     * @param appointment the appointment
+     * @param lastUpdate when the appointment was last changed, in local time
+     * @param stamp the time the feed is generated, in iCalendar UTC form
+     * @throws IOException if the feed cannot be written
+     */
+    private static void writeEvent(BufferedWriter out, Appointment appointment, LocalDateTime lastUpdate, String stamp)
+            throws IOException {
+        writeLine(out, "BEGIN:VEVENT");
+        writeLine(out, "UID:appointment-" + appointment.getAppointmentId() + "@appointment-management-system");
+        writeLine(out, "DTSTAMP:" + stamp);
+        writeLine(out, "LAST-MODIFIED:" + toUtc(lastUpdate));
+        writeLine(out, "DTSTART:" + toUtc(appointment.getStartDateTime()));
+        writeLine(out, "DTEND:" + toUtc(appointment.getEndDateTime()));
+        writeLine(out, "SUMMARY:" + escape(appointment.getTitle()));
+        writeLine(out, "DESCRIPTION:" + escape(appointment.getDescription()));
+        writeLine(out, "LOCATION:" + escape(appointment.getLocation()));
+        writeLine(out, "CATEGORIES:" + escape(appointment.getType()));
+        writeLine(out, "X-CUSTOMER-ID:" + appointment.getCustomerId());
+        writeLine(out, "X-USER-ID:" + appointment.getUserId());
+        writeLine(out, "X-CONTACT-ID:" + appointment.getContactId());
+        writeLine(out, "END:VEVENT");
+    }
+
+    /**
+     * Reads the fingerprint of an existing feed from its header.
+     *
+     * @param file the feed file
+     * @return the fingerprint, or null if the file does not exist or has none
+     * @throws IOException if the file cannot be read
+     */
+    private static String readFingerprint(Path file) throws IOException {
+        try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = in.readLine()) != null && !line.equals("BEGIN:VEVENT")) {
+                if (line.startsWith(FINGERPRINT_PROPERTY)) {
+                    return line.substring(FINGERPRINT_PROPERTY.length());
+                }
+            }
+            return null;
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Writes a content line, folding it at 75 octets with CRLF and a space as RFC 5545 requires.
+     * Lines are only folded between characters, never inside a multi-byte UTF-8 sequence.
+     *
+     * @param out the feed
+     * @param line the content line
+     * @throws IOException if the feed cannot be written
+     */
+    private static void writeLine(BufferedWriter out, String line) throws IOException {
+        int octets = 0;
+        int limit = MAX_LINE_OCTETS;
+        for (int i = 0; i < line.length(); ) {
+            int codePoint = line.codePointAt(i);
+            int size = codePoint < 0x80 ? 1 : codePoint < 0x800 ? 2 : codePoint < 0x10000 ? 3 : 4;
+            if (octets + size > limit) {
+                out.write("\r\n ");
+                octets = 0;
+                limit = MAX_LINE_OCTETS - 1;  // the leading space counts
+            }
+            out.write(line, i, Character.charCount(codePoint));
+            octets += size;
+            i += Character.charCount(codePoint);
+        }
+        out.write("\r\n");
+    }
+
+    /**
+     * Escapes text for an iCalendar TEXT value.
+     *
+     * @param text the text
+     * @return the escaped text, or an empty string for null
+     */
+    private static String escape(String text) {
+        if (text == null) {
+            return "";
+        }
+        StringBuilder sb = new StringBuilder(text.length() + 8);
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '\\': sb.append("\\\\"); break;
+                case ';': sb.append("\\;"); break;
+                case ',': sb.append("\\,"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': break;
+                default: sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Formats a local date and time as an iCalendar UTC date-time.
+     *
+     * @param dateTime the local date and time
+     * @return e.g. "20230718T130000Z"
+     */
+    private static String toUtc(LocalDateTime dateTime) {
+        return dateTime.atZone(ZoneId.systemDefault()).withZoneSameInstant(ZoneOffset.UTC).format(icsDTF);
+    }
+}
@@ -0,0 +1,421 @@
+package project.importer;
+
+import project.DAO.BatchInserter;
+import project.model.Appointment;
+import project.model.Customer;
+import project.utilities.AppConfig;
+import project.utilities.JDBC;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongConsumer;
+
+/**
+ * Imports customers or appointments from a CSV or iCalendar (.ics) file.
+ *
+ * The import is a streaming pipeline of three stages:
+ * <ol>
+ *     <li>a reader thread parses the file into chunks of records,</li>
+ *     <li>a pool of validator threads checks the chunks in parallel against reference data loaded once
+ *     (see {@link RecordValidator}),</li>
+ *     <li>the calling thread takes the validated chunks in file order and inserts them through a
+ *     {@link BatchInserter} on its own connection, in JDBC batches committed in chunks.</li>
+ * </ol>
+ * The stages are connected by bounded queues, so memory use stays flat however large the file is.
+ * Rejected rows, whether by validation or by the database, are written with their line numbers and reasons to
+ * a CSV error report next to the file ("customers.csv.errors.csv").
+ *
+ * Settings (app.properties or -D):
+ * import.batchSize (default 1000), import.commitRows (default 10000),
+ * import.chunkRows (default 2000), import.threads (default: number of processors).
+ *
+ * @author Teksong Eap
+ */
+public final class BulkImporter {
+
+    /** Rows per JDBC batch */
+    private static final int BATCH_SIZE = AppConfig.getInt("import.batchSize", 1000);
+
+    /** Rows per transaction */
+    private static final int COMMIT_ROWS = AppConfig.getInt("import.commitRows", 10_000);
+
+    /** Rows per chunk handed to a validator thread */
+    private static final int CHUNK_ROWS = AppConfig.getInt("import.chunkRows", 2000);
+
+    /** Number of validator threads */
+    private static final int THREADS =
+            Math.max(1, AppConfig.getInt("import.threads", Runtime.getRuntime().availableProcessors()));
+
+    /** Marks the end of the validated chunks */
+    private static final Future<List<ValidatedRecord>> END = CompletableFuture.completedFuture(null);
+
+    /** The user name recorded as creator of the imported rows */
+    private final String createdBy;
+
+    /** Receives the number of records processed so far, or null */
+    private LongConsumer progressListener;
+
+    /**
+     * Creates an importer.
+     *
+     * @param createdBy the user name recorded as creator of the imported rows
+     */
+    public BulkImporter(String createdBy) {
+        this.createdBy = createdBy;
+    }
+
+    /**
+     * Sets a listener that receives the number of records processed so far, after each chunk.
+     * It is called on the importing thread.
+     *
+     * @param progressListener the listener
+     */
+    public void setProgressListener(LongConsumer progressListener) {
+        this.progressListener = progressListener;
+    }
+
+    /**
+     * Imports a file. Files ending in ".ics" are read as iCalendar, all others as CSV.
+     *
+     * @param file the file to import
+     * @return the outcome
+     * @throws IOException if the file cannot be read or is malformed beyond recovery, or the report cannot be written
+     * @throws SQLException if the database connection fails
+     */
+    public ImportSummary importFile(Path file) throws IOException, SQLException {
+        long startNanos = System.nanoTime();
+        Path reportFile = file.resolveSibling(file.getFileName() + ".errors.csv");
+        Files.deleteIfExists(reportFile);
+        Connection connection = JDBC.newConnection(batchConnectionProperties());
+        RecordReader reader;
+        RecordValidator validator;
+        try {
+            reader = open(file);
+            try {
+                // The reference data is read on the import's connection; the shared one belongs to the FX thread
+                validator = JDBC.callOn(connection, () -> new RecordValidator(reader.kind()));
+            } catch (SQLException | RuntimeException e) {
+                reader.close();
+                throw e;
+            }
+        } catch (IOException | SQLException | RuntimeException e) {
+            connection.close();
+            throw e;
+        }
+
+        ImportKind kind = reader.kind();
+        AtomicLong read = new AtomicLong();
+        AtomicReference<IOException> readError = new AtomicReference<>();
+        BlockingQueue<Future<List<ValidatedRecord>>> pipeline = new ArrayBlockingQueue<>(THREADS * 2);
+        AtomicInteger threadNumber = new AtomicInteger();
+        ExecutorService validators = Executors.newFixedThreadPool(THREADS, runnable -> {
+            Thread thread = new Thread(runnable, "import-validator-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        Thread readerThread = new Thread(() -> readChunks(reader, validator, validators, pipeline, read, readError),
+                "import-reader");
+        readerThread.setDaemon(true);
+        readerThread.start();
+
+        try (connection; ErrorReport report = new ErrorReport(reportFile)) {
+            long imported = kind == ImportKind.CUSTOMERS
+                    ? writeCustomers(pipeline, connection, report)
+                    : writeAppointments(pipeline, connection, report);
+            if (readError.get() != null) {
+                throw readError.get();
+            }
+            long millis = (System.nanoTime() - startNanos) / 1_000_000;
+            return new ImportSummary(kind, read.get(), imported, report.count,
+                    report.count > 0 ? reportFile : null, millis);
+        } finally {
+            readerThread.interrupt();
+            validators.shutdownNow();
+        }
+    }
+
+    /**
+     * Opens a reader for a file, choosing the format by its extension.
+     *
+     * @param file the file
+     * @return the reader
+     * @throws IOException if the file cannot be opened or its header is not recognized
+     */
+    private static RecordReader open(Path file) throws IOException {
+        BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8);
+        try {
+            return file.getFileName().toString().toLowerCase().endsWith(".ics")
+                    ? new IcsRecordReader(in)
+                    : new CsvRecordReader(in);
+        } catch (IOException | RuntimeException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the driver properties of the import connection.
+     * rewriteBatchedStatements makes the driver send a batch as multi-row INSERTs instead of one statement per row.
+     *
+     * @return the properties
+     */
+    private static Properties batchConnectionProperties() {
+        Properties properties = new Properties();
+        properties.setProperty("rewriteBatchedStatements", "true");
+        return properties;
+    }
+
+    /**
+     * Body of the reader thread. Reads the file in chunks, hands each chunk to the validators and queues
+     * the pending result, blocking while the queue is full. Always queues {@link #END} last and closes the file.
+     *
+     * @param reader the file
+     * @param validator validates records
+     * @param validators the validator threads
+     * @param pipeline the queue of pending chunk results, in file order
+     * @param read counts the records read
+     * @param readError receives a read error
+     */
+    private static void readChunks(RecordReader reader, RecordValidator validator, ExecutorService validators,
+                                   BlockingQueue<Future<List<ValidatedRecord>>> pipeline, AtomicLong read,
+                                   AtomicReference<IOException> readError) {
+        try (reader) {
+            List<RawRecord> chunk = new ArrayList<>(CHUNK_ROWS);
+            RawRecord record;
+            while ((record = reader.next()) != null) {
+                read.incrementAndGet();
+                chunk.add(record);
+                if (chunk.size() == CHUNK_ROWS) {
+                    pipeline.put(submit(chunk, validator, validators));
+                    chunk = new ArrayList<>(CHUNK_ROWS);
+                }
+            }
+            if (!chunk.isEmpty()) {
+                pipeline.put(submit(chunk, validator, validators));
+            }
+        } catch (IOException e) {
+            readError.set(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        try {
+            pipeline.put(END);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Submits a chunk for validation.
+     *
+     * @param chunk the raw records
+     * @param validator validates records
+     * @param validators the validator threads
+     * @return the pending validated records, in the chunk's order
+     */
+    private static Future<List<ValidatedRecord>> submit(List<RawRecord> chunk, RecordValidator validator,
+                                                        ExecutorService validators) {
+        return validators.submit(() -> {
+            List<ValidatedRecord> validated = new ArrayList<>(chunk.size());
+            for (RawRecord record : chunk) {
+                validated.add(validator.validate(record));
+            }
+            return validated;
+        });
+    }
+
+    /**
+     * Takes the next validated chunk in file order.
+     *
+     * @param pipeline the queue of pending chunk results
+     * @return the chunk, or null after the last one
+     */
+    private static List<ValidatedRecord> nextChunk(BlockingQueue<Future<List<ValidatedRecord>>> pipeline) {
+        try {
+            Future<List<ValidatedRecord>> future = pipeline.take();
+            return future == END ? null : future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Import interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Validation failed", e.getCause());
+        }
+    }
+
+    /**
+     * Inserts the validated customers.
+     *
+     * @param pipeline the queue of pending chunk results
+     * @param connection the import connection
+     * @param report the error report
+     * @return the number of customers inserted
+     * @throws SQLException if the database connection fails
+     * @throws IOException if the report cannot be written
+     */
+    private long writeCustomers(BlockingQueue<Future<List<ValidatedRecord>>> pipeline, Connection connection,
+                                ErrorReport report) throws SQLException, IOException {
+        BatchInserter<Customer> inserter = BatchInserter.forCustomers(connection, createdBy, BATCH_SIZE, COMMIT_ROWS,
+                (line, customer, e) -> report.addQuietly(line, "Database: " + e.getMessage()));
+        long processed = 0;
+        try (inserter) {
+            List<ValidatedRecord> chunk;
+            while ((chunk = nextChunk(pipeline)) != null) {
+                for (ValidatedRecord record : chunk) {
+                    if (record.error != null) {
+                        report.add(record.line, record.error);
+                    } else {
+                        inserter.add(record.line, (Customer) record.item);
+                    }
+                }
+                reportProgress(processed += chunk.size());
+            }
+        }
+        return inserter.getInserted();
+    }
+
+    /**
+     * Inserts the validated appointments, rejecting those that overlap an earlier appointment of the same
+     * customer in the file.
+     *
+     * @param pipeline the queue of pending chunk results
+     * @param connection the import connection
+     * @param report the error report
+     * @return the number of appointments inserted
+     * @throws SQLException if the database connection fails
+     * @throws IOException if the report cannot be written
+     */
+    private long writeAppointments(BlockingQueue<Future<List<ValidatedRecord>>> pipeline, Connection connection,
+                                   ErrorReport report) throws SQLException, IOException {
+        BatchInserter<Appointment> inserter = BatchInserter.forAppointments(connection, createdBy, BATCH_SIZE, COMMIT_ROWS,
+                (line, appointment, e) -> report.addQuietly(line, "Database: " + e.getMessage()));
+        // Accepted appointments of this file per customer, start to end in epoch seconds; they never overlap each other
+        Map<Integer, TreeMap<Long, Long>> accepted = new HashMap<>();
+        long processed = 0;
+        try (inserter) {
+            List<ValidatedRecord> chunk;
+            while ((chunk = nextChunk(pipeline)) != null) {
+                for (ValidatedRecord record : chunk) {
+                    if (record.error != null) {
+                        report.add(record.line, record.error);
+                        continue;
+                    }
+                    Appointment appointment = (Appointment) record.item;
+                    TreeMap<Long, Long> customerTimes = accepted.computeIfAbsent(appointment.getCustomerId(), k -> new TreeMap<>());
+                    long start = appointment.getStartDateTime().atZone(ZoneId.systemDefault()).toEpochSecond();
+                    long end = appointment.getEndDateTime().atZone(ZoneId.systemDefault()).toEpochSecond();
+                    Map.Entry<Long, Long> before = customerTimes.floorEntry(start);
+                    Long nextStart = customerTimes.ceilingKey(start);
+                    if ((before != null && before.getValue() > start) || (nextStart != null && nextStart < end)) {
+                        report.add(record.line, "Overlaps another appointment of customer "
+                                + appointment.getCustomerId() + " in this file");
+                        continue;
+                    }
+                    customerTimes.put(start, end);
+                    inserter.add(record.line, appointment);
+                }
+                reportProgress(processed += chunk.size());
+            }
+        }
+        return inserter.getInserted();
+    }
+
+    /**
+     * Passes the number of records processed to the progress listener, if any.
+     *
+     * @param processed records processed so far
+     */
+    private void reportProgress(long processed) {
+        if (progressListener != null) {
+            progressListener.accept(processed);
+        }
+    }
+
+    /**
+     * The per-row error report, a CSV file with a line number and a reason per rejected row.
+     * The file is only created when the first row is rejected.
+     */
+    private static final class ErrorReport implements AutoCloseable {
+
+        /** The report file */
+        private final Path file;
+
+        /** The open report, or null until the first rejected row */
+        private BufferedWriter writer;
+
+        /** Number of rejected rows */
+        long count;
+
+        /**
+         * Creates a report.
+         *
+         * @param file the report file
+         */
+        ErrorReport(Path file) {
+            this.file = file;
+        }
+
+        /**
+         * Adds a rejected row.
+         *
+         * @param line the line number of the row in the imported file
+         * @param reason why it was rejected
+         * @throws IOException if the report cannot be written
+         */
+        void add(long line, String reason) throws IOException {
+            if (writer == null) {
+                writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+                writer.write("Line,Error");
+                writer.newLine();
+            }
+            writer.write(line + ",\"" + String.valueOf(reason).replace("\"", "\"\"") + "\"");
+            writer.newLine();
+            count++;
+        }
+
+        /**
+         * Adds a rejected row from a callback that cannot throw IOException.
+         *
+         * @param line the line number of the row in the imported file
+         * @param reason why it was rejected
+         */
+        void addQuietly(long line, String reason) {
+            try {
+                add(line, reason);
+            } catch (IOException e) {
+                count++;
+                System.out.println("Error: could not write " + file + ": " + e.getMessage());
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (writer != null) {
+                writer.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package project.importer;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads customers or appointments from a CSV file with a header row.
+ * Fields may be quoted with double quotes, and quoted fields may contain commas, doubled quotes and line breaks.
+ * The header decides the kind: a "Customer_Name" column means customers, a "Start" column appointments.
+ * Columns may come in any order; unknown columns are ignored.
+ *
+ * @author Teksong Eap
+ */
+final class CsvRecordReader implements RecordReader {
+
+    /** The file */
+    private final BufferedReader reader;
+
+    /** What the file contains */
+    private final ImportKind kind;
+
+    /** For each file column, the record column it maps to, or -1 */
+    private final int[] columnMap;
+
+    /** Line number of the last line read */
+    private long lineNumber;
+
+    /** Fields of the row being parsed, reused between rows */
+    private final List<String> fields = new ArrayList<>();
+
+    /**
+     * Reads the header and creates a reader.
+     *
+     * @param reader the file
+     * @throws IOException if the header cannot be read or names neither customers nor appointments
+     */
+    CsvRecordReader(BufferedReader reader) throws IOException {
+        this.reader = reader;
+        if (!readRow()) {
+            throw new IOException("The file is empty");
+        }
+        List<String> header = new ArrayList<>(fields);
+        if (!header.isEmpty() && header.get(0).startsWith("\uFEFF")) {
+            header.set(0, header.get(0).substring(1));
+        }
+        if (header.stream().anyMatch(name -> ImportKind.CUSTOMERS.indexOf(name) == ImportKind.CUSTOMER_NAME)) {
+            kind = ImportKind.CUSTOMERS;
+        } else if (header.stream().anyMatch(name -> ImportKind.APPOINTMENTS.indexOf(name) == ImportKind.START)) {
+            kind = ImportKind.APPOINTMENTS;
+        } else {
+            throw new IOException("The header has neither a Customer_Name nor a Start column");
+        }
+        columnMap = new int[header.size()];
+        for (int i = 0; i < columnMap.length; i++) {
+            columnMap[i] = kind.indexOf(header.get(i));
+        }
+    }
+
+    @Override
+    public ImportKind kind() {
+        return kind;
+    }
+
+    @Override
+    public RawRecord next() throws IOException {
+        while (true) {
+            long startLine = lineNumber + 1;
+            if (!readRow()) {
+                return null;
+            }
+            if (fields.size() == 1 && fields.get(0).isEmpty()) {
+                continue;  // blank line
+            }
+            String[] values = new String[kind.getColumns().length];
+            for (int i = 0; i < fields.size() && i < columnMap.length; i++) {
+                if (columnMap[i] >= 0) {
+                    values[columnMap[i]] = fields.get(i);
+                }
+            }
+            return new RawRecord(startLine, values);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    /**
+     * Parses the next row into {@link #fields}.
+     *
+     * @return false at the end of the file
+     * @throws IOException if the file cannot be read or ends inside a quoted field
+     */
+    private boolean readRow() throws IOException {
+        String line = reader.readLine();
+        if (line == null) {
+            return false;
+        }
+        lineNumber++;
+        fields.clear();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        int i = 0;
+        while (true) {
+            if (i == line.length()) {
+                if (!quoted) {
+                    fields.add(field.toString());
+                    return true;
+                }
+                // A quoted field continues on the next line
+                line = reader.readLine();
+                if (line == null) {
+                    throw new IOException("Line " + lineNumber + ": unterminated quoted field");
+                }
+                lineNumber++;
+                field.append('\n');
+                i = 0;
+                continue;
+            }
+            char c = line.charAt(i++);
+            if (quoted) {
+                if (c == '"') {
+                    if (i < line.length() && line.charAt(i) == '"') {
+                        field.append('"');
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"' && field.length() == 0) {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package project.importer;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Reads appointments from the VEVENTs of an iCalendar (.ics) file.
+ *
+ * SUMMARY, DESCRIPTION, LOCATION and CATEGORIES become title, description, location and type.
+ * DTSTART and DTEND may be in UTC ("...Z"), in a TZID time zone or floating (local time); all-day dates start at midnight.
+ * The customer, user and contact come from the X-CUSTOMER-ID, X-USER-ID and X-CONTACT-ID properties,
+ * which this application's own ICS export writes.
+ * Folded lines are unfolded and text escapes are decoded. Other components and properties are ignored.
+ *
+ * @author Teksong Eap
+ */
+final class IcsRecordReader implements RecordReader {
+
+    /** Format of an iCalendar date-time */
+    private static final DateTimeFormatter icsDTF = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss");
+
+    /** Format of an iCalendar date */
+    private static final DateTimeFormatter icsDateDTF = DateTimeFormatter.ofPattern("yyyyMMdd");
+
+    /** The file */
+    private final BufferedReader reader;
+
+    /** The next physical line, read ahead to detect folded continuations */
+    private String lookahead;
+
+    /** Line number of the lookahead line */
+    private long lookaheadNumber;
+
+    /** Line number of the last logical line returned */
+    private long lineNumber;
+
+    /**
+     * Creates a reader.
+     *
+     * @param reader the file
+     * @throws IOException if the file cannot be read
+     */
+    IcsRecordReader(BufferedReader reader) throws IOException {
+        this.reader = reader;
+        this.lookahead = reader.readLine();
+        this.lookaheadNumber = 1;
+        if (lookahead != null && lookahead.startsWith("\uFEFF")) {
+            lookahead = lookahead.substring(1);
+        }
+    }
+
+    @Override
+    public ImportKind kind() {
+        return ImportKind.APPOINTMENTS;
+    }
+
+    @Override
+    public RawRecord next() throws IOException {
+        String line;
+        while ((line = readLogicalLine()) != null) {
+            if (line.equalsIgnoreCase("BEGIN:VEVENT")) {
+                return readEvent(lineNumber);
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    /**
+     * Reads the properties of one VEVENT up to its END line.
+     *
+     * @param startLine the line number of BEGIN:VEVENT
+     * @return the event as a record
+     * @throws IOException if the file cannot be read or ends inside the event
+     */
+    private RawRecord readEvent(long startLine) throws IOException {
+        String[] values = new String[ImportKind.APPOINTMENTS.getColumns().length];
+        int nested = 0;
+        String line;
+        while ((line = readLogicalLine()) != null) {
+            String upper = line.toUpperCase();
+            if (upper.startsWith("BEGIN:")) {
+                nested++;  // e.g. a VALARM; its properties are not the event's
+                continue;
+            }
+            if (upper.startsWith("END:")) {
+                if (nested == 0) {
+                    return new RawRecord(startLine, values);
+                }
+                nested--;
+                continue;
+            }
+            if (nested > 0) {
+                continue;
+            }
+            int colon = indexOfValueSeparator(line);
+            if (colon < 0) {
+                continue;
+            }
+            String nameAndParams = line.substring(0, colon);
+            String value = line.substring(colon + 1);
+            int semicolon = nameAndParams.indexOf(';');
+            String name = (semicolon < 0 ? nameAndParams : nameAndParams.substring(0, semicolon)).toUpperCase();
+            String params = semicolon < 0 ? "" : nameAndParams.substring(semicolon + 1);
+            switch (name) {
+                case "SUMMARY": values[ImportKind.TITLE] = unescape(value); break;
+                case "DESCRIPTION": values[ImportKind.DESCRIPTION] = unescape(value); break;
+                case "LOCATION": values[ImportKind.LOCATION] = unescape(value); break;
+                case "CATEGORIES": values[ImportKind.TYPE] = unescape(value); break;
+                case "DTSTART": values[ImportKind.START] = toIsoDateTime(value, params); break;
+                case "DTEND": values[ImportKind.END] = toIsoDateTime(value, params); break;
+                case "X-CUSTOMER-ID": values[ImportKind.CUSTOMER_ID] = value.trim(); break;
+                case "X-USER-ID": values[ImportKind.USER_ID] = value.trim(); break;
+                case "X-CONTACT-ID": values[ImportKind.CONTACT_ID] = value.trim(); break;
+                default: break;
+            }
+        }
+        throw new IOException("Line " + startLine + ": event is not closed with END:VEVENT");
+    }
+
+    /**
+     * Reads one logical line, joining folded continuation lines.
+     *
+     * @return the line, or null at the end of the file
+     * @throws IOException if the file cannot be read
+     */
+    private String readLogicalLine() throws IOException {
+        if (lookahead == null) {
+            return null;
+        }
+        StringBuilder sb = new StringBuilder(lookahead);
+        lineNumber = lookaheadNumber;
+        while (true) {
+            lookahead = reader.readLine();
+            lookaheadNumber++;
+            if (lookahead == null || lookahead.isEmpty()
+                    || (lookahead.charAt(0) != ' ' && lookahead.charAt(0) != '\t')) {
+                break;
+            }
+            sb.append(lookahead, 1, lookahead.length());
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Finds the colon that separates a property's name and parameters from its value,
+     * skipping colons inside quoted parameter values.
+     *
+     * @param line the property line
+     * @return the position of the colon, or -1
+     */
+    private static int indexOfValueSeparator(String line) {
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '"') {
+                quoted = !quoted;
+            } else if (c == ':' && !quoted) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Decodes iCalendar text escapes.
+     *
+     * @param value the escaped text
+     * @return the text
+     */
+    private static String unescape(String value) {
+        if (value.indexOf('\\') < 0) {
+            return value;
+        }
+        StringBuilder sb = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' && i + 1 < value.length()) {
+                char n = value.charAt(++i);
+                sb.append(n == 'n' || n == 'N' ? '\n' : n);
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Converts an iCalendar date or date-time to ISO-8601, keeping its zone if it has one,
+     * so the validator can convert it to local time.
+     *
+     * @param value the date or date-time
+     * @param params the property parameters, e.g. "TZID=America/New_York"
+     * @return the ISO-8601 text, or the original text if it cannot be parsed, so the validator reports it
+     */
+    private static String toIsoDateTime(String value, String params) {
+        String v = value.trim();
+        try {
+            if (v.length() == 8) {
+                return LocalDate.parse(v, icsDateDTF).atStartOfDay().toString();
+            }
+            if (v.endsWith("Z") || v.endsWith("z")) {
+                return LocalDateTime.parse(v.substring(0, v.length() - 1), icsDTF).atOffset(ZoneOffset.UTC).toString();
+            }
+            LocalDateTime dateTime = LocalDateTime.parse(v, icsDTF);
+            for (String param : params.split(";")) {
+                if (param.toUpperCase().startsWith("TZID=")) {
+                    String zone = param.substring(5).replace("\"", "");
+                    return dateTime.atZone(ZoneId.of(zone)).toString();
+                }
+            }
+            return dateTime.toString();
+        } catch (DateTimeException e) {
+            return v;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package project.importer;
+
+/**
+ * What an import file contains, and the columns each record is read into.
+ * Readers map their own field names onto these columns by position.
+ *
+ * @author Teksong Eap
+ */
+public enum ImportKind {
+    /** Customers */
+    CUSTOMERS("Customer_Name", "Address", "Postal_Code", "Phone", "Division"),
+    /** Appointments */
+    APPOINTMENTS("Title", "Description", "Location", "Type", "Start", "End", "Customer_ID", "User_ID", "Contact_ID");
+
+    /** Customer name column */
+    static final int CUSTOMER_NAME = 0;
+    /** Address column */
+    static final int ADDRESS = 1;
+    /** Postal code column */
+    static final int POSTAL_CODE = 2;
+    /** Phone column */
+    static final int PHONE = 3;
+    /** Division name or ID column */
+    static final int DIVISION = 4;
+
+    /** Title column */
+    static final int TITLE = 0;
+    /** Description column */
+    static final int DESCRIPTION = 1;
+    /** Location column */
+    static final int LOCATION = 2;
+    /** Type column */
+    static final int TYPE = 3;
+    /** Start column */
+    static final int START = 4;
+    /** End column */
+    static final int END = 5;
+    /** Customer ID column */
+    static final int CUSTOMER_ID = 6;
+    /** User ID column */
+    static final int USER_ID = 7;
+    /** Contact ID column */
+    static final int CONTACT_ID = 8;
+
+    /** Column names, in record order */
+    private final String[] columns;
+
+    /**
+     * Creates a kind.
+     *
+     * @param columns the column names, in record order
+     */
+    ImportKind(String... columns) {
+        this.columns = columns;
+    }
+
+    /**
+     * Returns the column names, in record order.
+     *
+     * @return the column names
+     */
+    public String[] getColumns() {
+        return columns.clone();
+    }
+
+    /**
+     * Returns the position of a column, ignoring case. "Division_ID" is accepted for "Division".
+     *
+     * @param name the column name
+     * @return the position, or -1 if the kind has no such column
+     */
+    int indexOf(String name) {
+        String trimmed = name.trim();
+        for (int i = 0; i < columns.length; i++) {
+            if (columns[i].equalsIgnoreCase(trimmed)) {
+                return i;
+            }
+        }
+        return this == CUSTOMERS && trimmed.equalsIgnoreCase("Division_ID") ? DIVISION : -1;
+    }
+}
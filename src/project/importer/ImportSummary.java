@@ -0,0 +1,107 @@
+package project.importer;
+
+import java.nio.file.Path;
+
+/**
+ * The outcome of a bulk import.
+ *
+ * @author Teksong Eap
+ */
+public final class ImportSummary {
+
+    /** What was imported */
+    private final ImportKind kind;
+
+    /** Records read from the file */
+    private final long read;
+
+    /** Records inserted */
+    private final long imported;
+
+    /** Records rejected by validation or by the database */
+    private final long rejected;
+
+    /** The per-row error report, or null if no record was rejected */
+    private final Path errorReport;
+
+    /** Duration of the import in milliseconds */
+    private final long millis;
+
+    /**
+     * Creates a summary.
+     *
+     * @param kind what was imported
+     * @param read records read from the file
+     * @param imported records inserted
+     * @param rejected records rejected
+     * @param errorReport the per-row error report, or null
+     * @param millis duration of the import in milliseconds
+     */
+    ImportSummary(ImportKind kind, long read, long imported, long rejected, Path errorReport, long millis) {
+        this.kind = kind;
+        this.read = read;
+        this.imported = imported;
+        this.rejected = rejected;
+        this.errorReport = errorReport;
+        this.millis = millis;
+    }
+
+    /**
+     * Returns what was imported.
+     * @return kind
+     */
+    public ImportKind getKind() {
+        return kind;
+    }
+
+    /**
+     * Returns the number of records read from the file.
+     * @return read count
+     */
+    public long getRead() {
+        return read;
+    }
+
+    /**
+     * Returns the number of records inserted.
+     * @return imported count
+     */
+    public long getImported() {
+        return imported;
+    }
+
+    /**
+     * Returns the number of records rejected by validation or by the database.
+     * @return rejected count
+     */
+    public long getRejected() {
+        return rejected;
+    }
+
+    /**
+     * Returns the per-row error report.
+     * @return the report file, or null if no record was rejected
+     */
+    public Path getErrorReport() {
+        return errorReport;
+    }
+
+    /**
+     * Returns the duration of the import.
+     * @return milliseconds
+     */
+    public long getMillis() {
+        return millis;
+    }
+
+    /**
+     * Returns a one-line description of the outcome.
+     * @return string rep
+     */
+    @Override
+    public String toString() {
+        String text = "Imported " + imported + " of " + read + " " + kind.name().toLowerCase()
+                + " in " + millis + " ms; " + rejected + " rejected";
+        return errorReport == null ? text : text + " (see " + errorReport + ")";
+    }
+}
@@ -0,0 +1,26 @@
+package project.importer;
+
+/**
+ * One record as read from an import file, before validation.
+ *
+ * @author Teksong Eap
+ */
+final class RawRecord {
+
+    /** Line number in the file where the record starts */
+    final long line;
+
+    /** Field values in the column order of the file's {@link ImportKind}; missing fields are null */
+    final String[] values;
+
+    /**
+     * Creates a record.
+     *
+     * @param line line number in the file where the record starts
+     * @param values field values in column order
+     */
+    RawRecord(long line, String[] values) {
+        this.line = line;
+        this.values = values;
+    }
+}
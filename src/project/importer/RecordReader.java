@@ -0,0 +1,27 @@
+package project.importer;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Reads the records of an import file one at a time, so files of any size are streamed.
+ *
+ * @author Teksong Eap
+ */
+interface RecordReader extends Closeable {
+
+    /**
+     * Returns what the file contains.
+     *
+     * @return the kind of records
+     */
+    ImportKind kind();
+
+    /**
+     * Reads the next record.
+     *
+     * @return the record, or null at the end of the file
+     * @throws IOException if the file cannot be read or is malformed beyond recovery
+     */
+    RawRecord next() throws IOException;
+}
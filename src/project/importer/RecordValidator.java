@@ -0,0 +1,282 @@
+package project.importer;
+
+import project.DAO.AppointmentDAO;
+import project.DAO.CustomerDAO;
+import project.DAO.TerritoryDAO;
+import project.DAO.UserAndContactDAO;
+import project.model.Appointment;
+import project.model.Contact;
+import project.model.Customer;
+import project.model.Division;
+import project.model.User;
+import project.utilities.IntervalIndex;
+import project.utilities.TimeUtil;
+
+import java.sql.SQLException;
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Turns raw import records into customers and appointments, or explains why they cannot be imported.
+ * Reference data (divisions, customer, user and contact IDs, existing appointments) is loaded once up front,
+ * after which validation only reads memory and can run on several threads at once.
+ *
+ * Appointments are checked the same way the Add Appointment screen checks them: start before end,
+ * within business hours, and no overlap with an existing appointment of the same customer.
+ * Overlaps between appointments in the same file are checked by {@link BulkImporter}, which sees them in order.
+ *
+ * @author Teksong Eap
+ */
+final class RecordValidator {
+
+    /** Date-time format used in CSV files */
+    private static final DateTimeFormatter csvDTF = DateTimeFormatter.ofPattern("yyyy-MM-dd H:mm[:ss]");
+
+    /** Longest value of the customer columns, as in the customers table */
+    private static final int[] CUSTOMER_MAX_LENGTHS = {50, 100, 50, 50};
+
+    /** Longest value of the title, description, location and type columns, as in the appointments table */
+    private static final int APPOINTMENT_TEXT_MAX_LENGTH = 50;
+
+    /** Division IDs */
+    private final Set<Integer> divisionIds = new HashSet<>();
+
+    /** Division IDs by lower-case division name */
+    private final Map<String, Integer> divisionIdsByName = new HashMap<>();
+
+    /** Division names by ID */
+    private final Map<Integer, String> divisionNames = new HashMap<>();
+
+    /** Existing customer IDs */
+    private final Set<Integer> customerIds = new HashSet<>();
+
+    /** Existing user IDs */
+    private final Set<Integer> userIds = new HashSet<>();
+
+    /** Existing contact IDs */
+    private final Set<Integer> contactIds = new HashSet<>();
+
+    /** Existing appointments by customer ID */
+    private final IntervalIndex existingAppointments = new IntervalIndex();
+
+    /** What is being imported */
+    private final ImportKind kind;
+
+    /**
+     * Loads the reference data needed to validate records of a kind.
+     *
+     * @param kind what is being imported
+     * @throws SQLException if a database access error occurs
+     */
+    RecordValidator(ImportKind kind) throws SQLException {
+        this.kind = kind;
+        if (kind == ImportKind.CUSTOMERS) {
+            for (Division division : TerritoryDAO.getAllDivisions()) {
+                divisionIds.add(division.getDivisionId());
+                divisionIdsByName.put(division.getDivisionName().toLowerCase(Locale.ROOT), division.getDivisionId());
+                divisionNames.put(division.getDivisionId(), division.getDivisionName());
+            }
+            return;
+        }
+        for (Customer customer : CustomerDAO.getAllCustomers()) {
+            customerIds.add(customer.getCustomerId());
+        }
+        for (User user : UserAndContactDAO.getAllUsers()) {
+            userIds.add(user.getUserID());
+        }
+        for (Contact contact : UserAndContactDAO.getAllContacts()) {
+            contactIds.add(contact.getContactId());
+        }
+        for (Appointment appointment : AppointmentDAO.getAllAppointments()) {
+            existingAppointments.add(appointment.getCustomerId(), toEpochSecond(appointment.getStartDateTime()),
+                    toEpochSecond(appointment.getEndDateTime()), appointment.getAppointmentId());
+        }
+        existingAppointments.prepare();
+    }
+
+    /**
+     * Validates a record. Safe to call from several threads.
+     *
+     * @param record the raw record
+     * @return the customer or appointment to insert, or the reason it was rejected
+     */
+    ValidatedRecord validate(RawRecord record) {
+        try {
+            return kind == ImportKind.CUSTOMERS ? validateCustomer(record) : validateAppointment(record);
+        } catch (InvalidRecordException e) {
+            return ValidatedRecord.rejected(record.line, e.getMessage());
+        }
+    }
+
+    /**
+     * Validates a customer record.
+     *
+     * @param record the raw record
+     * @return the customer to insert
+     * @throws InvalidRecordException if the record is invalid
+     */
+    private ValidatedRecord validateCustomer(RawRecord record) throws InvalidRecordException {
+        String[] v = record.values;
+        for (int i = ImportKind.CUSTOMER_NAME; i <= ImportKind.PHONE; i++) {
+            requireText(v, i, CUSTOMER_MAX_LENGTHS[i]);
+        }
+        String division = requireText(v, ImportKind.DIVISION, Integer.MAX_VALUE);
+        Integer divisionId = divisionIdsByName.get(division.toLowerCase(Locale.ROOT));
+        if (divisionId == null) {
+            try {
+                divisionId = Integer.parseInt(division);
+            } catch (NumberFormatException e) {
+                throw new InvalidRecordException("Unknown division \"" + division + "\"");
+            }
+            if (!divisionIds.contains(divisionId)) {
+                throw new InvalidRecordException("Unknown division ID " + divisionId);
+            }
+        }
+        Customer customer = new Customer(0, divisionId, 0, v[ImportKind.CUSTOMER_NAME].trim(),
+                v[ImportKind.ADDRESS].trim(), v[ImportKind.POSTAL_CODE].trim(), v[ImportKind.PHONE].trim(),
+                null, divisionNames.get(divisionId));
+        return ValidatedRecord.valid(record.line, customer);
+    }
+
+    /**
+     * Validates an appointment record.
+     *
+     * @param record the raw record
+     * @return the appointment to insert
+     * @throws InvalidRecordException if the record is invalid
+     */
+    private ValidatedRecord validateAppointment(RawRecord record) throws InvalidRecordException {
+        String[] v = record.values;
+        for (int i = ImportKind.TITLE; i <= ImportKind.TYPE; i++) {
+            requireText(v, i, APPOINTMENT_TEXT_MAX_LENGTH);
+        }
+        LocalDateTime start = parseDateTime(v, ImportKind.START);
+        LocalDateTime end = parseDateTime(v, ImportKind.END);
+        if (!start.isBefore(end)) {
+            throw new InvalidRecordException("Start is not before end");
+        }
+        if (!TimeUtil.isWithinBusinessHours(start) || !TimeUtil.isWithinBusinessHours(end)) {
+            throw new InvalidRecordException("Not within business hours");
+        }
+        int customerId = requireId(v, ImportKind.CUSTOMER_ID, customerIds);
+        int userId = requireId(v, ImportKind.USER_ID, userIds);
+        int contactId = requireId(v, ImportKind.CONTACT_ID, contactIds);
+        boolean[] overlaps = {false};
+        existingAppointments.forEachOverlap(customerId, toEpochSecond(start), toEpochSecond(end), -1,
+                (s, e) -> overlaps[0] = true);
+        if (overlaps[0]) {
+            throw new InvalidRecordException("Overlaps an existing appointment of customer " + customerId);
+        }
+        Appointment appointment = new Appointment(0, customerId, userId, contactId,
+                v[ImportKind.TITLE].trim(), v[ImportKind.DESCRIPTION].trim(), v[ImportKind.LOCATION].trim(),
+                v[ImportKind.TYPE].trim(), start, end, start.toLocalDate(), end.toLocalDate(),
+                start.toLocalTime(), end.toLocalTime());
+        return ValidatedRecord.valid(record.line, appointment);
+    }
+
+    /**
+     * Returns a required text value.
+     *
+     * @param values the record values
+     * @param column the column
+     * @param maxLength the longest allowed value
+     * @return the trimmed value
+     * @throws InvalidRecordException if the value is missing, blank or too long
+     */
+    private String requireText(String[] values, int column, int maxLength) throws InvalidRecordException {
+        String value = values[column];
+        if (value == null || value.isBlank()) {
+            throw new InvalidRecordException(kind.getColumns()[column] + " is missing");
+        }
+        value = value.trim();
+        if (value.length() > maxLength) {
+            throw new InvalidRecordException(kind.getColumns()[column] + " is longer than " + maxLength + " characters");
+        }
+        return value;
+    }
+
+    /**
+     * Returns a required ID that must exist.
+     *
+     * @param values the record values
+     * @param column the column
+     * @param known the existing IDs
+     * @return the ID
+     * @throws InvalidRecordException if the value is missing, not a number or unknown
+     */
+    private int requireId(String[] values, int column, Set<Integer> known) throws InvalidRecordException {
+        String text = requireText(values, column, Integer.MAX_VALUE);
+        int id;
+        try {
+            id = Integer.parseInt(text);
+        } catch (NumberFormatException e) {
+            throw new InvalidRecordException(kind.getColumns()[column] + " \"" + text + "\" is not a number");
+        }
+        if (!known.contains(id)) {
+            throw new InvalidRecordException("Unknown " + kind.getColumns()[column] + " " + id);
+        }
+        return id;
+    }
+
+    /**
+     * Parses a date-time in local time. Accepts "yyyy-MM-dd HH:mm[:ss]" and ISO-8601 with or without an offset or zone;
+     * values with an offset or zone are converted to local time.
+     *
+     * @param values the record values
+     * @param column the column
+     * @return the local date-time
+     * @throws InvalidRecordException if the value is missing or cannot be parsed
+     */
+    private LocalDateTime parseDateTime(String[] values, int column) throws InvalidRecordException {
+        String text = requireText(values, column, Integer.MAX_VALUE);
+        try {
+            if (text.indexOf('T') < 0) {
+                return LocalDateTime.parse(text, csvDTF);
+            }
+            if (text.indexOf('[') >= 0) {
+                return ZonedDateTime.parse(text).withZoneSameInstant(ZoneId.systemDefault()).toLocalDateTime();
+            }
+            if (text.endsWith("Z") || text.lastIndexOf('+') > 0 || text.lastIndexOf('-') > text.indexOf('T')) {
+                return OffsetDateTime.parse(text).atZoneSameInstant(ZoneId.systemDefault()).toLocalDateTime();
+            }
+            return LocalDateTime.parse(text);
+        } catch (DateTimeException e) {
+            throw new InvalidRecordException(kind.getColumns()[column] + " \"" + text + "\" is not a valid date and time");
+        }
+    }
+
+    /**
+     * Converts a local date and time to epoch seconds.
+     *
+     * @param dateTime the local date and time
+     * @return epoch seconds
+     */
+    private static long toEpochSecond(LocalDateTime dateTime) {
+        return dateTime.atZone(ZoneId.systemDefault()).toEpochSecond();
+    }
+
+    /**
+     * Thrown when a record cannot be imported; the message goes into the error report.
+     */
+    private static final class InvalidRecordException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Creates the exception.
+         *
+         * @param message why the record cannot be imported
+         */
+        InvalidRecordException(String message) {
+            super(message, null, false, false);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package project.importer;
+
+/**
+ * A record after validation: either the customer or appointment to insert, or the reason it was rejected.
+ *
+ * @author Teksong Eap
+ */
+final class ValidatedRecord {
+
+    /** Line number in the file where the record starts */
+    final long line;
+
+    /** The Customer or Appointment to insert, or null if rejected */
+    final Object item;
+
+    /** Why the record was rejected, or null if valid */
+    final String error;
+
+    /**
+     * Creates a validated record.
+     *
+     * @param line line number in the file where the record starts
+     * @param item the Customer or Appointment to insert, or null if rejected
+     * @param error why the record was rejected, or null if valid
+     */
+    private ValidatedRecord(long line, Object item, String error) {
+        this.line = line;
+        this.item = item;
+        this.error = error;
+    }
+
+    /**
+     * Creates a valid record.
+     *
+     * @param line line number in the file
+     * @param item the Customer or Appointment to insert
+     * @return the record
+     */
+    static ValidatedRecord valid(long line, Object item) {
+        return new ValidatedRecord(line, item, null);
+    }
+
+    /**
+     * Creates a rejected record.
+     *
+     * @param line line number in the file
+     * @param error why the record was rejected
+     * @return the record
+     */
+    static ValidatedRecord rejected(long line, String error) {
+        return new ValidatedRecord(line, null, error);
+    }
+}
@@ -0,0 +1,37 @@
+package project.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JDK Flight Recorder event emitted for every statement a DAO runs against the database.
+ * The event duration covers statement execution and, for queries, reading the ResultSet until it is closed.
+ *
+ * @author Teksong Eap
+ */
+@Name("project.DAOQuery")
+@Label("DAO Query")
+@Category({"Appointment Management System", "Database"})
+@Description("A SQL statement executed by a DAO method")
+@StackTrace(false)
+public class DAOQueryEvent extends jdk.jfr.Event {
+
+    /** The DAO method that issued the statement */
+    @Label("DAO Method")
+    public String daoMethod;
+
+    /** The SQL text of the statement */
+    @Label("SQL")
+    public String sql;
+
+    /** Whether the statement was a query or an update */
+    @Label("Kind")
+    public String kind;
+
+    /** Rows read from the ResultSet, or rows affected by an update */
+    @Label("Rows")
+    public long rows;
+}
@@ -0,0 +1,29 @@
+package project.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JDK Flight Recorder event emitted for every login attempt.
+ * The event duration covers the authentication query.
+ *
+ * @author Teksong Eap
+ */
+@Name("project.LoginAttempt")
+@Label("Login Attempt")
+@Category({"Appointment Management System", "Login"})
+@Description("An attempt to log in to the application")
+@StackTrace(false)
+public class LoginAttemptEvent extends jdk.jfr.Event {
+
+    /** The username that was entered */
+    @Label("Username")
+    public String username;
+
+    /** Whether the attempt was successful */
+    @Label("Successful")
+    public boolean successful;
+}
@@ -0,0 +1,30 @@
+package project.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JDK Flight Recorder event emitted for every screen switch.
+ * The event duration covers loading the FXML file, running the controller's initialize method
+ * and showing the new scene on the stage.
+ *
+ * @author Teksong Eap
+ */
+@Name("project.SceneSwitch")
+@Label("Scene Switch")
+@Category({"Appointment Management System", "Navigation"})
+@Description("FXML load, controller initialization and scene display for a screen")
+@StackTrace(false)
+public class SceneSwitchEvent extends jdk.jfr.Event {
+
+    /** The FXML resource that was loaded */
+    @Label("FXML")
+    public String fxml;
+
+    /** The controller class created for the view */
+    @Label("Controller")
+    public String controller;
+}
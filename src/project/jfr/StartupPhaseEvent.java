@@ -0,0 +1,29 @@
+package project.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JDK Flight Recorder event emitted for every phase of application startup, such as opening the database
+ * connection or loading the main screen's appointments. Phases may run at the same time on different threads.
+ *
+ * @author Teksong Eap
+ */
+@Name("project.StartupPhase")
+@Label("Startup Phase")
+@Category({"Appointment Management System", "Startup"})
+@Description("A phase of starting the application, up to the first usable main screen")
+@StackTrace(false)
+public class StartupPhaseEvent extends jdk.jfr.Event {
+
+    /** The phase */
+    @Label("Phase")
+    public String phase;
+
+    /** Milliseconds since the JVM started when the phase ended */
+    @Label("Ended At (ms since JVM start)")
+    public long endedAtMillis;
+}
@@ -0,0 +1,223 @@
+package project.main;
+
+import project.DAO.AppointmentDAO;
+import project.DAO.UserAndContactDAO;
+import project.exporter.IcsFeedExporter;
+import project.importer.BulkImporter;
+import project.importer.ImportSummary;
+import project.model.Contact;
+import project.model.LoginBurst;
+import project.model.LoginUserActivity;
+import project.model.User;
+import project.utilities.LoginActivityScanner;
+import project.utilities.JDBC;
+import project.utilities.LoginActivityStats;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Command-line tools that run instead of the JavaFX application when Main is started with a command.
+ * For example: "java project.main.Main login-report".
+ *
+ * @author Teksong Eap
+ */
+public final class CommandLineTools {
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private CommandLineTools() {
+    }
+
+    /**
+     * Runs the command given on the command line, if any.
+     *
+     * @param args command-line arguments passed to the program
+     * @return true if a command was run and the application should not be launched
+     */
+    public static boolean run(String[] args) {
+        if (args.length == 0) {
+            return false;
+        }
+        try {
+            switch (args[0]) {
+                case "login-report":
+                    printLoginReport();
+                    return true;
+                case "import":
+                    if (args.length < 2) {
+                        printUsage();
+                    } else {
+                        importFile(args[1], args.length > 2 ? args[2] : "import");
+                    }
+                    return true;
+                case "export-ics":
+                    if (args.length < 4 || !(args[1].equals("contact") || args[1].equals("user"))) {
+                        printUsage();
+                    } else {
+                        exportFeed(AppointmentDAO.Owner.valueOf(args[1].toUpperCase()), Integer.parseInt(args[2]), args[3]);
+                    }
+                    return true;
+                case "export-feeds":
+                    if (args.length < 2) {
+                        printUsage();
+                    } else {
+                        exportAllFeeds(args[1]);
+                    }
+                    return true;
+                case "help":
+                    printUsage();
+                    return true;
+                default:
+                    return false;
+            }
+        } catch (IOException | SQLException | NumberFormatException e) {
+            System.out.println("Error: " + e.getMessage());
+            return true;
+        }
+    }
+
+    /**
+     * Prints the available commands.
+     */
+    private static void printUsage() {
+        System.out.println("Commands:");
+        System.out.println("  login-report    summarize the login activity files");
+        System.out.println("  import <file> [created-by]");
+        System.out.println("                  import customers or appointments from a CSV or .ics file");
+        System.out.println("  export-ics contact|user <id> <file>");
+        System.out.println("                  write the .ics feed of one contact or user");
+        System.out.println("  export-feeds <directory>");
+        System.out.println("                  write the .ics feeds of all contacts and users, skipping unchanged ones");
+    }
+
+    /**
+     * Scans the login activity files and prints per-user counts, the hourly histogram and suspicious bursts.
+     *
+     * @throws IOException if a file cannot be read
+     */
+    private static void printLoginReport() throws IOException {
+        long start = System.nanoTime();
+        LoginActivityStats stats = new LoginActivityScanner().scan();
+        long millis = (System.nanoTime() - start) / 1_000_000;
+
+        System.out.println("Login activity by user:");
+        System.out.printf("  %-20s %10s %10s  %s%n", "Username", "Successes", "Failures", "Last attempt");
+        for (LoginUserActivity activity : stats.getUserActivity()) {
+            System.out.printf("  %-20s %10d %10d  %s%n", activity.getUsername(), activity.getSuccessCount(),
+                    activity.getFailureCount(), activity.getLastAttempt());
+        }
+
+        System.out.println();
+        System.out.println("Attempts by hour of day (successes / failures):");
+        long[] successes = stats.getHourlySuccesses();
+        long[] failures = stats.getHourlyFailures();
+        for (int hour = 0; hour < 24; hour++) {
+            System.out.printf("  %02d:00  %8d / %d%n", hour, successes[hour], failures[hour]);
+        }
+
+        System.out.println();
+        List<LoginBurst> bursts = stats.getBursts();
+        System.out.println("Suspicious bursts of failed attempts: " + bursts.size());
+        for (LoginBurst burst : bursts) {
+            System.out.println("  " + burst);
+        }
+        if (stats.getUnparsedLines() > 0) {
+            System.out.println();
+            System.out.println("Unparsed lines: " + stats.getUnparsedLines());
+        }
+        System.out.println();
+        System.out.println("Scanned in " + millis + " ms.");
+    }
+
+    /**
+     * Imports customers or appointments from a CSV or iCalendar file and prints the outcome.
+     *
+     * @param fileName the file to import
+     * @param createdBy the user name recorded as creator of the imported rows
+     * @throws IOException if the file cannot be read
+     * @throws SQLException if the database connection fails
+     */
+    private static void importFile(String fileName, String createdBy) throws IOException, SQLException {
+        JDBC.openConnection();
+        try {
+            BulkImporter importer = new BulkImporter(createdBy);
+            importer.setProgressListener(processed -> System.out.print("\r" + processed + " rows processed"));
+            ImportSummary summary = importer.importFile(Paths.get(fileName));
+            System.out.println();
+            System.out.println(summary);
+        } finally {
+            JDBC.closeConnection();
+        }
+    }
+
+    /**
+     * Writes the iCalendar feed of one contact or user over the default date range.
+     *
+     * @param owner whether the ID is a contact or a user
+     * @param ownerId the contact or user ID
+     * @param fileName the feed file
+     * @throws IOException if the file cannot be written
+     * @throws SQLException if a database access error occurs
+     */
+    private static void exportFeed(AppointmentDAO.Owner owner, int ownerId, String fileName)
+            throws IOException, SQLException {
+        try (Connection connection = JDBC.newConnection(new Properties())) {
+            boolean written = new IcsFeedExporter(connection).export(owner, ownerId,
+                    IcsFeedExporter.defaultFrom(), IcsFeedExporter.defaultTo(), Paths.get(fileName));
+            System.out.println(written ? "Feed written to " + fileName : "Feed " + fileName + " is up to date");
+        }
+    }
+
+    /**
+     * Writes the iCalendar feeds of all contacts and users into a directory, as contact-ID.ics and user-ID.ics.
+     * Feeds whose appointments have not changed are left alone.
+     *
+     * @param directoryName the directory
+     * @throws IOException if a file cannot be written
+     * @throws SQLException if a database access error occurs
+     */
+    private static void exportAllFeeds(String directoryName) throws IOException, SQLException {
+        JDBC.openConnection();
+        List<Contact> contacts;
+        List<User> users;
+        try {
+            contacts = UserAndContactDAO.getAllContacts();
+            users = UserAndContactDAO.getAllUsers();
+        } finally {
+            JDBC.closeConnection();
+        }
+
+        Path directory = Paths.get(directoryName);
+        int written = 0;
+        int unchanged = 0;
+        long start = System.nanoTime();
+        try (Connection connection = JDBC.newConnection(new Properties())) {
+            IcsFeedExporter exporter = new IcsFeedExporter(connection);
+            for (Contact contact : contacts) {
+                if (exporter.export(AppointmentDAO.Owner.CONTACT, contact.getContactId(), IcsFeedExporter.defaultFrom(),
+                        IcsFeedExporter.defaultTo(), directory.resolve("contact-" + contact.getContactId() + ".ics"))) {
+                    written++;
+                } else {
+                    unchanged++;
+                }
+            }
+            for (User user : users) {
+                if (exporter.export(AppointmentDAO.Owner.USER, user.getUserID(), IcsFeedExporter.defaultFrom(),
+                        IcsFeedExporter.defaultTo(), directory.resolve("user-" + user.getUserID() + ".ics"))) {
+                    written++;
+                } else {
+                    unchanged++;
+                }
+            }
+        }
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        System.out.println(written + " feeds written, " + unchanged + " up to date, in " + millis + " ms.");
+    }
+}
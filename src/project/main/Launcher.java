@@ -0,0 +1,26 @@
+package project.main;
+
+/**
+ * Entry point of the packaged application. The java launcher starts the JavaFX toolkit before calling main when
+ * the main class extends Application, which would need a display even for the command-line tools; starting from
+ * this class lets {@link Main#main(String[])} decide whether to launch the user interface at all.
+ *
+ * @author Teksong Eap
+ */
+public final class Launcher {
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private Launcher() {
+    }
+
+    /**
+     * Runs {@link Main#main(String[])}.
+     *
+     * @param args command-line arguments passed to the program
+     */
+    public static void main(String[] args) {
+        Main.main(args);
+    }
+}
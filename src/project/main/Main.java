@@ -5,7 +5,9 @@ import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
 import javafx.stage.Stage;
+import project.DAO.Repositories;
 import project.utilities.JDBC;
+import project.utilities.StartupOrchestrator;
 
 import java.util.Objects;
 
@@ -28,19 +30,28 @@ public class Main extends Application {
         primaryStage.setTitle("Login");
         primaryStage.setScene(new Scene(root, 400, 375));
         primaryStage.show();
+        StartupOrchestrator.mark("login screen shown");
     }
 
     /**
      * The main method is used to launch the JavaFX application.
-     * It opens a connection to the database, launches the application and then
-     * closes the database connection once the application has terminated.
+     * It starts opening a connection to the database in the background, unless the in-memory store is used, launches
+     * the application and then closes the database connection once the application has terminated.
+     * See {@link StartupOrchestrator}.
+     * If a command is given, such as "login-report", the command is run instead; see {@link CommandLineTools}.
      *
      * @param args command-line arguments passed to the program.
      */
     public static void main(String[] args) {
+        if (CommandLineTools.run(args)) {
+            return;
+        }
         //Locale.setDefault(new Locale("fr"));
-        JDBC.openConnection();
+        StartupOrchestrator.start();
         launch(args);
-        JDBC.closeConnection();
+        if (!Repositories.isInMemory()) {
+            StartupOrchestrator.awaitDatabase();
+            JDBC.closeConnection();
+        }
     }
 }
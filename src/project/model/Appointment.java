@@ -1,5 +1,10 @@
 package project.model;
 
+import javafx.beans.property.ReadOnlyObjectProperty;
+import javafx.beans.property.ReadOnlyObjectWrapper;
+import javafx.beans.property.ReadOnlyStringProperty;
+import javafx.beans.property.ReadOnlyStringWrapper;
+
 import java.time.*;
 
 /**
@@ -80,6 +85,72 @@ public class Appointment {
      */
     private LocalTime endTime;
 
+    /**
+     * When the appointment was last changed, in UTC as stored in the database.
+     * Serves as its version: an update only succeeds if the row still has this value.
+     */
+    private LocalDateTime lastUpdate;
+
+    /**
+     * Property of the appointment's ID, created when a table first shows it.
+     */
+    private ReadOnlyObjectWrapper<Integer> appointmentIdProperty;
+
+    /**
+     * Property of the customer's ID, created when a table first shows it.
+     */
+    private ReadOnlyObjectWrapper<Integer> customerIdProperty;
+
+    /**
+     * Property of the database user's ID, created when a table first shows it.
+     */
+    private ReadOnlyObjectWrapper<Integer> userIdProperty;
+
+    /**
+     * Property of the contact's ID, created when a table first shows it.
+     */
+    private ReadOnlyObjectWrapper<Integer> contactIdProperty;
+
+    /**
+     * Property of the appointment's title, created when a table first shows it.
+     */
+    private ReadOnlyStringWrapper titleProperty;
+
+    /**
+     * Property of the appointment's description, created when a table first shows it.
+     */
+    private ReadOnlyStringWrapper descriptionProperty;
+
+    /**
+     * Property of the appointment's location, created when a table first shows it.
+     */
+    private ReadOnlyStringWrapper locationProperty;
+
+    /**
+     * Property of the appointment's type, created when a table first shows it.
+     */
+    private ReadOnlyStringWrapper typeProperty;
+
+    /**
+     * Property of the appointment's local start date, created when a table first shows it.
+     */
+    private ReadOnlyObjectWrapper<LocalDate> startDateProperty;
+
+    /**
+     * Property of the appointment's local end date, created when a table first shows it.
+     */
+    private ReadOnlyObjectWrapper<LocalDate> endDateProperty;
+
+    /**
+     * Property of the appointment's local start time, created when a table first shows it.
+     */
+    private ReadOnlyObjectWrapper<LocalTime> startTimeProperty;
+
+    /**
+     * Property of the appointment's local end time, created when a table first shows it.
+     */
+    private ReadOnlyObjectWrapper<LocalTime> endTimeProperty;
+
     /**
      * Initializes a new instance of the {@code Appointment} class.
      *
@@ -117,6 +188,26 @@ public class Appointment {
         this.endTime = endTime;
     }
 
+    /**
+     * Initializes a copy of another appointment.
+     *
+     * @param other The appointment to copy.
+     */
+    public Appointment(Appointment other) {
+        this(other.getAppointmentId(), other.getCustomerId(), other.getUserId(), other.getContactId(),
+                other.getTitle(), other.getDescription(), other.getLocation(), other.getType(),
+                other.getStartDateTime(), other.getEndDateTime(), other.getStartDate(), other.getEndDate(),
+                other.getStartTime(), other.getEndTime());
+        this.lastUpdate = other.getLastUpdate();
+    }
+
+    /**
+     * Initializes an appointment without fields, for subclasses that keep them elsewhere
+     * and override the getters.
+     */
+    protected Appointment() {
+    }
+
     // getters and setters for each variable
     /**
      * Gets the appointment's ID.
@@ -134,6 +225,9 @@ public class Appointment {
      */
     public void setAppointmentId(int appointmentId) {
         this.appointmentId = appointmentId;
+        if (appointmentIdProperty != null) {
+            appointmentIdProperty.set(appointmentId);
+        }
     }
 
     /**
@@ -152,6 +246,9 @@ public class Appointment {
      */
     public void setCustomerId(int customerId) {
         this.customerId = customerId;
+        if (customerIdProperty != null) {
+            customerIdProperty.set(customerId);
+        }
     }
 
     /**
@@ -170,6 +267,9 @@ public class Appointment {
      */
     public void setUserId(int userId) {
         this.userId = userId;
+        if (userIdProperty != null) {
+            userIdProperty.set(userId);
+        }
     }
 
     /**
@@ -188,6 +288,9 @@ public class Appointment {
      */
     public void setContactId(int contactId) {
         this.contactId = contactId;
+        if (contactIdProperty != null) {
+            contactIdProperty.set(contactId);
+        }
     }
 
     /**
@@ -206,6 +309,9 @@ public class Appointment {
      */
     public void setTitle(String title) {
         this.title = title;
+        if (titleProperty != null) {
+            titleProperty.set(title);
+        }
     }
 
     /**
@@ -224,6 +330,9 @@ public class Appointment {
      */
     public void setDescription(String description) {
         this.description = description;
+        if (descriptionProperty != null) {
+            descriptionProperty.set(description);
+        }
     }
 
     /**
@@ -242,6 +351,9 @@ public class Appointment {
      */
     public void setLocation(String location) {
         this.location = location;
+        if (locationProperty != null) {
+            locationProperty.set(location);
+        }
     }
 
     /**
@@ -260,6 +372,9 @@ public class Appointment {
      */
     public void setType(String type) {
         this.type = type;
+        if (typeProperty != null) {
+            typeProperty.set(type);
+        }
     }
 
     /**
@@ -314,6 +429,9 @@ public class Appointment {
      */
     public void setStartDate(LocalDate startDate) {
         this.startDate = startDate;
+        if (startDateProperty != null) {
+            startDateProperty.set(startDate);
+        }
     }
 
     /**
@@ -332,6 +450,9 @@ public class Appointment {
      */
     public void setEndDate(LocalDate endDate) {
         this.endDate = endDate;
+        if (endDateProperty != null) {
+            endDateProperty.set(endDate);
+        }
     }
 
     /**
@@ -350,6 +471,9 @@ public class Appointment {
      */
     public void setStartTime(LocalTime startTime) {
         this.startTime = startTime;
+        if (startTimeProperty != null) {
+            startTimeProperty.set(startTime);
+        }
     }
 
     /**
@@ -368,6 +492,171 @@ public class Appointment {
      */
     public void setEndTime(LocalTime endTime) {
         this.endTime = endTime;
+        if (endTimeProperty != null) {
+            endTimeProperty.set(endTime);
+        }
+    }
+
+    /**
+     * Gets when the appointment was last changed, in UTC.
+     *
+     * @return The time of the last change, or null if unknown.
+     */
+    public LocalDateTime getLastUpdate() {
+        return lastUpdate;
+    }
+
+    /**
+     * Sets when the appointment was last changed, in UTC.
+     *
+     * @param lastUpdate The time of the last change.
+     */
+    public void setLastUpdate(LocalDateTime lastUpdate) {
+        this.lastUpdate = lastUpdate;
+    }
+
+    /**
+     * Returns a read-only property of the appointment's ID that follows its setter, for table columns.
+     *
+     * @return the property
+     */
+    public ReadOnlyObjectProperty<Integer> appointmentIdProperty() {
+        if (appointmentIdProperty == null) {
+            appointmentIdProperty = new ReadOnlyObjectWrapper<>(this, "appointmentId", getAppointmentId());
+        }
+        return appointmentIdProperty.getReadOnlyProperty();
+    }
+
+    /**
+     * Returns a read-only property of the customer's ID that follows its setter, for table columns.
+     *
+     * @return the property
+     */
+    public ReadOnlyObjectProperty<Integer> customerIdProperty() {
+        if (customerIdProperty == null) {
+            customerIdProperty = new ReadOnlyObjectWrapper<>(this, "customerId", getCustomerId());
+        }
+        return customerIdProperty.getReadOnlyProperty();
+    }
+
+    /**
+     * Returns a read-only property of the database user's ID that follows its setter, for table columns.
+     *
+     * @return the property
+     */
+    public ReadOnlyObjectProperty<Integer> userIdProperty() {
+        if (userIdProperty == null) {
+            userIdProperty = new ReadOnlyObjectWrapper<>(this, "userId", getUserId());
+        }
+        return userIdProperty.getReadOnlyProperty();
+    }
+
+    /**
+     * Returns a read-only property of the contact's ID that follows its setter, for table columns.
+     *
+     * @return the property
+     */
+    public ReadOnlyObjectProperty<Integer> contactIdProperty() {
+        if (contactIdProperty == null) {
+            contactIdProperty = new ReadOnlyObjectWrapper<>(this, "contactId", getContactId());
+        }
+        return contactIdProperty.getReadOnlyProperty();
+    }
+
+    /**
+     * Returns a read-only property of the appointment's title that follows its setter, for table columns.
+     *
+     * @return the property
+     */
+    public ReadOnlyStringProperty titleProperty() {
+        if (titleProperty == null) {
+            titleProperty = new ReadOnlyStringWrapper(this, "title", getTitle());
+        }
+        return titleProperty.getReadOnlyProperty();
+    }
+
+    /**
+     * Returns a read-only property of the appointment's description that follows its setter, for table columns.
+     *
+     * @return the property
+     */
+    public ReadOnlyStringProperty descriptionProperty() {
+        if (descriptionProperty == null) {
+            descriptionProperty = new ReadOnlyStringWrapper(this, "description", getDescription());
+        }
+        return descriptionProperty.getReadOnlyProperty();
+    }
+
+    /**
+     * Returns a read-only property of the appointment's location that follows its setter, for table columns.
+     *
+     * @return the property
+     */
+    public ReadOnlyStringProperty locationProperty() {
+        if (locationProperty == null) {
+            locationProperty = new ReadOnlyStringWrapper(this, "location", getLocation());
+        }
+        return locationProperty.getReadOnlyProperty();
+    }
+
+    /**
+     * Returns a read-only property of the appointment's type that follows its setter, for table columns.
+     *
+     * @return the property
+     */
+    public ReadOnlyStringProperty typeProperty() {
+        if (typeProperty == null) {
+            typeProperty = new ReadOnlyStringWrapper(this, "type", getType());
+        }
+        return typeProperty.getReadOnlyProperty();
+    }
+
+    /**
+     * Returns a read-only property of the appointment's local start date that follows its setter, for table columns.
+     *
+     * @return the property
+     */
+    public ReadOnlyObjectProperty<LocalDate> startDateProperty() {
+        if (startDateProperty == null) {
+            startDateProperty = new ReadOnlyObjectWrapper<>(this, "startDate", getStartDate());
+        }
+        return startDateProperty.getReadOnlyProperty();
+    }
+
+    /**
+     * Returns a read-only property of the appointment's local end date that follows its setter, for table columns.
+     *
+     * @return the property
+     */
+    public ReadOnlyObjectProperty<LocalDate> endDateProperty() {
+        if (endDateProperty == null) {
+            endDateProperty = new ReadOnlyObjectWrapper<>(this, "endDate", getEndDate());
+        }
+        return endDateProperty.getReadOnlyProperty();
+    }
+
+    /**
+     * Returns a read-only property of the appointment's local start time that follows its setter, for table columns.
+     *
+     * @return the property
+     */
+    public ReadOnlyObjectProperty<LocalTime> startTimeProperty() {
+        if (startTimeProperty == null) {
+            startTimeProperty = new ReadOnlyObjectWrapper<>(this, "startTime", getStartTime());
+        }
+        return startTimeProperty.getReadOnlyProperty();
+    }
+
+    /**
+     * Returns a read-only property of the appointment's local end time that follows its setter, for table columns.
+     *
+     * @return the property
+     */
+    public ReadOnlyObjectProperty<LocalTime> endTimeProperty() {
+        if (endTimeProperty == null) {
+            endTimeProperty = new ReadOnlyObjectWrapper<>(this, "endTime", getEndTime());
+        }
+        return endTimeProperty.getReadOnlyProperty();
     }
 
     /**
@@ -376,8 +665,8 @@ public class Appointment {
      * */
     @Override
     public String toString() {
-        return ("Appt: [" + appointmentId + "] | Customer: [" + customerId + "] " +
-                "| Contact: [" + contactId + "] | Type: " + type + "| Start: " + startDateTime
-                + " | End: " + endDateTime );
+        return ("Appt: [" + getAppointmentId() + "] | Customer: [" + getCustomerId() + "] " +
+                "| Contact: [" + getContactId() + "] | Type: " + getType() + "| Start: " + getStartDateTime()
+                + " | End: " + getEndDateTime() );
     }
 }
@@ -1,5 +1,12 @@
 package project.model;
 
+import javafx.beans.property.ReadOnlyObjectProperty;
+import javafx.beans.property.ReadOnlyObjectWrapper;
+import javafx.beans.property.ReadOnlyStringProperty;
+import javafx.beans.property.ReadOnlyStringWrapper;
+
+import java.time.LocalDateTime;
+
 /**
  * This class represents a Customer in the application.
  *
@@ -51,6 +58,47 @@ public class Customer {
      */
     private String divisionName;
 
+    /**
+     * When the customer was last changed, in UTC as stored in the database.
+     * Serves as its version: an update only succeeds if the row still has this value.
+     */
+    private LocalDateTime lastUpdate;
+
+    /**
+     * Property of the ID of the customer, created when a table first shows it.
+     */
+    private ReadOnlyObjectWrapper<Integer> customerIdProperty;
+
+    /**
+     * Property of the name of the customer, created when a table first shows it.
+     */
+    private ReadOnlyStringWrapper customerNameProperty;
+
+    /**
+     * Property of the address of the customer, created when a table first shows it.
+     */
+    private ReadOnlyStringWrapper addressProperty;
+
+    /**
+     * Property of the postal code of the customer, created when a table first shows it.
+     */
+    private ReadOnlyStringWrapper postalCodeProperty;
+
+    /**
+     * Property of the phone number of the customer, created when a table first shows it.
+     */
+    private ReadOnlyStringWrapper phoneProperty;
+
+    /**
+     * Property of the name of the country of the customer, created when a table first shows it.
+     */
+    private ReadOnlyStringWrapper countryNameProperty;
+
+    /**
+     * Property of the name of the first level division of the customer, created when a table first shows it.
+     */
+    private ReadOnlyStringWrapper divisionNameProperty;
+
     /**
      * Constructor method for the Customer class.
      * @param customerId ID of the customer.
@@ -75,6 +123,16 @@ public class Customer {
         this.divisionName = divisionName;
     }
 
+    /**
+     * Copy constructor for the Customer class.
+     * @param other Customer to copy.
+     */
+    public Customer(Customer other) {
+        this(other.customerId, other.divisionId, other.countryId, other.customerName, other.address, other.postalCode,
+                other.phone, other.countryName, other.divisionName);
+        this.lastUpdate = other.lastUpdate;
+    }
+
     // Getters and Setters
     /**
      * Returns the ID of the customer.
@@ -90,6 +148,9 @@ public class Customer {
      */
     public void setCustomerId(int customerId) {
         this.customerId = customerId;
+        if (customerIdProperty != null) {
+            customerIdProperty.set(customerId);
+        }
     }
     /**
      * Returns the ID of the division.
@@ -137,6 +198,9 @@ public class Customer {
      */
     public void setCustomerName(String customerName) {
         this.customerName = customerName;
+        if (customerNameProperty != null) {
+            customerNameProperty.set(customerName);
+        }
     }
 
     /**
@@ -153,6 +217,9 @@ public class Customer {
      */
     public void setAddress(String address) {
         this.address = address;
+        if (addressProperty != null) {
+            addressProperty.set(address);
+        }
     }
 
     /**
@@ -169,6 +236,9 @@ public class Customer {
      */
     public void setPostalCode(String postalCode) {
         this.postalCode = postalCode;
+        if (postalCodeProperty != null) {
+            postalCodeProperty.set(postalCode);
+        }
     }
 
     /**
@@ -185,6 +255,9 @@ public class Customer {
      */
     public void setPhone(String phone) {
         this.phone = phone;
+        if (phoneProperty != null) {
+            phoneProperty.set(phone);
+        }
     }
 
     /**
@@ -201,6 +274,9 @@ public class Customer {
      */
     public void setCountryName(String countryName) {
         this.countryName = countryName;
+        if (countryNameProperty != null) {
+            countryNameProperty.set(countryName);
+        }
     }
 
     /**
@@ -217,6 +293,109 @@ public class Customer {
      */
     public void setDivisionName(String divisionName) {
         this.divisionName = divisionName;
+        if (divisionNameProperty != null) {
+            divisionNameProperty.set(divisionName);
+        }
+    }
+
+    /**
+     * Returns when the customer was last changed, in UTC.
+     * @return time of the last change, or null if unknown.
+     */
+    public LocalDateTime getLastUpdate() {
+        return lastUpdate;
+    }
+
+    /**
+     * Sets when the customer was last changed, in UTC.
+     * @param lastUpdate time of the last change.
+     */
+    public void setLastUpdate(LocalDateTime lastUpdate) {
+        this.lastUpdate = lastUpdate;
+    }
+
+    /**
+     * Returns a read-only property of the ID of the customer that follows its setter, for table columns.
+     *
+     * @return the property
+     */
+    public ReadOnlyObjectProperty<Integer> customerIdProperty() {
+        if (customerIdProperty == null) {
+            customerIdProperty = new ReadOnlyObjectWrapper<>(this, "customerId", getCustomerId());
+        }
+        return customerIdProperty.getReadOnlyProperty();
+    }
+
+    /**
+     * Returns a read-only property of the name of the customer that follows its setter, for table columns.
+     *
+     * @return the property
+     */
+    public ReadOnlyStringProperty customerNameProperty() {
+        if (customerNameProperty == null) {
+            customerNameProperty = new ReadOnlyStringWrapper(this, "customerName", getCustomerName());
+        }
+        return customerNameProperty.getReadOnlyProperty();
+    }
+
+    /**
+     * Returns a read-only property of the address of the customer that follows its setter, for table columns.
+     *
+     * @return the property
+     */
+    public ReadOnlyStringProperty addressProperty() {
+        if (addressProperty == null) {
+            addressProperty = new ReadOnlyStringWrapper(this, "address", getAddress());
+        }
+        return addressProperty.getReadOnlyProperty();
+    }
+
+    /**
+     * Returns a read-only property of the postal code of the customer that follows its setter, for table columns.
+     *
+     * @return the property
+     */
+    public ReadOnlyStringProperty postalCodeProperty() {
+        if (postalCodeProperty == null) {
+            postalCodeProperty = new ReadOnlyStringWrapper(this, "postalCode", getPostalCode());
+        }
+        return postalCodeProperty.getReadOnlyProperty();
+    }
+
+    /**
+     * Returns a read-only property of the phone number of the customer that follows its setter, for table columns.
+     *
+     * @return the property
+     */
+    public ReadOnlyStringProperty phoneProperty() {
+        if (phoneProperty == null) {
+            phoneProperty = new ReadOnlyStringWrapper(this, "phone", getPhone());
+        }
+        return phoneProperty.getReadOnlyProperty();
+    }
+
+    /**
+     * Returns a read-only property of the name of the country of the customer that follows its setter, for table columns.
+     *
+     * @return the property
+     */
+    public ReadOnlyStringProperty countryNameProperty() {
+        if (countryNameProperty == null) {
+            countryNameProperty = new ReadOnlyStringWrapper(this, "countryName", getCountryName());
+        }
+        return countryNameProperty.getReadOnlyProperty();
+    }
+
+    /**
+     * Returns a read-only property of the name of the first level division of the customer that follows its setter, for table columns.
+     *
+     * @return the property
+     */
+    public ReadOnlyStringProperty divisionNameProperty() {
+        if (divisionNameProperty == null) {
+            divisionNameProperty = new ReadOnlyStringWrapper(this, "divisionName", getDivisionName());
+        }
+        return divisionNameProperty.getReadOnlyProperty();
     }
 
     /**
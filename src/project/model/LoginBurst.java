@@ -0,0 +1,78 @@
+package project.model;
+
+import java.time.LocalDateTime;
+
+/**
+ * Represents a suspicious burst of failed login attempts for one username.
+ *
+ * @author Teksong Eap
+ */
+public class LoginBurst {
+    /** the username that was entered */
+    private final String username;
+
+    /** time of the first failed attempt in the burst */
+    private final LocalDateTime start;
+
+    /** time of the last failed attempt in the burst */
+    private final LocalDateTime end;
+
+    /** number of failed attempts in the burst */
+    private final long failures;
+
+    /**
+     * Creates a new LoginBurst.
+     *
+     * @param username the username that was entered
+     * @param start time of the first failed attempt
+     * @param end time of the last failed attempt
+     * @param failures number of failed attempts
+     */
+    public LoginBurst(String username, LocalDateTime start, LocalDateTime end, long failures) {
+        this.username = username;
+        this.start = start;
+        this.end = end;
+        this.failures = failures;
+    }
+
+    /**
+     * Returns the username.
+     * @return username
+     */
+    public String getUsername() {
+        return username;
+    }
+
+    /**
+     * Returns the time of the first failed attempt.
+     * @return start
+     */
+    public LocalDateTime getStart() {
+        return start;
+    }
+
+    /**
+     * Returns the time of the last failed attempt.
+     * @return end
+     */
+    public LocalDateTime getEnd() {
+        return end;
+    }
+
+    /**
+     * Returns the number of failed attempts.
+     * @return failures
+     */
+    public long getFailures() {
+        return failures;
+    }
+
+    /**
+     * Returns a string representation of the burst.
+     * @return string rep
+     */
+    @Override
+    public String toString() {
+        return username + ": " + failures + " failed attempts from " + start + " to " + end;
+    }
+}
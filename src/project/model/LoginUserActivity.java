@@ -0,0 +1,78 @@
+package project.model;
+
+import java.time.LocalDateTime;
+
+/**
+ * Represents the login activity of one username in the login activity report.
+ *
+ * @author Teksong Eap
+ */
+public class LoginUserActivity {
+    /** the username that was entered */
+    private final String username;
+
+    /** number of successful attempts */
+    private final long successCount;
+
+    /** number of failed attempts */
+    private final long failureCount;
+
+    /** time of the most recent attempt, as recorded in the log */
+    private final LocalDateTime lastAttempt;
+
+    /**
+     * Creates a new LoginUserActivity.
+     *
+     * @param username the username that was entered
+     * @param successCount number of successful attempts
+     * @param failureCount number of failed attempts
+     * @param lastAttempt time of the most recent attempt
+     */
+    public LoginUserActivity(String username, long successCount, long failureCount, LocalDateTime lastAttempt) {
+        this.username = username;
+        this.successCount = successCount;
+        this.failureCount = failureCount;
+        this.lastAttempt = lastAttempt;
+    }
+
+    /**
+     * Returns the username.
+     * @return username
+     */
+    public String getUsername() {
+        return username;
+    }
+
+    /**
+     * Returns the number of successful attempts.
+     * @return success count
+     */
+    public long getSuccessCount() {
+        return successCount;
+    }
+
+    /**
+     * Returns the number of failed attempts.
+     * @return failure count
+     */
+    public long getFailureCount() {
+        return failureCount;
+    }
+
+    /**
+     * Returns the time of the most recent attempt.
+     * @return last attempt
+     */
+    public LocalDateTime getLastAttempt() {
+        return lastAttempt;
+    }
+
+    /**
+     * Returns a string representation of the activity.
+     * @return string rep
+     */
+    @Override
+    public String toString() {
+        return username + ": " + successCount + " successful, " + failureCount + " failed, last at " + lastAttempt;
+    }
+}
@@ -0,0 +1,203 @@
+package project.model;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Represents how an appointment repeats, in the spirit of an iCalendar RRULE:
+ * a frequency, an interval, and an end given as a number of occurrences, a last date, or both.
+ *
+ * Monthly series repeat on the day of month of the first occurrence; months without that day are skipped,
+ * as RRULE does.
+ *
+ * @author Teksong Eap
+ */
+public class RecurrenceRule {
+
+    /**
+     * How often a series repeats.
+     */
+    public enum Frequency {
+        /** Does not repeat */
+        NONE("Does not repeat"),
+        /** Every day */
+        DAILY("Daily"),
+        /** Every week */
+        WEEKLY("Weekly"),
+        /** Every month */
+        MONTHLY("Monthly");
+
+        /** Display name */
+        private final String displayName;
+
+        /**
+         * Creates a frequency.
+         * @param displayName the display name
+         */
+        Frequency(String displayName) {
+            this.displayName = displayName;
+        }
+
+        /**
+         * Returns the display name.
+         * @return display name
+         */
+        @Override
+        public String toString() {
+            return displayName;
+        }
+    }
+
+    /** frequency */
+    private final Frequency frequency;
+
+    /** number of frequency units between occurrences */
+    private final int interval;
+
+    /** number of occurrences, or 0 if unbounded by count */
+    private final int count;
+
+    /** last date an occurrence may start on, or null if unbounded by date */
+    private final LocalDate until;
+
+    /**
+     * Creates a new RecurrenceRule. At least one of count and until must bound the series.
+     *
+     * @param frequency how often the series repeats
+     * @param interval number of frequency units between occurrences, at least 1
+     * @param count number of occurrences, or 0 if unbounded by count
+     * @param until last date an occurrence may start on, or null if unbounded by date
+     */
+    public RecurrenceRule(Frequency frequency, int interval, int count, LocalDate until) {
+        if (count <= 0 && until == null) {
+            throw new IllegalArgumentException("A recurrence needs a count or an end date");
+        }
+        this.frequency = frequency;
+        this.interval = Math.max(1, interval);
+        this.count = Math.max(0, count);
+        this.until = until;
+    }
+
+    /**
+     * Returns the frequency.
+     * @return frequency
+     */
+    public Frequency getFrequency() {
+        return frequency;
+    }
+
+    /**
+     * Returns the interval.
+     * @return interval
+     */
+    public int getInterval() {
+        return interval;
+    }
+
+    /**
+     * Returns the number of occurrences.
+     * @return count, or 0 if unbounded by count
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the last date an occurrence may start on.
+     * @return until, or null if unbounded by date
+     */
+    public LocalDate getUntil() {
+        return until;
+    }
+
+    /**
+     * Returns the start times of the series' occurrences, computed one at a time as they are iterated,
+     * so callers that stop early never expand the rest of the series.
+     *
+     * @param firstStart the start of the first occurrence
+     * @return the occurrence starts, in order
+     */
+    public Iterable<LocalDateTime> occurrences(LocalDateTime firstStart) {
+        return () -> new Iterator<>() {
+            /** Occurrences produced so far */
+            private int produced;
+
+            /** Number of intervals from the first occurrence to the next candidate */
+            private long step;
+
+            /** The next occurrence, or null if not computed yet */
+            private LocalDateTime next;
+
+            @Override
+            public boolean hasNext() {
+                if (next != null) {
+                    return true;
+                }
+                if ((count > 0 && produced >= count) || (frequency == Frequency.NONE && produced > 0)) {
+                    return false;
+                }
+                LocalDateTime candidate = candidate(firstStart, step++);
+                // Monthly candidates on a day the month does not have are skipped
+                while (candidate == null) {
+                    candidate = candidate(firstStart, step++);
+                }
+                if (until != null && candidate.toLocalDate().isAfter(until)) {
+                    return false;
+                }
+                next = candidate;
+                return true;
+            }
+
+            @Override
+            public LocalDateTime next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                LocalDateTime result = next;
+                next = null;
+                produced++;
+                return result;
+            }
+        };
+    }
+
+    /**
+     * Returns the start of a candidate occurrence.
+     *
+     * @param firstStart the start of the first occurrence
+     * @param step the number of intervals after the first occurrence
+     * @return the candidate start, or null if a monthly candidate falls on a day the month does not have
+     */
+    private LocalDateTime candidate(LocalDateTime firstStart, long step) {
+        long units = step * interval;
+        switch (frequency) {
+            case DAILY:
+                return firstStart.plusDays(units);
+            case WEEKLY:
+                return firstStart.plusWeeks(units);
+            case MONTHLY:
+                LocalDateTime shifted = firstStart.plusMonths(units);
+                return shifted.getDayOfMonth() == firstStart.getDayOfMonth() ? shifted : null;
+            default:
+                return firstStart;
+        }
+    }
+
+    /**
+     * Returns a string representation of the RecurrenceRule as an RRULE, e.g. "FREQ=WEEKLY;INTERVAL=1;COUNT=10".
+     * @return string rep
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("FREQ=").append(frequency.name()).append(";INTERVAL=").append(interval);
+        if (count > 0) {
+            sb.append(";COUNT=").append(count);
+        }
+        if (until != null) {
+            sb.append(";UNTIL=").append(until.toString().replace("-", ""));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,59 @@
+package project.model;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Represents a free period of time an appointment could be booked into.
+ *
+ * @author Teksong Eap
+ */
+public class TimeSlot {
+    /** Formatter for the date and start time */
+    private static final DateTimeFormatter startDTF = DateTimeFormatter.ofPattern("EEE yyyy-MM-dd HH:mm");
+
+    /** Formatter for the end time */
+    private static final DateTimeFormatter endDTF = DateTimeFormatter.ofPattern("HH:mm");
+
+    /** start in local time */
+    private final LocalDateTime start;
+
+    /** end in local time */
+    private final LocalDateTime end;
+
+    /**
+     * Creates a new TimeSlot.
+     *
+     * @param start the start in local time
+     * @param end the end in local time
+     */
+    public TimeSlot(LocalDateTime start, LocalDateTime end) {
+        this.start = start;
+        this.end = end;
+    }
+
+    /**
+     * Returns the start of the slot.
+     * @return start in local time
+     */
+    public LocalDateTime getStart() {
+        return start;
+    }
+
+    /**
+     * Returns the end of the slot.
+     * @return end in local time
+     */
+    public LocalDateTime getEnd() {
+        return end;
+    }
+
+    /**
+     * Returns a string representation of the TimeSlot, e.g. "Mon 2023-07-17 09:00 - 10:00".
+     * @return string rep
+     */
+    @Override
+    public String toString() {
+        return start.format(startDTF) + " - " + end.format(endDTF);
+    }
+}
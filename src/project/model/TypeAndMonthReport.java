@@ -1,5 +1,10 @@
 package project.model;
 
+import javafx.beans.property.ReadOnlyObjectProperty;
+import javafx.beans.property.ReadOnlyObjectWrapper;
+import javafx.beans.property.ReadOnlyStringProperty;
+import javafx.beans.property.ReadOnlyStringWrapper;
+
 /**
  * Represents a monthly report with appointment types and counts.
  *
@@ -10,6 +15,15 @@ public class TypeAndMonthReport {
     private String type;
     private int count;
 
+    /** Property of the month of the appointments, created when a table first shows it */
+    private ReadOnlyStringWrapper monthProperty;
+
+    /** Property of the type of the appointments, created when a table first shows it */
+    private ReadOnlyStringWrapper typeProperty;
+
+    /** Property of the number of appointments, created when a table first shows it */
+    private ReadOnlyObjectWrapper<Integer> countProperty;
+
     /**
      * Creates a new Report with the given month, type, and count.
      *
@@ -37,6 +51,9 @@ public class TypeAndMonthReport {
      */
     public void setMonth(String month) {
         this.month = month;
+        if (monthProperty != null) {
+            monthProperty.set(month);
+        }
     }
 
     /**
@@ -53,6 +70,9 @@ public class TypeAndMonthReport {
      */
     public void setType(String type) {
         this.type = type;
+        if (typeProperty != null) {
+            typeProperty.set(type);
+        }
     }
 
     /**
@@ -69,6 +89,45 @@ public class TypeAndMonthReport {
      */
     public void setCount(int count) {
         this.count = count;
+        if (countProperty != null) {
+            countProperty.set(count);
+        }
+    }
+
+    /**
+     * Returns a read-only property of the month of the appointments that follows its setter, for table columns.
+     *
+     * @return the property
+     */
+    public ReadOnlyStringProperty monthProperty() {
+        if (monthProperty == null) {
+            monthProperty = new ReadOnlyStringWrapper(this, "month", getMonth());
+        }
+        return monthProperty.getReadOnlyProperty();
+    }
+
+    /**
+     * Returns a read-only property of the type of the appointments that follows its setter, for table columns.
+     *
+     * @return the property
+     */
+    public ReadOnlyStringProperty typeProperty() {
+        if (typeProperty == null) {
+            typeProperty = new ReadOnlyStringWrapper(this, "type", getType());
+        }
+        return typeProperty.getReadOnlyProperty();
+    }
+
+    /**
+     * Returns a read-only property of the number of appointments that follows its setter, for table columns.
+     *
+     * @return the property
+     */
+    public ReadOnlyObjectProperty<Integer> countProperty() {
+        if (countProperty == null) {
+            countProperty = new ReadOnlyObjectWrapper<>(this, "count", getCount());
+        }
+        return countProperty.getReadOnlyProperty();
     }
 
     /**
@@ -142,6 +142,30 @@ public final class AlertMessage {
                 alert.setHeaderText("Success!");
                 alert.setContentText("Customer successfully updated!");
                 break;
+            case 20:
+                alert = new Alert(AlertType.ERROR);
+                alert.setTitle("ERROR");
+                alert.setHeaderText("Recurring appointment has no end!");
+                alert.setContentText("Please enter a number of occurrences or an end date.");
+                break;
+            case 21:
+                alert = new Alert(AlertType.INFORMATION);
+                alert.setTitle("INFORMATION");
+                alert.setHeaderText("Success!");
+                alert.setContentText("Recurring appointments successfully added!");
+                break;
+            case 22:
+                alert = new Alert(AlertType.ERROR);
+                alert.setTitle("ERROR");
+                alert.setHeaderText("Record was deleted!");
+                alert.setContentText("Another user deleted this record while you were editing it. Your changes were not saved.");
+                break;
+            case 23:
+                alert = new Alert(AlertType.WARNING);
+                alert.setTitle("WARNING");
+                alert.setHeaderText("Offline changes not saved!");
+                alert.setContentText("Some changes made while the database was unreachable conflicted with other users' changes and were not saved. They are listed in offline_rejected.txt.");
+                break;
             default:
                 return Optional.empty();  // In case of an invalid caseNumber
         }
@@ -0,0 +1,102 @@
+package project.utilities;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Properties;
+
+/**
+ * Application settings. Values are read from "app.properties" in the working directory, if present,
+ * and can be overridden with -D system properties of the same name.
+ *
+ * @author Teksong Eap
+ */
+public final class AppConfig {
+
+    /** Name of the optional settings file */
+    private static final String CONFIG_FILE = "app.properties";
+
+    /** Settings loaded from the settings file */
+    private static final Properties properties = load();
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private AppConfig() {
+    }
+
+    /**
+     * Loads the settings file from the working directory.
+     *
+     * @return the loaded settings, empty if there is no settings file
+     */
+    private static Properties load() {
+        Properties loaded = new Properties();
+        Path path = Paths.get(CONFIG_FILE);
+        if (Files.isReadable(path)) {
+            try (InputStream in = Files.newInputStream(path)) {
+                loaded.load(in);
+            } catch (IOException e) {
+                System.out.println("Error: could not read " + CONFIG_FILE + ": " + e.getMessage());
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * Returns a setting as a string.
+     *
+     * @param key the setting name
+     * @param defaultValue the value to use if the setting is not present
+     * @return the setting value
+     */
+    public static String getString(String key, String defaultValue) {
+        String value = System.getProperty(key, properties.getProperty(key));
+        return value == null || value.isBlank() ? defaultValue : value.trim();
+    }
+
+    /**
+     * Returns a setting as an int.
+     *
+     * @param key the setting name
+     * @param defaultValue the value to use if the setting is not present or not a number
+     * @return the setting value
+     */
+    public static int getInt(String key, int defaultValue) {
+        return (int) getLong(key, defaultValue);
+    }
+
+    /**
+     * Returns a setting as a long.
+     *
+     * @param key the setting name
+     * @param defaultValue the value to use if the setting is not present or not a number
+     * @return the setting value
+     */
+    public static long getLong(String key, long defaultValue) {
+        String value = getString(key, null);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            System.out.println("Error: setting " + key + " is not a number: " + value);
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Returns a setting as a boolean.
+     *
+     * @param key the setting name
+     * @param defaultValue the value to use if the setting is not present
+     * @return the setting value
+     */
+    public static boolean getBoolean(String key, boolean defaultValue) {
+        String value = getString(key, null);
+        return value == null ? defaultValue : Boolean.parseBoolean(value);
+    }
+}
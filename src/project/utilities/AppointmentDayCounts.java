@@ -0,0 +1,215 @@
+package project.utilities;
+
+import project.DAO.AppointmentRepository;
+import project.DAO.DataChangeBus;
+import project.DAO.DataChangeEvent;
+import project.DAO.Repositories;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/**
+ * Counts appointments by the day they start, a month at a time, for showing on the date picker. A month is counted
+ * in the background from one read of the IDs and starts of its appointments, and listeners are told once it is;
+ * asking for a month never waits for the database. From then on it is kept exact by the
+ * {@link DataChangeBus}: each added, moved or deleted appointment changes the counts of its old and new day. The day
+ * each counted appointment is on is kept for that, since change events do not say where a changed or deleted
+ * appointment was. Deleting a customer forgets all counts, as the event does not say which appointments went with it.
+ *
+ * @author Teksong Eap
+ */
+public final class AppointmentDayCounts {
+
+    /** How often a read is repeated when appointments change while it runs */
+    private static final int READ_ATTEMPTS = 3;
+
+    /** The counts shared by the screens, created on first use */
+    private static AppointmentDayCounts shared;
+
+    /** Where months are read from */
+    private final AppointmentRepository repository;
+
+    /** Appointments per day of each counted month, indexed by day of month minus one */
+    private final Map<YearMonth, int[]> countsByMonth = new HashMap<>();
+
+    /** The day each counted appointment starts on, by appointment ID */
+    private final Map<Integer, LocalDate> dayById = new HashMap<>();
+
+    /** Months being read; guarded by this */
+    private final Set<YearMonth> reading = new HashSet<>();
+
+    /** Told on the counting thread when a month has been counted */
+    private final List<Consumer<YearMonth>> countedListeners = new CopyOnWriteArrayList<>();
+
+    /** Counts the changes applied, so a read that overlapped one can tell its result may be out of date */
+    private long changes;
+
+    /** Reads months in the background */
+    private final ExecutorService prefetcher = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "day-count-prefetch");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Creates counts that read from a repository and follow the {@link DataChangeBus}.
+     *
+     * @param repository where months are read from
+     */
+    public AppointmentDayCounts(AppointmentRepository repository) {
+        this.repository = repository;
+        DataChangeBus.addListener(this::onChange);
+    }
+
+    /**
+     * Returns the counts shared by the screens, reading from the application's appointment repository.
+     *
+     * @return the shared counts
+     */
+    public static synchronized AppointmentDayCounts shared() {
+        if (shared == null) {
+            shared = new AppointmentDayCounts(Repositories.appointments());
+        }
+        return shared;
+    }
+
+    /**
+     * Returns a month's counts if it has been counted, without reading anything.
+     *
+     * @param month the month
+     * @return a copy of the counts, indexed by day of month minus one, or null if the month is not counted yet
+     */
+    public synchronized int[] counted(YearMonth month) {
+        int[] counts = countsByMonth.get(month);
+        return counts == null ? null : counts.clone();
+    }
+
+    /**
+     * Adds a listener told, on the counting thread, each time a month has been counted.
+     *
+     * @param listener receives the month
+     */
+    public void addCountedListener(Consumer<YearMonth> listener) {
+        countedListeners.add(listener);
+    }
+
+    /**
+     * Counts a month in the background unless it is counted or being counted already. Listeners are told once
+     * it is counted. If appointments kept changing while it was read, it is left uncounted, to be tried again
+     * on a later call.
+     *
+     * @param month the month
+     */
+    public void prefetch(YearMonth month) {
+        synchronized (this) {
+            if (countsByMonth.containsKey(month) || !reading.add(month)) {
+                return;
+            }
+        }
+        prefetcher.execute(() -> {
+            boolean counted = false;
+            try {
+                counted = read(month);
+            } catch (SQLException | RuntimeException e) {
+                System.out.println("Could not count the appointments of " + month);
+            } finally {
+                synchronized (this) {
+                    reading.remove(month);
+                }
+            }
+            if (counted) {
+                countedListeners.forEach(listener -> listener.accept(month));
+            }
+        });
+    }
+
+    /**
+     * Reads and keeps a month's counts, unless appointments change during every attempt.
+     *
+     * @param month the month
+     * @return true if the month is counted
+     * @throws SQLException if the month could not be read
+     */
+    private boolean read(YearMonth month) throws SQLException {
+        for (int attempt = 1; attempt <= READ_ATTEMPTS; attempt++) {
+            long changesBefore;
+            synchronized (this) {
+                if (countsByMonth.containsKey(month)) {
+                    return true;
+                }
+                changesBefore = changes;
+            }
+
+            int[] counts = new int[month.lengthOfMonth()];
+            Map<Integer, LocalDate> days = new HashMap<>();
+            repository.forEachAppointmentStart(month.atDay(1).atStartOfDay(), month.plusMonths(1).atDay(1).atStartOfDay(),
+                    (start, appointmentId) -> {
+                        counts[start.getDayOfMonth() - 1]++;
+                        days.put(appointmentId, start.toLocalDate());
+                    });
+
+            synchronized (this) {
+                // A change applied while reading may be missing from what was read; keep nothing of it
+                if (changes == changesBefore) {
+                    countsByMonth.put(month, counts);
+                    dayById.putAll(days);
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Moves an appointment's count from the day it was on to the day it is on now.
+     *
+     * @param appointmentId the appointment ID
+     * @param newDay the day it starts on now, or null if it was deleted
+     */
+    private void move(int appointmentId, LocalDate newDay) {
+        LocalDate oldDay = dayById.remove(appointmentId);
+        if (oldDay != null) {
+            countsByMonth.get(YearMonth.from(oldDay))[oldDay.getDayOfMonth() - 1]--;
+        }
+        if (newDay != null) {
+            int[] counts = countsByMonth.get(YearMonth.from(newDay));
+            if (counts != null) {
+                counts[newDay.getDayOfMonth() - 1]++;
+                dayById.put(appointmentId, newDay);
+            }
+        }
+    }
+
+    /**
+     * Applies a change to the counts.
+     *
+     * @param event the change
+     */
+    private synchronized void onChange(DataChangeEvent event) {
+        if (event.getEntity() == DataChangeEvent.Entity.CUSTOMER) {
+            if (event.getKind() != DataChangeEvent.Kind.DELETED) {
+                return;
+            }
+            countsByMonth.clear();
+            dayById.clear();
+        } else if (event.getKind() == DataChangeEvent.Kind.DELETED) {
+            move(event.getId(), null);
+        } else if (event.getAppointment() == null) {
+            countsByMonth.clear();
+            dayById.clear();
+        } else {
+            move(event.getId(), event.getAppointment().getStartDateTime().toLocalDate());
+        }
+        changes++;
+    }
+}
@@ -0,0 +1,364 @@
+package project.utilities;
+
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import project.DAO.AppointmentRepository;
+import project.DAO.DataChangeBus;
+import project.DAO.DataChangeEvent;
+import project.DAO.Repositories;
+import project.model.Appointment;
+
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the appointments of the time ranges the screens have shown, so going back to a week or month, or switching
+ * between the week and month views, does not query again. The ranges read so far are kept as a set of merged
+ * [from, to) intervals; a request only reads the parts of its range that are not covered yet, and
+ * {@link #prefetch(LocalDateTime, LocalDateTime)} reads a range in the background, such as the period next to the
+ * one shown.
+ *
+ * The cache follows the {@link DataChangeBus}: an added or changed appointment is put in place if its start is in a
+ * covered range and removed from where it was, a deleted one is removed, and deleting a customer removes the
+ * customer's appointments. Changes made by other applications to the same database do not come through the bus, so
+ * a range is kept for appointments.rangeCache.ttlSeconds (default 60) after it was read and then read again when
+ * next asked for; merged ranges count from the oldest read in them. Once more than
+ * appointments.rangeCache.maxAppointments (default 100000) are kept, the cache starts over with the next range read.
+ *
+ * @author Teksong Eap
+ */
+public final class AppointmentRangeCache {
+
+    /** Most appointments kept before the cache starts over */
+    private static final int MAX_APPOINTMENTS = AppConfig.getInt("appointments.rangeCache.maxAppointments", 100_000);
+
+    /** Nanoseconds a range is kept after it was read */
+    private static final long TTL_NANOS =
+            TimeUnit.SECONDS.toNanos(AppConfig.getLong("appointments.rangeCache.ttlSeconds", 60));
+
+    /** How often a read is repeated when appointments change while it runs */
+    private static final int READ_ATTEMPTS = 3;
+
+    /** The cache shared by the screens, created on first use */
+    private static AppointmentRangeCache shared;
+
+    /** Where missing ranges are read from */
+    private final AppointmentRepository repository;
+
+    /** Covered ranges by start; disjoint and never touching, as touching ranges are merged */
+    private final NavigableMap<LocalDateTime, Range> covered = new TreeMap<>();
+
+    /** Kept appointments by start, then ID */
+    private final NavigableMap<LocalDateTime, Map<Integer, Appointment>> byStart = new TreeMap<>();
+
+    /** Kept appointments by ID */
+    private final Map<Integer, Appointment> byId = new HashMap<>();
+
+    /** Counts the changes applied, so a read that overlapped one can tell its result may be out of date */
+    private long changes;
+
+    /** Reads ranges in the background */
+    private final ExecutorService prefetcher = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "range-prefetch");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Creates a cache that reads from a repository and follows the {@link DataChangeBus}.
+     *
+     * @param repository where missing ranges are read from
+     */
+    public AppointmentRangeCache(AppointmentRepository repository) {
+        this.repository = repository;
+        DataChangeBus.addListener(this::onChange);
+    }
+
+    /**
+     * Returns the cache shared by the screens, reading from the application's appointment repository.
+     *
+     * @return the shared cache
+     */
+    public static synchronized AppointmentRangeCache shared() {
+        if (shared == null) {
+            shared = new AppointmentRangeCache(Repositories.appointments());
+        }
+        return shared;
+    }
+
+    /**
+     * Returns the appointments starting in a range, reading the parts of the range that are not covered yet.
+     *
+     * @param from the start of the range, inclusive
+     * @param to the end of the range, exclusive
+     * @return a new list of the appointments, by start, then ID
+     * @throws SQLException if a missing part could not be read
+     */
+    public ObservableList<Appointment> get(LocalDateTime from, LocalDateTime to) throws SQLException {
+        for (int attempt = 1; ; attempt++) {
+            List<LocalDateTime[]> missing;
+            long changesBefore;
+            synchronized (this) {
+                if (byId.size() > MAX_APPOINTMENTS) {
+                    clear();
+                }
+                dropExpired(System.nanoTime());
+                missing = missingParts(from, to);
+                if (missing.isEmpty()) {
+                    return appointmentsStartingIn(from, to);
+                }
+                changesBefore = changes;
+            }
+
+            long readAt = System.nanoTime();
+            List<List<Appointment>> parts = new ArrayList<>(missing.size());
+            for (LocalDateTime[] part : missing) {
+                parts.add(repository.getAppointmentsStartingIn(part[0], part[1]));
+            }
+
+            synchronized (this) {
+                if (changes == changesBefore) {
+                    for (int i = 0; i < missing.size(); i++) {
+                        parts.get(i).forEach(this::put);
+                        cover(missing.get(i)[0], missing.get(i)[1], readAt);
+                    }
+                    return appointmentsStartingIn(from, to);
+                }
+                // A change applied while reading may be missing from what was read; keep nothing of it
+                if (attempt == READ_ATTEMPTS) {
+                    ObservableList<Appointment> appointments = appointmentsStartingIn(from, to);
+                    parts.forEach(appointments::addAll);
+                    appointments.sort(Comparator.comparing(Appointment::getStartDateTime)
+                            .thenComparingInt(Appointment::getAppointmentId));
+                    return appointments;
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads a range in the background unless it is covered already, so a later {@link #get} of it is answered
+     * from memory. A failed read is printed and leaves the range to be read again.
+     *
+     * @param from the start of the range, inclusive
+     * @param to the end of the range, exclusive
+     */
+    public void prefetch(LocalDateTime from, LocalDateTime to) {
+        synchronized (this) {
+            dropExpired(System.nanoTime());
+            if (missingParts(from, to).isEmpty()) {
+                return;
+            }
+        }
+        prefetcher.execute(() -> {
+            try {
+                get(from, to);
+            } catch (SQLException | RuntimeException e) {
+                System.out.println("Could not prefetch the appointments from " + from + " to " + to);
+            }
+        });
+    }
+
+    /**
+     * Forgets all kept ranges and appointments.
+     */
+    public synchronized void clear() {
+        covered.clear();
+        byStart.clear();
+        byId.clear();
+    }
+
+    /**
+     * Returns the parts of a range that are not covered.
+     *
+     * @param from the start of the range, inclusive
+     * @param to the end of the range, exclusive
+     * @return the missing parts as [from, to) pairs, earliest first
+     */
+    private List<LocalDateTime[]> missingParts(LocalDateTime from, LocalDateTime to) {
+        List<LocalDateTime[]> missing = new ArrayList<>();
+        LocalDateTime cursor = from;
+        Map.Entry<LocalDateTime, Range> before = covered.floorEntry(from);
+        if (before != null && before.getValue().end.isAfter(cursor)) {
+            cursor = before.getValue().end;
+        }
+        for (Map.Entry<LocalDateTime, Range> range : covered.subMap(from, false, to, false).entrySet()) {
+            if (range.getKey().isAfter(cursor)) {
+                missing.add(new LocalDateTime[] {cursor, range.getKey()});
+            }
+            if (range.getValue().end.isAfter(cursor)) {
+                cursor = range.getValue().end;
+            }
+        }
+        if (cursor.isBefore(to)) {
+            missing.add(new LocalDateTime[] {cursor, to});
+        }
+        return missing;
+    }
+
+    /**
+     * Marks a range as covered, merging it with the covered ranges it overlaps or touches. The merged range
+     * counts as read when the oldest of them was.
+     *
+     * @param from the start of the range, inclusive
+     * @param to the end of the range, exclusive
+     * @param readAt when the range was read, in System.nanoTime()
+     */
+    private void cover(LocalDateTime from, LocalDateTime to, long readAt) {
+        LocalDateTime start = from;
+        LocalDateTime end = to;
+        long oldest = readAt;
+        Map.Entry<LocalDateTime, Range> before = covered.floorEntry(from);
+        if (before != null && !before.getValue().end.isBefore(from)) {
+            start = before.getKey();
+        }
+        NavigableMap<LocalDateTime, Range> merged = covered.subMap(start, true, end, true);
+        for (Range range : merged.values()) {
+            if (range.end.isAfter(end)) {
+                end = range.end;
+            }
+            if (range.readAt - oldest < 0) {
+                oldest = range.readAt;
+            }
+        }
+        merged.clear();
+        covered.put(start, new Range(end, oldest));
+    }
+
+    /**
+     * Forgets the ranges read longer ago than the time to live, with their appointments, so they are read again.
+     *
+     * @param now the current System.nanoTime()
+     */
+    private void dropExpired(long now) {
+        covered.entrySet().removeIf(range -> {
+            if (now - range.getValue().readAt < TTL_NANOS) {
+                return false;
+            }
+            NavigableMap<LocalDateTime, Map<Integer, Appointment>> expired =
+                    byStart.subMap(range.getKey(), true, range.getValue().end, false);
+            expired.values().forEach(atStart -> atStart.keySet().forEach(byId::remove));
+            expired.clear();
+            return true;
+        });
+    }
+
+    /**
+     * Returns whether a time is in a covered range.
+     *
+     * @param time the time
+     * @return true if the time is covered
+     */
+    private boolean isCovered(LocalDateTime time) {
+        Map.Entry<LocalDateTime, Range> range = covered.floorEntry(time);
+        return range != null && range.getValue().end.isAfter(time);
+    }
+
+    /**
+     * Returns the kept appointments starting in a range.
+     *
+     * @param from the start of the range, inclusive
+     * @param to the end of the range, exclusive
+     * @return a new list of the appointments, by start, then ID
+     */
+    private ObservableList<Appointment> appointmentsStartingIn(LocalDateTime from, LocalDateTime to) {
+        ObservableList<Appointment> appointments = FXCollections.observableArrayList();
+        for (Map<Integer, Appointment> atStart : byStart.subMap(from, true, to, false).values()) {
+            appointments.addAll(atStart.values());
+        }
+        return appointments;
+    }
+
+    /**
+     * Keeps an appointment, replacing the kept one with the same ID.
+     *
+     * @param appointment the appointment
+     */
+    private void put(Appointment appointment) {
+        remove(appointment.getAppointmentId());
+        byId.put(appointment.getAppointmentId(), appointment);
+        byStart.computeIfAbsent(appointment.getStartDateTime(), start -> new TreeMap<>())
+                .put(appointment.getAppointmentId(), appointment);
+    }
+
+    /**
+     * Removes a kept appointment, if there is one.
+     *
+     * @param appointmentId the appointment ID
+     */
+    private void remove(int appointmentId) {
+        Appointment kept = byId.remove(appointmentId);
+        if (kept == null) {
+            return;
+        }
+        Map<Integer, Appointment> atStart = byStart.get(kept.getStartDateTime());
+        atStart.remove(appointmentId);
+        if (atStart.isEmpty()) {
+            byStart.remove(kept.getStartDateTime());
+        }
+    }
+
+    /**
+     * Applies a change to the kept appointments.
+     *
+     * @param event the change
+     */
+    private synchronized void onChange(DataChangeEvent event) {
+        if (event.getEntity() == DataChangeEvent.Entity.CUSTOMER) {
+            if (event.getKind() != DataChangeEvent.Kind.DELETED) {
+                return;
+            }
+            List<Integer> removed = new ArrayList<>();
+            byId.values().forEach(appointment -> {
+                if (appointment.getCustomerId() == event.getId()) {
+                    removed.add(appointment.getAppointmentId());
+                }
+            });
+            removed.forEach(this::remove);
+        } else if (event.getKind() == DataChangeEvent.Kind.DELETED) {
+            remove(event.getId());
+        } else if (event.getAppointment() == null) {
+            clear();
+        } else {
+            remove(event.getId());
+            if (isCovered(event.getAppointment().getStartDateTime())) {
+                // The writer may go on changing its object
+                put(new Appointment(event.getAppointment()));
+            }
+        }
+        changes++;
+    }
+
+    /**
+     * The end of a covered range and when it was read.
+     */
+    private static final class Range {
+
+        /** End of the range, exclusive */
+        final LocalDateTime end;
+
+        /** When the range was read, in System.nanoTime() */
+        final long readAt;
+
+        /**
+         * Creates a covered range.
+         *
+         * @param end the end of the range, exclusive
+         * @param readAt when it was read, in System.nanoTime()
+         */
+        Range(LocalDateTime end, long readAt) {
+            this.end = end;
+            this.readAt = readAt;
+        }
+    }
+}
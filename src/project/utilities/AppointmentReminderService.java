@@ -0,0 +1,225 @@
+package project.utilities;
+
+import javafx.application.Platform;
+import javafx.scene.control.Alert;
+import project.DAO.DataChangeBus;
+import project.DAO.DataChangeEvent;
+import project.DAO.Repositories;
+import project.model.Appointment;
+import project.model.User;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shows a reminder shortly before each of the logged-in user's appointments starts, for as long as the application runs.
+ *
+ * The user's appointments for the next hours are loaded with one range query and a reminder for each is put on a
+ * {@link HashedTimingWheel}. Adding, updating or deleting an appointment reschedules its reminder through the
+ * {@link DataChangeBus}, so the database is only queried again when the loaded range runs out.
+ * Like the check done at login, only appointments starting within business hours are reminded of.
+ *
+ * Settings (app.properties or -D):
+ * reminder.leadMinutes (default 15), reminder.horizonHours (default 24).
+ *
+ * @author Teksong Eap
+ */
+public final class AppointmentReminderService {
+
+    /** How long before an appointment starts its reminder is shown */
+    private static final Duration LEAD = Duration.ofMinutes(AppConfig.getLong("reminder.leadMinutes", 15));
+
+    /** How far ahead appointments are loaded */
+    private static final Duration HORIZON = Duration.ofHours(AppConfig.getLong("reminder.horizonHours", 24));
+
+    /** The wheel reminders are scheduled on; one-second ticks, 512 buckets per turn */
+    private static final HashedTimingWheel wheel =
+            new HashedTimingWheel("appointment-reminders", 1, TimeUnit.SECONDS, 512);
+
+    /** Scheduled reminders by appointment ID */
+    private static final Map<Integer, HashedTimingWheel.Timeout> reminders = new ConcurrentHashMap<>();
+
+    /** Start times already reminded of, by appointment ID, so a reload or an unrelated edit does not remind again */
+    private static final Map<Integer, LocalDateTime> reminded = new ConcurrentHashMap<>();
+
+    /** Reschedules reminders when appointments change */
+    private static final DataChangeBus.Listener changeListener = AppointmentReminderService::onChange;
+
+    /** The user whose appointments are reminded of, or null when stopped */
+    private static volatile User user;
+
+    /** End of the loaded range; appointments starting later are picked up by the next load */
+    private static volatile LocalDateTime loadedUntil = LocalDateTime.MIN;
+
+    /** The next load of the following range */
+    private static HashedTimingWheel.Timeout nextLoad;
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private AppointmentReminderService() {
+    }
+
+    /**
+     * Starts reminding a user of their appointments. Any reminders for a previous user are cancelled.
+     * Appointments whose reminder time has already passed are left to the check done when the main screen opens.
+     *
+     * @param currentUser the logged-in user
+     */
+    public static synchronized void start(User currentUser) {
+        stop();
+        user = currentUser;
+        DataChangeBus.addListener(changeListener);
+        loadAsync(currentUser);
+    }
+
+    /**
+     * Stops reminding and cancels all scheduled reminders.
+     */
+    public static synchronized void stop() {
+        DataChangeBus.removeListener(changeListener);
+        user = null;
+        loadedUntil = LocalDateTime.MIN;
+        if (nextLoad != null) {
+            nextLoad.cancel();
+            nextLoad = null;
+        }
+        reminders.values().forEach(HashedTimingWheel.Timeout::cancel);
+        reminders.clear();
+        reminded.clear();
+    }
+
+    /**
+     * Loads the user's appointments for the next range on a background thread, so neither the FX thread
+     * nor the wheel's thread waits for the database.
+     *
+     * @param forUser the user to load appointments for
+     */
+    private static void loadAsync(User forUser) {
+        Thread loader = new Thread(() -> load(forUser), "appointment-reminder-loader");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    /**
+     * Loads the user's appointments starting within the horizon, schedules their reminders
+     * and schedules the next load for when the lead time reaches the end of the range.
+     *
+     * @param forUser the user to load appointments for
+     */
+    private static void load(User forUser) {
+        LocalDateTime from = LocalDateTime.now();
+        LocalDateTime until = from.plus(HORIZON);
+        List<Appointment> appointments = Repositories.appointments().getAppointmentsForUserInRange(forUser.getUserID(), from, until);
+        synchronized (AppointmentReminderService.class) {
+            if (user != forUser) {
+                return;
+            }
+            loadedUntil = until;
+            for (Appointment appointment : appointments) {
+                schedule(appointment, false);
+            }
+            nextLoad = wheel.schedule(() -> loadAsync(forUser), millisUntil(until.minus(LEAD)), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Schedules or replaces the reminder for an appointment.
+     *
+     * @param appointment the appointment
+     * @param remindIfLate whether to remind right away if the reminder time has passed but the appointment has not started
+     */
+    private static void schedule(Appointment appointment, boolean remindIfLate) {
+        int id = appointment.getAppointmentId();
+        cancel(id);
+        LocalDateTime start = appointment.getStartDateTime();
+        LocalDateTime now = LocalDateTime.now();
+        if (!start.isAfter(now) || start.equals(reminded.get(id)) || !TimeUtil.isWithinBusinessHours(start)) {
+            return;
+        }
+        LocalDateTime remindAt = start.minus(LEAD);
+        if (remindAt.isBefore(now) && !remindIfLate) {
+            return;
+        }
+        reminders.put(id, wheel.schedule(() -> fire(appointment), millisUntil(remindAt), TimeUnit.MILLISECONDS));
+    }
+
+    /**
+     * Cancels the reminder for an appointment, if one is scheduled.
+     *
+     * @param appointmentId the appointment ID
+     */
+    private static void cancel(int appointmentId) {
+        HashedTimingWheel.Timeout timeout = reminders.remove(appointmentId);
+        if (timeout != null) {
+            timeout.cancel();
+        }
+    }
+
+    /**
+     * Shows the reminder for an appointment on the FX thread. Runs on the wheel's thread.
+     *
+     * @param appointment the appointment
+     */
+    private static void fire(Appointment appointment) {
+        reminders.remove(appointment.getAppointmentId());
+        reminded.put(appointment.getAppointmentId(), appointment.getStartDateTime());
+        Platform.runLater(() -> {
+            Alert alert = new Alert(Alert.AlertType.INFORMATION);
+            alert.setTitle("Upcoming Appointment");
+            alert.setHeaderText("You have an appointment starting soon within " + LEAD.toMinutes() + " minutes!");
+            alert.setContentText("Appointment ID: " + appointment.getAppointmentId()
+                    + "\nDate: " + appointment.getStartDate()
+                    + "\nTime: " + appointment.getStartTime());
+            // show() rather than showAndWait(), so a reminder never blocks whatever the user is doing
+            alert.show();
+        });
+    }
+
+    /**
+     * Reschedules reminders after an appointment was added, updated or deleted, or loads them again after
+     * many appointments changed at once.
+     *
+     * @param event the change
+     */
+    private static synchronized void onChange(DataChangeEvent event) {
+        User current = user;
+        if (current == null || event.getEntity() != DataChangeEvent.Entity.APPOINTMENT) {
+            return;
+        }
+        if (event.getId() == DataChangeEvent.MANY) {
+            // Many appointments changed at once, such as by an import; load the range again
+            if (nextLoad != null) {
+                nextLoad.cancel();
+                nextLoad = null;
+            }
+            loadAsync(current);
+            return;
+        }
+        Appointment appointment = event.getAppointment();
+        if (event.getKind() == DataChangeEvent.Kind.DELETED || appointment == null
+                || appointment.getUserId() != current.getUserID()
+                || !appointment.getStartDateTime().isBefore(loadedUntil)) {
+            // Deleted, moved to another user, or beyond the loaded range where the next load will find it
+            cancel(event.getId());
+            return;
+        }
+        schedule(appointment, true);
+    }
+
+    /**
+     * Returns the milliseconds from now until a local date and time.
+     *
+     * @param dateTime the local date and time
+     * @return the milliseconds, negative if it has passed
+     */
+    private static long millisUntil(LocalDateTime dateTime) {
+        return Duration.between(Instant.now(), dateTime.atZone(ZoneId.systemDefault()).toInstant()).toMillis();
+    }
+}
@@ -0,0 +1,350 @@
+package project.utilities;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Appends lines to a text file from a single background writer thread.
+ * Callers only enqueue lines, so appending never blocks on disk I/O. The writer thread writes lines in batches
+ * and flushes once a batch-size or time bound is reached, or as soon as the queue runs empty if no time bound is set.
+ *
+ * When the file grows past its size limit it is rotated: "name.log" becomes "name.1.log", "name.1.log" becomes
+ * "name.2.log", and so on, keeping a fixed number of backups. With daily rotation the file is also rotated when
+ * the date changes, and backups are named after the day they cover ("name.2023-06-27.1.log") and kept.
+ *
+ * @author Teksong Eap
+ */
+public final class AsyncFileAppender implements Closeable {
+
+    /** Marker line telling the writer thread to stop */
+    private static final String STOP = new String("STOP");
+
+    /** The file being written */
+    private final Path file;
+
+    /** Size in bytes after which the file is rotated */
+    private final long maxBytes;
+
+    /** Number of rotated files to keep */
+    private final int maxBackups;
+
+    /** Number of written lines after which the file is flushed */
+    private final int flushLines;
+
+    /** Time in nanoseconds after which written lines are flushed, or 0 to flush whenever the queue is empty */
+    private final long flushIntervalNanos;
+
+    /** Whether the file is rotated when the date changes */
+    private final boolean rotateDaily;
+
+    /** Lines waiting to be written */
+    private final BlockingQueue<String> queue;
+
+    /** The background writer thread */
+    private final Thread writerThread;
+
+    /** Number of lines dropped because the queue was full */
+    private final AtomicLong droppedLines = new AtomicLong();
+
+    /** The open writer, only used by the writer thread */
+    private BufferedWriter writer;
+
+    /** Current size of the file in bytes, only used by the writer thread */
+    private long currentBytes;
+
+    /** The day the current file's contents belong to, only used by the writer thread */
+    private LocalDate fileDate;
+
+    /** Lines written since the last flush, only used by the writer thread */
+    private int unflushedLines;
+
+    /** System.nanoTime() of the oldest unflushed line, only used by the writer thread */
+    private long firstUnflushedNanos;
+
+    /** Whether close() has been called */
+    private volatile boolean closed;
+
+    /**
+     * Creates an appender that flushes whenever its queue runs empty and starts its writer thread.
+     *
+     * @param fileName the file to append to
+     * @param maxBytes the size in bytes after which the file is rotated
+     * @param maxBackups the number of rotated files to keep
+     * @param capacity the number of lines that can be waiting to be written
+     */
+    public AsyncFileAppender(String fileName, long maxBytes, int maxBackups, int capacity) {
+        this(fileName, maxBytes, maxBackups, capacity, Integer.MAX_VALUE, 0, false);
+    }
+
+    /**
+     * Creates an appender and starts its writer thread.
+     *
+     * @param fileName the file to append to
+     * @param maxBytes the size in bytes after which the file is rotated
+     * @param maxBackups the number of size-rotated files to keep; ignored with daily rotation, where all backups are kept
+     * @param capacity the number of lines that can be waiting to be written
+     * @param flushLines the number of written lines after which the file is flushed
+     * @param flushIntervalMillis the time after which written lines are flushed, or 0 to flush whenever the queue is empty
+     * @param rotateDaily whether the file is also rotated when the date changes
+     */
+    public AsyncFileAppender(String fileName, long maxBytes, int maxBackups, int capacity,
+                             int flushLines, long flushIntervalMillis, boolean rotateDaily) {
+        this.file = Paths.get(fileName);
+        this.maxBytes = maxBytes;
+        this.maxBackups = maxBackups;
+        this.flushLines = Math.max(1, flushLines);
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+        this.rotateDaily = rotateDaily;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.writerThread = new Thread(this::writeLoop, "appender-" + file.getFileName());
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(this::close));
+    }
+
+    /**
+     * Queues a line to be written. Never blocks; if the queue is full the line is dropped and counted.
+     *
+     * @param line the line to write, without a line separator
+     * @return true if the line was queued, false if it was dropped
+     */
+    public boolean append(String line) {
+        if (closed || !queue.offer(line)) {
+            droppedLines.incrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the number of lines dropped because the queue was full or the appender was closed.
+     *
+     * @return dropped line count
+     */
+    public long getDroppedLines() {
+        return droppedLines.get();
+    }
+
+    /**
+     * Writes the queued lines, stops the writer thread and closes the file.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            queue.put(STOP);
+            writerThread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Body of the writer thread. Waits for lines, writes everything queued in one go and flushes
+     * when the batch-size or time bound is reached.
+     */
+    private void writeLoop() {
+        List<String> batch = new ArrayList<>();
+        try {
+            while (true) {
+                String first = unflushedLines == 0 || flushIntervalNanos == 0
+                        ? queue.take()
+                        : queue.poll(Math.max(0, firstUnflushedNanos + flushIntervalNanos - System.nanoTime()),
+                                TimeUnit.NANOSECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch);
+                }
+                boolean stop = false;
+                for (String line : batch) {
+                    if (line == STOP) {
+                        stop = true;
+                    } else {
+                        write(line);
+                    }
+                }
+                batch.clear();
+                if (stop || isFlushDue()) {
+                    flush();
+                }
+                if (stop) {
+                    break;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            System.out.println("Error: could not write " + file + ": " + e.getMessage());
+        } finally {
+            closeWriter();
+        }
+    }
+
+    /**
+     * Writes one line, rotating the file first if the line would push it past the size limit
+     * or if the date has changed.
+     *
+     * @param line the line to write
+     * @throws IOException if the file cannot be written
+     */
+    private void write(String line) throws IOException {
+        long lineBytes = line.getBytes(StandardCharsets.UTF_8).length + System.lineSeparator().length();
+        if (writer == null) {
+            openWriter();
+        }
+        if (currentBytes > 0 && (currentBytes + lineBytes > maxBytes
+                || (rotateDaily && !LocalDate.now().equals(fileDate)))) {
+            rotate();
+        }
+        writer.write(line);
+        writer.newLine();
+        currentBytes += lineBytes;
+        if (unflushedLines++ == 0) {
+            firstUnflushedNanos = System.nanoTime();
+        }
+    }
+
+    /**
+     * Checks whether the written lines should be flushed now.
+     *
+     * @return true if the batch-size or time bound has been reached
+     */
+    private boolean isFlushDue() {
+        if (unflushedLines == 0) {
+            return false;
+        }
+        if (flushIntervalNanos == 0) {
+            return queue.isEmpty() || unflushedLines >= flushLines;
+        }
+        return unflushedLines >= flushLines || System.nanoTime() - firstUnflushedNanos >= flushIntervalNanos;
+    }
+
+    /**
+     * Flushes the written lines to disk.
+     *
+     * @throws IOException if the file cannot be written
+     */
+    private void flush() throws IOException {
+        if (writer != null) {
+            writer.flush();
+        }
+        unflushedLines = 0;
+    }
+
+    /**
+     * Opens the file for appending.
+     *
+     * @throws IOException if the file cannot be opened
+     */
+    private void openWriter() throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        boolean existed = Files.exists(file);
+        writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        currentBytes = Files.size(file);
+        fileDate = existed && currentBytes > 0
+                ? LocalDate.ofInstant(Files.getLastModifiedTime(file).toInstant(), ZoneId.systemDefault())
+                : LocalDate.now();
+    }
+
+    /**
+     * Closes the current file, shifts the backups by one and starts a new file.
+     *
+     * @throws IOException if the files cannot be renamed
+     */
+    private void rotate() throws IOException {
+        closeWriter();
+        unflushedLines = 0;
+        if (rotateDaily) {
+            int index = 1;
+            while (Files.exists(datedBackupPath(fileDate, index))) {
+                index++;
+            }
+            Files.move(file, datedBackupPath(fileDate, index));
+            openWriter();
+            return;
+        }
+        Files.deleteIfExists(backupPath(maxBackups));
+        for (int i = maxBackups - 1; i >= 1; i--) {
+            Path source = backupPath(i);
+            if (Files.exists(source)) {
+                Files.move(source, backupPath(i + 1), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        if (maxBackups > 0) {
+            Files.move(file, backupPath(1), StandardCopyOption.REPLACE_EXISTING);
+        } else {
+            Files.deleteIfExists(file);
+        }
+        openWriter();
+    }
+
+    /**
+     * Returns the name of a rotated file, e.g. "slow_queries.2.log" for "slow_queries.log".
+     *
+     * @param index the backup number, starting at 1
+     * @return the path of the backup
+     */
+    private Path backupPath(int index) {
+        return insertBeforeExtension(String.valueOf(index));
+    }
+
+    /**
+     * Returns the name of a daily-rotated file, e.g. "login_activity.2023-06-27.1.txt" for "login_activity.txt".
+     *
+     * @param date the day the backup covers
+     * @param index the backup number for that day, starting at 1
+     * @return the path of the backup
+     */
+    private Path datedBackupPath(LocalDate date, int index) {
+        return insertBeforeExtension(date + "." + index);
+    }
+
+    /**
+     * Inserts a suffix between the file's name and its extension.
+     *
+     * @param suffix the suffix to insert
+     * @return the path of the resulting sibling file
+     */
+    private Path insertBeforeExtension(String suffix) {
+        String name = file.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        String backupName = dot < 0 ? name + "." + suffix : name.substring(0, dot) + "." + suffix + name.substring(dot);
+        return file.resolveSibling(backupName);
+    }
+
+    /**
+     * Closes the writer, ignoring errors.
+     */
+    private void closeWriter() {
+        if (writer != null) {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                System.out.println("Error: could not close " + file + ": " + e.getMessage());
+            }
+            writer = null;
+        }
+    }
+}
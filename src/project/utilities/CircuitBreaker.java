@@ -0,0 +1,77 @@
+package project.utilities;
+
+/**
+ * Circuit breaker for the database. After a number of consecutive connection failures it opens, and calls
+ * fail at once instead of waiting for the network to time out. Once the open period has passed one call is
+ * let through as a trial: if it succeeds the breaker closes again, if it fails the breaker stays open.
+ *
+ * @author Teksong Eap
+ */
+final class CircuitBreaker {
+
+    /** Consecutive failures that open the breaker */
+    private final int failureThreshold;
+
+    /** How long the breaker stays open before a trial call, in milliseconds */
+    private final long openMillis;
+
+    /** Consecutive failures so far */
+    private int failures;
+
+    /** System.currentTimeMillis() at which the breaker lets a trial call through; 0 while closed */
+    private long retryAt;
+
+    /** Whether a trial call is in progress */
+    private boolean trialInProgress;
+
+    /**
+     * Creates a closed breaker.
+     *
+     * @param failureThreshold consecutive failures that open the breaker
+     * @param openMillis how long the breaker stays open before a trial call, in milliseconds
+     */
+    CircuitBreaker(int failureThreshold, long openMillis) {
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.openMillis = openMillis;
+    }
+
+    /**
+     * Asks whether a call may go to the database.
+     *
+     * @return 0 if the call may proceed, otherwise the milliseconds until the next trial call
+     */
+    synchronized long acquire() {
+        if (retryAt == 0) {
+            return 0;
+        }
+        long now = System.currentTimeMillis();
+        if (now < retryAt || trialInProgress) {
+            return Math.max(1, retryAt - now);
+        }
+        trialInProgress = true;
+        return 0;
+    }
+
+    /**
+     * Records a successful call, closing the breaker.
+     */
+    synchronized void recordSuccess() {
+        failures = 0;
+        retryAt = 0;
+        trialInProgress = false;
+    }
+
+    /**
+     * Records a connection failure, opening the breaker once the threshold is reached.
+     */
+    synchronized void recordFailure() {
+        failures++;
+        trialInProgress = false;
+        if (failures >= failureThreshold) {
+            if (retryAt == 0) {
+                System.out.println("Database unavailable; failing fast for " + openMillis + " ms");
+            }
+            retryAt = System.currentTimeMillis() + openMillis;
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package project.utilities;
+
+import javafx.scene.control.ButtonBar;
+import javafx.scene.control.ButtonType;
+import javafx.scene.control.Dialog;
+import javafx.scene.control.Label;
+import javafx.scene.control.RadioButton;
+import javafx.scene.control.ToggleGroup;
+import javafx.scene.layout.GridPane;
+import javafx.scene.layout.VBox;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Field-level three-way merge of a record edited by this user while someone else changed it.
+ *
+ * Each field is compared between the version this user started editing (base), this user's edit (mine) and
+ * the version now in the database (theirs). A field only one side changed takes that side's value without asking;
+ * a field both sides changed to different values is a conflict, and the user picks which value to keep.
+ *
+ * @param <T> the type of record
+ * @author Teksong Eap
+ */
+public final class FieldMerge<T> {
+
+    /** The fields compared, in display order */
+    private final List<Field<T>> fields = new ArrayList<>();
+
+    /**
+     * Adds a field to compare.
+     *
+     * @param name the name shown to the user
+     * @param getter reads the field's display value from a record
+     * @param copier copies the field from the second record into the first
+     * @return this merge, for chaining
+     */
+    public FieldMerge<T> add(String name, Function<T, ?> getter, BiConsumer<T, T> copier) {
+        fields.add(new Field<>(name, getter, copier));
+        return this;
+    }
+
+    /**
+     * Merges someone else's changes into this user's edit. Fields only they changed are copied into mine;
+     * for fields both changed the user is asked which value to keep.
+     *
+     * @param base the record as this user first read it
+     * @param mine this user's edit; receives the merged values
+     * @param theirs the record as it is now in the database
+     * @return true if the merge was completed, false if the user cancelled it, in which case mine is unchanged
+     */
+    public boolean merge(T base, T mine, T theirs) {
+        List<Field<T>> taken = new ArrayList<>();
+        List<Field<T>> conflicts = new ArrayList<>();
+        for (Field<T> field : fields) {
+            Object baseValue = field.getter.apply(base);
+            Object myValue = field.getter.apply(mine);
+            Object theirValue = field.getter.apply(theirs);
+            if (Objects.equals(myValue, theirValue) || Objects.equals(theirValue, baseValue)) {
+                continue;
+            }
+            if (Objects.equals(myValue, baseValue)) {
+                taken.add(field);
+            } else {
+                conflicts.add(field);
+            }
+        }
+
+        List<Field<T>> chosen = askUser(taken, conflicts, mine, theirs);
+        if (chosen == null) {
+            return false;
+        }
+        for (Field<T> field : taken) {
+            field.copier.accept(mine, theirs);
+        }
+        for (Field<T> field : chosen) {
+            field.copier.accept(mine, theirs);
+        }
+        return true;
+    }
+
+    /**
+     * Shows the changes made by someone else and lets the user resolve the conflicts.
+     *
+     * @param taken fields only they changed
+     * @param conflicts fields both changed
+     * @param mine this user's edit
+     * @param theirs the record as it is now in the database
+     * @return the conflicting fields for which the user chose their value, or null if the user cancelled
+     */
+    private List<Field<T>> askUser(List<Field<T>> taken, List<Field<T>> conflicts, T mine, T theirs) {
+        Dialog<ButtonType> dialog = new Dialog<>();
+        dialog.setTitle("CONFLICT");
+        dialog.setHeaderText("This record was changed by another user while you were editing it.");
+        ButtonType apply = new ButtonType("Use Selected Values", ButtonBar.ButtonData.OK_DONE);
+        dialog.getDialogPane().getButtonTypes().addAll(apply, ButtonType.CANCEL);
+
+        VBox content = new VBox(10);
+        if (!taken.isEmpty()) {
+            StringBuilder sb = new StringBuilder("Their changes to these fields were kept:");
+            for (Field<T> field : taken) {
+                sb.append("\n  ").append(field.name).append(": ").append(field.getter.apply(theirs));
+            }
+            content.getChildren().add(new Label(sb.toString()));
+        }
+
+        List<RadioButton> theirChoices = new ArrayList<>();
+        if (conflicts.isEmpty()) {
+            content.getChildren().add(new Label("None of your changes conflict with theirs."));
+        } else {
+            content.getChildren().add(new Label("You both changed these fields. Choose the value to keep:"));
+            GridPane grid = new GridPane();
+            grid.setHgap(15);
+            grid.setVgap(8);
+            grid.addRow(0, new Label(""), new Label("Yours"), new Label("Theirs"));
+            int row = 1;
+            for (Field<T> field : conflicts) {
+                ToggleGroup group = new ToggleGroup();
+                RadioButton myChoice = new RadioButton(String.valueOf(field.getter.apply(mine)));
+                RadioButton theirChoice = new RadioButton(String.valueOf(field.getter.apply(theirs)));
+                myChoice.setToggleGroup(group);
+                theirChoice.setToggleGroup(group);
+                myChoice.setSelected(true);
+                grid.addRow(row++, new Label(field.name), myChoice, theirChoice);
+                theirChoices.add(theirChoice);
+            }
+            content.getChildren().add(grid);
+        }
+        content.getChildren().add(new Label("Review the form and save again to apply the merged values."));
+        dialog.getDialogPane().setContent(content);
+
+        Optional<ButtonType> result = dialog.showAndWait();
+        if (result.isEmpty() || result.get() != apply) {
+            return null;
+        }
+        List<Field<T>> chosen = new ArrayList<>();
+        for (int i = 0; i < conflicts.size(); i++) {
+            if (theirChoices.get(i).isSelected()) {
+                chosen.add(conflicts.get(i));
+            }
+        }
+        return chosen;
+    }
+
+    /**
+     * A field compared by the merge.
+     *
+     * @param <T> the type of record
+     */
+    private static final class Field<T> {
+        /** Name shown to the user */
+        final String name;
+
+        /** Reads the display value */
+        final Function<T, ?> getter;
+
+        /** Copies the field from the second record into the first */
+        final BiConsumer<T, T> copier;
+
+        /**
+         * Creates a field.
+         *
+         * @param name name shown to the user
+         * @param getter reads the display value
+         * @param copier copies the field from the second record into the first
+         */
+        Field(String name, Function<T, ?> getter, BiConsumer<T, T> copier) {
+            this.name = name;
+            this.getter = getter;
+            this.copier = copier;
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package project.utilities;
+
+import project.DAO.Repositories;
+import project.model.Appointment;
+import project.model.TimeSlot;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Finds free time slots shared by a customer, a contact and a user.
+ *
+ * All appointments in a date range are loaded with one query into three {@link IntervalIndex}es, by customer,
+ * by contact and by user. A search then only touches memory: for each business day, in eastern time as in
+ * {@link TimeUtil}, it merges the busy intervals of the three parties and walks the gaps between them,
+ * so results can be recomputed on every keystroke.
+ *
+ * Slots start on quarter hours and follow each other back to back within a gap.
+ *
+ * Settings (app.properties or -D):
+ * freeSlots.horizonDays (default 90), freeSlots.count (default 10).
+ *
+ * @author Teksong Eap
+ */
+public final class FreeSlotFinder {
+
+    /** Number of days ahead loaded by {@link #load()} */
+    private static final int HORIZON_DAYS = AppConfig.getInt("freeSlots.horizonDays", 90);
+
+    /** Number of slots a screen asks for */
+    public static final int SLOT_COUNT = AppConfig.getInt("freeSlots.count", 10);
+
+    /** Slot starts are rounded up to a multiple of this many seconds */
+    private static final long STEP_SECONDS = 15 * 60;
+
+    /** Busy intervals by customer ID */
+    private final IntervalIndex byCustomer = new IntervalIndex();
+
+    /** Busy intervals by contact ID */
+    private final IntervalIndex byContact = new IntervalIndex();
+
+    /** Busy intervals by user ID */
+    private final IntervalIndex byUser = new IntervalIndex();
+
+    /** Start of the loaded range in epoch seconds */
+    private final long loadedFrom;
+
+    /** End of the loaded range in epoch seconds; no slots are offered past it */
+    private final long loadedUntil;
+
+    /**
+     * Creates a finder over the given appointments.
+     *
+     * @param appointments the appointments overlapping the range
+     * @param from the start of the range in local time
+     * @param until the end of the range in local time
+     */
+    public FreeSlotFinder(List<Appointment> appointments, LocalDateTime from, LocalDateTime until) {
+        this.loadedFrom = toEpochSecond(from);
+        this.loadedUntil = toEpochSecond(until);
+        for (Appointment appointment : appointments) {
+            long start = toEpochSecond(appointment.getStartDateTime());
+            long end = toEpochSecond(appointment.getEndDateTime());
+            int id = appointment.getAppointmentId();
+            byCustomer.add(appointment.getCustomerId(), start, end, id);
+            byContact.add(appointment.getContactId(), start, end, id);
+            byUser.add(appointment.getUserId(), start, end, id);
+        }
+    }
+
+    /**
+     * Loads all appointments from the start of today until the horizon. Queries the database, so call it off the FX thread.
+     *
+     * @return a finder over the loaded appointments
+     */
+    public static FreeSlotFinder load() {
+        LocalDateTime from = LocalDate.now().atStartOfDay();
+        LocalDateTime until = from.plusDays(HORIZON_DAYS);
+        return new FreeSlotFinder(Repositories.appointments().getAppointmentsInRange(from, until), from, until);
+    }
+
+    /**
+     * Finds the first free slots of a given length shared by a customer, a contact and a user,
+     * within business hours.
+     *
+     * @param customerId the customer ID
+     * @param contactId the contact ID
+     * @param userId the user ID
+     * @param excludeAppointmentId the ID of an appointment being rescheduled, whose time counts as free, or -1
+     * @param notBefore the earliest start in local time
+     * @param length the length of a slot
+     * @param count the number of slots to return at most
+     * @return the slots, earliest first
+     */
+    public List<TimeSlot> findSlots(int customerId, int contactId, int userId, int excludeAppointmentId,
+                                    LocalDateTime notBefore, Duration length, int count) {
+        List<TimeSlot> slots = new ArrayList<>(count);
+        long lengthSeconds = length.getSeconds();
+        if (lengthSeconds <= 0 || count <= 0) {
+            return slots;
+        }
+        long cursor = Math.max(toEpochSecond(notBefore), loadedFrom);
+        LocalDate day = TimeUtil.convertToEasternTime(toLocalDateTime(cursor)).toLocalDate();
+        List<long[]> busy = new ArrayList<>();
+        while (slots.size() < count) {
+            long dayStart = TimeUtil.getBusinessDayStart(day).toEpochSecond();
+            long dayEnd = Math.min(TimeUtil.getBusinessDayEnd(day).toEpochSecond(), loadedUntil);
+            if (dayStart >= loadedUntil) {
+                break;
+            }
+            long windowStart = Math.max(cursor, dayStart);
+            if (windowStart < dayEnd) {
+                busy.clear();
+                IntervalIndex.IntervalConsumer collect = (start, end) -> busy.add(new long[]{start, end});
+                byCustomer.forEachOverlap(customerId, windowStart, dayEnd, excludeAppointmentId, collect);
+                byContact.forEachOverlap(contactId, windowStart, dayEnd, excludeAppointmentId, collect);
+                byUser.forEachOverlap(userId, windowStart, dayEnd, excludeAppointmentId, collect);
+                busy.sort((a, b) -> Long.compare(a[0], b[0]));
+                addSlotsInWindow(windowStart, dayEnd, busy, lengthSeconds, count, slots);
+            }
+            day = day.plusDays(1);
+        }
+        return slots;
+    }
+
+    /**
+     * Walks the gaps between busy intervals in one business day and adds slots until the count is reached.
+     *
+     * @param windowStart start of the searchable part of the day in epoch seconds
+     * @param windowEnd end of the business day in epoch seconds
+     * @param busy the busy intervals overlapping the window, ordered by start
+     * @param lengthSeconds the length of a slot
+     * @param count the number of slots wanted in total
+     * @param slots the slots found so far
+     */
+    private static void addSlotsInWindow(long windowStart, long windowEnd, List<long[]> busy,
+                                         long lengthSeconds, int count, List<TimeSlot> slots) {
+        long t = roundUp(windowStart);
+        for (long[] interval : busy) {
+            long gapEnd = Math.min(interval[0], windowEnd);
+            while (t + lengthSeconds <= gapEnd) {
+                slots.add(new TimeSlot(toLocalDateTime(t), toLocalDateTime(t + lengthSeconds)));
+                if (slots.size() >= count) {
+                    return;
+                }
+                t += lengthSeconds;
+            }
+            t = Math.max(t, roundUp(interval[1]));
+        }
+        while (t + lengthSeconds <= windowEnd && slots.size() < count) {
+            slots.add(new TimeSlot(toLocalDateTime(t), toLocalDateTime(t + lengthSeconds)));
+            t += lengthSeconds;
+        }
+    }
+
+    /**
+     * Rounds a time up to the next quarter hour.
+     *
+     * @param epochSecond the time in epoch seconds
+     * @return the rounded time
+     */
+    private static long roundUp(long epochSecond) {
+        return Math.floorDiv(epochSecond + STEP_SECONDS - 1, STEP_SECONDS) * STEP_SECONDS;
+    }
+
+    /**
+     * Converts a local date and time to epoch seconds.
+     *
+     * @param dateTime the local date and time
+     * @return epoch seconds
+     */
+    private static long toEpochSecond(LocalDateTime dateTime) {
+        return dateTime.atZone(ZoneId.systemDefault()).toEpochSecond();
+    }
+
+    /**
+     * Converts epoch seconds to a local date and time.
+     *
+     * @param epochSecond epoch seconds
+     * @return the local date and time
+     */
+    private static LocalDateTime toLocalDateTime(long epochSecond) {
+        return LocalDateTime.ofInstant(Instant.ofEpochSecond(epochSecond), ZoneId.systemDefault());
+    }
+}
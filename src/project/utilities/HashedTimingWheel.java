@@ -0,0 +1,199 @@
+package project.utilities;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs tasks after a delay using a hashed timing wheel.
+ * The wheel is a ring of buckets, each covering one tick. A task is hashed into the bucket its deadline falls in,
+ * together with the number of full turns of the wheel still to go. A single daemon thread advances one bucket per tick
+ * and runs the tasks whose turn has come, so scheduling and cancelling are constant time no matter how many
+ * tasks are pending, and a deadline is met to within one tick.
+ *
+ * Tasks run on the wheel's thread and must return quickly; hand longer work to another thread.
+ *
+ * @author Teksong Eap
+ */
+public final class HashedTimingWheel {
+
+    /** Length of a tick in nanoseconds */
+    private final long tickNanos;
+
+    /** Buckets of the wheel; the length is a power of two */
+    private final List<List<Timeout>> wheel;
+
+    /** Bit mask mapping a tick number to its bucket */
+    private final int mask;
+
+    /** Tasks scheduled since the last tick, added to the wheel by the wheel's thread */
+    private final ConcurrentLinkedQueue<Timeout> pending = new ConcurrentLinkedQueue<>();
+
+    /** The thread advancing the wheel */
+    private final Thread workerThread;
+
+    /** System.nanoTime() the wheel started at; tick n ends at startNanos + n * tickNanos */
+    private final long startNanos;
+
+    /** Number of ticks completed, only used by the wheel's thread */
+    private long tick;
+
+    /** Whether stop() has been called */
+    private volatile boolean stopped;
+
+    /**
+     * Creates a wheel and starts its thread.
+     *
+     * @param name the name of the wheel's thread
+     * @param tickDuration the length of a tick
+     * @param unit the unit of tickDuration
+     * @param wheelSize the number of buckets, rounded up to a power of two
+     */
+    public HashedTimingWheel(String name, long tickDuration, TimeUnit unit, int wheelSize) {
+        this.tickNanos = Math.max(1, unit.toNanos(tickDuration));
+        int size = Integer.highestOneBit(Math.max(1, wheelSize - 1)) << 1;
+        this.mask = size - 1;
+        this.wheel = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            wheel.add(new ArrayList<>());
+        }
+        this.startNanos = System.nanoTime();
+        this.workerThread = new Thread(this::run, name);
+        this.workerThread.setDaemon(true);
+        this.workerThread.start();
+    }
+
+    /**
+     * Schedules a task to run once after a delay. A delay of zero or less runs the task on the next tick.
+     *
+     * @param task the task to run
+     * @param delay the delay
+     * @param unit the unit of delay
+     * @return a handle that can cancel the task
+     */
+    public Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+        Timeout timeout = new Timeout(task, System.nanoTime() + Math.max(0, unit.toNanos(delay)));
+        if (!stopped) {
+            pending.add(timeout);
+        }
+        return timeout;
+    }
+
+    /**
+     * Stops the wheel. Tasks that have not run yet are dropped.
+     */
+    public void stop() {
+        stopped = true;
+        workerThread.interrupt();
+    }
+
+    /**
+     * Body of the wheel's thread. Sleeps until the end of each tick, adds newly scheduled tasks
+     * and runs the tasks due in the current bucket.
+     */
+    private void run() {
+        while (!stopped) {
+            long sleepNanos = startNanos + (tick + 1) * tickNanos - System.nanoTime();
+            if (sleepNanos > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(sleepNanos);
+                } catch (InterruptedException e) {
+                    if (stopped) {
+                        return;
+                    }
+                    continue;
+                }
+            }
+            transferPending();
+            expire(wheel.get((int) (tick & mask)));
+            tick++;
+        }
+    }
+
+    /**
+     * Moves newly scheduled tasks into the bucket of their deadline.
+     */
+    private void transferPending() {
+        Timeout timeout;
+        while ((timeout = pending.poll()) != null) {
+            if (timeout.cancelled) {
+                continue;
+            }
+            // Ticks from the wheel's start until the deadline; never earlier than the tick being processed
+            long deadlineTick = Math.max(tick, (timeout.deadlineNanos - startNanos) / tickNanos);
+            timeout.remainingRounds = (deadlineTick - tick) / wheel.size();
+            wheel.get((int) (deadlineTick & mask)).add(timeout);
+        }
+    }
+
+    /**
+     * Runs the tasks in a bucket whose turn has come, and counts down the others.
+     *
+     * @param bucket the bucket of the current tick
+     */
+    private void expire(List<Timeout> bucket) {
+        Iterator<Timeout> it = bucket.iterator();
+        while (it.hasNext()) {
+            Timeout timeout = it.next();
+            if (timeout.cancelled) {
+                it.remove();
+            } else if (timeout.remainingRounds <= 0) {
+                it.remove();
+                try {
+                    timeout.task.run();
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                }
+            } else {
+                timeout.remainingRounds--;
+            }
+        }
+    }
+
+    /**
+     * Handle of a scheduled task.
+     */
+    public static final class Timeout {
+
+        /** The task to run */
+        private final Runnable task;
+
+        /** System.nanoTime() the task is due at */
+        private final long deadlineNanos;
+
+        /** Full turns of the wheel still to go, only used by the wheel's thread */
+        private long remainingRounds;
+
+        /** Whether the task was cancelled */
+        private volatile boolean cancelled;
+
+        /**
+         * Creates a handle.
+         *
+         * @param task the task to run
+         * @param deadlineNanos System.nanoTime() the task is due at
+         */
+        private Timeout(Runnable task, long deadlineNanos) {
+            this.task = task;
+            this.deadlineNanos = deadlineNanos;
+        }
+
+        /**
+         * Cancels the task. It is removed from the wheel the next time its bucket comes round.
+         */
+        public void cancel() {
+            cancelled = true;
+        }
+
+        /**
+         * Checks whether the task was cancelled.
+         *
+         * @return true if cancelled
+         */
+        public boolean isCancelled() {
+            return cancelled;
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package project.utilities;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * In-memory index of half-open time intervals [start, end), grouped by an integer key such as a customer ID.
+ * Each key's intervals are kept sorted by start together with a running maximum of their ends, so all intervals
+ * overlapping a window are found with one binary search and a scan over the overlapping entries only.
+ * Intervals are sorted lazily on the first lookup after they were added.
+ *
+ * @author Teksong Eap
+ */
+public final class IntervalIndex {
+
+    /**
+     * Receives the intervals found by a lookup.
+     */
+    public interface IntervalConsumer {
+        /**
+         * Called for each overlapping interval.
+         *
+         * @param start start of the interval, inclusive
+         * @param end end of the interval, exclusive
+         */
+        void accept(long start, long end);
+    }
+
+    /** Intervals per key */
+    private final Map<Integer, Entries> entries = new HashMap<>();
+
+    /**
+     * Adds an interval.
+     *
+     * @param key the key the interval belongs to
+     * @param start start of the interval, inclusive
+     * @param end end of the interval, exclusive
+     * @param id an ID of the interval's owner, used to leave it out of lookups
+     */
+    public void add(int key, long start, long end, int id) {
+        entries.computeIfAbsent(key, k -> new Entries()).add(start, end, id);
+    }
+
+    /**
+     * Sorts the intervals of every key now. Lookups after this only read, so they may run on several threads
+     * as long as nothing is added.
+     */
+    public void prepare() {
+        entries.values().forEach(Entries::prepare);
+    }
+
+    /**
+     * Passes every interval of a key that overlaps a window to a consumer.
+     *
+     * @param key the key to look up
+     * @param from start of the window, inclusive
+     * @param to end of the window, exclusive
+     * @param excludeId an owner ID whose intervals are skipped, or -1 to skip none
+     * @param consumer receives the overlapping intervals, ordered by start
+     */
+    public void forEachOverlap(int key, long from, long to, int excludeId, IntervalConsumer consumer) {
+        Entries e = entries.get(key);
+        if (e != null) {
+            e.forEachOverlap(from, to, excludeId, consumer);
+        }
+    }
+
+    /**
+     * The intervals of one key, in parallel arrays.
+     */
+    private static final class Entries {
+
+        /** Starts of the intervals */
+        private long[] starts = new long[8];
+
+        /** Ends of the intervals */
+        private long[] ends = new long[8];
+
+        /** Owner IDs of the intervals */
+        private int[] ids = new int[8];
+
+        /** maxEnds[i] is the largest end among intervals 0..i once sorted */
+        private long[] maxEnds;
+
+        /** Number of intervals */
+        private int size;
+
+        /** Whether the arrays are sorted by start */
+        private boolean sorted = true;
+
+        /**
+         * Appends an interval.
+         *
+         * @param start start of the interval
+         * @param end end of the interval
+         * @param id owner ID of the interval
+         */
+        void add(long start, long end, int id) {
+            if (size == starts.length) {
+                starts = Arrays.copyOf(starts, size * 2);
+                ends = Arrays.copyOf(ends, size * 2);
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            if (size > 0 && start < starts[size - 1]) {
+                sorted = false;
+            }
+            starts[size] = start;
+            ends[size] = end;
+            ids[size] = id;
+            size++;
+            maxEnds = null;
+        }
+
+        /**
+         * Passes every interval overlapping a window to a consumer.
+         *
+         * @param from start of the window
+         * @param to end of the window
+         * @param excludeId owner ID to skip
+         * @param consumer receives the intervals
+         */
+        void forEachOverlap(long from, long to, int excludeId, IntervalConsumer consumer) {
+            prepare();
+            // Every interval before the first whose running maximum end reaches into the window ends before it
+            int first = firstEndingAfter(from);
+            for (int i = first; i < size && starts[i] < to; i++) {
+                if (ends[i] > from && ids[i] != excludeId) {
+                    consumer.accept(starts[i], ends[i]);
+                }
+            }
+        }
+
+        /**
+         * Sorts the intervals by start and computes the running maximum of their ends, if not done since the last add.
+         */
+        void prepare() {
+            if (maxEnds != null) {
+                return;
+            }
+            if (!sorted) {
+                Integer[] order = new Integer[size];
+                for (int i = 0; i < size; i++) {
+                    order[i] = i;
+                }
+                long[] s = starts;
+                Arrays.sort(order, (a, b) -> Long.compare(s[a], s[b]));
+                long[] newStarts = new long[starts.length];
+                long[] newEnds = new long[ends.length];
+                int[] newIds = new int[ids.length];
+                for (int i = 0; i < size; i++) {
+                    newStarts[i] = starts[order[i]];
+                    newEnds[i] = ends[order[i]];
+                    newIds[i] = ids[order[i]];
+                }
+                starts = newStarts;
+                ends = newEnds;
+                ids = newIds;
+                sorted = true;
+            }
+            maxEnds = new long[size];
+            long max = Long.MIN_VALUE;
+            for (int i = 0; i < size; i++) {
+                max = Math.max(max, ends[i]);
+                maxEnds[i] = max;
+            }
+        }
+
+        /**
+         * Returns the index of the first interval whose running maximum end is after a time, by binary search,
+         * as the running maximum never decreases.
+         *
+         * @param time the time
+         * @return the index, or size if there is none
+         */
+        private int firstEndingAfter(long time) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (maxEnds[mid] <= time) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+}
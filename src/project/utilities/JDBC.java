@@ -2,6 +2,10 @@ package project.utilities;
 
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
 
 /**
  * This is the Java DataBase Connectivity class containing methods that open/close a connection to the database.
@@ -13,31 +17,144 @@ public abstract class JDBC {
     private static final String vendor = ":mysql:";
     private static final String location = "//localhost/";
     private static final String databaseName = "client_schedule";
-    private static final String jdbcUrl = protocol + vendor + location + databaseName + "?connectionTimeZone = SERVER";
+    private static final String jdbcUrl = AppConfig.getString("db.url",
+            protocol + vendor + location + databaseName + "?connectionTimeZone = SERVER");
+    private static final String replicaUrls = AppConfig.getString("db.replica.urls", "");
+    private static final long replicaStickyMillis = AppConfig.getLong("db.replica.stickyMillis", 5000);
     private static final String driver = "com.mysql.cj.jdbc.Driver";
     private static final String userName = "sqlUser";
     private static final String password = "Passw0rd!";
     public static Connection connection;
 
+    /** Connection for reads made by background threads; opened on first use */
+    private static Connection backgroundConnection;
+
+    /** Connection the current thread uses instead of the shared one, if any; see {@link #callOn(Connection, Work)} */
+    private static final ThreadLocal<Connection> threadConnection = new ThreadLocal<>();
+
+    /**
+     * Prefix for a SELECT that must read from the primary even when replicas are configured, such as one whose
+     * result becomes a new record's ID; a lagging replica could return an ID the primary has already used.
+     */
+    public static final String FROM_PRIMARY = "/* primary */ ";
+
     /**
      * This method opens a connection between IntelliJ and the mySQL database.
+     * The connection is traced so that every DAO statement is reported to JDK Flight Recorder,
+     * and resilient: if the database is down now or later, it reconnects on use (see {@link ResilientConnection}).
+     * If replicas are configured (db.replica.urls, comma-separated), reads are sent to them; see {@link ReadWriteRouter}.
      */
     public static void openConnection(){
         try {
             Class.forName(driver);
-            connection = DriverManager.getConnection(jdbcUrl, userName, password);
-            System.out.println("Connection Successful!");
+            Connection primary = openLazily(jdbcUrl);
+            List<Connection> replicas = new ArrayList<>();
+            for (String replicaUrl : replicaUrls.split(",")) {
+                if (!replicaUrl.isBlank()) {
+                    replicas.add(openLazily(replicaUrl.trim()));
+                }
+            }
+            connection = ReadWriteRouter.wrap(primary, replicas, replicaStickyMillis);
+            System.out.println("Connection Successful!" + (replicas.isEmpty() ? "" : " Reading from " + replicas.size() + " replica(s)."));
         }catch(Exception e){
             System.out.println("Error: " + e.getMessage());
         }
     }
 
+    /**
+     * This method opens a separate connection to the mySQL database, for work that runs off the FX thread
+     * or needs its own transactions, such as bulk imports. The caller must close it.
+     * The connection is traced and resilient like the shared one.
+     *
+     * @param driverProperties extra driver properties, e.g. rewriteBatchedStatements=true
+     * @return a new connection
+     * @throws SQLException if the connection cannot be opened
+     */
+    public static Connection newConnection(Properties driverProperties) throws SQLException {
+        Properties properties = new Properties();
+        properties.putAll(driverProperties);
+        properties.setProperty("user", userName);
+        properties.setProperty("password", password);
+        return ResilientConnection.open(jdbcUrl, () -> TracedConnection.wrap(DriverManager.getConnection(jdbcUrl, properties)));
+    }
+
+    /**
+     * Returns the connection background threads read on, such as when the date picker's days are counted, so their
+     * reads never run inside a transaction the FX thread has open on the shared connection. It is opened on first
+     * use and reconnects by itself like the shared one. Only plain reads belong on it.
+     *
+     * @return the background read connection
+     */
+    public static synchronized Connection getBackgroundConnection() {
+        if (backgroundConnection == null) {
+            backgroundConnection = openLazily(jdbcUrl);
+        }
+        return backgroundConnection;
+    }
+
+    /**
+     * Work run by {@link #callOn(Connection, Work)}.
+     *
+     * @param <T> the type of the work's result
+     * @param <E> the type of exception the work throws
+     */
+    public interface Work<T, E extends Exception> {
+        /**
+         * Does the work.
+         *
+         * @return the work's result
+         * @throws E if the work fails
+         */
+        T call() throws E;
+    }
+
+    /**
+     * Runs work with {@link #getConnection()} returning the given connection on the current thread instead of the
+     * shared one, so the DAO calls the work makes, also through the repositories, run on that connection.
+     *
+     * @param connection the connection for the work
+     * @param work the work
+     * @param <T> the type of the work's result
+     * @param <E> the type of exception the work throws
+     * @return the work's result
+     * @throws E what the work throws
+     */
+    public static <T, E extends Exception> T callOn(Connection connection, Work<T, E> work) throws E {
+        Connection previous = threadConnection.get();
+        threadConnection.set(connection);
+        try {
+            return work.call();
+        } finally {
+            if (previous == null) {
+                threadConnection.remove();
+            } else {
+                threadConnection.set(previous);
+            }
+        }
+    }
+
+    /**
+     * Opens a traced, resilient connection that connects on first use if the database is down now.
+     *
+     * @param url the database URL
+     * @return the connection
+     */
+    private static Connection openLazily(String url) {
+        return ResilientConnection.openLazily(url,
+                () -> TracedConnection.wrap(DriverManager.getConnection(url, userName, password)));
+    }
+
     /**
      * This method closes the connection between IntelliJ and the mySQL database.
      */
     public static void closeConnection(){
         try {
             connection.close();
+            synchronized (JDBC.class) {
+                if (backgroundConnection != null) {
+                    backgroundConnection.close();
+                }
+            }
             System.out.println("Connection Closed!");
         }catch(Exception e) {
             System.out.println("Error: " + e.getMessage());
@@ -45,9 +162,34 @@ public abstract class JDBC {
     }
 
     /**
-     * This method returns the Connection object between IntelliJ and the mySQL database.
+     * This method returns the Connection object between IntelliJ and the mySQL database: the shared one, or the
+     * one the current thread was given with {@link #callOn(Connection, Work)}.
      * @return current connection
      */
-    public static Connection getConnection() {return connection;}
+    public static Connection getConnection() {
+        Connection own = threadConnection.get();
+        return own != null ? own : connection;
+    }
+
+    /**
+     * Checks whether an error means the database could not be reached, rather than that the statement failed.
+     *
+     * @param e the error
+     * @return true for lost or refused connections, and while the circuit breaker is open
+     */
+    public static boolean isConnectionFailure(SQLException e) {
+        return ResilientConnection.isConnectionFailure(e);
+    }
+
+    /**
+     * Checks whether an error may clear up by itself, so the same statement may succeed later, rather than
+     * being caused by the statement or the data, like a constraint violation.
+     *
+     * @param e the error
+     * @return true for connection failures, deadlocks, lock wait timeouts, query timeouts and interrupted queries
+     */
+    public static boolean isTransientFailure(SQLException e) {
+        return ResilientConnection.isTransientFailure(e);
+    }
 
 }
@@ -0,0 +1,92 @@
+package project.utilities;
+
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Audit log of login attempts, written to login_activity.txt.
+ * Attempts are handed to a background {@link AsyncFileAppender}, so recording one costs the FX thread
+ * nothing more than formatting a line. The file is flushed in batches, and rotated daily and by size.
+ *
+ * Each record is one tab-separated line:
+ * timestamp with milliseconds and offset, SUCCESS or FAILURE, time zone ID, username. For example:
+ * "2023-06-27T11:42:06.337-06:00	SUCCESS	America/Denver	test"
+ *
+ * Settings (app.properties or -D):
+ * loginLog.file (default login_activity.txt), loginLog.maxFileBytes (default 5 MB),
+ * loginLog.flushLines (default 64), loginLog.flushIntervalMillis (default 1000).
+ *
+ * @author Teksong Eap
+ */
+public final class LoginActivityLog {
+
+    /** Field separator of a record */
+    public static final char SEPARATOR = '\t';
+
+    /** Result value of a successful attempt */
+    public static final String SUCCESS = "SUCCESS";
+
+    /** Result value of a failed attempt */
+    public static final String FAILURE = "FAILURE";
+
+    /**
+     * Format of a record's timestamp. Seconds are always written, unlike OffsetDateTime.toString(), which leaves them
+     * out on a whole minute, so {@link LoginActivityScanner} can parse every line.
+     */
+    private static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSSXXX");
+
+    /** Name of the current login activity file */
+    public static final String FILE_NAME = AppConfig.getString("loginLog.file", "login_activity.txt");
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private LoginActivityLog() {
+    }
+
+    /**
+     * Records a login attempt.
+     *
+     * @param username the username that was entered
+     * @param successful whether the attempt was successful
+     */
+    public static void recordAttempt(String username, boolean successful) {
+        ZoneId zone = ZoneId.systemDefault();
+        String line = TIMESTAMP_FORMAT.format(ZonedDateTime.now(zone)) + SEPARATOR
+                + (successful ? SUCCESS : FAILURE) + SEPARATOR
+                + zone + SEPARATOR
+                + sanitize(username);
+        if (!Appender.INSTANCE.append(line)) {
+            System.out.println("Login activity log is full; dropped: " + line);
+        }
+    }
+
+    /**
+     * Replaces characters that would break the line format.
+     *
+     * @param username the username that was entered
+     * @return the username without tabs or line breaks
+     */
+    private static String sanitize(String username) {
+        if (username == null) {
+            return "";
+        }
+        return username.replace('\t', ' ').replace('\r', ' ').replace('\n', ' ');
+    }
+
+    /**
+     * Holds the log file appender, created on the first login attempt.
+     */
+    private static final class Appender {
+        /** The login activity file */
+        static final AsyncFileAppender INSTANCE = new AsyncFileAppender(
+                FILE_NAME,
+                AppConfig.getLong("loginLog.maxFileBytes", 5L * 1024 * 1024),
+                0,
+                4096,
+                AppConfig.getInt("loginLog.flushLines", 64),
+                AppConfig.getLong("loginLog.flushIntervalMillis", 1000),
+                true);
+    }
+}
@@ -0,0 +1,482 @@
+package project.utilities;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+/**
+ * Scans the login activity files and aggregates them into {@link LoginActivityStats}.
+ * Files are memory-mapped and parsed in place, one window at a time, without decoding whole lines.
+ * After each scan the stats and the offset reached in every file are saved next to the log, so the next scan
+ * only reads lines appended since. A file renamed by daily rotation is recognized by a fingerprint of its first
+ * bytes and resumed where the current file left off.
+ *
+ * Both the tab-separated format written by {@link LoginActivityLog} and the older
+ * "user's login was successful at 2023-06-27T11:42:06.337 (America/Denver)" lines are understood.
+ *
+ * Settings (app.properties or -D):
+ * loginReport.burstFailures (default 5), loginReport.burstWindowSeconds (default 60).
+ *
+ * @author Teksong Eap
+ */
+public final class LoginActivityScanner {
+
+    /** Largest region mapped at once */
+    private static final long WINDOW_BYTES = 64L * 1024 * 1024;
+
+    /** Number of leading bytes used to fingerprint a file */
+    private static final int FINGERPRINT_BYTES = 256;
+
+    /** Bytes of the legacy separator between username and result */
+    private static final byte[] LEGACY_MARKER = "ogin was ".getBytes(StandardCharsets.US_ASCII);
+
+    /** Bytes of the legacy separator before the timestamp */
+    private static final byte[] LEGACY_AT = " at ".getBytes(StandardCharsets.US_ASCII);
+
+    /** The current login activity file */
+    private final Path logFile;
+
+    /** The file the stats and offsets are saved to */
+    private final Path stateFile;
+
+    /** Failed attempts within the burst window that make a burst */
+    private final int burstFailures;
+
+    /** Length of the burst window in seconds */
+    private final long burstWindowSeconds;
+
+    /** Bytes of the most recently decoded username */
+    private byte[] lastUsernameBytes = new byte[0];
+
+    /** The most recently decoded username */
+    private String lastUsername = "";
+
+    /**
+     * Creates a scanner for the configured login activity file.
+     */
+    public LoginActivityScanner() {
+        this(Paths.get(LoginActivityLog.FILE_NAME));
+    }
+
+    /**
+     * Creates a scanner for the given login activity file.
+     *
+     * @param logFile the current login activity file; rotated files are looked up next to it
+     */
+    public LoginActivityScanner(Path logFile) {
+        this.logFile = logFile.toAbsolutePath();
+        this.stateFile = this.logFile.resolveSibling(this.logFile.getFileName() + ".idx");
+        this.burstFailures = AppConfig.getInt("loginReport.burstFailures", 5);
+        this.burstWindowSeconds = AppConfig.getLong("loginReport.burstWindowSeconds", 60);
+    }
+
+    /**
+     * Scans everything appended to the login activity files since the last scan.
+     *
+     * @return the stats covering all files
+     * @throws IOException if a file cannot be read
+     */
+    public synchronized LoginActivityStats scan() throws IOException {
+        LoginActivityStats stats = loadState();
+        Set<String> seen = new HashSet<>();
+        for (Path file : listLogFiles()) {
+            String name = file.getFileName().toString();
+            seen.add(name);
+            long size = Files.size(file);
+            long offset = resumeOffset(stats, name, file, size);
+            if (offset < size) {
+                offset = scanFile(file, offset, size, stats);
+            }
+            int fingerprintLength = (int) Math.min(FINGERPRINT_BYTES, offset);
+            LoginActivityStats.FileState previous = stats.files.get(name);
+            if (previous != null && previous.fingerprintLength == fingerprintLength) {
+                stats.files.put(name, new LoginActivityStats.FileState(offset, fingerprintLength, previous.fingerprint));
+            } else {
+                stats.files.put(name, new LoginActivityStats.FileState(offset, fingerprintLength,
+                        fingerprint(file, fingerprintLength)));
+            }
+        }
+        stats.files.keySet().retainAll(seen);
+        saveState(stats);
+        return stats;
+    }
+
+    /**
+     * Finds where to continue reading a file.
+     *
+     * @param stats the saved stats
+     * @param name the file name
+     * @param file the file
+     * @param size the file size
+     * @return the offset to continue from
+     * @throws IOException if the file cannot be read
+     */
+    private long resumeOffset(LoginActivityStats stats, String name, Path file, long size) throws IOException {
+        LoginActivityStats.FileState state = stats.files.get(name);
+        if (state != null && state.offset <= size
+                && fingerprint(file, state.fingerprintLength) == state.fingerprint) {
+            return state.offset;
+        }
+        // The file is new or was replaced; it may be a previously scanned file renamed by rotation
+        for (Map.Entry<String, LoginActivityStats.FileState> entry : stats.files.entrySet()) {
+            LoginActivityStats.FileState other = entry.getValue();
+            if (!entry.getKey().equals(name) && other.fingerprintLength > 0 && other.offset <= size
+                    && fingerprint(file, other.fingerprintLength) == other.fingerprint) {
+                stats.files.remove(entry.getKey());
+                return other.offset;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Lists the rotated login activity files, oldest first, followed by the current file.
+     *
+     * @return the files to scan
+     * @throws IOException if the directory cannot be read
+     */
+    private List<Path> listLogFiles() throws IOException {
+        String name = logFile.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        String stem = dot < 0 ? name : name.substring(0, dot);
+        String extension = dot < 0 ? "" : name.substring(dot);
+        List<Path> rotated = new ArrayList<>();
+        try (DirectoryStream<Path> dir = Files.newDirectoryStream(logFile.getParent(), stem + ".*" + extension)) {
+            for (Path path : dir) {
+                String middle = path.getFileName().toString();
+                middle = middle.substring(stem.length() + 1, middle.length() - extension.length());
+                if (middle.matches("\\d{4}-\\d{2}-\\d{2}\\.\\d+")) {
+                    rotated.add(path);
+                }
+            }
+        }
+        rotated.sort(Comparator.comparing((Path p) -> rotationDate(p, stem)).thenComparingInt(p -> rotationIndex(p, stem)));
+        if (Files.exists(logFile)) {
+            rotated.add(logFile);
+        }
+        return rotated;
+    }
+
+    /**
+     * Returns the date part of a rotated file name.
+     *
+     * @param path the rotated file
+     * @param stem the log file name without extension
+     * @return the date, e.g. "2023-06-27"
+     */
+    private static String rotationDate(Path path, String stem) {
+        return path.getFileName().toString().substring(stem.length() + 1, stem.length() + 11);
+    }
+
+    /**
+     * Returns the sequence number of a rotated file name.
+     *
+     * @param path the rotated file
+     * @param stem the log file name without extension
+     * @return the sequence number
+     */
+    private static int rotationIndex(Path path, String stem) {
+        String name = path.getFileName().toString();
+        int start = stem.length() + 12;
+        int end = name.indexOf('.', start);
+        return Integer.parseInt(name.substring(start, end < 0 ? name.length() : end));
+    }
+
+    /**
+     * Reads complete lines from a file, one mapped window at a time.
+     *
+     * @param file the file to read
+     * @param offset where to start reading
+     * @param size the file size
+     * @param stats the stats to add to
+     * @return the offset just past the last complete line read
+     * @throws IOException if the file cannot be read
+     */
+    private long scanFile(Path file, long offset, long size, LoginActivityStats stats) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long position = offset;
+            while (position < size) {
+                long length = Math.min(WINDOW_BYTES, size - position);
+                MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                int consumed = scanWindow(window, (int) length, stats);
+                if (consumed == 0) {
+                    // No line break in the rest of the file: the last line is still being written
+                    break;
+                }
+                position += consumed;
+            }
+            return position;
+        }
+    }
+
+    /**
+     * Parses the complete lines in a mapped window.
+     *
+     * @param window the mapped bytes
+     * @param length the number of bytes in the window
+     * @param stats the stats to add to
+     * @return the number of bytes consumed, up to and including the last line break
+     */
+    private int scanWindow(ByteBuffer window, int length, LoginActivityStats stats) {
+        int lineStart = 0;
+        for (int i = 0; i < length; i++) {
+            if (window.get(i) == '\n') {
+                int lineEnd = i > lineStart && window.get(i - 1) == '\r' ? i - 1 : i;
+                if (lineEnd > lineStart) {
+                    parseLine(window, lineStart, lineEnd, stats);
+                }
+                lineStart = i + 1;
+            }
+        }
+        return lineStart;
+    }
+
+    /**
+     * Parses one line in either the tab-separated or the legacy format.
+     *
+     * @param buf the bytes
+     * @param start index of the first byte of the line
+     * @param end index just past the last byte of the line
+     * @param stats the stats to add to
+     */
+    private void parseLine(ByteBuffer buf, int start, int end, LoginActivityStats stats) {
+        int tab = indexOf(buf, (byte) LoginActivityLog.SEPARATOR, start, end);
+        if (tab >= 0) {
+            // timestamp \t result \t zone \t username
+            int resultEnd = indexOf(buf, (byte) LoginActivityLog.SEPARATOR, tab + 1, end);
+            int zoneEnd = resultEnd < 0 ? -1 : indexOf(buf, (byte) LoginActivityLog.SEPARATOR, resultEnd + 1, end);
+            long epochSecond = parseDateTime(buf, start, tab);
+            if (zoneEnd < 0 || epochSecond == Long.MIN_VALUE) {
+                stats.addUnparsedLine();
+                return;
+            }
+            boolean successful = buf.get(tab + 1) == 'S';
+            stats.add(username(buf, zoneEnd + 1, end), successful, epochSecond);
+            return;
+        }
+
+        // user's login was successful at 2023-06-27T11:42:06.337929200 (America/Denver)
+        int marker = indexOf(buf, LEGACY_MARKER, start, end);
+        int at = marker < 0 ? -1 : indexOf(buf, LEGACY_AT, marker, end);
+        long epochSecond = at < 0 ? Long.MIN_VALUE : parseDateTime(buf, at + LEGACY_AT.length, end);
+        if (epochSecond == Long.MIN_VALUE) {
+            stats.addUnparsedLine();
+            return;
+        }
+        int userEnd = marker - 2; // back over " l" or " L"
+        if (userEnd - start >= 2 && buf.get(userEnd - 2) == '\'' && buf.get(userEnd - 1) == 's') {
+            userEnd -= 2;
+        }
+        boolean successful = buf.get(marker + LEGACY_MARKER.length) == 's';
+        stats.add(username(buf, start, Math.max(start, userEnd)), successful, epochSecond);
+    }
+
+    /**
+     * Decodes a username, reusing the previous string when the bytes are the same.
+     *
+     * @param buf the bytes
+     * @param start index of the first byte
+     * @param end index just past the last byte
+     * @return the username
+     */
+    private String username(ByteBuffer buf, int start, int end) {
+        int length = end - start;
+        if (length == lastUsernameBytes.length) {
+            boolean same = true;
+            for (int i = 0; i < length && same; i++) {
+                same = buf.get(start + i) == lastUsernameBytes[i];
+            }
+            if (same) {
+                return lastUsername;
+            }
+        }
+        byte[] bytes = new byte[length];
+        buf.get(start, bytes);
+        lastUsernameBytes = bytes;
+        lastUsername = new String(bytes, StandardCharsets.UTF_8);
+        return lastUsername;
+    }
+
+    /**
+     * Parses "yyyy-MM-ddTHH:mm:ss" at the given position into seconds on a UTC time line.
+     * Fractions of a second and offsets after it are ignored.
+     *
+     * @param buf the bytes
+     * @param start index of the first digit of the year
+     * @param end index the timestamp must end before
+     * @return the seconds, or Long.MIN_VALUE if the bytes are not a timestamp
+     */
+    static long parseDateTime(ByteBuffer buf, int start, int end) {
+        if (end - start < 19 || buf.get(start + 4) != '-' || buf.get(start + 7) != '-'
+                || buf.get(start + 10) != 'T' || buf.get(start + 13) != ':' || buf.get(start + 16) != ':') {
+            return Long.MIN_VALUE;
+        }
+        int year = digits(buf, start, 4);
+        int month = digits(buf, start + 5, 2);
+        int day = digits(buf, start + 8, 2);
+        int hour = digits(buf, start + 11, 2);
+        int minute = digits(buf, start + 14, 2);
+        int second = digits(buf, start + 17, 2);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > 31 || hour < 0 || minute < 0 || second < 0) {
+            return Long.MIN_VALUE;
+        }
+        return daysFromCivil(year, month, day) * 86_400L + hour * 3600L + minute * 60L + second;
+    }
+
+    /**
+     * Parses a fixed number of ASCII digits.
+     *
+     * @param buf the bytes
+     * @param start index of the first digit
+     * @param count number of digits
+     * @return the value, or -1 if a byte is not a digit
+     */
+    private static int digits(ByteBuffer buf, int start, int count) {
+        int value = 0;
+        for (int i = 0; i < count; i++) {
+            int digit = buf.get(start + i) - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    /**
+     * Returns the number of days between 1970-01-01 and the given date, without creating a LocalDate.
+     *
+     * @param year the year
+     * @param month the month, 1 to 12
+     * @param day the day of month
+     * @return the epoch day
+     */
+    private static long daysFromCivil(int year, int month, int day) {
+        int y = month <= 2 ? year - 1 : year;
+        int era = Math.floorDiv(y, 400);
+        int yearOfEra = y - era * 400;
+        int dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146_097L + dayOfEra - 719_468L;
+    }
+
+    /**
+     * Finds a byte.
+     *
+     * @param buf the bytes
+     * @param value the byte to find
+     * @param from index to start at
+     * @param to index to stop before
+     * @return the index of the byte, or -1
+     */
+    private static int indexOf(ByteBuffer buf, byte value, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (buf.get(i) == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Finds a byte sequence.
+     *
+     * @param buf the bytes
+     * @param value the sequence to find
+     * @param from index to start at
+     * @param to index the sequence must end before
+     * @return the index of the sequence, or -1
+     */
+    private static int indexOf(ByteBuffer buf, byte[] value, int from, int to) {
+        outer:
+        for (int i = from; i <= to - value.length; i++) {
+            for (int j = 0; j < value.length; j++) {
+                if (buf.get(i + j) != value[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Computes the CRC32 of a file's leading bytes.
+     *
+     * @param file the file
+     * @param length the number of leading bytes
+     * @return the checksum
+     * @throws IOException if the file cannot be read
+     */
+    private static long fingerprint(Path file, int length) throws IOException {
+        CRC32 crc = new CRC32();
+        if (length > 0) {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                ByteBuffer head = ByteBuffer.allocate(length);
+                while (head.hasRemaining() && channel.read(head) > 0) {
+                    // keep reading until the buffer is full or the file ends
+                }
+                head.flip();
+                crc.update(head);
+            }
+        }
+        return crc.getValue();
+    }
+
+    /**
+     * Loads the stats saved by the previous scan, or creates empty stats.
+     *
+     * @return the stats
+     */
+    private LoginActivityStats loadState() {
+        if (Files.exists(stateFile)) {
+            try (InputStream in = Files.newInputStream(stateFile);
+                 ObjectInputStream objects = new ObjectInputStream(in)) {
+                LoginActivityStats stats = (LoginActivityStats) objects.readObject();
+                if (stats.hasBurstSettings(burstFailures, burstWindowSeconds)) {
+                    return stats;
+                }
+            } catch (InvalidClassException | ClassNotFoundException | ClassCastException e) {
+                System.out.println("Login activity index is outdated, rescanning.");
+            } catch (IOException e) {
+                System.out.println("Error: could not read " + stateFile + ": " + e.getMessage());
+            }
+        }
+        return new LoginActivityStats(burstFailures, burstWindowSeconds);
+    }
+
+    /**
+     * Saves the stats and offsets for the next scan. The file is replaced atomically.
+     *
+     * @param stats the stats to save
+     * @throws IOException if the file cannot be written
+     */
+    private void saveState(LoginActivityStats stats) throws IOException {
+        Path temp = stateFile.resolveSibling(stateFile.getFileName() + ".tmp");
+        try (OutputStream out = Files.newOutputStream(temp);
+             ObjectOutputStream objects = new ObjectOutputStream(out)) {
+            objects.writeObject(stats);
+        }
+        Files.move(temp, stateFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
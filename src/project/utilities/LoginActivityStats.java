@@ -0,0 +1,278 @@
+package project.utilities;
+
+import project.model.LoginBurst;
+import project.model.LoginUserActivity;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Aggregated login activity, built up by {@link LoginActivityScanner}.
+ * Holds per-user success and failure counts, an hour-of-day histogram and the suspicious bursts of failures found.
+ * The whole object is saved between scans together with the file offsets it covers, so a rescan only has to
+ * read what was appended since.
+ *
+ * Times are the local times written in the log, handled as seconds on a UTC time line.
+ *
+ * @author Teksong Eap
+ */
+public final class LoginActivityStats implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /** Most bursts kept; older ones are dropped first */
+    private static final int MAX_BURSTS = 1000;
+
+    /** Failed attempts within the burst window that make a burst */
+    private final int burstFailures;
+
+    /** Length of the burst window in seconds */
+    private final long burstWindowSeconds;
+
+    /** Counts per username */
+    private final Map<String, UserCounts> users = new HashMap<>();
+
+    /** Successful attempts per hour of day */
+    private final long[] hourlySuccesses = new long[24];
+
+    /** Failed attempts per hour of day */
+    private final long[] hourlyFailures = new long[24];
+
+    /** Bursts found so far, oldest first */
+    private final ArrayDeque<Burst> bursts = new ArrayDeque<>();
+
+    /** Scan position per log file name */
+    final Map<String, FileState> files = new HashMap<>();
+
+    /** Lines that could not be parsed */
+    private long unparsedLines;
+
+    /**
+     * Creates empty stats.
+     *
+     * @param burstFailures failed attempts within the burst window that make a burst
+     * @param burstWindowSeconds length of the burst window in seconds
+     */
+    LoginActivityStats(int burstFailures, long burstWindowSeconds) {
+        this.burstFailures = burstFailures;
+        this.burstWindowSeconds = burstWindowSeconds;
+    }
+
+    /**
+     * Checks whether these stats were built with the given burst settings.
+     *
+     * @param failures failed attempts that make a burst
+     * @param windowSeconds length of the burst window in seconds
+     * @return true if the settings match
+     */
+    boolean hasBurstSettings(int failures, long windowSeconds) {
+        return burstFailures == failures && burstWindowSeconds == windowSeconds;
+    }
+
+    /**
+     * Adds one login attempt.
+     *
+     * @param username the username that was entered
+     * @param successful whether the attempt was successful
+     * @param epochSecond the local time of the attempt as seconds on a UTC time line
+     */
+    void add(String username, boolean successful, long epochSecond) {
+        UserCounts counts = users.computeIfAbsent(username, key -> new UserCounts());
+        counts.lastEpochSecond = Math.max(counts.lastEpochSecond, epochSecond);
+        int hour = (int) Math.floorMod(epochSecond, 86_400L) / 3600;
+        if (successful) {
+            counts.successes++;
+            hourlySuccesses[hour]++;
+            return;
+        }
+        counts.failures++;
+        hourlyFailures[hour]++;
+
+        ArrayDeque<Long> recent = counts.recentFailures;
+        while (!recent.isEmpty() && recent.peekFirst() < epochSecond - burstWindowSeconds) {
+            recent.pollFirst();
+        }
+        recent.addLast(epochSecond);
+        if (recent.size() < burstFailures) {
+            return;
+        }
+        Burst open = counts.openBurst;
+        if (open != null && open.endEpochSecond >= epochSecond - burstWindowSeconds) {
+            open.endEpochSecond = epochSecond;
+            open.failures++;
+        } else {
+            Burst burst = new Burst(username, recent.peekFirst(), epochSecond, recent.size());
+            counts.openBurst = burst;
+            bursts.addLast(burst);
+            if (bursts.size() > MAX_BURSTS) {
+                bursts.pollFirst();
+            }
+        }
+        // Only the window is needed for the next failure; keep the deque from growing without bound
+        while (recent.size() > burstFailures) {
+            recent.pollFirst();
+        }
+    }
+
+    /**
+     * Counts a line that could not be parsed.
+     */
+    void addUnparsedLine() {
+        unparsedLines++;
+    }
+
+    /**
+     * Returns the activity per username, most failures first.
+     *
+     * @return activity per username
+     */
+    public List<LoginUserActivity> getUserActivity() {
+        List<LoginUserActivity> result = new ArrayList<>(users.size());
+        users.forEach((username, counts) -> result.add(new LoginUserActivity(username, counts.successes,
+                counts.failures, toDateTime(counts.lastEpochSecond))));
+        result.sort(Comparator.comparingLong(LoginUserActivity::getFailureCount).reversed()
+                .thenComparing(LoginUserActivity::getUsername));
+        return result;
+    }
+
+    /**
+     * Returns the suspicious bursts of failures, most recent first.
+     *
+     * @return the bursts
+     */
+    public List<LoginBurst> getBursts() {
+        List<LoginBurst> result = new ArrayList<>(bursts.size());
+        bursts.descendingIterator().forEachRemaining(b -> result.add(new LoginBurst(b.username,
+                toDateTime(b.startEpochSecond), toDateTime(b.endEpochSecond), b.failures)));
+        return result;
+    }
+
+    /**
+     * Returns the number of successful attempts per hour of day.
+     *
+     * @return 24 counts, index 0 being midnight to 1 AM
+     */
+    public long[] getHourlySuccesses() {
+        return hourlySuccesses.clone();
+    }
+
+    /**
+     * Returns the number of failed attempts per hour of day.
+     *
+     * @return 24 counts, index 0 being midnight to 1 AM
+     */
+    public long[] getHourlyFailures() {
+        return hourlyFailures.clone();
+    }
+
+    /**
+     * Returns the number of lines that could not be parsed.
+     *
+     * @return unparsed line count
+     */
+    public long getUnparsedLines() {
+        return unparsedLines;
+    }
+
+    /**
+     * Converts seconds on the UTC time line back to the local time written in the log.
+     *
+     * @param epochSecond the seconds
+     * @return the local date and time
+     */
+    private static LocalDateTime toDateTime(long epochSecond) {
+        return LocalDateTime.ofEpochSecond(epochSecond, 0, ZoneOffset.UTC);
+    }
+
+    /**
+     * Counts for one username.
+     */
+    private static final class UserCounts implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        /** Successful attempts */
+        long successes;
+
+        /** Failed attempts */
+        long failures;
+
+        /** Time of the most recent attempt */
+        long lastEpochSecond = Long.MIN_VALUE;
+
+        /** Times of the most recent failures inside the burst window */
+        final ArrayDeque<Long> recentFailures = new ArrayDeque<>();
+
+        /** The burst the most recent failures belong to, if any */
+        Burst openBurst;
+    }
+
+    /**
+     * A burst of failed attempts.
+     */
+    private static final class Burst implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        /** The username */
+        final String username;
+
+        /** Time of the first failure */
+        final long startEpochSecond;
+
+        /** Time of the last failure */
+        long endEpochSecond;
+
+        /** Failures in the burst */
+        long failures;
+
+        /**
+         * Creates a burst.
+         *
+         * @param username the username
+         * @param startEpochSecond time of the first failure
+         * @param endEpochSecond time of the last failure
+         * @param failures failures in the burst
+         */
+        Burst(String username, long startEpochSecond, long endEpochSecond, long failures) {
+            this.username = username;
+            this.startEpochSecond = startEpochSecond;
+            this.endEpochSecond = endEpochSecond;
+            this.failures = failures;
+        }
+    }
+
+    /**
+     * How far a log file has been scanned.
+     */
+    static final class FileState implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        /** Offset just past the last complete line read */
+        final long offset;
+
+        /** Number of leading bytes the fingerprint covers */
+        final int fingerprintLength;
+
+        /** CRC32 of the file's leading bytes, used to recognize the file after it is renamed by rotation */
+        final long fingerprint;
+
+        /**
+         * Creates a file state.
+         *
+         * @param offset offset just past the last complete line read
+         * @param fingerprintLength number of leading bytes the fingerprint covers
+         * @param fingerprint CRC32 of the leading bytes
+         */
+        FileState(long offset, int fingerprintLength, long fingerprint) {
+            this.offset = offset;
+            this.fingerprintLength = fingerprintLength;
+            this.fingerprint = fingerprint;
+        }
+    }
+}
@@ -0,0 +1,744 @@
+package project.utilities;
+
+import javafx.collections.ObservableList;
+import javafx.collections.ObservableListBase;
+import project.model.Appointment;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Read-only table of appointments kept outside the Java heap, for working sets of millions of appointments.
+ * Each appointment is a fixed-width record in direct buffers: its IDs, its local start and end as epoch seconds,
+ * its version, and dictionary IDs for its text fields, whose distinct values are stored once in an off-heap
+ * {@link StringDictionary}. The garbage collector sees a few large buffers instead of millions of objects.
+ *
+ * Scans read the records in place and allocate nothing. The lists handed to a TableView create a small
+ * {@link AppointmentView} per row shown, which reads its fields from the table when asked.
+ *
+ * Not thread-safe: load and read it on one thread, such as the JavaFX application thread.
+ *
+ * @author Teksong Eap
+ */
+public final class OffHeapAppointmentTable {
+
+    /** Bytes per record */
+    private static final int RECORD_BYTES = 56;
+
+    /** Records per buffer are 2 to the power of this */
+    private static final int CHUNK_SHIFT = 16;
+
+    /** Records per buffer */
+    private static final int CHUNK_ROWS = 1 << CHUNK_SHIFT;
+
+    /** Record offset of the appointment ID */
+    private static final int APPOINTMENT_ID = 0;
+
+    /** Record offset of the customer ID */
+    private static final int CUSTOMER_ID = 4;
+
+    /** Record offset of the user ID */
+    private static final int USER_ID = 8;
+
+    /** Record offset of the contact ID */
+    private static final int CONTACT_ID = 12;
+
+    /** Record offset of the title's dictionary ID */
+    private static final int TITLE = 16;
+
+    /** Record offset of the description's dictionary ID */
+    private static final int DESCRIPTION = 20;
+
+    /** Record offset of the location's dictionary ID */
+    private static final int LOCATION = 24;
+
+    /** Record offset of the type's dictionary ID */
+    private static final int TYPE = 28;
+
+    /** Record offset of the local start, in epoch seconds as if it were UTC */
+    private static final int START = 32;
+
+    /** Record offset of the local end, in epoch seconds as if it were UTC */
+    private static final int END = 40;
+
+    /** Record offset of the version, in UTC epoch seconds */
+    private static final int LAST_UPDATE = 48;
+
+    /** Stored for a missing version */
+    private static final long NO_VERSION = Long.MIN_VALUE;
+
+    /** Buffers of CHUNK_ROWS records each; kept when the table is cleared */
+    private final List<ByteBuffer> chunks = new ArrayList<>();
+
+    /** Distinct text field values */
+    private final StringDictionary strings = new StringDictionary();
+
+    /** Number of records */
+    private int size;
+
+    /**
+     * Receives the rows selected by a scan. Reused across scans, it stops allocating once it has grown
+     * to the largest selection.
+     */
+    public static final class Rows {
+
+        /** Selected rows, in table order */
+        private int[] rows = new int[64];
+
+        /** Number of selected rows */
+        private int size;
+
+        /**
+         * Removes all rows.
+         */
+        public void clear() {
+            size = 0;
+        }
+
+        /**
+         * Adds a row.
+         *
+         * @param row the row
+         */
+        void add(int row) {
+            if (size == rows.length) {
+                rows = Arrays.copyOf(rows, size * 2);
+            }
+            rows[size++] = row;
+        }
+
+        /**
+         * Returns the number of rows.
+         *
+         * @return the number of rows
+         */
+        public int size() {
+            return size;
+        }
+
+        /**
+         * Returns a row.
+         *
+         * @param index its position in the selection
+         * @return the row
+         */
+        public int get(int index) {
+            Objects.checkIndex(index, size);
+            return rows[index];
+        }
+    }
+
+    /**
+     * Removes all appointments, keeping the buffers for the next load.
+     */
+    public void clear() {
+        size = 0;
+        strings.clear();
+    }
+
+    /**
+     * Returns the number of appointments.
+     *
+     * @return the number of appointments
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Appends a copy of an appointment.
+     *
+     * @param appointment the appointment
+     */
+    public void add(Appointment appointment) {
+        int chunk = size >>> CHUNK_SHIFT;
+        if (chunk == chunks.size()) {
+            chunks.add(ByteBuffer.allocateDirect(CHUNK_ROWS * RECORD_BYTES).order(ByteOrder.nativeOrder()));
+        }
+        ByteBuffer b = chunks.get(chunk);
+        int at = offset(size);
+        b.putInt(at + APPOINTMENT_ID, appointment.getAppointmentId());
+        b.putInt(at + CUSTOMER_ID, appointment.getCustomerId());
+        b.putInt(at + USER_ID, appointment.getUserId());
+        b.putInt(at + CONTACT_ID, appointment.getContactId());
+        b.putInt(at + TITLE, strings.intern(appointment.getTitle()));
+        b.putInt(at + DESCRIPTION, strings.intern(appointment.getDescription()));
+        b.putInt(at + LOCATION, strings.intern(appointment.getLocation()));
+        b.putInt(at + TYPE, strings.intern(appointment.getType()));
+        b.putLong(at + START, appointment.getStartDateTime().toEpochSecond(ZoneOffset.UTC));
+        b.putLong(at + END, appointment.getEndDateTime().toEpochSecond(ZoneOffset.UTC));
+        LocalDateTime lastUpdate = appointment.getLastUpdate();
+        b.putLong(at + LAST_UPDATE, lastUpdate == null ? NO_VERSION : lastUpdate.toEpochSecond(ZoneOffset.UTC));
+        size++;
+    }
+
+    /**
+     * Counts the appointments starting in a range.
+     *
+     * @param from the start of the range, inclusive
+     * @param to the end of the range, exclusive
+     * @return the number of appointments
+     */
+    public int countStartingIn(LocalDateTime from, LocalDateTime to) {
+        long lo = from.toEpochSecond(ZoneOffset.UTC);
+        long hi = to.toEpochSecond(ZoneOffset.UTC);
+        int count = 0;
+        for (int c = 0, remaining = size; remaining > 0; c++, remaining -= CHUNK_ROWS) {
+            ByteBuffer b = chunks.get(c);
+            int end = Math.min(remaining, CHUNK_ROWS) * RECORD_BYTES;
+            for (int at = 0; at < end; at += RECORD_BYTES) {
+                long start = b.getLong(at + START);
+                if (start >= lo && start < hi) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Selects the appointments starting in a range, replacing what the selection held.
+     *
+     * @param from the start of the range, inclusive
+     * @param to the end of the range, exclusive
+     * @param rows receives the rows, in table order
+     */
+    public void selectStartingIn(LocalDateTime from, LocalDateTime to, Rows rows) {
+        long lo = from.toEpochSecond(ZoneOffset.UTC);
+        long hi = to.toEpochSecond(ZoneOffset.UTC);
+        rows.clear();
+        for (int c = 0, remaining = size; remaining > 0; c++, remaining -= CHUNK_ROWS) {
+            ByteBuffer b = chunks.get(c);
+            int count = Math.min(remaining, CHUNK_ROWS);
+            int first = c << CHUNK_SHIFT;
+            for (int i = 0, at = START; i < count; i++, at += RECORD_BYTES) {
+                long start = b.getLong(at);
+                if (start >= lo && start < hi) {
+                    rows.add(first + i);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns every appointment as a list of views, for a TableView. The list does not follow later changes
+     * to the table, and its views are only valid until the table is cleared.
+     *
+     * @return the appointments, in table order
+     */
+    public ObservableList<Appointment> asList() {
+        return new RowList(null, size);
+    }
+
+    /**
+     * Returns selected appointments as a list of views, for a TableView. The list keeps its own copy of the
+     * rows, so the selection may be reused; its views are only valid until the table is cleared.
+     *
+     * @param rows the rows to list
+     * @return the appointments, in selection order
+     */
+    public ObservableList<Appointment> asList(Rows rows) {
+        return new RowList(Arrays.copyOf(rows.rows, rows.size), rows.size);
+    }
+
+    /**
+     * Returns the buffer holding a row.
+     *
+     * @param row the row
+     * @return its buffer
+     */
+    private ByteBuffer chunk(int row) {
+        Objects.checkIndex(row, size);
+        return chunks.get(row >>> CHUNK_SHIFT);
+    }
+
+    /**
+     * Returns the position of a row's record in its buffer.
+     *
+     * @param row the row
+     * @return the offset of the record
+     */
+    private static int offset(int row) {
+        return (row & (CHUNK_ROWS - 1)) * RECORD_BYTES;
+    }
+
+    /**
+     * Reads an int field of a row.
+     *
+     * @param row the row
+     * @param field the field's record offset
+     * @return the value
+     */
+    private int intField(int row, int field) {
+        return chunk(row).getInt(offset(row) + field);
+    }
+
+    /**
+     * Reads a long field of a row.
+     *
+     * @param row the row
+     * @param field the field's record offset
+     * @return the value
+     */
+    private long longField(int row, int field) {
+        return chunk(row).getLong(offset(row) + field);
+    }
+
+    /**
+     * Reads a text field of a row.
+     *
+     * @param row the row
+     * @param field the field's record offset
+     * @return the value
+     */
+    private String stringField(int row, int field) {
+        return strings.get(intField(row, field));
+    }
+
+    /**
+     * Reads a local date-time field of a row.
+     *
+     * @param row the row
+     * @param field the field's record offset
+     * @return the value
+     */
+    private LocalDateTime dateTimeField(int row, int field) {
+        return LocalDateTime.ofEpochSecond(longField(row, field), 0, ZoneOffset.UTC);
+    }
+
+    /**
+     * A read-only list of table rows.
+     */
+    private final class RowList extends ObservableListBase<Appointment> {
+
+        /** Rows listed, or null for rows 0 to count - 1 */
+        private final int[] rows;
+
+        /** Number of rows listed */
+        private final int count;
+
+        /**
+         * Creates the list.
+         *
+         * @param rows rows listed, or null for the first count rows
+         * @param count number of rows listed
+         */
+        RowList(int[] rows, int count) {
+            this.rows = rows;
+            this.count = count;
+        }
+
+        @Override
+        public Appointment get(int index) {
+            Objects.checkIndex(index, count);
+            return new AppointmentView(OffHeapAppointmentTable.this, rows == null ? index : rows[index]);
+        }
+
+        @Override
+        public int size() {
+            return count;
+        }
+    }
+
+    /**
+     * An appointment that reads its fields from a row of the table each time they are asked for.
+     * It cannot be changed; copy it with {@link Appointment#Appointment(Appointment)} to edit it.
+     * Two views are equal when they show the same row of the same table.
+     */
+    public static final class AppointmentView extends Appointment {
+
+        /** The table */
+        private final OffHeapAppointmentTable table;
+
+        /** The row */
+        private final int row;
+
+        /**
+         * Creates a view of a row.
+         *
+         * @param table the table
+         * @param row the row
+         */
+        AppointmentView(OffHeapAppointmentTable table, int row) {
+            this.table = table;
+            this.row = row;
+        }
+
+        @Override
+        public int getAppointmentId() {
+            return table.intField(row, APPOINTMENT_ID);
+        }
+
+        @Override
+        public int getCustomerId() {
+            return table.intField(row, CUSTOMER_ID);
+        }
+
+        @Override
+        public int getUserId() {
+            return table.intField(row, USER_ID);
+        }
+
+        @Override
+        public int getContactId() {
+            return table.intField(row, CONTACT_ID);
+        }
+
+        @Override
+        public String getTitle() {
+            return table.stringField(row, TITLE);
+        }
+
+        @Override
+        public String getDescription() {
+            return table.stringField(row, DESCRIPTION);
+        }
+
+        @Override
+        public String getLocation() {
+            return table.stringField(row, LOCATION);
+        }
+
+        @Override
+        public String getType() {
+            return table.stringField(row, TYPE);
+        }
+
+        @Override
+        public LocalDateTime getStartDateTime() {
+            return table.dateTimeField(row, START);
+        }
+
+        @Override
+        public LocalDateTime getEndDateTime() {
+            return table.dateTimeField(row, END);
+        }
+
+        @Override
+        public LocalDate getStartDate() {
+            return getStartDateTime().toLocalDate();
+        }
+
+        @Override
+        public LocalDate getEndDate() {
+            return getEndDateTime().toLocalDate();
+        }
+
+        @Override
+        public LocalTime getStartTime() {
+            return getStartDateTime().toLocalTime();
+        }
+
+        @Override
+        public LocalTime getEndTime() {
+            return getEndDateTime().toLocalTime();
+        }
+
+        @Override
+        public LocalDateTime getLastUpdate() {
+            long lastUpdate = table.longField(row, LAST_UPDATE);
+            return lastUpdate == NO_VERSION ? null : LocalDateTime.ofEpochSecond(lastUpdate, 0, ZoneOffset.UTC);
+        }
+
+        @Override
+        public void setAppointmentId(int appointmentId) {
+            throw readOnly();
+        }
+
+        @Override
+        public void setCustomerId(int customerId) {
+            throw readOnly();
+        }
+
+        @Override
+        public void setUserId(int userId) {
+            throw readOnly();
+        }
+
+        @Override
+        public void setContactId(int contactId) {
+            throw readOnly();
+        }
+
+        @Override
+        public void setTitle(String title) {
+            throw readOnly();
+        }
+
+        @Override
+        public void setDescription(String description) {
+            throw readOnly();
+        }
+
+        @Override
+        public void setLocation(String location) {
+            throw readOnly();
+        }
+
+        @Override
+        public void setType(String type) {
+            throw readOnly();
+        }
+
+        @Override
+        public void setStartDateTime(LocalDateTime startDateTime) {
+            throw readOnly();
+        }
+
+        @Override
+        public void setEndDateTime(LocalDateTime endDateTime) {
+            throw readOnly();
+        }
+
+        @Override
+        public void setStartDate(LocalDate startDate) {
+            throw readOnly();
+        }
+
+        @Override
+        public void setEndDate(LocalDate endDate) {
+            throw readOnly();
+        }
+
+        @Override
+        public void setStartTime(LocalTime startTime) {
+            throw readOnly();
+        }
+
+        @Override
+        public void setEndTime(LocalTime endTime) {
+            throw readOnly();
+        }
+
+        @Override
+        public void setLastUpdate(LocalDateTime lastUpdate) {
+            throw readOnly();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof AppointmentView && ((AppointmentView) o).table == table
+                    && ((AppointmentView) o).row == row;
+        }
+
+        @Override
+        public int hashCode() {
+            return row;
+        }
+
+        /**
+         * Returns the exception thrown by the setters.
+         *
+         * @return the exception
+         */
+        private static UnsupportedOperationException readOnly() {
+            return new UnsupportedOperationException("Appointments in an off-heap table are read-only; copy them to edit");
+        }
+    }
+
+    /**
+     * Off-heap set of distinct strings, each identified by a dense int ID. The UTF-8 bytes of every string
+     * are appended to one buffer, an entry buffer holds each ID's offset and length, and an open-addressing
+     * hash table of IDs finds a string already stored. Null is ID -1 and is not stored.
+     */
+    static final class StringDictionary {
+
+        /** Bytes per entry: offset and length */
+        private static final int ENTRY_BYTES = 8;
+
+        /** UTF-8 bytes of the strings */
+        private ByteBuffer bytes = allocate(1 << 16);
+
+        /** Offset and length of each string */
+        private ByteBuffer entries = allocate(1024 * ENTRY_BYTES);
+
+        /** Hash table slots holding ID + 1, or 0 when empty; the capacity is a power of two */
+        private ByteBuffer slots = allocate(1024 * Integer.BYTES);
+
+        /** Number of hash table slots */
+        private int capacity = 1024;
+
+        /** Bytes used in the byte buffer */
+        private int used;
+
+        /** Number of strings */
+        private int count;
+
+        /**
+         * Removes all strings, keeping the buffers.
+         */
+        void clear() {
+            used = 0;
+            count = 0;
+            for (int i = 0; i < capacity; i++) {
+                slots.putInt(i * Integer.BYTES, 0);
+            }
+        }
+
+        /**
+         * Returns the ID of a string, storing it if it is new.
+         *
+         * @param value the string, or null
+         * @return its ID, or -1 for null
+         */
+        int intern(String value) {
+            if (value == null) {
+                return -1;
+            }
+            byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+            int mask = capacity - 1;
+            for (int slot = hash(utf8) & mask; ; slot = (slot + 1) & mask) {
+                int id = slots.getInt(slot * Integer.BYTES) - 1;
+                if (id < 0) {
+                    id = store(utf8);
+                    slots.putInt(slot * Integer.BYTES, id + 1);
+                    if (count * 2 > capacity) {
+                        rehash();
+                    }
+                    return id;
+                }
+                if (matches(id, utf8)) {
+                    return id;
+                }
+            }
+        }
+
+        /**
+         * Returns a stored string.
+         *
+         * @param id its ID, or -1
+         * @return the string, or null for -1
+         */
+        String get(int id) {
+            if (id < 0) {
+                return null;
+            }
+            byte[] utf8 = new byte[entries.getInt(id * ENTRY_BYTES + 4)];
+            bytes.get(entries.getInt(id * ENTRY_BYTES), utf8);
+            return new String(utf8, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * Appends a new string's bytes and entry.
+         *
+         * @param utf8 its UTF-8 bytes
+         * @return its ID
+         */
+        private int store(byte[] utf8) {
+            if (used + utf8.length > bytes.capacity()) {
+                bytes = grow(bytes, used, used + utf8.length);
+            }
+            if ((count + 1) * ENTRY_BYTES > entries.capacity()) {
+                entries = grow(entries, count * ENTRY_BYTES, (count + 1) * ENTRY_BYTES);
+            }
+            bytes.put(used, utf8);
+            entries.putInt(count * ENTRY_BYTES, used);
+            entries.putInt(count * ENTRY_BYTES + 4, utf8.length);
+            used += utf8.length;
+            return count++;
+        }
+
+        /**
+         * Checks whether a stored string has the given bytes.
+         *
+         * @param id its ID
+         * @param utf8 the bytes
+         * @return true if they are equal
+         */
+        private boolean matches(int id, byte[] utf8) {
+            if (entries.getInt(id * ENTRY_BYTES + 4) != utf8.length) {
+                return false;
+            }
+            int offset = entries.getInt(id * ENTRY_BYTES);
+            for (int i = 0; i < utf8.length; i++) {
+                if (bytes.get(offset + i) != utf8[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Doubles the hash table and reinserts every ID.
+         */
+        private void rehash() {
+            capacity *= 2;
+            slots = allocate(capacity * Integer.BYTES);
+            int mask = capacity - 1;
+            for (int id = 0; id < count; id++) {
+                int slot = hash(id) & mask;
+                while (slots.getInt(slot * Integer.BYTES) != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                slots.putInt(slot * Integer.BYTES, id + 1);
+            }
+        }
+
+        /**
+         * Hashes bytes with FNV-1a.
+         *
+         * @param utf8 the bytes
+         * @return the hash
+         */
+        private static int hash(byte[] utf8) {
+            int h = 0x811c9dc5;
+            for (byte b : utf8) {
+                h = (h ^ (b & 0xff)) * 0x01000193;
+            }
+            return h ^ (h >>> 16);
+        }
+
+        /**
+         * Hashes a stored string the same way as its bytes.
+         *
+         * @param id its ID
+         * @return the hash
+         */
+        private int hash(int id) {
+            int offset = entries.getInt(id * ENTRY_BYTES);
+            int end = offset + entries.getInt(id * ENTRY_BYTES + 4);
+            int h = 0x811c9dc5;
+            for (int i = offset; i < end; i++) {
+                h = (h ^ (bytes.get(i) & 0xff)) * 0x01000193;
+            }
+            return h ^ (h >>> 16);
+        }
+
+        /**
+         * Allocates a direct buffer.
+         *
+         * @param capacity its size in bytes
+         * @return the buffer
+         */
+        private static ByteBuffer allocate(int capacity) {
+            return ByteBuffer.allocateDirect(capacity).order(ByteOrder.nativeOrder());
+        }
+
+        /**
+         * Copies a buffer into one at least twice as large.
+         *
+         * @param buffer the buffer
+         * @param used bytes in use
+         * @param needed bytes needed
+         * @return the larger buffer
+         */
+        private static ByteBuffer grow(ByteBuffer buffer, int used, int needed) {
+            int capacity = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(2L * buffer.capacity(), needed));
+            if (capacity < needed) {
+                throw new IllegalStateException("The string dictionary is full");
+            }
+            ByteBuffer larger = allocate(capacity);
+            larger.put(0, buffer, 0, used);
+            return larger;
+        }
+    }
+}
@@ -0,0 +1,270 @@
+package project.utilities;
+
+import project.DAO.DataChangeBus;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Wraps the primary database connection so that reads go to replicas. Statements the DAOs prepare are routed
+ * by their SQL: plain SELECTs go to the next replica in turn, everything else goes to the primary.
+ *
+ * Replicas lag behind the primary, so reads stay on the primary:
+ * <ul>
+ * <li>inside a transaction (auto-commit off), as the transaction must see its own work;</li>
+ * <li>for locking reads (FOR UPDATE, FOR SHARE, LOCK IN SHARE MODE);</li>
+ * <li>for reads starting with {@link JDBC#FROM_PRIMARY}, such as finding an unused ID;</li>
+ * <li>for a while after this session wrote, so it reads its own writes, e.g. the table refresh after a save; this
+ * includes changes written on other connections, such as a recurring series, as they reach the {@link DataChangeBus}.</li>
+ * </ul>
+ * A replica that cannot be reached is skipped and the read goes to the primary, whether that shows when the
+ * statement is prepared or, as the driver prepares statements without contacting the server, when its query runs.
+ *
+ * @author Teksong Eap
+ */
+final class ReadWriteRouter {
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private ReadWriteRouter() {
+    }
+
+    /**
+     * Wraps a primary connection.
+     *
+     * @param primary the connection for writes, transactions and reads just after a write
+     * @param replicas the connections for other reads; none means everything goes to the primary
+     * @param stickyMillis how long reads stay on the primary after a write, in milliseconds
+     * @return the routing connection
+     */
+    static Connection wrap(Connection primary, List<Connection> replicas, long stickyMillis) {
+        if (replicas.isEmpty()) {
+            return primary;
+        }
+        RouterHandler handler = new RouterHandler(primary, replicas, stickyMillis);
+        DataChangeBus.addListener(event -> handler.wrote());
+        return (Connection) Proxy.newProxyInstance(ReadWriteRouter.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, handler);
+    }
+
+    /**
+     * Checks whether a statement only reads and may run on a replica.
+     *
+     * @param sql the SQL text
+     * @return true for a SELECT that takes no locks
+     */
+    static boolean isReplicaSafe(String sql) {
+        if (sql.startsWith(JDBC.FROM_PRIMARY)) {
+            return false;
+        }
+        String text = sql.stripLeading().toLowerCase(Locale.ROOT);
+        return text.startsWith("select")
+                && !text.contains(" for update")
+                && !text.contains(" for share")
+                && !text.contains(" lock in share mode");
+    }
+
+    /**
+     * Routes statements to the primary or a replica.
+     */
+    private static final class RouterHandler implements InvocationHandler {
+
+        /** The primary connection */
+        private final Connection primary;
+
+        /** The replica connections */
+        private final List<Connection> replicas;
+
+        /** How long reads stay on the primary after a write, in nanoseconds */
+        private final long stickyNanos;
+
+        /** Replica to use for the next read */
+        private final AtomicInteger nextReplica = new AtomicInteger();
+
+        /** Whether auto-commit is on, as last set by the caller */
+        private volatile boolean autoCommit = true;
+
+        /** System.nanoTime() of the last write, or of the end of the last transaction */
+        private volatile long lastWriteNanos;
+
+        /** Whether this session has written at all */
+        private volatile boolean hasWritten;
+
+        /**
+         * Creates a handler.
+         *
+         * @param primary the primary connection
+         * @param replicas the replica connections
+         * @param stickyMillis how long reads stay on the primary after a write, in milliseconds
+         */
+        RouterHandler(Connection primary, List<Connection> replicas, long stickyMillis) {
+            this.primary = primary;
+            this.replicas = replicas;
+            this.stickyNanos = stickyMillis * 1_000_000L;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "prepareStatement":
+                    String sql = (String) args[0];
+                    if (autoCommit && isReplicaSafe(sql) && !recentlyWrote()) {
+                        Connection replica = replicas.get(Math.floorMod(nextReplica.getAndIncrement(), replicas.size()));
+                        try {
+                            Object statement = call(replica, method, args);
+                            return Proxy.newProxyInstance(ReadWriteRouter.class.getClassLoader(),
+                                    new Class<?>[]{method.getReturnType()},
+                                    new FallbackHandler(statement, primary, method, args));
+                        } catch (SQLException e) {
+                            if (!ResilientConnection.isConnectionFailure(e)) {
+                                throw e;
+                            }
+                            // The replica is down; the primary can answer the read
+                        }
+                    } else if (!isReplicaSafe(sql) && !sql.startsWith(JDBC.FROM_PRIMARY)) {
+                        wrote();
+                    }
+                    return call(primary, method, args);
+                case "setAutoCommit":
+                    autoCommit = (Boolean) args[0];
+                    wrote();
+                    return call(primary, method, args);
+                case "commit":
+                    wrote();
+                    return call(primary, method, args);
+                case "close":
+                    for (Connection replica : replicas) {
+                        try {
+                            replica.close();
+                        } catch (SQLException ignored) {
+                            // closing anyway
+                        }
+                    }
+                    return call(primary, method, args);
+                default:
+                    return call(primary, method, args);
+            }
+        }
+
+        /**
+         * Notes a write, so reads stay on the primary for a while.
+         */
+        private void wrote() {
+            lastWriteNanos = System.nanoTime();
+            hasWritten = true;
+        }
+
+        /**
+         * Checks whether this session wrote recently enough that a replica may not have the write yet.
+         *
+         * @return true if reads should stay on the primary
+         */
+        private boolean recentlyWrote() {
+            return hasWritten && System.nanoTime() - lastWriteNanos < stickyNanos;
+        }
+
+        /**
+         * Invokes a method on a connection or statement, unwrapping reflection exceptions.
+         *
+         * @param target the connection or statement
+         * @param method the method
+         * @param args the arguments
+         * @return the result
+         * @throws Throwable the exception thrown by the method
+         */
+        private static Object call(Object target, Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    /**
+     * A statement prepared on a replica that moves to the primary if its query finds the replica unreachable.
+     * The settings and bind values given to it are remembered, so the statement can be prepared again there.
+     */
+    private static final class FallbackHandler implements InvocationHandler {
+
+        /** The primary connection */
+        private final Connection primary;
+
+        /** The prepare method and its arguments, for preparing the statement on the primary */
+        private final Method prepareMethod;
+
+        /** The arguments of the prepare method */
+        private final Object[] prepareArgs;
+
+        /** Setter calls made so far, in order, with their arguments */
+        private final List<Object[]> settings = new ArrayList<>();
+
+        /** The statement calls go to: the replica's until it fails, then the primary's */
+        private Object statement;
+
+        /** Whether the statement has moved to the primary */
+        private boolean onPrimary;
+
+        /**
+         * Creates a handler.
+         *
+         * @param statement the statement prepared on the replica
+         * @param primary the primary connection
+         * @param prepareMethod the prepare method
+         * @param prepareArgs its arguments
+         */
+        FallbackHandler(Object statement, Connection primary, Method prepareMethod, Object[] prepareArgs) {
+            this.statement = statement;
+            this.primary = primary;
+            this.prepareMethod = prepareMethod;
+            this.prepareArgs = prepareArgs;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.equals("executeQuery") && !onPrimary) {
+                try {
+                    return RouterHandler.call(statement, method, args);
+                } catch (SQLException e) {
+                    if (!ResilientConnection.isConnectionFailure(e)) {
+                        throw e;
+                    }
+                    moveToPrimary();
+                }
+            } else if (!onPrimary && (name.startsWith("set") || name.equals("clearParameters"))) {
+                settings.add(new Object[]{method, args});
+            }
+            return RouterHandler.call(statement, method, args);
+        }
+
+        /**
+         * Prepares the statement again on the primary, with the settings and bind values given so far,
+         * and closes the replica's.
+         *
+         * @throws Throwable the exception thrown while preparing
+         */
+        private void moveToPrimary() throws Throwable {
+            Object replicaStatement = statement;
+            statement = RouterHandler.call(primary, prepareMethod, prepareArgs);
+            onPrimary = true;
+            for (Object[] setting : settings) {
+                RouterHandler.call(statement, (Method) setting[0], (Object[]) setting[1]);
+            }
+            try {
+                ((AutoCloseable) replicaStatement).close();
+            } catch (Exception ignored) {
+                // the replica is unreachable anyway
+            }
+        }
+    }
+}
@@ -0,0 +1,621 @@
+package project.utilities;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.SQLTransientException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Wraps a database connection so that the DAOs survive the database restarting or going away for a while.
+ *
+ * <ul>
+ * <li>The connection is validated before use when it has been idle, and reopened transparently when it is dead.</li>
+ * <li>Every statement gets a query timeout, so a locked table cannot hang the FX thread forever.</li>
+ * <li>Queries are retried with jittered exponential backoff after a lost connection, a deadlock or a lock wait
+ * timeout, on a new connection if needed. Updates are never retried, as they may have been applied.</li>
+ * <li>A {@link CircuitBreaker} shared by all connections to the same database fails calls at once while it is down.</li>
+ * </ul>
+ *
+ * Nothing is reopened or retried inside a transaction (auto-commit off), as the work done so far in it is lost
+ * with the connection; the error is passed on and the caller's rollback does not fail because of it.
+ *
+ * Settings (app.properties or -D):
+ * db.queryTimeoutSeconds (default 15), db.validateAfterIdleMillis (default 30000),
+ * db.retry.maxAttempts (default 3), db.retry.baseDelayMillis (default 100), db.retry.maxDelayMillis (default 2000),
+ * db.breaker.failureThreshold (default 3), db.breaker.openMillis (default 10000).
+ *
+ * @author Teksong Eap
+ */
+final class ResilientConnection {
+
+    /** Query timeout set on every statement, in seconds */
+    private static final int QUERY_TIMEOUT_SECONDS = AppConfig.getInt("db.queryTimeoutSeconds", 15);
+
+    /** Idle time after which the connection is validated before use, in milliseconds */
+    private static final long VALIDATE_AFTER_IDLE_MILLIS = AppConfig.getLong("db.validateAfterIdleMillis", 30_000);
+
+    /** Attempts made at a query, including the first */
+    private static final int MAX_ATTEMPTS = Math.max(1, AppConfig.getInt("db.retry.maxAttempts", 3));
+
+    /** Backoff before the first retry, in milliseconds; doubled for each further retry */
+    private static final long BASE_DELAY_MILLIS = AppConfig.getLong("db.retry.baseDelayMillis", 100);
+
+    /** Longest backoff, in milliseconds */
+    private static final long MAX_DELAY_MILLIS = AppConfig.getLong("db.retry.maxDelayMillis", 2000);
+
+    /** Seconds allowed for validating a connection */
+    private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+
+    /** MySQL error code of a lock wait timeout */
+    private static final int ER_LOCK_WAIT_TIMEOUT = 1205;
+
+    /** MySQL error code of a deadlock */
+    private static final int ER_LOCK_DEADLOCK = 1213;
+
+    /** MySQL error code of a query interrupted, e.g. by KILL QUERY */
+    private static final int ER_QUERY_INTERRUPTED = 1317;
+
+    /** MySQL error code of a query stopped by max_execution_time */
+    private static final int ER_QUERY_TIMEOUT = 3024;
+
+    /** Consecutive connection failures that open a breaker */
+    private static final int BREAKER_FAILURE_THRESHOLD = AppConfig.getInt("db.breaker.failureThreshold", 3);
+
+    /** How long a breaker stays open, in milliseconds */
+    private static final long BREAKER_OPEN_MILLIS = AppConfig.getLong("db.breaker.openMillis", 10_000);
+
+    /** Breakers by database URL, shared by all connections to that database */
+    private static final Map<String, CircuitBreaker> BREAKERS = new ConcurrentHashMap<>();
+
+    /**
+     * Opens a physical connection.
+     */
+    interface ConnectionFactory {
+        /**
+         * Opens a connection.
+         *
+         * @return the new connection
+         * @throws SQLException if the connection cannot be opened
+         */
+        Connection open() throws SQLException;
+    }
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private ResilientConnection() {
+    }
+
+    /**
+     * Opens a resilient connection.
+     *
+     * @param url the database URL, which identifies the circuit breaker to use
+     * @param factory opens the physical connections
+     * @return the resilient connection
+     * @throws SQLException if the first physical connection cannot be opened
+     */
+    static Connection open(String url, ConnectionFactory factory) throws SQLException {
+        ConnectionHandler handler = new ConnectionHandler(breakerFor(url), factory);
+        handler.reconnect();
+        return handler.proxy();
+    }
+
+    /**
+     * Opens a resilient connection that does not need the database to be reachable yet. If the first
+     * physical connection cannot be opened, it is opened on first use.
+     *
+     * @param url the database URL, which identifies the circuit breaker to use
+     * @param factory opens the physical connections
+     * @return the resilient connection
+     */
+    static Connection openLazily(String url, ConnectionFactory factory) {
+        ConnectionHandler handler = new ConnectionHandler(breakerFor(url), factory);
+        try {
+            handler.reconnect();
+        } catch (SQLException e) {
+            System.out.println("Database unavailable, will connect on first use: " + e.getMessage());
+        }
+        return handler.proxy();
+    }
+
+    /**
+     * Returns the circuit breaker of a database.
+     *
+     * @param url the database URL
+     * @return the breaker shared by all connections to it
+     */
+    private static CircuitBreaker breakerFor(String url) {
+        return BREAKERS.computeIfAbsent(url, key -> new CircuitBreaker(BREAKER_FAILURE_THRESHOLD, BREAKER_OPEN_MILLIS));
+    }
+
+    /**
+     * Checks whether an error means the connection is lost or could not be made.
+     *
+     * @param e the error
+     * @return true for connection errors (SQL state class 08)
+     */
+    static boolean isConnectionFailure(SQLException e) {
+        String state = e.getSQLState();
+        return (state != null && state.startsWith("08"))
+                || e instanceof SQLNonTransientConnectionException
+                || e instanceof SQLTransientConnectionException
+                || e instanceof SQLRecoverableException;
+    }
+
+    /**
+     * Checks whether a failed query may succeed if it is run again.
+     *
+     * @param e the error
+     * @return true for connection errors, deadlocks and lock wait timeouts
+     */
+    private static boolean isRetryable(SQLException e) {
+        return isConnectionFailure(e) || "40001".equals(e.getSQLState())
+                || e.getErrorCode() == ER_LOCK_DEADLOCK || e.getErrorCode() == ER_LOCK_WAIT_TIMEOUT;
+    }
+
+    /**
+     * Checks whether a failure says nothing against the statement itself, so the same statement may succeed later.
+     * Unlike {@link #isRetryable(SQLException)}, this includes timeouts, which are not worth retrying at once.
+     *
+     * @param e the error
+     * @return true for connection errors, deadlocks, lock wait timeouts, query timeouts and interrupted queries
+     */
+    static boolean isTransientFailure(SQLException e) {
+        return isRetryable(e) || e instanceof SQLTransientException
+                || e.getErrorCode() == ER_QUERY_INTERRUPTED || e.getErrorCode() == ER_QUERY_TIMEOUT;
+    }
+
+    /**
+     * Waits before a retry: a random time up to the base delay doubled per earlier attempt, capped
+     * at the maximum delay ("full jitter"), so clients that failed together do not retry together.
+     *
+     * @param attempt the number of attempts made so far
+     * @param cause the error being retried, rethrown if the wait is interrupted
+     * @throws SQLException the cause, if the thread is interrupted
+     */
+    private static void backOff(int attempt, SQLException cause) throws SQLException {
+        long ceiling = Math.min(MAX_DELAY_MILLIS, BASE_DELAY_MILLIS << Math.min(attempt - 1, 20));
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(ceiling + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw cause;
+        }
+    }
+
+    /**
+     * Invokes a method on the wrapped object, unwrapping reflection exceptions.
+     *
+     * @param target the wrapped object
+     * @param method the method to invoke
+     * @param args the method arguments
+     * @return the method result
+     * @throws Throwable the exception thrown by the method
+     */
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Holds the current physical connection, replacing it when it is lost.
+     */
+    private static final class ConnectionHandler implements InvocationHandler {
+
+        /** The breaker of the database */
+        private final CircuitBreaker breaker;
+
+        /** Opens the physical connections */
+        private final ConnectionFactory factory;
+
+        /** The current physical connection; null until the first connect succeeds */
+        private volatile Connection connection;
+
+        /** Whether the current connection is known or suspected to be dead */
+        private volatile boolean broken = true;
+
+        /** Whether auto-commit is on, as last set by the caller */
+        private volatile boolean autoCommit = true;
+
+        /** Whether the caller closed this connection */
+        private volatile boolean closed;
+
+        /** System.currentTimeMillis() of the last successful call */
+        private volatile long lastUsed;
+
+        /**
+         * Creates a handler.
+         *
+         * @param breaker the breaker of the database
+         * @param factory opens the physical connections
+         */
+        ConnectionHandler(CircuitBreaker breaker, ConnectionFactory factory) {
+            this.breaker = breaker;
+            this.factory = factory;
+        }
+
+        /**
+         * Creates the connection proxy backed by this handler.
+         *
+         * @return the proxy
+         */
+        Connection proxy() {
+            return (Connection) Proxy.newProxyInstance(ResilientConnection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class}, this);
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "prepareStatement":
+                case "prepareCall":
+                case "createStatement":
+                    return createStatement(proxy, method, args);
+                case "setAutoCommit":
+                    if ((Boolean) args[0]) {
+                        autoCommit = true;
+                        if (broken) {
+                            return null;  // the lost connection took its transaction with it; the next use reconnects
+                        }
+                        return call(method, args);
+                    }
+                    return beginTransaction(method, args);
+                case "getAutoCommit":
+                    return autoCommit;
+                case "rollback":
+                    if (broken && (args == null || args.length == 0)) {
+                        return null;  // the server discarded the transaction when the connection was lost
+                    }
+                    return call(method, args);
+                case "close":
+                    closed = true;
+                    Connection current = connection;
+                    return current == null ? null : ResilientConnection.invoke(current, method, args);
+                case "isClosed":
+                    return closed;
+                case "isValid":
+                    return !closed && connection != null && !broken && (Boolean) call(method, args);
+                default:
+                    return call(method, args);
+            }
+        }
+
+        /**
+         * Calls a method on the current connection, noting a lost connection.
+         *
+         * @param method the method
+         * @param args the arguments
+         * @return the result
+         * @throws Throwable the exception thrown by the method
+         */
+        private Object call(Method method, Object[] args) throws Throwable {
+            try {
+                Object result = ResilientConnection.invoke(usableConnection(), method, args);
+                lastUsed = System.currentTimeMillis();
+                return result;
+            } catch (SQLException e) {
+                failed(e);
+                throw e;
+            }
+        }
+
+        /**
+         * Turns auto-commit off. A transaction cannot move to another connection once it has started, so the
+         * connection is validated, and reconnected if it is dead, while auto-commit is still on; a connection
+         * that turns out dead when auto-commit is turned off is replaced once. Only then is auto-commit noted as off.
+         *
+         * @param method the setAutoCommit method
+         * @param args its arguments
+         * @return the result
+         * @throws Throwable the exception thrown by the method
+         */
+        private Object beginTransaction(Method method, Object[] args) throws Throwable {
+            if (!autoCommit) {
+                return call(method, args);
+            }
+            Object result;
+            try {
+                result = call(method, args);
+            } catch (SQLException e) {
+                if (!isConnectionFailure(e) || closed) {
+                    throw e;
+                }
+                result = call(method, args);
+            }
+            autoCommit = false;
+            return result;
+        }
+
+        /**
+         * Prepares or creates a statement on the current connection, reconnecting once if the connection was
+         * found dead outside a transaction. The statement is wrapped so that its queries are retried.
+         *
+         * @param proxy the connection proxy
+         * @param method the prepare or create method
+         * @param args its arguments
+         * @return the wrapped statement
+         * @throws Throwable the exception thrown while preparing
+         */
+        private Object createStatement(Object proxy, Method method, Object[] args) throws Throwable {
+            StatementHandler handler = new StatementHandler(this, proxy, method, args);
+            handler.prepare();
+            return Proxy.newProxyInstance(ResilientConnection.class.getClassLoader(),
+                    new Class<?>[]{method.getReturnType()}, handler);
+        }
+
+        /**
+         * Returns the current connection, first reconnecting if it is dead, or validating it if it has been idle.
+         * Inside a transaction the connection is returned as it is.
+         *
+         * @return the connection to use
+         * @throws SQLException if the breaker is open, the connection is closed or reconnecting fails
+         */
+        Connection usableConnection() throws SQLException {
+            if (closed) {
+                throw new SQLNonTransientConnectionException("Connection is closed", "08003");
+            }
+            Connection current = connection;
+            if (!autoCommit && current != null) {
+                return current;
+            }
+            if (!broken && System.currentTimeMillis() - lastUsed > VALIDATE_AFTER_IDLE_MILLIS) {
+                try {
+                    broken = !current.isValid(VALIDATION_TIMEOUT_SECONDS);
+                } catch (SQLException e) {
+                    broken = true;
+                }
+            }
+            if (broken) {
+                reconnect();
+            }
+            return connection;
+        }
+
+        /**
+         * Replaces the current connection with a new one, unless the breaker is open.
+         *
+         * @throws SQLException if the breaker is open or the connection cannot be opened
+         */
+        synchronized void reconnect() throws SQLException {
+            if (!broken) {
+                return;  // another thread reconnected while this one waited
+            }
+            long wait = breaker.acquire();
+            if (wait > 0) {
+                throw new SQLTransientConnectionException("Database unavailable; retrying in "
+                        + (wait + 999) / 1000 + " s", "08001");
+            }
+            Connection old = connection;
+            if (old != null) {
+                try {
+                    old.close();
+                } catch (SQLException ignored) {
+                    // the connection is already dead
+                }
+            }
+            try {
+                connection = factory.open();
+            } catch (SQLException e) {
+                breaker.recordFailure();
+                throw e;
+            }
+            breaker.recordSuccess();
+            broken = false;
+            lastUsed = System.currentTimeMillis();
+            if (old != null) {
+                System.out.println("Database connection re-established");
+            }
+        }
+
+        /**
+         * Notes a call that completed, so the connection need not be validated soon.
+         */
+        void succeeded() {
+            lastUsed = System.currentTimeMillis();
+            breaker.recordSuccess();
+        }
+
+        /**
+         * Notes a failed call. A connection failure marks the connection dead and counts towards the breaker;
+         * any other error shows the database is reachable.
+         *
+         * @param e the error
+         */
+        void failed(SQLException e) {
+            if (isConnectionFailure(e)) {
+                broken = true;
+                breaker.recordFailure();
+            } else {
+                breaker.recordSuccess();
+            }
+        }
+
+        /**
+         * Returns whether a failed call may be retried on a new connection.
+         *
+         * @return true outside a transaction on a connection that is still open
+         */
+        boolean canRetry() {
+            return autoCommit && !closed;
+        }
+    }
+
+    /**
+     * Sets the query timeout on a statement and retries its queries. Settings and bind values are remembered,
+     * so the statement can be prepared again on a new connection.
+     */
+    private static final class StatementHandler implements InvocationHandler {
+
+        /** The connection handler that created the statement */
+        private final ConnectionHandler owner;
+
+        /** The connection proxy, returned by getConnection */
+        private final Object connectionProxy;
+
+        /** The method that created the statement */
+        private final Method prepareMethod;
+
+        /** Its arguments */
+        private final Object[] prepareArgs;
+
+        /** Statement settings such as setFetchSize: the set method and its arguments */
+        private final Map<Method, Object[]> settings = new LinkedHashMap<>();
+
+        /** The last value bound to each parameter: the set method and its arguments, by parameter index */
+        private final Map<Integer, Object[]> binds = new LinkedHashMap<>();
+
+        /** The set methods of the bind values, by parameter index */
+        private final Map<Integer, Method> bindMethods = new LinkedHashMap<>();
+
+        /** The current physical statement */
+        private Statement statement;
+
+        /**
+         * Creates a handler.
+         *
+         * @param owner the connection handler that creates the statement
+         * @param connectionProxy the connection proxy
+         * @param prepareMethod the method that creates the statement
+         * @param prepareArgs its arguments
+         */
+        StatementHandler(ConnectionHandler owner, Object connectionProxy, Method prepareMethod, Object[] prepareArgs) {
+            this.owner = owner;
+            this.connectionProxy = connectionProxy;
+            this.prepareMethod = prepareMethod;
+            this.prepareArgs = prepareArgs;
+        }
+
+        /**
+         * Creates the physical statement, reconnecting once if the connection turns out to be dead,
+         * then applies the query timeout, the remembered settings and the bind values.
+         *
+         * @return the physical statement
+         * @throws Throwable the exception thrown while preparing
+         */
+        Statement prepare() throws Throwable {
+            for (int attempt = 1; ; attempt++) {
+                Connection connection = owner.usableConnection();
+                try {
+                    statement = (Statement) ResilientConnection.invoke(connection, prepareMethod, prepareArgs);
+                    statement.setQueryTimeout(QUERY_TIMEOUT_SECONDS);
+                    for (Map.Entry<Method, Object[]> setting : settings.entrySet()) {
+                        ResilientConnection.invoke(statement, setting.getKey(), setting.getValue());
+                    }
+                    for (Map.Entry<Integer, Object[]> bind : binds.entrySet()) {
+                        ResilientConnection.invoke(statement, bindMethods.get(bind.getKey()), bind.getValue());
+                    }
+                    return statement;
+                } catch (SQLException e) {
+                    owner.failed(e);
+                    if (attempt > 1 || !isConnectionFailure(e) || !owner.canRetry()) {
+                        throw e;
+                    }
+                }
+            }
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            switch (name) {
+                case "executeQuery":
+                    return executeQuery(method, args);
+                case "getConnection":
+                    return connectionProxy;
+                case "clearParameters":
+                    binds.clear();
+                    bindMethods.clear();
+                    return call(method, args);
+                case "close":
+                    return ResilientConnection.invoke(statement, method, args);
+                case "setQueryTimeout":
+                case "setFetchSize":
+                case "setFetchDirection":
+                case "setMaxRows":
+                case "setMaxFieldSize":
+                case "setEscapeProcessing":
+                    settings.put(method, args);
+                    return call(method, args);
+                default:
+                    if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+                        binds.put((Integer) args[0], args);
+                        bindMethods.put((Integer) args[0], method);
+                    }
+                    return call(method, args);
+            }
+        }
+
+        /**
+         * Calls a method on the current statement, noting the outcome.
+         *
+         * @param method the method
+         * @param args the arguments
+         * @return the result
+         * @throws Throwable the exception thrown by the method
+         */
+        private Object call(Method method, Object[] args) throws Throwable {
+            try {
+                Object result = ResilientConnection.invoke(statement, method, args);
+                if (method.getName().startsWith("execute")) {
+                    owner.succeeded();
+                }
+                return result;
+            } catch (SQLException e) {
+                owner.failed(e);
+                throw e;
+            }
+        }
+
+        /**
+         * Runs a query, retrying it with backoff on a transient failure. A lost connection is replaced
+         * and the statement prepared again on the new one.
+         *
+         * @param method the executeQuery method
+         * @param args its arguments
+         * @return the result set
+         * @throws Throwable the last error, once the retries are used up
+         */
+        private Object executeQuery(Method method, Object[] args) throws Throwable {
+            List<SQLException> earlier = new ArrayList<>();
+            for (int attempt = 1; ; attempt++) {
+                try {
+                    Object result = ResilientConnection.invoke(statement, method, args);
+                    owner.succeeded();
+                    return result;
+                } catch (SQLException e) {
+                    owner.failed(e);
+                    if (attempt >= MAX_ATTEMPTS || !isRetryable(e) || !owner.canRetry()) {
+                        earlier.forEach(e::addSuppressed);
+                        throw e;
+                    }
+                    earlier.add(e);
+                    backOff(attempt, e);
+                    if (isConnectionFailure(e)) {
+                        try {
+                            statement.close();
+                        } catch (SQLException ignored) {
+                            // the statement went with the connection
+                        }
+                        prepare();
+                    }
+                }
+            }
+        }
+    }
+}
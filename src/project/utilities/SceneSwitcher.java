@@ -0,0 +1,155 @@
+package project.utilities;
+
+import javafx.fxml.FXMLLoader;
+import javafx.scene.Parent;
+import javafx.scene.Scene;
+import javafx.stage.Stage;
+import project.DAO.Repositories;
+import project.jfr.SceneSwitchEvent;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Switches the stage between the application's screens.
+ * Every switch is reported as a {@link SceneSwitchEvent} to JDK Flight Recorder.
+ *
+ * Screens whose controller is {@link Reusable} are loaded once and kept: switching back to one shows the same
+ * scene again after asking its controller to reset itself, instead of parsing the FXML, creating a new controller
+ * and running its initialize again. {@link #preload(String...)} loads such screens in the background ahead of use.
+ *
+ * @author Teksong Eap
+ */
+public final class SceneSwitcher {
+
+    /**
+     * A controller whose screen may be kept and shown again.
+     */
+    public interface Reusable {
+        /**
+         * Called on the JavaFX application thread each time the kept screen is shown again,
+         * to clear what was entered last time and reload data that may have changed.
+         */
+        void onShow();
+    }
+
+    /**
+     * A loaded screen.
+     */
+    private static final class Screen {
+
+        /** The root node */
+        private final Parent root;
+
+        /** The controller */
+        private final Object controller;
+
+        /** The scene, created on the application thread when first shown */
+        private Scene scene;
+
+        /**
+         * Creates a screen.
+         *
+         * @param root the root node
+         * @param controller the controller
+         */
+        Screen(Parent root, Object controller) {
+            this.root = root;
+            this.controller = controller;
+        }
+    }
+
+    /** Kept screens by FXML resource path */
+    private static final Map<String, Screen> screens = new ConcurrentHashMap<>();
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private SceneSwitcher() {
+    }
+
+    /**
+     * Shows a screen on the given stage, loading its FXML view unless it is kept from earlier.
+     *
+     * @param stage the stage to show the view on
+     * @param fxml the FXML resource path, e.g. "/project/view/AppointmentsAndCustomers.fxml"
+     * @param <T> the type of the view's controller
+     * @return the controller of the view
+     * @throws IOException if there is an error loading the FXML file
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> T switchTo(Stage stage, String fxml) throws IOException {
+        SceneSwitchEvent event = new SceneSwitchEvent();
+        event.begin();
+
+        Screen screen = screens.get(fxml);
+        if (screen != null) {
+            ((Reusable) screen.controller).onShow();
+        } else {
+            screen = load(fxml);
+            if (screen.controller instanceof Reusable) {
+                screens.put(fxml, screen);
+            }
+        }
+        if (screen.scene == null) {
+            screen.scene = new Scene(screen.root);
+        }
+        stage.setScene(screen.scene);
+        stage.show();
+
+        T controller = (T) screen.controller;
+        event.end();
+        if (event.shouldCommit()) {
+            event.fxml = fxml;
+            event.controller = controller == null ? null : controller.getClass().getName();
+            event.commit();
+        }
+        return controller;
+    }
+
+    /**
+     * Loads screens on a background thread so the first switch to them is instant. Only screens with a
+     * {@link Reusable} controller are kept; their controllers must not need the application thread to initialize.
+     * The database reads their initialize makes run on {@link JDBC#getBackgroundConnection()}, never on the shared
+     * connection, which the application thread may be using for a transaction or a streamed read meanwhile.
+     *
+     * @param fxmls the FXML resource paths
+     */
+    public static void preload(String... fxmls) {
+        Thread preloadThread = new Thread(() -> {
+            for (String fxml : fxmls) {
+                if (screens.containsKey(fxml)) {
+                    continue;
+                }
+                try {
+                    Screen screen = Repositories.isInMemory() ? load(fxml)
+                            : JDBC.callOn(JDBC.getBackgroundConnection(), () -> load(fxml));
+                    if (screen.controller instanceof Reusable) {
+                        // A screen the user opened meanwhile has already been kept
+                        screens.putIfAbsent(fxml, screen);
+                    }
+                } catch (Exception e) {
+                    System.out.println("Could not preload " + fxml);
+                    e.printStackTrace();
+                }
+            }
+        }, "screen-preloader");
+        preloadThread.setDaemon(true);
+        preloadThread.start();
+    }
+
+    /**
+     * Loads an FXML view and creates its controller.
+     *
+     * @param fxml the FXML resource path
+     * @return the loaded screen
+     * @throws IOException if there is an error loading the FXML file
+     */
+    private static Screen load(String fxml) throws IOException {
+        FXMLLoader loader = new FXMLLoader(Objects.requireNonNull(SceneSwitcher.class.getResource(fxml)));
+        Parent root = loader.load();
+        return new Screen(root, loader.getController());
+    }
+}
@@ -0,0 +1,170 @@
+package project.utilities;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Logs DAO statements that take longer than a configurable threshold.
+ * Each record holds the SQL, its bind values, the row count and the controller method that triggered it.
+ * String bind values are written only as their length, unless slowQuery.logStringBinds is true, since they may
+ * hold names, notes or passwords; statements on the users table never have their binds written.
+ * Records are written to a rotating file by an {@link AsyncFileAppender}, so logging never slows the caller.
+ * Repeated slow executions of the same SQL are sampled: only the first few per time window are written,
+ * and the next written record reports how many were skipped.
+ *
+ * Settings (app.properties or -D):
+ * slowQuery.thresholdMillis (default 500), slowQuery.file (default slow_queries.log),
+ * slowQuery.maxFileBytes (default 10 MB), slowQuery.maxBackups (default 5),
+ * slowQuery.samplesPerWindow (default 5), slowQuery.sampleWindowSeconds (default 60),
+ * slowQuery.logStringBinds (default false).
+ *
+ * @author Teksong Eap
+ */
+public final class SlowQueryLog {
+
+    /** Statements slower than this many nanoseconds are logged */
+    private static final long THRESHOLD_NANOS =
+            TimeUnit.MILLISECONDS.toNanos(AppConfig.getLong("slowQuery.thresholdMillis", 500));
+
+    /** Number of records written per SQL statement in each sampling window */
+    private static final int SAMPLES_PER_WINDOW = AppConfig.getInt("slowQuery.samplesPerWindow", 5);
+
+    /** Length of a sampling window in nanoseconds */
+    private static final long WINDOW_NANOS =
+            TimeUnit.SECONDS.toNanos(AppConfig.getLong("slowQuery.sampleWindowSeconds", 60));
+
+    /** Longest bind value written in full; longer values are cut off */
+    private static final int MAX_BIND_LENGTH = 200;
+
+    /** Whether string bind values are written in full rather than as their length */
+    private static final boolean LOG_STRING_BINDS = AppConfig.getBoolean("slowQuery.logStringBinds", false);
+
+    /** Matches SQL that reads or writes the users table, whose binds include passwords */
+    private static final Pattern USERS_TABLE = Pattern.compile("\\busers\\b", Pattern.CASE_INSENSITIVE);
+
+    /** Sampling state per SQL statement */
+    private static final ConcurrentHashMap<String, Sampler> samplers = new ConcurrentHashMap<>();
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private SlowQueryLog() {
+    }
+
+    /**
+     * Records a finished statement execution. Does nothing if the statement was faster than the threshold
+     * or if it is being sampled out.
+     *
+     * @param sql the SQL text
+     * @param binds the bind values, in parameter order
+     * @param rows rows read or affected
+     * @param durationNanos execution time in nanoseconds
+     */
+    static void record(String sql, List<Object> binds, long rows, long durationNanos) {
+        if (durationNanos < THRESHOLD_NANOS) {
+            return;
+        }
+        long suppressed = samplers.computeIfAbsent(sql, key -> new Sampler()).admit(System.nanoTime());
+        if (suppressed < 0) {
+            return;
+        }
+        StringBuilder line = new StringBuilder(256)
+                .append(LocalDateTime.now())
+                .append(" durationMs=").append(TimeUnit.NANOSECONDS.toMillis(durationNanos))
+                .append(" rows=").append(rows)
+                .append(" caller=").append(TracedConnection.findControllerMethod())
+                .append(" dao=").append(TracedConnection.findDaoMethod())
+                .append(" sql=\"").append(sql.replace('\n', ' ')).append('"')
+                .append(" binds=").append(formatBinds(sql, binds));
+        if (suppressed > 0) {
+            line.append(" suppressed=").append(suppressed);
+        }
+        Appender.INSTANCE.append(line.toString());
+    }
+
+    /**
+     * Formats the bind values as a list, cutting off long values. Strings are written as their length unless
+     * string binds are logged, and the binds of statements on the users table are left out altogether.
+     *
+     * @param sql the SQL text
+     * @param binds the bind values
+     * @return the formatted values
+     */
+    private static String formatBinds(String sql, List<Object> binds) {
+        if (USERS_TABLE.matcher(sql).find()) {
+            return "[" + binds.size() + " redacted]";
+        }
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < binds.size(); i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            Object value = binds.get(i);
+            String text;
+            if (!(value instanceof String)) {
+                text = String.valueOf(value);
+            } else if (LOG_STRING_BINDS) {
+                text = "'" + value + "'";
+            } else {
+                text = "String(" + ((String) value).length() + ")";
+            }
+            if (text.length() > MAX_BIND_LENGTH) {
+                text = text.substring(0, MAX_BIND_LENGTH) + "...";
+            }
+            sb.append(text.replace('\n', ' '));
+        }
+        return sb.append(']').toString();
+    }
+
+    /**
+     * Holds the log file appender, created the first time a slow statement is logged.
+     */
+    private static final class Appender {
+        /** The slow-query log file */
+        static final AsyncFileAppender INSTANCE = new AsyncFileAppender(
+                AppConfig.getString("slowQuery.file", "slow_queries.log"),
+                AppConfig.getLong("slowQuery.maxFileBytes", 10L * 1024 * 1024),
+                AppConfig.getInt("slowQuery.maxBackups", 5),
+                1024);
+    }
+
+    /**
+     * Decides whether a slow execution of one SQL statement is written, allowing a fixed number
+     * of records per time window.
+     */
+    private static final class Sampler {
+
+        /** Start of the current window, in System.nanoTime() */
+        private long windowStart;
+
+        /** Records written in the current window */
+        private int written;
+
+        /** Executions skipped since the last written record */
+        private long skipped;
+
+        /**
+         * Admits or skips one execution.
+         *
+         * @param now the current System.nanoTime()
+         * @return -1 if the execution should be skipped, otherwise the number of executions skipped before it
+         */
+        synchronized long admit(long now) {
+            if (written == 0 || now - windowStart >= WINDOW_NANOS) {
+                windowStart = now;
+                written = 0;
+            }
+            if (written >= SAMPLES_PER_WINDOW) {
+                skipped++;
+                return -1;
+            }
+            written++;
+            long result = skipped;
+            skipped = 0;
+            return result;
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package project.utilities;
+
+import javafx.application.Platform;
+import project.DAO.Repositories;
+import project.jfr.StartupPhaseEvent;
+
+import java.lang.management.ManagementFactory;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs application startup as phases on background threads, so the screens do not wait for work they do not need yet.
+ * While the login screen is shown, the database connection is opened and the reference data (contacts, users and
+ * countries) is read once to warm the connection, the driver and the data store. After login, the main screen's
+ * data is fetched while its view loads; see
+ * {@link project.controller.AppointmentsAndCustomersController#prefetch(int)}.
+ *
+ * Phases run at the same time, each on a database connection of its own (see {@link JDBC#callOn}), since a
+ * connection runs one statement at a time and cannot run any while a streamed result is being read. A phase whose
+ * connection cannot be opened runs on the shared connection, which reconnects by itself.
+ *
+ * Every phase is timed and reported as a {@link StartupPhaseEvent} to JDK Flight Recorder. Once the main screen
+ * is usable, the phase times and the time since the JVM started are printed.
+ *
+ * With startup.training=true the application runs unattended: it logs in as startup.training.user and exits once
+ * the main screen is usable. The build uses such a run to record which classes startup loads for its class data
+ * sharing archive.
+ *
+ * @author Teksong Eap
+ */
+public final class StartupOrchestrator {
+
+    /** Whether this is an unattended training run */
+    private static final boolean TRAINING = AppConfig.getBoolean("startup.training", false);
+
+    /** Numbers the phase threads */
+    private static final AtomicInteger threadCount = new AtomicInteger();
+
+    /** Runs the phases, each on a thread of its own */
+    private static final ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "startup-" + threadCount.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /** Phase times and milestones, in the order they happened */
+    private static final List<String> timings = new ArrayList<>();
+
+    /** Completes once the database connection is open */
+    private static volatile CompletableFuture<Void> database = CompletableFuture.completedFuture(null);
+
+    /** Whether the startup times have been printed */
+    private static boolean reported;
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private StartupOrchestrator() {
+    }
+
+    /**
+     * Starts opening the database connection, unless the in-memory store is used, and then warms the reference data.
+     * Called before the login screen is shown.
+     */
+    public static void start() {
+        database = CompletableFuture.supplyAsync(() -> timed("connect", () -> {
+            if (!Repositories.isInMemory()) {
+                JDBC.openConnection();
+            }
+            return null;
+        }), executor);
+        // Read on the shared connection, as warming it is the point
+        database.thenRunAsync(() -> timed("reference data", () -> {
+            Repositories.usersAndContacts().getAllContacts();
+            Repositories.usersAndContacts().getAllUsers();
+            Repositories.territories().getAllCountries();
+            return null;
+        }), executor).exceptionally(e -> {
+            e.printStackTrace();
+            return null;
+        });
+    }
+
+    /**
+     * Waits until the database connection is open, for work that needs it, such as checking a login.
+     */
+    public static void awaitDatabase() {
+        await(database, null);
+    }
+
+    /**
+     * Runs a phase on a background thread, alongside the other phases, with a database connection of its own
+     * that is closed when the phase ends.
+     *
+     * @param name the phase's name, used in the timings
+     * @param work the phase's work
+     * @param <T> the type of the phase's result
+     * @return the phase's result, completed exceptionally if the work throws
+     */
+    public static <T> CompletableFuture<T> phase(String name, Callable<T> work) {
+        return CompletableFuture.supplyAsync(() -> timed(name, () -> onOwnConnection(work)), executor);
+    }
+
+    /**
+     * Runs work on a new database connection, or on the shared connection if a new one cannot be opened or the
+     * in-memory store is used.
+     *
+     * @param work the work
+     * @param <T> the type of the work's result
+     * @return the work's result
+     * @throws Exception what the work throws
+     */
+    private static <T> T onOwnConnection(Callable<T> work) throws Exception {
+        if (Repositories.isInMemory()) {
+            return work.call();
+        }
+        Connection connection;
+        try {
+            connection = JDBC.newConnection(new Properties());
+        } catch (SQLException e) {
+            return work.call();
+        }
+        try (connection) {
+            return JDBC.callOn(connection, work::call);
+        }
+    }
+
+    /**
+     * Waits for a phase and returns its result, or a fallback if it failed.
+     *
+     * @param phase the phase
+     * @param fallback the result to use if the phase failed
+     * @param <T> the type of the phase's result
+     * @return the phase's result or the fallback
+     */
+    public static <T> T await(CompletableFuture<T> phase, T fallback) {
+        try {
+            return phase.join();
+        } catch (CompletionException e) {
+            e.getCause().printStackTrace();
+            return fallback;
+        }
+    }
+
+    /**
+     * Records a milestone, such as a screen being shown, with the time since the JVM started.
+     *
+     * @param milestone what happened
+     */
+    public static synchronized void mark(String milestone) {
+        timings.add(milestone + " at " + uptimeMillis() + " ms");
+    }
+
+    /**
+     * Records that the main screen has its data and prints the startup times, the first time only.
+     */
+    public static synchronized void mainScreenReady() {
+        if (reported) {
+            return;
+        }
+        reported = true;
+        mark("main screen usable");
+        System.out.println("Startup: " + String.join(", ", timings));
+        if (TRAINING) {
+            Platform.runLater(Platform::exit);
+        }
+    }
+
+    /**
+     * Returns whether this is an unattended training run, which logs in by itself and exits once the main screen
+     * is usable.
+     *
+     * @return true for a training run
+     */
+    public static boolean isTrainingRun() {
+        return TRAINING;
+    }
+
+    /**
+     * Runs a phase's work on the current thread and records how long it took.
+     *
+     * @param name the phase's name
+     * @param work the phase's work
+     * @param <T> the type of the phase's result
+     * @return the phase's result
+     * @throws CompletionException wrapping what the work threw
+     */
+    private static <T> T timed(String name, Callable<T> work) {
+        StartupPhaseEvent event = new StartupPhaseEvent();
+        event.begin();
+        long start = System.nanoTime();
+        try {
+            return work.call();
+        } catch (Exception e) {
+            throw new CompletionException(e);
+        } finally {
+            long millis = (System.nanoTime() - start) / 1_000_000;
+            event.end();
+            if (event.shouldCommit()) {
+                event.phase = name;
+                event.endedAtMillis = uptimeMillis();
+                event.commit();
+            }
+            synchronized (StartupOrchestrator.class) {
+                timings.add(name + " " + millis + " ms");
+            }
+        }
+    }
+
+    /**
+     * Returns the time since the JVM started.
+     *
+     * @return milliseconds since the JVM started
+     */
+    private static long uptimeMillis() {
+        return ManagementFactory.getRuntimeMXBean().getUptime();
+    }
+}
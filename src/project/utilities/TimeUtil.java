@@ -41,4 +41,22 @@ public final class TimeUtil {
         LocalTime time = easternTime.toLocalTime();
         return !time.isBefore(START_OF_BUSINESS_DAY) && !time.isAfter(END_OF_BUSINESS_DAY);
     }
+
+    /**
+     * Returns the start of business hours on a day in eastern time
+     * @param easternDate the day in eastern time
+     * @return start of business hours
+     */
+    public static ZonedDateTime getBusinessDayStart(LocalDate easternDate) {
+        return easternDate.atTime(START_OF_BUSINESS_DAY).atZone(EASTERN_TIME);
+    }
+
+    /**
+     * Returns the end of business hours on a day in eastern time
+     * @param easternDate the day in eastern time
+     * @return end of business hours
+     */
+    public static ZonedDateTime getBusinessDayEnd(LocalDate easternDate) {
+        return easternDate.atTime(END_OF_BUSINESS_DAY).atZone(EASTERN_TIME);
+    }
 }
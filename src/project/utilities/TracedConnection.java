@@ -0,0 +1,314 @@
+package project.utilities;
+
+import project.jfr.DAOQueryEvent;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Wraps a database connection so that every PreparedStatement it creates is traced.
+ * Each statement execution is reported as a {@link DAOQueryEvent} to JDK Flight Recorder,
+ * tagged with the DAO method that issued it, and handed to the {@link SlowQueryLog} together
+ * with its bind values.
+ *
+ * @author Teksong Eap
+ */
+final class TracedConnection {
+
+    /** Stack walker used to find the DAO method that issued a statement */
+    private static final StackWalker STACK_WALKER = StackWalker.getInstance();
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private TracedConnection() {
+    }
+
+    /**
+     * Wraps a connection so that the statements it prepares are traced.
+     *
+     * @param connection the connection to wrap
+     * @return the traced connection
+     */
+    static Connection wrap(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(TracedConnection.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, new ConnectionHandler(connection));
+    }
+
+    /**
+     * Finds the first DAO frame on the current call stack.
+     *
+     * @return the DAO method as "Class.method", or "unknown" if the statement was not issued by a DAO
+     */
+    static String findDaoMethod() {
+        return findFrame("project.DAO.", DBLogin.class.getName());
+    }
+
+    /**
+     * Finds the first controller frame on the current call stack.
+     *
+     * @return the controller method as "Class.method", or "unknown" if no controller is on the stack
+     */
+    static String findControllerMethod() {
+        return findFrame("project.controller.", "project.controller.");
+    }
+
+    /**
+     * Finds the first frame whose class is in the given package or is the given class.
+     *
+     * @param packagePrefix the package prefix to match
+     * @param className the class name to match
+     * @return the frame as "Class.method", or "unknown" if there is no such frame
+     */
+    private static String findFrame(String packagePrefix, String className) {
+        Optional<String> frame = STACK_WALKER.walk(frames -> frames
+                .filter(f -> f.getClassName().startsWith(packagePrefix) || f.getClassName().equals(className))
+                .map(f -> f.getClassName().substring(f.getClassName().lastIndexOf('.') + 1) + "." + f.getMethodName())
+                .findFirst());
+        return frame.orElse("unknown");
+    }
+
+    /**
+     * Invokes a method on the wrapped object, unwrapping reflection exceptions.
+     *
+     * @param target the wrapped object
+     * @param method the method to invoke
+     * @param args the method arguments
+     * @return the method result
+     * @throws Throwable the exception thrown by the method
+     */
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Intercepts prepareStatement calls and wraps the returned statements.
+     */
+    private static final class ConnectionHandler implements InvocationHandler {
+
+        /** The wrapped connection */
+        private final Connection connection;
+
+        /**
+         * Creates a handler for the given connection.
+         *
+         * @param connection the wrapped connection
+         */
+        ConnectionHandler(Connection connection) {
+            this.connection = connection;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Object result = TracedConnection.invoke(connection, method, args);
+            if (method.getName().equals("prepareStatement") && result instanceof PreparedStatement) {
+                return Proxy.newProxyInstance(TracedConnection.class.getClassLoader(),
+                        new Class<?>[]{PreparedStatement.class},
+                        new StatementHandler((PreparedStatement) result, (String) args[0]));
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Times statement executions and remembers their bind values. Queries stay open until their
+     * ResultSet or statement is closed, so the reported time includes reading the rows.
+     */
+    private static final class StatementHandler implements InvocationHandler {
+
+        /** The wrapped statement */
+        private final PreparedStatement statement;
+
+        /** The SQL text of the statement */
+        private final String sql;
+
+        /** Bind values by parameter index, starting at index 1 */
+        private final List<Object> binds = new ArrayList<>();
+
+        /** The event for the query currently being read, if any */
+        private DAOQueryEvent openQuery;
+
+        /** The System.nanoTime() at which the open query was executed */
+        private long openQueryStart;
+
+        /**
+         * Creates a handler for the given statement.
+         *
+         * @param statement the wrapped statement
+         * @param sql the SQL text of the statement
+         */
+        StatementHandler(PreparedStatement statement, String sql) {
+            this.statement = statement;
+            this.sql = sql;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            switch (name) {
+                case "executeQuery":
+                    finishQuery();
+                    long queryStart = System.nanoTime();
+                    DAOQueryEvent queryEvent = startEvent("query");
+                    ResultSet rs = (ResultSet) TracedConnection.invoke(statement, method, args);
+                    openQuery = queryEvent;
+                    openQueryStart = queryStart;
+                    return Proxy.newProxyInstance(TracedConnection.class.getClassLoader(),
+                            new Class<?>[]{ResultSet.class}, new ResultSetHandler(rs, this));
+                case "executeUpdate":
+                case "executeLargeUpdate":
+                case "executeBatch":
+                case "executeLargeBatch":
+                    finishQuery();
+                    long updateStart = System.nanoTime();
+                    DAOQueryEvent updateEvent = startEvent("update");
+                    Object result = TracedConnection.invoke(statement, method, args);
+                    updateEvent.rows = countRows(result);
+                    commit(updateEvent, updateStart);
+                    return result;
+                case "close":
+                    finishQuery();
+                    return TracedConnection.invoke(statement, method, args);
+                case "clearParameters":
+                    binds.clear();
+                    return TracedConnection.invoke(statement, method, args);
+                default:
+                    if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+                        bind((Integer) args[0], name.equals("setNull") ? null : args[1]);
+                    }
+                    return TracedConnection.invoke(statement, method, args);
+            }
+        }
+
+        /**
+         * Remembers the value bound to a parameter.
+         *
+         * @param index the parameter index, starting at 1
+         * @param value the bound value
+         */
+        private void bind(int index, Object value) {
+            while (binds.size() < index) {
+                binds.add(null);
+            }
+            binds.set(index - 1, value);
+        }
+
+        /**
+         * Creates and begins an event for this statement.
+         *
+         * @param kind "query" or "update"
+         * @return the started event
+         */
+        private DAOQueryEvent startEvent(String kind) {
+            DAOQueryEvent event = new DAOQueryEvent();
+            event.sql = sql;
+            event.kind = kind;
+            event.begin();
+            return event;
+        }
+
+        /**
+         * Records a row read from the open query.
+         */
+        void rowRead() {
+            if (openQuery != null) {
+                openQuery.rows++;
+            }
+        }
+
+        /**
+         * Ends and commits the event for the open query, if any.
+         */
+        void finishQuery() {
+            if (openQuery != null) {
+                commit(openQuery, openQueryStart);
+                openQuery = null;
+            }
+        }
+
+        /**
+         * Ends the event and commits it if the recording is interested in it,
+         * then hands the execution to the slow-query log.
+         *
+         * @param event the event to commit
+         * @param startNanos the System.nanoTime() at which the statement was executed
+         */
+        private void commit(DAOQueryEvent event, long startNanos) {
+            event.end();
+            if (event.shouldCommit()) {
+                event.daoMethod = findDaoMethod();
+                event.commit();
+            }
+            SlowQueryLog.record(sql, binds, event.rows, System.nanoTime() - startNanos);
+        }
+
+        /**
+         * Converts the result of an update or batch call into a row count.
+         *
+         * @param result the value returned by the statement
+         * @return the number of rows affected
+         */
+        private static long countRows(Object result) {
+            if (result instanceof Number) {
+                return ((Number) result).longValue();
+            }
+            long total = 0;
+            if (result instanceof int[]) {
+                for (int count : (int[]) result) {
+                    total += Math.max(count, 0);
+                }
+            } else if (result instanceof long[]) {
+                for (long count : (long[]) result) {
+                    total += Math.max(count, 0);
+                }
+            }
+            return total;
+        }
+    }
+
+    /**
+     * Counts rows as they are read and finishes the query event when the ResultSet is closed.
+     */
+    private static final class ResultSetHandler implements InvocationHandler {
+
+        /** The wrapped ResultSet */
+        private final ResultSet resultSet;
+
+        /** The statement that produced the ResultSet */
+        private final StatementHandler owner;
+
+        /**
+         * Creates a handler for the given ResultSet.
+         *
+         * @param resultSet the wrapped ResultSet
+         * @param owner the statement that produced it
+         */
+        ResultSetHandler(ResultSet resultSet, StatementHandler owner) {
+            this.resultSet = resultSet;
+            this.owner = owner;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Object result = TracedConnection.invoke(resultSet, method, args);
+            if (method.getName().equals("next") && Boolean.TRUE.equals(result)) {
+                owner.rowRead();
+            } else if (method.getName().equals("close")) {
+                owner.finishQuery();
+            }
+            return result;
+        }
+    }
+}